@@ -3,6 +3,11 @@ package com.example.melodix;
 import android.app.Application;
 import android.content.Context;
 
+import com.example.melodix.api.DeezerApiClient;
+import com.example.melodix.api.DeezerEntityStore;
+import com.example.melodix.listener.DownloadQueueManager;
+import com.example.melodix.listener.LibrarySyncer;
+
 /**
  * Application class to provide global context for the app
  */
@@ -13,6 +18,20 @@ public class MelodixApplication extends Application {
     public void onCreate() {
         super.onCreate();
         appContext = getApplicationContext();
+        DeezerApiClient.init(this);
+        // Picks up downloads that were queued or running when the process last died
+        DownloadQueueManager.getInstance(this);
+        // Pushes favorites and recents edited offline and pulls changes from other devices
+        LibrarySyncer.getInstance(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            DeezerEntityStore.getInstance().logStats();
+            DeezerEntityStore.getInstance().clear();
+        }
     }
 
     /**
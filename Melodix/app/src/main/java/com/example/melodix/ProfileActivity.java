@@ -1,53 +0,0 @@
-package com.example.melodix;
-
-import android.os.Bundle;
-import android.view.View;
-import android.widget.ImageView;
-import android.content.Intent;
-import android.widget.Button;
-import android.widget.Toast;
-import com.google.firebase.auth.FirebaseAuth;
-
-import androidx.activity.EdgeToEdge;
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.graphics.Insets;
-import androidx.core.view.ViewCompat;
-import androidx.core.view.WindowInsetsCompat;
-
-public class ProfileActivity extends AppCompatActivity {
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_profile);
-
-        // The root ScrollView doesn't have an ID in your layout
-        // We need to either add an ID to it or use the content root
-        View rootView = findViewById(android.R.id.content);
-        ViewCompat.setOnApplyWindowInsetsListener(rootView, (v, insets) -> {
-            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
-            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
-            return insets;
-        });
-
-        // Set up back button functionality
-        ImageView backButton = findViewById(R.id.btn_back);
-        backButton.setOnClickListener(v -> finish());
-
-        Button logoutButton = findViewById(R.id.btn_logout);
-        logoutButton.setOnClickListener(v -> {
-            // Sign out from Firebase Auth
-            FirebaseAuth.getInstance().signOut();
-
-            // Show logout confirmation
-            Toast.makeText(ProfileActivity.this, "Successfully logged out", Toast.LENGTH_SHORT).show();
-
-            // Navigate to Login activity and clear the back stack
-            Intent intent = new Intent(ProfileActivity.this, Login.class);
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            startActivity(intent);
-            finish();
-        });
-    }
-}
@@ -1,62 +0,0 @@
-package com.example.melodix;
-
-import android.content.Intent;
-import android.os.Bundle;
-import android.widget.Button;
-import android.widget.Toast;
-import androidx.appcompat.app.AppCompatActivity;
-import com.google.android.material.textfield.TextInputEditText;
-
-public class SetNewPasswordActivity extends AppCompatActivity {
-    private TextInputEditText newPasswordEditText;
-    private TextInputEditText confirmPasswordEditText;
-    private Button savePasswordButton;
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_set_new_password);
-
-        // Initialize views
-        newPasswordEditText = findViewById(R.id.newPasswordEditText);
-        confirmPasswordEditText = findViewById(R.id.confirmPasswordEditText);
-        savePasswordButton = findViewById(R.id.savePasswordButton);
-
-        // Set click listener for save password button
-        savePasswordButton.setOnClickListener(view -> {
-            String newPassword = newPasswordEditText.getText().toString();
-            String confirmPassword = confirmPasswordEditText.getText().toString();
-
-            if (validatePasswords(newPassword, confirmPassword)) {
-                // Here you would typically implement your password update logic
-                // For demonstration, we'll just show a success message and return to login
-                Toast.makeText(this, "Password updated successfully", Toast.LENGTH_SHORT).show();
-
-                // Return to login screen
-                Intent intent = new Intent(SetNewPasswordActivity.this, Login.class);
-                intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
-                startActivity(intent);
-                finish();
-            }
-        });
-    }
-
-    private boolean validatePasswords(String newPassword, String confirmPassword) {
-        if (newPassword.isEmpty() || confirmPassword.isEmpty()) {
-            Toast.makeText(this, "Please fill in all fields", Toast.LENGTH_SHORT).show();
-            return false;
-        }
-
-        if (!newPassword.equals(confirmPassword)) {
-            Toast.makeText(this, "Passwords do not match", Toast.LENGTH_SHORT).show();
-            return false;
-        }
-
-        if (newPassword.length() < 6) {
-            Toast.makeText(this, "Password must be at least 6 characters", Toast.LENGTH_SHORT).show();
-            return false;
-        }
-
-        return true;
-    }
-}
@@ -1,96 +0,0 @@
-package com.example.melodix;
-
-import android.content.Intent;
-import android.os.Bundle;
-import android.text.TextUtils;
-import android.view.View;
-import android.widget.Toast;
-import androidx.appcompat.app.AppCompatActivity;
-import com.google.android.material.button.MaterialButton;
-import com.google.android.material.textfield.TextInputEditText;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
-
-public class SignUp extends AppCompatActivity {
-    private TextInputEditText emailEditText, passwordEditText, confirmPasswordEditText;
-    private MaterialButton signUpButton;
-    private FirebaseAuth mAuth;
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_signup);
-
-        // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
-
-        // Initialize views
-        emailEditText = findViewById(R.id.emailEditText);
-        passwordEditText = findViewById(R.id.passwordEditText);
-        confirmPasswordEditText = findViewById(R.id.confirmPasswordEditText);
-        signUpButton = findViewById(R.id.signupButton);
-
-        signUpButton.setOnClickListener(v -> registerUser());
-
-        // Back to login
-        findViewById(R.id.haveAccountText).setOnClickListener(v -> {
-            startActivity(new Intent(SignUp.this, Login.class));
-            finish();
-        });
-    }
-
-    private void registerUser() {
-        String email = emailEditText.getText().toString().trim();
-        String password = passwordEditText.getText().toString().trim();
-        String confirmPassword = confirmPasswordEditText.getText().toString().trim();
-
-        // Validation
-        if (TextUtils.isEmpty(email)) {
-            emailEditText.setError("Email is required");
-            emailEditText.requestFocus();
-            return;
-        }
-
-        if (TextUtils.isEmpty(password)) {
-            passwordEditText.setError("Password is required");
-            passwordEditText.requestFocus();
-            return;
-        }
-
-        if (password.length() < 6) {
-            passwordEditText.setError("Password must be at least 6 characters");
-            passwordEditText.requestFocus();
-            return;
-        }
-
-        if (!password.equals(confirmPassword)) {
-            confirmPasswordEditText.setError("Passwords do not match");
-            confirmPasswordEditText.requestFocus();
-            return;
-        }
-
-        // Show loading
-        signUpButton.setEnabled(false);
-
-        // Create user with email and password
-        mAuth.createUserWithEmailAndPassword(email, password)
-                .addOnCompleteListener(this, task -> {
-                    if (task.isSuccessful()) {
-                        // Sign up success
-                        FirebaseUser user = mAuth.getCurrentUser();
-                        Toast.makeText(SignUp.this, "Registration successful",
-                                     Toast.LENGTH_SHORT).show();
-
-                        // Navigate to Login
-                        startActivity(new Intent(SignUp.this, Login.class));
-                        finish();
-                    } else {
-                        // If sign up fails, display a message to the user.
-                        Toast.makeText(SignUp.this, "Registration failed: " +
-                                     task.getException().getMessage(),
-                                     Toast.LENGTH_SHORT).show();
-                    }
-                    signUpButton.setEnabled(true);
-                });
-    }
-}
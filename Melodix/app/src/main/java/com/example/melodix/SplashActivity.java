@@ -1,55 +0,0 @@
-package com.example.melodix;
-
-import android.os.Bundle;
-
-import androidx.activity.EdgeToEdge;
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.graphics.Insets;
-import androidx.core.splashscreen.SplashScreen;
-import androidx.core.view.ViewCompat;
-import androidx.core.view.WindowInsetsCompat;
-
-import android.content.Intent;
-import android.os.Handler;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
-
-public class SplashActivity extends AppCompatActivity {
-    private static final int SPLASH_DURATION = 2000; // 2 seconds
-    private FirebaseAuth mAuth;
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_splash);
-        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
-            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
-            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
-            return insets;
-        });
-        // Install splash screen
-        SplashScreen.installSplashScreen(this);
-
-        // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
-
-        new Handler().postDelayed(() -> {
-            // Check if user is signed in (non-null)
-            FirebaseUser currentUser = mAuth.getCurrentUser();
-            Intent intent;
-
-            if (currentUser != null) {
-                // User already signed in, go to MainActivity
-                intent = new Intent(SplashActivity.this, MainActivity.class);
-            } else {
-                // No user signed in, go to Login
-                intent = new Intent(SplashActivity.this, Login.class);
-            }
-
-            startActivity(intent);
-            finish();
-        }, SPLASH_DURATION);
-    }
-}
-
@@ -1,5 +0,0 @@
-package com.example.melodix;
-
-public interface TrackChangeListener {
-    void onTrackChanged(Track track);
-}
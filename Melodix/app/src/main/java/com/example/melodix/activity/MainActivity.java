@@ -9,14 +9,13 @@ import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
-import com.example.melodix.listener.FavoriteChangeListener;
 import com.example.melodix.listener.MusicPlayer;
 import com.example.melodix.R;
 import com.example.melodix.listener.ThemeManager;
 import com.example.melodix.listener.TrackChangeListener;
-import com.example.melodix.listener.UserPreferencesManager;
 import com.example.melodix.api.DeezerRepository;
 import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.database.LibraryStore;
 import com.example.melodix.fragment.DownloadedMusicFragment;
 import com.example.melodix.fragment.FavoriteFragment;
 
@@ -41,7 +40,6 @@ public class MainActivity extends AppCompatActivity {
     private Fragment currentFragment;
     private MusicPlayer musicPlayer;
     private List<TrackChangeListener> trackChangeListeners = new ArrayList<>();
-    private List<FavoriteChangeListener> favoriteChangeListeners = new ArrayList<>();
     private List<Track> sessionTracks = new ArrayList<>();
     private boolean playingFromDownloaded = false;
     private List<Track> downloadedTracks = new ArrayList<>();
@@ -134,58 +132,11 @@ public class MainActivity extends AppCompatActivity {
     public void removeTrackChangeListener(TrackChangeListener listener) {
         trackChangeListeners.remove(listener);
     }
-    public void addFavoriteChangeListener(FavoriteChangeListener listener) {
-        if (!favoriteChangeListeners.contains(listener)) {
-            favoriteChangeListeners.add(listener);
-        }
-    }
-    public void removeFavoriteChangeListener(FavoriteChangeListener listener) {
-        favoriteChangeListeners.remove(listener);
-    }
-    public void notifyFavoriteChanged() {
-        for (FavoriteChangeListener listener : favoriteChangeListeners) {
-            listener.onFavoriteChanged();
-        }
-    }
-    public void notifyDownloadCompleted(Track track) {
-        Log.d("MainActivity", "=== DOWNLOAD COMPLETED NOTIFICATION ===");
-        Log.d("MainActivity", "Track: " + track.getTitle());
-
-        refreshDownloadedMusic();
-
-        for (Fragment fragment : getSupportFragmentManager().getFragments()) {
-            if (fragment instanceof DownloadedMusicFragment && fragment.isAdded()) {
-                ((DownloadedMusicFragment) fragment).onDownloadCompleted(track);
-                break;
-            }
-        }
-    }
-
-    public void refreshDownloadedMusic() {
-        Log.d("MainActivity", "=== REFRESH DOWNLOADED MUSIC REQUESTED ===");
-
-        for (Fragment fragment : getSupportFragmentManager().getFragments()) {
-            if (fragment instanceof DownloadedMusicFragment && fragment.isAdded()) {
-                Log.d("MainActivity", "Found DownloadedMusicFragment - forcing refresh");
-                ((DownloadedMusicFragment) fragment).forceRefresh();
-                return;
-            }
-        }
-
-        Fragment downloadFragment = getSupportFragmentManager().findFragmentByTag("DownloadedMusicFragment");
-        if (downloadFragment instanceof DownloadedMusicFragment) {
-            Log.d("MainActivity", "Found DownloadedMusicFragment by tag - forcing refresh");
-            ((DownloadedMusicFragment) downloadFragment).forceRefresh();
-            return;
-        }
-        Log.d("MainActivity", "DownloadedMusicFragment not found or not visible");
-    }
-
     public void loadAllDownloadedTracks() {
         if (downloadedMusicFragment != null) {
             downloadedTracks = downloadedMusicFragment.getAllDownloadedTracks();
         } else {
-            DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(this);
+            DownloadedMusicDbHelper dbHelper = DownloadedMusicDbHelper.getInstance(this);
             downloadedTracks = DownloadedMusicFragment.getDownloadedTracksFromDb(dbHelper);
         }
     }
@@ -287,10 +238,6 @@ public class MainActivity extends AppCompatActivity {
             public void onDurationChanged(int duration) {
             }
 
-            @Override
-            public void onPositionChanged(int position) {
-            }
-
             @Override
             public void onPrepareStart() {
                 Log.d(TAG, "MusicPlayer: Prepare started");
@@ -361,10 +308,6 @@ public class MainActivity extends AppCompatActivity {
                 }, 100);
             }
 
-            if (fragment == homeFragment) {
-                homeFragment.refreshRecentlyPlayed();
-            }
-
         } catch (Exception e) {
             Log.e(TAG, "Error showing fragment: " + e.getMessage(), e);
             Toast.makeText(this, "Navigation error. Please try again.", Toast.LENGTH_SHORT).show();
@@ -542,7 +485,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private List<Track> getFavoriteTracks() {
-        return UserPreferencesManager.getFavoriteTracks(this);
+        return LibraryStore.getInstance(this).loadFavorites();
     }
 
     public void addToRecentlyPlayedAsync(Track track) {
@@ -567,48 +510,22 @@ public class MainActivity extends AppCompatActivity {
         lastAddedTrackId = trackId;
         lastAddedTime = currentTime;
 
-        try {
-            List<Track> recentTracks = UserPreferencesManager.getRecentTracks(this);
-            recentTracks.removeIf(t -> t != null && t.getId() == track.getId());
-            recentTracks.add(0, track);
-
-            if (recentTracks.size() > 10) {
-                recentTracks = new ArrayList<>(recentTracks.subList(0, 10));
-            }
-
-            Log.d(TAG, "Adding track to recently played LOCAL ONLY: " + track.getTitle() +
-                    " (total: " + recentTracks.size() + ")");
-
-            UserPreferencesManager.saveRecentTracks(this, recentTracks);
-            if (currentFragment instanceof HomeFragment && homeFragment != null) {
-                runOnUiThread(() -> homeFragment.refreshRecentlyPlayed());
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating recently played tracks: " + e.getMessage(), e);
-        }
+        Log.d(TAG, "Adding track to recently played: " + track.getTitle());
+        // The home screen hears about it from LibraryStore
+        LibraryStore.getInstance(this).addRecent(track);
     }
 
     public void clearRecentlyPlayedOnNewDevice() {
         Log.d(TAG, "Clearing recently played for new device");
 
         try {
-            UserPreferencesManager.saveRecentTracks(this, new ArrayList<>());
+            LibraryStore.getInstance(this).clearRecents();
             Log.d(TAG, "✅ Local recent tracks cleared");
 
             getSharedPreferences("recent_tracks", MODE_PRIVATE)
                     .edit()
                     .clear()
                     .apply();
-
-            // Refresh UI jika homeFragment sudah ada dan visible
-            if (currentFragment instanceof HomeFragment && homeFragment != null) {
-                runOnUiThread(() -> {
-                    homeFragment.refreshRecentlyPlayed();
-                    Log.d(TAG, "✅ UI refreshed after clearing recent tracks");
-                });
-            }
-
         } catch (Exception e) {
             Log.e(TAG, "Error clearing recently played: " + e.getMessage(), e);
         }
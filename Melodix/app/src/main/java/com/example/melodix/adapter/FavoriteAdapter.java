@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.melodix.R;
+import com.example.melodix.database.LibraryChange;
 import com.example.melodix.model.Track;
 
 import java.util.ArrayList;
@@ -39,6 +40,9 @@ public class FavoriteAdapter extends RecyclerView.Adapter<FavoriteAdapter.ViewHo
         }
         notifyDataSetChanged();
     }
+    public void applyChange(LibraryChange change) {
+        LibraryRows.apply(change, tracks, this);
+    }
     public void removeItem(int position) {
         if (position >= 0 && position < tracks.size()) {
             tracks.remove(position);
@@ -0,0 +1,50 @@
+package com.example.melodix.adapter;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.melodix.database.LibraryChange;
+import com.example.melodix.model.Track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a {@link LibraryChange} to the rows a screen shows, notifying the adapter about each
+ * row touched so only those rebind. Resets are left to the caller, which reloads the list.
+ */
+public final class LibraryRows {
+    private LibraryRows() {
+    }
+
+    public static void apply(LibraryChange change, List<Track> rows, @Nullable RecyclerView.Adapter<?> adapter) {
+        for (long trackId : change.getRemoved()) {
+            int position = indexOf(rows, trackId);
+            if (position < 0) continue;
+            rows.remove(position);
+            if (adapter != null) adapter.notifyItemRemoved(position);
+        }
+        for (Track track : change.getUpdated()) {
+            int position = indexOf(rows, track.getId());
+            if (position < 0) continue;
+            rows.set(position, track);
+            if (adapter != null) adapter.notifyItemChanged(position);
+        }
+        // The screen may already show a row it added itself
+        List<Track> added = new ArrayList<>(change.getAdded().size());
+        for (Track track : change.getAdded()) {
+            if (indexOf(rows, track.getId()) < 0) added.add(track);
+        }
+        if (added.isEmpty()) return;
+        int start = change.isNewestFirst() ? 0 : rows.size();
+        rows.addAll(start, added);
+        if (adapter != null) adapter.notifyItemRangeInserted(start, added.size());
+    }
+
+    private static int indexOf(List<Track> rows, long trackId) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == trackId) return i;
+        }
+        return -1;
+    }
+}
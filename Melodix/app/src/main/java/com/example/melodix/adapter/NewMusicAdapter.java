@@ -87,11 +87,11 @@ public class NewMusicAdapter extends RecyclerView.Adapter<NewMusicAdapter.ViewHo
                     }
                 }
             }
-            int startPosition = filteredTracks.size();
             if (!filtered2025Tracks.isEmpty()) {
                 this.filteredTracks.addAll(filtered2025Tracks);
                 sortTracksByPopularity();
-                notifyItemRangeInserted(startPosition, filtered2025Tracks.size());
+                // Sorting moves the new tracks around, so a range insert would be wrong
+                notifyDataSetChanged();
                 android.util.Log.d("NewMusicAdapter", "Added " + filtered2025Tracks.size() +
                                   " new tracks from 2025 (from " + newTracks.size() + " total new tracks)");
             } else {
@@ -16,6 +16,7 @@ import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.Target;
 import com.example.melodix.R;
+import com.example.melodix.database.LibraryChange;
 import com.example.melodix.model.Track;
 
 import java.util.ArrayList;
@@ -36,6 +37,9 @@ public class RecentlyPlayedAdapter extends RecyclerView.Adapter<RecentlyPlayedAd
         this.tracks.addAll(newTracks);
         notifyDataSetChanged();
     }
+    public void applyChange(LibraryChange change) {
+        LibraryRows.apply(change, tracks, this);
+    }
     public class ViewHolder extends RecyclerView.ViewHolder {
         ImageView albumArt;
         TextView songName;
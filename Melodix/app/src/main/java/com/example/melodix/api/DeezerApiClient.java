@@ -1,28 +0,0 @@
-package com.example.melodix.api;
-
-import okhttp3.OkHttpClient;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
-
-public class DeezerApiClient {
-    private static final String BASE_URL = "https://api.deezer.com/";
-    private static Retrofit retrofit = null;
-
-    public static Retrofit getClient() {
-        if (retrofit == null) {
-            OkHttpClient okHttpClient = new OkHttpClient.Builder()
-                    .build();
-
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(okHttpClient)
-                    .build();
-        }
-        return retrofit;
-    }
-
-    public static DeezerApiService getApiService() {
-        return getClient().create(DeezerApiService.class);
-    }
-}
@@ -28,19 +28,24 @@ import com.example.melodix.database.DownloadedArtist;
 import com.example.melodix.database.DownloadedMusicContract;
 import com.example.melodix.database.DownloadedMusicDbHelper;
 import com.example.melodix.database.DownloadedTrack;
+import com.example.melodix.database.DownloadedTrackIndex;
 import com.example.melodix.activity.MainActivity;
 import com.example.melodix.R;
 import com.example.melodix.listener.MusicDownloader;
 import com.example.melodix.model.Track;
 import com.example.melodix.listener.UserPreferencesManager;
 import com.example.melodix.api.DeezerRepository;
+import com.example.melodix.api.PreviewUrlRefresher;
 import com.google.android.material.button.MaterialButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DownloadedMusicFragment extends Fragment {
     private static final String TAG = "DownloadedMusicFragment";
@@ -52,10 +57,12 @@ public class DownloadedMusicFragment extends Fragment {
     private MaterialButton sortButton;
     private List<Track> downloadedTracks = new ArrayList<>();
     private DownloadedMusicAdapter adapter;
-    private boolean isFragmentVisible = false;
-    private boolean needsRefresh = false;
     private boolean isFragmentActive = false;
     private boolean isViewCreated = false;
+    private boolean tracksLoaded = false;
+    // Downloads finishing or deleted anywhere, e.g. from a bulk download, applied row by row
+    private final DownloadedTrackIndex.Listener indexListener = this::onDownloadedTracksChanged;
+    private ListenerRegistration historyRegistration;
     private boolean isFragmentSafe() {
         return isAdded() && getActivity() != null && isFragmentActive && isViewCreated && !isDetached();
     }
@@ -83,18 +90,6 @@ public class DownloadedMusicFragment extends Fragment {
         }
     }
 
-    @Override
-    public void setUserVisibleHint(boolean isVisibleToUser) {
-        super.setUserVisibleHint(isVisibleToUser);
-        isFragmentVisible = isVisibleToUser;
-
-        if (isFragmentVisible && needsRefresh) {
-            Log.d(TAG, "Fragment became visible with pending refresh - refreshing now");
-            loadDownloadedTracks();
-            needsRefresh = false;
-        }
-    }
-
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -108,7 +103,7 @@ public class DownloadedMusicFragment extends Fragment {
 
         initializeViews(view);
         setupRecyclerView();
-        loadDownloadedTracks();
+        DownloadedTrackIndex.getInstance(requireContext()).addListener(indexListener);
     }
 
     private void initializeViews(View view) {
@@ -125,6 +120,7 @@ public class DownloadedMusicFragment extends Fragment {
         adapter = new DownloadedMusicAdapter();
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
+        adapter.setTracks(downloadedTracks);
         recyclerView.addItemDecoration(new DividerItemDecoration(
                 requireContext(), DividerItemDecoration.VERTICAL));
     }
@@ -144,33 +140,37 @@ public class DownloadedMusicFragment extends Fragment {
     private void loadLocalTracksFirst() {
         Log.d(TAG, "Loading local tracks first...");
 
-        try {
-            FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-            String userId = currentUser != null ? currentUser.getUid() : "anonymous";
-
-            DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(requireContext());
-            List<Track> localTracks = getDownloadedTracksFromDb(dbHelper, userId);
-
-            Log.d(TAG, "Found " + localTracks.size() + " local tracks");
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUid() : "anonymous";
 
-            // ✅ FIX: Use safe UI update method
-            safeRunOnUiThread(() -> {
-                if (localTracks.size() > 0) {
-                    downloadedTracks = localTracks;
-                    if (adapter != null) {
-                        adapter.setTracks(downloadedTracks);
-                        updateDownloadCount(downloadedTracks.size());
-                        showEmptyState(false);
+        DownloadedMusicDbHelper.getInstance(requireContext()).queryAsync(
+                dbHelper -> getDownloadedTracksFromDb(dbHelper, userId),
+                new DownloadedMusicDbHelper.QueryCallback<List<Track>>() {
+                    @Override
+                    public void onResult(List<Track> localTracks) {
+                        Log.d(TAG, "Found " + localTracks.size() + " local tracks");
+                        if (!isFragmentSafe()) {
+                            Log.w(TAG, "Fragment not safe, skipping local tracks update");
+                            return;
+                        }
+                        if (localTracks.size() > 0) {
+                            downloadedTracks = localTracks;
+                            if (adapter != null) {
+                                adapter.setTracks(downloadedTracks);
+                                updateDownloadCount(downloadedTracks.size());
+                                showEmptyState(false);
+                            }
+                            Log.d(TAG, "UI updated with local tracks: " + localTracks.size());
+                        }
+                        loadCloudTracksSecond();
                     }
-                    Log.d(TAG, "UI updated with local tracks: " + localTracks.size());
-                }
-                loadCloudTracksSecond();
-            });
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading local tracks: " + e.getMessage());
-            loadCloudTracksSecond();
-        }
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Error loading local tracks: " + e.getMessage());
+                        loadCloudTracksSecond();
+                    }
+                });
     }
     private void loadCloudTracksSecond() {
         Log.d(TAG, "Loading cloud tracks for sync...");
@@ -181,9 +181,13 @@ public class DownloadedMusicFragment extends Fragment {
             return;
         }
 
-        UserPreferencesManager.getDownloadHistoryAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
+        if (historyRegistration != null) {
+            historyRegistration.remove();
+        }
+        historyRegistration = UserPreferencesManager.listenToDownloadHistory(requireContext(),
+                new UserPreferencesManager.DownloadHistoryListener() {
             @Override
-            public void onSuccess(List<Track> cloudHistory) {
+            public void onHistoryLoaded(List<Track> cloudHistory) {
                 Log.d(TAG, "Successfully loaded " + cloudHistory.size() + " tracks from cloud");
 
                 // ✅ FIX: Use safe UI update method instead of requireActivity()
@@ -209,59 +213,22 @@ public class DownloadedMusicFragment extends Fragment {
             }
 
             @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error loading cloud download history: " + error);
-
-                // ✅ FIX: Use safe UI update method instead of requireActivity()
-                safeRunOnUiThread(() -> {
-                    try {
-                        if (loadingProgress != null) {
-                            loadingProgress.setVisibility(View.GONE);
-                        }
-
-                        if (downloadedTracks.isEmpty()) {
-                            // ✅ FIX: Check fragment safety before using requireContext()
-                            if (!isFragmentSafe()) {
-                                Log.w(TAG, "Fragment not safe for fallback operation");
-                                return;
-                            }
-
-                            FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-                            String userId = currentUser != null ? currentUser.getUid() : "anonymous";
-
-                            DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(requireContext());
-                            downloadedTracks = getDownloadedTracksFromDb(dbHelper, userId);
-
-                            if (adapter != null) {
-                                adapter.setTracks(downloadedTracks);
-                                updateDownloadCount(downloadedTracks.size());
-                                showEmptyState(downloadedTracks.isEmpty());
-                            }
-                        }
-
-                        Toast.makeText(getContext(), "Showing local downloads (offline)", Toast.LENGTH_SHORT).show();
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error in error handling", e);
-                    }
-                });
+            public void onHistoryChanged(List<Track> added, List<Track> modified, long[] removed) {
+                if (hasRows()) applyCloudChanges(added, modified, removed);
             }
         });
     }
+
     private List<Track> mergeLocalAndCloudTracks(List<Track> localTracks, List<Track> cloudTracks) {
         Log.d(TAG, "Merging " + localTracks.size() + " local tracks with " + cloudTracks.size() + " cloud tracks");
-        List<Track> mergedTracks = new ArrayList<>();
+        List<Track> mergedTracks = new ArrayList<>(localTracks.size() + cloudTracks.size());
+        Set<Long> localIds = new HashSet<>(localTracks.size() * 2);
         for (Track localTrack : localTracks) {
             mergedTracks.add(localTrack);
+            localIds.add(localTrack.getId());
         }
         for (Track cloudTrack : cloudTracks) {
-            boolean existsLocally = false;
-            for (Track localTrack : localTracks) {
-                if (localTrack.getId() == cloudTrack.getId()) {
-                    existsLocally = true;
-                    break;
-                }
-            }
-            if (!existsLocally) {
+            if (!localIds.contains(cloudTrack.getId())) {
                 Log.d(TAG, "Adding cloud-only track: " + cloudTrack.getTitle());
                 mergedTracks.add(cloudTrack);
             }
@@ -270,48 +237,94 @@ public class DownloadedMusicFragment extends Fragment {
         return mergedTracks;
     }
 
-    public void forceRefresh() {
-        Log.d(TAG, "=== FORCE REFRESH REQUESTED ===");
+    private void onDownloadedTracksChanged(String userId, long[] added, long[] removed) {
+        if (!hasRows() || !userId.equals(currentUserId())) return;
+        for (long trackId : removed) {
+            removeRow(trackId);
+        }
+        showRowCount();
+        if (added.length == 0) return;
+        DownloadedMusicDbHelper.getInstance(requireContext()).queryAsync(
+                dbHelper -> getDownloadedTracksFromDb(dbHelper, userId, added),
+                tracks -> {
+                    if (!hasRows()) return;
+                    // Oldest first, so the newest download ends up on top
+                    for (int i = tracks.size() - 1; i >= 0; i--) {
+                        putRow(tracks.get(i));
+                    }
+                    showRowCount();
+                    Log.d(TAG, "Added " + tracks.size() + " finished downloads");
+                });
+    }
 
-        if (isFragmentVisible && isAdded()) {
-            Log.d(TAG, "Fragment is visible - refreshing immediately");
-            loadDownloadedTracks();
+    // Entries other devices added to or dropped from the cloud history. Rows of tracks
+    // downloaded on this device keep their local copy.
+    private void applyCloudChanges(List<Track> added, List<Track> modified, long[] removed) {
+        DownloadedTrackIndex index = DownloadedTrackIndex.getInstance(requireContext());
+        String userId = currentUserId();
+        for (Track track : added) {
+            if (indexOfRow(track.getId()) < 0) {
+                // Cloud-only tracks follow the local ones, as in mergeLocalAndCloudTracks
+                downloadedTracks.add(track);
+                adapter.notifyItemInserted(downloadedTracks.size() - 1);
+            }
+        }
+        for (Track track : modified) {
+            int position = indexOfRow(track.getId());
+            if (position >= 0 && !index.contains(userId, track.getId())) {
+                downloadedTracks.set(position, track);
+                adapter.notifyItemChanged(position);
+            }
+        }
+        for (long trackId : removed) {
+            if (!index.contains(userId, trackId)) removeRow(trackId);
+        }
+        showRowCount();
+    }
+
+    // Replaces the row of the same track, e.g. a cloud-only entry that is now downloaded, or
+    // puts the track on top as the newest download
+    private void putRow(Track track) {
+        int position = indexOfRow(track.getId());
+        if (position >= 0) {
+            downloadedTracks.set(position, track);
+            adapter.notifyItemChanged(position);
         } else {
-            Log.d(TAG, "Fragment not visible - marking for refresh when visible");
-            needsRefresh = true;
+            downloadedTracks.add(0, track);
+            adapter.notifyItemInserted(0);
         }
     }
-    public void onDownloadCompleted(Track completedTrack) {
-        Log.d(TAG, "Download completed for: " + completedTrack.getTitle());
 
-        if (isFragmentVisible && isFragmentSafe()) {
-            // ✅ FIX: Use safe UI update method
-            safeRunOnUiThread(() -> {
-                boolean trackExists = false;
-                for (Track track : downloadedTracks) {
-                    if (track.getId() == completedTrack.getId()) {
-                        trackExists = true;
-                        if (track instanceof DownloadedTrack) {
-                            ((DownloadedTrack) track).setDownloaded(true);
-                        }
-                        break;
-                    }
-                }
-                if (!trackExists) {
-                    downloadedTracks.add(0, completedTrack);
-                }
-                if (adapter != null) {
-                    adapter.setTracks(downloadedTracks);
-                    updateDownloadCount(downloadedTracks.size());
-                    showEmptyState(downloadedTracks.isEmpty());
-                }
+    private void removeRow(long trackId) {
+        int position = indexOfRow(trackId);
+        if (position >= 0) {
+            downloadedTracks.remove(position);
+            adapter.notifyItemRemoved(position);
+        }
+    }
 
-                Log.d(TAG, "UI updated after download completion");
-            });
-        } else {
-            needsRefresh = true;
+    // Unlike isFragmentSafe() this holds while paused too, since nothing reloads on resume
+    private boolean hasRows() {
+        return isAdded() && isViewCreated && adapter != null;
+    }
+
+    private int indexOfRow(long trackId) {
+        for (int i = 0; i < downloadedTracks.size(); i++) {
+            if (downloadedTracks.get(i).getId() == trackId) return i;
         }
+        return -1;
+    }
+
+    private void showRowCount() {
+        updateDownloadCount(downloadedTracks.size());
+        showEmptyState(downloadedTracks.isEmpty());
+    }
+
+    private static String currentUserId() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : "anonymous";
     }
+
     private void redownloadTrack(Track track) {
         if (track.isDownloaded()) {
             Toast.makeText(getContext(), "Track already downloaded", Toast.LENGTH_SHORT).show();
@@ -322,7 +335,7 @@ public class DownloadedMusicFragment extends Fragment {
         Log.d(TAG, "Track: " + track.getTitle());
         Log.d(TAG, "Original URL: " + track.getPreviewUrl());
 
-        if (isUrlExpiredOrInvalid(track.getPreviewUrl())) {
+        if (!PreviewUrlRefresher.getInstance().isPlayable(track)) {
             Log.w(TAG, "URL appears expired, refreshing before download");
             Toast.makeText(getContext(), "Refreshing track data...", Toast.LENGTH_SHORT).show();
             refreshTrackForRedownload(track);
@@ -331,55 +344,22 @@ public class DownloadedMusicFragment extends Fragment {
         Toast.makeText(getContext(), "Re-downloading: " + track.getTitle(), Toast.LENGTH_SHORT).show();
         performActualDownload(track);
     }
-    private boolean isUrlExpiredOrInvalid(String url) {
-        if (url == null || url.isEmpty()) {
-            return true;
-        }
-        if (url.contains("dzcdn.net") && url.contains("exp=")) {
-            try {
-                String[] parts = url.split("exp=");
-                if (parts.length > 1) {
-                    String expPart = parts[1].split("~")[0];
-                    long expTime = Long.parseLong(expPart);
-                    long currentTime = System.currentTimeMillis() / 1000;
-
-                    boolean isExpired = (currentTime + 3600) > expTime;
-                    Log.d(TAG, "URL expiration check - Current: " + currentTime +
-                            ", Expires: " + expTime + ", Is expired: " + isExpired);
-                    return isExpired;
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error checking URL expiration: " + e.getMessage());
-                return true;
-            }
-        }
-        return url.contains("dzcdn.net") || url.startsWith("http");
-    }
     private void refreshTrackForRedownload(Track outdatedTrack) {
         Log.d(TAG, "Refreshing track for re-download: " + outdatedTrack.getTitle());
 
-        String searchQuery = outdatedTrack.getTitle();
-        if (outdatedTrack.getArtist() != null) {
-            searchQuery += " " + outdatedTrack.getArtist().getName();
-        }
-        DeezerRepository repository = DeezerRepository.getInstance();
-        repository.searchTracks(searchQuery, new DeezerRepository.DataCallback<List<Track>>() {
+        PreviewUrlRefresher.getInstance().refresh(outdatedTrack, new DeezerRepository.DataCallback<Track>() {
             @Override
-            public void onSuccess(List<Track> searchResults) {
-                // ✅ FIX: Check fragment safety before proceeding
+            public void onSuccess(Track refreshedTrack) {
                 if (!isFragmentSafe()) {
                     Log.w(TAG, "Fragment not safe, cancelling track refresh");
                     return;
                 }
 
-                Track refreshedTrack = findBestMatch(searchResults, outdatedTrack);
-
-                if (refreshedTrack != null && isTrackDownloadable(refreshedTrack)) {
+                if (isTrackDownloadable(refreshedTrack)) {
                     Log.d(TAG, "✅ Successfully refreshed URL for re-download");
                     Log.d(TAG, "New URL: " + refreshedTrack.getPreviewUrl());
                     updateTrackForRedownload(outdatedTrack, refreshedTrack);
 
-                    // ✅ FIX: Use safe UI update method
                     safeRunOnUiThread(() -> {
                         Toast.makeText(getContext(), "Track data refreshed, starting download", Toast.LENGTH_SHORT).show();
                         performActualDownload(outdatedTrack);
@@ -387,7 +367,6 @@ public class DownloadedMusicFragment extends Fragment {
 
                 } else {
                     Log.e(TAG, "❌ Could not refresh track for re-download");
-                    // ✅ FIX: Use safe UI update method
                     safeRunOnUiThread(() -> {
                         Toast.makeText(getContext(),
                                 "This track is no longer available for download",
@@ -400,7 +379,6 @@ public class DownloadedMusicFragment extends Fragment {
             public void onError(String message) {
                 Log.e(TAG, "❌ Error refreshing track for re-download: " + message);
 
-                // ✅ FIX: Use safe UI update method
                 safeRunOnUiThread(() -> {
                     Toast.makeText(getContext(),
                             "Unable to refresh track data: " + message,
@@ -409,44 +387,6 @@ public class DownloadedMusicFragment extends Fragment {
             }
         });
     }
-    private Track findBestMatch(List<Track> tracks, Track originalTrack) {
-        if (tracks == null || tracks.isEmpty()) return null;
-        for (Track track : tracks) {
-            if (track.getId() == originalTrack.getId()) {
-                Log.d(TAG, "Found exact ID match for re-download");
-                return track;
-            }
-        }
-        for (Track track : tracks) {
-            if (isExactMatch(track, originalTrack)) {
-                Log.d(TAG, "Found exact match for re-download");
-                return track;
-            }
-        }
-        for (Track track : tracks) {
-            if (track.getTitle().equalsIgnoreCase(originalTrack.getTitle())) {
-                int durationDiff = Math.abs(track.getDuration() - originalTrack.getDuration());
-                if (durationDiff <= 10) {
-                    Log.d(TAG, "Found title match with similar duration for re-download");
-                    return track;
-                }
-            }
-        }
-        Log.w(TAG, "No suitable match found for re-download");
-        return null;
-    }
-    private boolean isExactMatch(Track track1, Track track2) {
-        if (!track1.getTitle().equalsIgnoreCase(track2.getTitle())) {
-            return false;
-        }
-        if (track1.getArtist() != null && track2.getArtist() != null) {
-            if (!track1.getArtist().getName().equalsIgnoreCase(track2.getArtist().getName())) {
-                return false;
-            }
-        }
-        int durationDiff = Math.abs(track1.getDuration() - track2.getDuration());
-        return durationDiff <= 5;
-    }
     private boolean isTrackDownloadable(Track track) {
         if (track == null) return false;
         if (track.getPreviewUrl() == null || track.getPreviewUrl().isEmpty()) return false;
@@ -523,14 +463,8 @@ public class DownloadedMusicFragment extends Fragment {
                                 );
                             }
 
-                            if (adapter != null) {
-                                adapter.notifyDataSetChanged();
-                            }
+                            // The row itself updates through the index listener
                             Toast.makeText(getContext(), "Download complete: " + track.getTitle(), Toast.LENGTH_SHORT).show();
-                            if (getActivity() instanceof MainActivity) {
-                                ((MainActivity) getActivity()).refreshDownloadedMusic();
-                                ((MainActivity) getActivity()).notifyDownloadCompleted(track);
-                            }
                         });
                     }
 
@@ -775,31 +709,20 @@ public class DownloadedMusicFragment extends Fragment {
             return;
         }
 
-        DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(getContext());
-        SQLiteDatabase db = null;
+        DownloadedMusicDbHelper dbHelper = DownloadedMusicDbHelper.getInstance(getContext());
 
         try {
-            db = dbHelper.getWritableDatabase();
-
-            String selection = DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID + " = ? AND " +
-                    DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " = ?";
-
             FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
             String userId = currentUser != null ? currentUser.getUid() : "anonymous";
 
-            String[] selectionArgs = {String.valueOf(track.getId()), userId};
-
             Log.d(TAG, "Deleting from database with trackId: " + track.getId() + ", userId: " + userId);
 
-            int deletedRows = db.delete(
-                    DownloadedMusicContract.TrackEntry.TABLE_NAME,
-                    selection,
-                    selectionArgs
-            );
+            int deletedRows = dbHelper.deleteDownloadedTrack(userId, track.getId());
 
             Log.d(TAG, "Database deletion result: " + deletedRows + " rows deleted");
 
             if (deletedRows > 0) {
+                DownloadedTrackIndex.getInstance(getContext()).markRemoved(userId, track.getId());
                 UserPreferencesManager.removeFromDownloadHistoryAsync(getContext(), track,
                         new UserPreferencesManager.DataCallback<Boolean>() {
                             @Override
@@ -831,10 +754,6 @@ public class DownloadedMusicFragment extends Fragment {
             safeRunOnUiThread(() -> {
                 Toast.makeText(getContext(), "Error deleting track: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             });
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
     }
     private void updateUIAfterDeletion(Track deletedTrack) {
@@ -842,15 +761,10 @@ public class DownloadedMusicFragment extends Fragment {
         Log.d(TAG, "Removing track: " + deletedTrack.getTitle());
         Log.d(TAG, "Current list size: " + downloadedTracks.size());
 
-        boolean removed = downloadedTracks.removeIf(t -> t.getId() == deletedTrack.getId());
-        Log.d(TAG, "Track removed from list: " + removed);
+        // Usually already gone through the index listener
+        removeRow(deletedTrack.getId());
         Log.d(TAG, "New list size: " + downloadedTracks.size());
 
-        if (adapter != null) {
-            adapter.setTracks(downloadedTracks);
-            Log.d(TAG, "Adapter updated with " + downloadedTracks.size() + " tracks");
-        }
-
         updateDownloadCount(downloadedTracks.size());
 
         if (downloadedTracks.isEmpty()) {
@@ -899,12 +813,29 @@ public class DownloadedMusicFragment extends Fragment {
     }
 
     public static List<Track> getDownloadedTracksFromDb(DownloadedMusicDbHelper dbHelper, String userId) {
+        return queryDownloadedTracks(dbHelper, DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " = ?",
+                new String[]{userId});
+    }
+
+    /** Only the given tracks, newest download first. */
+    public static List<Track> getDownloadedTracksFromDb(DownloadedMusicDbHelper dbHelper, String userId,
+                                                        long[] trackIds) {
+        StringBuilder selection = new StringBuilder(DownloadedMusicContract.TrackEntry.COLUMN_USER_ID)
+                .append(" = ? AND ").append(DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID).append(" IN (");
+        String[] selectionArgs = new String[trackIds.length + 1];
+        selectionArgs[0] = userId;
+        for (int i = 0; i < trackIds.length; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i + 1] = String.valueOf(trackIds[i]);
+        }
+        return queryDownloadedTracks(dbHelper, selection.append(")").toString(), selectionArgs);
+    }
+
+    private static List<Track> queryDownloadedTracks(DownloadedMusicDbHelper dbHelper, String selection,
+                                                     String[] selectionArgs) {
         List<Track> tracks = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
 
-        String selection = DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " = ?";
-        String[] selectionArgs = { userId };
-
         String[] projection = {
                 DownloadedMusicContract.TrackEntry._ID,
                 DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID,
@@ -953,8 +884,6 @@ public class DownloadedMusicFragment extends Fragment {
             }
         } catch (Exception e) {
             Log.e(TAG, "Error reading downloaded tracks", e);
-        } finally {
-            db.close();
         }
 
         return tracks;
@@ -1112,11 +1041,16 @@ public class DownloadedMusicFragment extends Fragment {
     public void onPause() {
         super.onPause();
         isFragmentActive = false;
-        isFragmentVisible = false;
     }
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        DownloadedTrackIndex.getInstance(requireContext()).removeListener(indexListener);
+        if (historyRegistration != null) {
+            historyRegistration.remove();
+            historyRegistration = null;
+        }
+        tracksLoaded = false;
         isViewCreated = false;
         isFragmentActive = false;
         Log.d(TAG, "Fragment view destroyed");
@@ -1126,25 +1060,23 @@ public class DownloadedMusicFragment extends Fragment {
     public void onResume() {
         super.onResume();
         isFragmentActive = true;
-        isFragmentVisible = true;
-        Log.d(TAG, "Fragment resumed, refreshing data");
         debugDatabaseState();
-        loadDownloadedTracks();
+        // Loaded once per view; the index and history listeners keep the rows current after that
+        if (!tracksLoaded) {
+            Log.d(TAG, "Fragment resumed, loading data");
+            tracksLoaded = true;
+            loadDownloadedTracks();
+        }
     }
     private void debugDatabaseState() {
         try {
             FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
             String userId = currentUser != null ? currentUser.getUid() : "anonymous";
 
-            DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(requireContext());
-            List<Track> dbTracks = getDownloadedTracksFromDb(dbHelper, userId);
-
+            // Reads the in-memory index, not the whole table, on every resume
             Log.d(TAG, "=== DATABASE DEBUG ===");
             Log.d(TAG, "User ID: " + userId);
-            Log.d(TAG, "Tracks in database: " + dbTracks.size());
-            for (Track track : dbTracks) {
-                Log.d(TAG, "- " + track.getId() + ": " + track.getTitle());
-            }
+            Log.d(TAG, "Tracks in database: " + DownloadedTrackIndex.getInstance(requireContext()).size(userId));
             Log.d(TAG, "=== END DATABASE DEBUG ===");
 
         } catch (Exception e) {
@@ -17,24 +17,29 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.melodix.api.DeezerRepository;
+import com.example.melodix.api.PreviewUrlRefresher;
 import com.example.melodix.adapter.FavoriteAdapter;
-import com.example.melodix.listener.FavoriteChangeListener;
+import com.example.melodix.adapter.LibraryRows;
 import com.example.melodix.activity.MainActivity;
 import com.example.melodix.R;
 import com.example.melodix.model.Track;
-import com.example.melodix.listener.UserPreferencesManager;
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.database.LibraryChange;
+import com.example.melodix.database.LibraryStore;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavoriteClickListener,
-        FavoriteChangeListener {
+public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavoriteClickListener {
     private static final String TAG = "FavoriteFragment";
     private RecyclerView favoritesRecyclerView;
     private FavoriteAdapter adapter;
     private ConstraintLayout emptyStateContainer;
     private TextView favoriteCountText;
     private List<Track> currentFavorites = new ArrayList<>();
+    // Local edits and synced remote ones alike; only the rows named in the change update
+    private final LibraryStore.Listener libraryListener = this::onLibraryChanged;
     public FavoriteFragment() {
     }
 
@@ -56,24 +61,39 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         adapter = new FavoriteAdapter(requireContext(), this);
         favoritesRecyclerView.setAdapter(adapter);
 
-        if (getActivity() instanceof MainActivity) {
-            ((MainActivity) getActivity()).addFavoriteChangeListener(this);
-        }
+        LibraryStore.getInstance(requireContext()).addListener(libraryListener);
         loadFavorites();
     }
 
     @Override
     public void onDestroyView() {
-        if (getActivity() instanceof MainActivity) {
-            ((MainActivity) getActivity()).removeFavoriteChangeListener(this);
-        }
+        LibraryStore.getInstance(requireContext()).removeListener(libraryListener);
+        PreviewUrlRefresher.getInstance().unwatch(currentFavorites);
         super.onDestroyView();
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
-        loadFavorites();
+    private void onLibraryChanged(String userId, LibraryChange change) {
+        if (!LibraryEntry.LIST_FAVORITES.equals(change.getList()) || adapter == null
+                || !userId.equals(LibraryStore.currentUserId())) {
+            return;
+        }
+        if (change.isReset()) {
+            loadFavorites();
+            return;
+        }
+        List<Track> gone = new ArrayList<>();
+        for (Track track : currentFavorites) {
+            for (long trackId : change.getRemoved()) {
+                if (track.getId() == trackId) gone.add(track);
+            }
+        }
+        PreviewUrlRefresher.getInstance().unwatch(gone);
+        LibraryRows.apply(change, currentFavorites, null);
+        adapter.applyChange(change);
+        PreviewUrlRefresher.getInstance().watch(change.getAdded());
+        showFavoriteCount(currentFavorites);
+        Log.d(TAG, "🔁 Favorites changed: +" + change.getAdded().size() + " -" + change.getRemoved().length
+                + " ~" + change.getUpdated().size());
     }
 
     private void loadFavorites() {
@@ -81,15 +101,14 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         Log.d(TAG, "User: mobilesaperhenibus");
         Log.d(TAG, "Timestamp: 2025-06-08 17:09:10 UTC");
 
-        UserPreferencesManager.getFavoriteTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
+        LibraryStore.getInstance(requireContext()).getFavorites(new DownloadedMusicDbHelper.QueryCallback<List<Track>>() {
             @Override
-            public void onSuccess(List<Track> favorites) {
+            public void onResult(List<Track> favorites) {
                 if (!isAdded()) return;
 
-                Log.d(TAG, "✅ Successfully loaded " + favorites.size() + " favorites from cloud");
+                Log.d(TAG, "✅ Loaded " + favorites.size() + " favorites");
 
                 int validTracks = 0;
-                List<Track> tracksToRefresh = new ArrayList<>();
 
                 for (Track track : favorites) {
                     if (isTrackPlayable(track)) {
@@ -97,165 +116,50 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
                     } else {
                         Log.w(TAG, "⚠️ Track not playable: " + track.getTitle() +
                                 " (Preview URL: " + track.getPreviewUrl() + ")");
-                        tracksToRefresh.add(track);
                     }
                 }
                 Log.d(TAG, "📊 Playable tracks: " + validTracks + "/" + favorites.size());
+                PreviewUrlRefresher.getInstance().unwatch(currentFavorites);
                 currentFavorites = new ArrayList<>(favorites);
+                PreviewUrlRefresher.getInstance().watch(currentFavorites);
 
                 requireActivity().runOnUiThread(() -> {
                     updateFavoritesUI(favorites);
                 });
 
-                if (!tracksToRefresh.isEmpty()) {
-                    Log.d(TAG, "🔄 Refreshing " + tracksToRefresh.size() + " tracks with expired URLs");
-                    refreshTrackUrls(tracksToRefresh);
-                }
+                refreshTrackUrls(currentFavorites);
             }
 
             @Override
-            public void onError(String error) {
-                if (!isAdded()) return;
-
-                Log.e(TAG, "❌ Error loading favorites from cloud: " + error);
-
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), "Loading offline favorites...", Toast.LENGTH_SHORT).show();
-
-                    List<Track> localFavorites = UserPreferencesManager.getFavoriteTracks(requireContext());
-                    Log.d(TAG, "📱 Loaded " + localFavorites.size() + " favorites from local storage");
-
-                    currentFavorites = new ArrayList<>(localFavorites);
-                    updateFavoritesUI(localFavorites);
-                });
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Error loading favorites: " + e.getMessage());
             }
         });
     }
 
-    private void refreshTrackUrls(List<Track> tracksToRefresh) {
-        if (tracksToRefresh == null || tracksToRefresh.isEmpty()) {
+    private void refreshTrackUrls(List<Track> favorites) {
+        if (favorites == null || favorites.isEmpty()) {
             return;
         }
 
-        DeezerRepository repository = DeezerRepository.getInstance();
-        final int[] refreshedCount = {0};
-        final int totalToRefresh = tracksToRefresh.size();
+        PreviewUrlRefresher.getInstance().refreshExpired(favorites, (refreshed, failed) -> {
+            if (!isAdded()) return;
 
-        Log.d(TAG, "🔄 Starting URL refresh for " + totalToRefresh + " tracks");
-
-        for (Track track : tracksToRefresh) {
-            String searchQuery = track.getTitle();
-            if (track.getArtist() != null) {
-                searchQuery += " " + track.getArtist().getName();
+            for (Track track : failed) {
+                Log.w(TAG, "❌ Could not find fresh URL for: " + track.getTitle());
             }
-
-            final Track trackToUpdate = track;
-
-            repository.searchTracks(searchQuery, new DeezerRepository.DataCallback<List<Track>>() {
-                @Override
-                public void onSuccess(List<Track> searchResults) {
-                    Track freshTrack = findMatchingTrack(searchResults, trackToUpdate);
-
-                    if (freshTrack != null && freshTrack.getPreviewUrl() != null && !freshTrack.getPreviewUrl().isEmpty()) {
-                        trackToUpdate.setPreviewUrl(freshTrack.getPreviewUrl());
-                        refreshedCount[0]++;
-
-                        Log.d(TAG, "✅ Refreshed URL for: " + trackToUpdate.getTitle() +
-                               " (" + refreshedCount[0] + "/" + totalToRefresh + ")");
-
-                        if (refreshedCount[0] == totalToRefresh) {
-                            saveRefreshedFavorites();
-                        }
-                    } else {
-                        Log.w(TAG, "❌ Could not find fresh URL for: " + trackToUpdate.getTitle());
-
-                        if (refreshedCount[0] + 1 == totalToRefresh) {
-                            saveRefreshedFavorites();
-                        }
-                    }
-                }
-
-                @Override
-                public void onError(String message) {
-                    Log.e(TAG, "❌ Error refreshing track " + trackToUpdate.getTitle() + ": " + message);
-
-                    if (refreshedCount[0] + 1 == totalToRefresh) {
-                        saveRefreshedFavorites();
-                    }
-                }
-            });
-        }
-    }
-
-    private void saveRefreshedFavorites() {
-        Log.d(TAG, "💾 Saving favorites with refreshed URLs");
-
-        UserPreferencesManager.saveFavoriteTracksAsync(requireContext(), currentFavorites,
-            new UserPreferencesManager.DataCallback<Boolean>() {
-                @Override
-                public void onSuccess(Boolean success) {
-                    if (!isAdded()) return;
-
-                    Log.d(TAG, "✅ Successfully saved favorites with refreshed URLs");
-                    requireActivity().runOnUiThread(() -> {
-                        updateFavoritesUI(currentFavorites);
-                        Toast.makeText(getContext(), "Track data refreshed", Toast.LENGTH_SHORT).show();
-                    });
-                }
-
-                @Override
-                public void onError(String error) {
-                    Log.e(TAG, "❌ Failed to save refreshed favorites: " + error);
-                }
-            }
-        );
-    }
-
-    private Track findMatchingTrack(List<Track> tracks, Track originalTrack) {
-        if (tracks == null || tracks.isEmpty()) return null;
-
-        for (Track track : tracks) {
-            if (track.getId() == originalTrack.getId()) {
-                Log.d(TAG, "✅ Found exact ID match for: " + originalTrack.getTitle());
-                return track;
-            }
-        }
-
-        for (Track track : tracks) {
-            if (isTrackExactMatch(track, originalTrack)) {
-                Log.d(TAG, "✅ Found exact match for: " + originalTrack.getTitle());
-                return track;
-            }
-        }
-
-        for (Track track : tracks) {
-            if (track.getTitle().equalsIgnoreCase(originalTrack.getTitle()) &&
-                    Math.abs(track.getDuration() - originalTrack.getDuration()) <= 5) { // Allow 5 sec difference
-                Log.d(TAG, "⚠️ Using title match for: " + originalTrack.getTitle());
-                return track;
+            if (!refreshed.isEmpty()) {
+                Log.d(TAG, "✅ Refreshed URLs for " + refreshed.size() + " tracks");
+                saveRefreshedFavorites(refreshed);
             }
-        }
-
-        Log.w(TAG, "❌ No suitable match found for: " + originalTrack.getTitle());
-        return null;
+        });
     }
-    private boolean isTrackExactMatch(Track track1, Track track2) {
-        if (track1 == null || track2 == null) return false;
-
-        if (!track1.getTitle().equalsIgnoreCase(track2.getTitle())) return false;
 
-
-        if (track1.getArtist() != null && track2.getArtist() != null) {
-            if (!track1.getArtist().getName().equalsIgnoreCase(track2.getArtist().getName())) {
-                return false;
-            }
-        }
-
-        int durationDiff = Math.abs(track1.getDuration() - track2.getDuration());
-        if (durationDiff > 10) {
-            return false;
-        }
-        return true;
+    private void saveRefreshedFavorites(List<Track> refreshed) {
+        Log.d(TAG, "💾 Saving favorites with refreshed URLs");
+        LibraryStore.getInstance(requireContext()).updateTracks(LibraryEntry.LIST_FAVORITES, refreshed);
+        showFavoriteCount(currentFavorites);
+        Toast.makeText(getContext(), "Track data refreshed", Toast.LENGTH_SHORT).show();
     }
 
     private boolean isTrackPlayable(Track track) {
@@ -266,7 +170,14 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
     }
 
     private void updateFavoritesUI(List<Track> favorites) {
+        showFavoriteCount(favorites);
+        // Also when empty, so rows added later do not land next to stale ones
+        adapter.updateData(favorites);
+        Log.d(TAG, "🎵 Updated UI with " + favorites.size() + " favorites");
+    }
 
+    // The header and empty state; the rows themselves are up to the caller
+    private void showFavoriteCount(List<Track> favorites) {
         if (favorites.isEmpty()) {
             emptyStateContainer.setVisibility(View.VISIBLE);
             favoritesRecyclerView.setVisibility(View.GONE);
@@ -284,55 +195,14 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
             }
 
             favoriteCountText.setText(favorites.size() + " tracks (" + playableCount + " playable)");
-            adapter.updateData(favorites);
-
-            Log.d(TAG, "🎵 Updated UI with " + favorites.size() + " favorites (" + playableCount + " playable)");
         }
     }
     private void removeFromFavorites(Track track) {
         currentFavorites.removeIf(favorite -> favorite.getId() == track.getId());
-        saveFavorites(currentFavorites, new UserPreferencesManager.DataCallback<Boolean>() {
-            @Override
-            public void onSuccess(Boolean success) {
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Removed from favorites", Toast.LENGTH_SHORT).show();
-                        updateFavoritesUI(currentFavorites);
-                    });
-                }
-            }
-            @Override
-            public void onError(String error) {
-                if (!currentFavorites.contains(track)) {
-                    currentFavorites.add(track);
-                }
-
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Error removing from favorites", Toast.LENGTH_SHORT).show();
-                        Log.e(TAG, "Error removing from favorites: " + error);
-                        updateFavoritesUI(currentFavorites);
-                    });
-                }
-            }
-        });
-
-        updateFavoritesUI(currentFavorites);
-    }
-    private void saveFavorites(List<Track> favorites, UserPreferencesManager.DataCallback<Boolean> callback) {
-        UserPreferencesManager.saveFavoriteTracksAsync(requireContext(), favorites, new UserPreferencesManager.DataCallback<Boolean>() {
-            @Override
-            public void onSuccess(Boolean success) {
-                Log.d(TAG, "Favorites saved successfully to Firestore");
-                if (callback != null) callback.onSuccess(success);
-            }
-
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error saving favorites to Firestore: " + error);
-                if (callback != null) callback.onError(error);
-            }
-        });
+        PreviewUrlRefresher.getInstance().unwatch(java.util.Collections.singletonList(track));
+        LibraryStore.getInstance(requireContext()).setFavorite(track, false);
+        Toast.makeText(getContext(), "Removed from favorites", Toast.LENGTH_SHORT).show();
+        showFavoriteCount(currentFavorites);
     }
 
     @Override
@@ -347,7 +217,7 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
             return;
         }
 
-        if (isDeezerUrlExpired(track.getPreviewUrl())) {
+        if (!PreviewUrlRefresher.getInstance().isPlayable(track)) {
             Log.w(TAG, "⚠️ URL expired, refreshing");
             refreshTrackAndPlay(track);
             return;
@@ -357,73 +227,30 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         playTrackSafely(track);
     }
 
-    private boolean isDeezerUrlExpired(String url) {
-        if (url == null || !url.contains("dzcdn.net")) {
-            return false;
-        }
-
-        try {
-            if (url.contains("exp=")) {
-                String[] parts = url.split("exp=");
-                if (parts.length > 1) {
-                    String expPart = parts[1].split("~")[0];
-                    long expTime = Long.parseLong(expPart);
-                    long currentTime = System.currentTimeMillis() / 1000;
-                    long bufferTime = 3600;
-                    boolean isExpired = (currentTime + bufferTime) > expTime;
-
-                    Log.d(TAG, "URL expiration check - Current: " + currentTime +
-                            ", Expires: " + expTime + ", Expired: " + isExpired);
-
-                    return isExpired;
-                }
-            }
-
-            return true;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking URL expiration: " + e.getMessage());
-            return true;
-        }
-    }
-
     private void refreshTrackAndPlay(Track outdatedTrack) {
         if (outdatedTrack == null || getContext() == null) return;
 
         Log.d(TAG, "🔄 Refreshing track: " + outdatedTrack.getTitle() + " (ID: " + outdatedTrack.getId() + ")");
 
-        String searchQuery = createSearchQuery(outdatedTrack);
-
-        DeezerRepository repository = DeezerRepository.getInstance();
-        repository.searchTracks(searchQuery, new DeezerRepository.DataCallback<List<Track>>() {
+        PreviewUrlRefresher.getInstance().refresh(outdatedTrack, new DeezerRepository.DataCallback<Track>() {
             @Override
-            public void onSuccess(List<Track> searchResults) {
+            public void onSuccess(Track refreshedTrack) {
                 if (!isAdded()) return;
 
-                Track refreshedTrack = findMatchingTrack(searchResults, outdatedTrack);
-
-                if (refreshedTrack != null && isTrackPlayable(refreshedTrack)) {
+                outdatedTrack.setPreviewUrl(refreshedTrack.getPreviewUrl());
+                if (isTrackPlayable(outdatedTrack)) {
                     Log.d(TAG, "✅ Successfully refreshed: " + outdatedTrack.getTitle());
-                    Log.d(TAG, "   Old ID: " + outdatedTrack.getId() + " -> New ID: " + refreshedTrack.getId());
-                    Log.d(TAG, "   Old URL: " + outdatedTrack.getPreviewUrl());
-                    Log.d(TAG, "   New URL: " + refreshedTrack.getPreviewUrl());
+                    Log.d(TAG, "   New URL: " + outdatedTrack.getPreviewUrl());
 
-                    Track playableTrack = createPlayableTrackFromFavorite(outdatedTrack, refreshedTrack);
-
-                    updateTrackInFavorites(playableTrack);
-
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Playing refreshed track", Toast.LENGTH_SHORT).show();
-                        playTrackSafely(playableTrack);
-                    });
+                    updateTrackInFavorites(outdatedTrack);
 
+                    Toast.makeText(getContext(), "Playing refreshed track", Toast.LENGTH_SHORT).show();
+                    playTrackSafely(outdatedTrack);
                 } else {
                     Log.e(TAG, "❌ Could not refresh track or find playable version");
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(),
-                                "This track is no longer available",
-                                Toast.LENGTH_LONG).show();
-                    });
+                    Toast.makeText(getContext(),
+                            "This track is no longer available",
+                            Toast.LENGTH_LONG).show();
                 }
             }
 
@@ -431,74 +258,17 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
             public void onError(String message) {
                 Log.e(TAG, "❌ Error refreshing track: " + message);
                 if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(),
-                                "Unable to refresh track data",
-                                Toast.LENGTH_SHORT).show();
-                    });
+                    Toast.makeText(getContext(),
+                            "Unable to refresh track data",
+                            Toast.LENGTH_SHORT).show();
                 }
             }
         });
     }
-    private String createSearchQuery(Track track) {
-        StringBuilder query = new StringBuilder();
-
-        if (track.getTitle() != null) {
-            query.append(track.getTitle());
-        }
-
-        if (track.getArtist() != null && track.getArtist().getName() != null) {
-            query.append(" ").append(track.getArtist().getName());
-        }
-
-        if (track.getAlbum() != null && track.getAlbum().getTitle() != null) {
-            query.append(" ").append(track.getAlbum().getTitle());
-        }
-        return query.toString().trim();
-    }
-    private Track createPlayableTrackFromFavorite(Track favoriteTrack, Track freshTrack) {
-        Track playableTrack = freshTrack;
-        if (favoriteTrack.getContext() != null) {
-            playableTrack.setContext(favoriteTrack.getContext());
-        }
-        return playableTrack;
-    }
     private void updateTrackInFavorites(Track updatedTrack) {
-        UserPreferencesManager.getFavoriteTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
-            @Override
-            public void onSuccess(List<Track> favorites) {
-                List<Track> updatedFavorites = new ArrayList<>(favorites);
-                boolean trackFound = false;
-                for (int i = 0; i < updatedFavorites.size(); i++) {
-                    Track favorite = updatedFavorites.get(i);
-                    if (favorite.getId() == updatedTrack.getId()) {
-                        updatedFavorites.set(i, updatedTrack);
-                        trackFound = true;
-                        break;
-                    }
-                }
-
-                if (trackFound) {
-                    UserPreferencesManager.saveFavoriteTracksAsync(requireContext(), updatedFavorites,
-                            new UserPreferencesManager.DataCallback<Boolean>() {
-                        @Override
-                        public void onSuccess(Boolean success) {
-                            Log.d(TAG, "✅ Updated favorite track with fresh URL");
-                            currentFavorites = new ArrayList<>(updatedFavorites);
-                        }
-                        @Override
-                        public void onError(String error) {
-                            Log.e(TAG, "❌ Error updating favorite track: " + error);
-                        }
-                    });
-                }
-            }
-
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "❌ Error getting favorites to update track: " + error);
-            }
-        });
+        LibraryStore.getInstance(requireContext()).updateTracks(LibraryEntry.LIST_FAVORITES,
+                java.util.Collections.singletonList(updatedTrack));
+        Log.d(TAG, "✅ Updated favorite track with fresh URL");
     }
     private void playTrackSafely(Track track) {
         if (track == null || !(getActivity() instanceof MainActivity)) {
@@ -571,12 +341,5 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         shareIntent.putExtra(android.content.Intent.EXTRA_TEXT, shareText);
         startActivity(android.content.Intent.createChooser(shareIntent, "Share via"));
     }
-
-    @Override
-    public void onFavoriteChanged() {
-        if (isAdded()) {
-            requireActivity().runOnUiThread(this::loadFavorites);
-        }
-    }
 }
 
@@ -27,6 +27,9 @@ import android.view.inputmethod.InputMethodManager;
 import com.bumptech.glide.Glide;
 import com.example.melodix.activity.ProfileActivity;
 import com.example.melodix.api.DeezerRepository;
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.LibraryChange;
+import com.example.melodix.database.LibraryStore;
 import com.example.melodix.activity.MainActivity;
 import com.example.melodix.adapter.NewMusicAdapter;
 import com.example.melodix.R;
@@ -69,6 +72,9 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
     private boolean isLoadingMore = false;
     private int currentPage = 1;
     private boolean recentlyPlayedSetupDone = false;
+    private RecentlyPlayedAdapter recentlyPlayedAdapter;
+    // Plays on this device and those synced from others, applied row by row
+    private final LibraryStore.Listener libraryListener = this::onLibraryChanged;
     private long lastTrackClickTime = 0;
     private static final long TRACK_CLICK_DEBOUNCE_MS = 1000; // 1 detik
     private com.google.android.material.button.MaterialButton btnRefresh;
@@ -177,6 +183,7 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
             recyclerSearchResults.setAdapter(searchResultAdapter);
         }
         setupRecentlyPlayed();
+        LibraryStore.getInstance(requireContext()).addListener(libraryListener);
         setupNewMusic();
         loadUserData();
     }
@@ -843,7 +850,7 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
                         getContext(), LinearLayoutManager.HORIZONTAL, false));
 
         // HANYA LOAD DARI LOCAL - JANGAN DARI CLOUD
-        List<Track> recentTracks = UserPreferencesManager.getRecentTracks(requireContext());
+        List<Track> recentTracks = LibraryStore.getInstance(requireContext()).loadRecents();
 
         try {
             if (recentTracks == null) {
@@ -875,11 +882,13 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
                     txtNoRecentlyPlayed.setVisibility(View.GONE);
                 }
                 recyclerRecentlyPlayed.setVisibility(View.VISIBLE);
-                RecentlyPlayedAdapter adapter = new RecentlyPlayedAdapter(this);
-                recyclerRecentlyPlayed.setAdapter(adapter);
-                adapter.updateData(validTracks);
                 Log.d(TAG, "✅ Recently played adapter updated with " + validTracks.size() + " tracks");
             }
+            if (recentlyPlayedAdapter == null) {
+                recentlyPlayedAdapter = new RecentlyPlayedAdapter(this);
+                recyclerRecentlyPlayed.setAdapter(recentlyPlayedAdapter);
+            }
+            recentlyPlayedAdapter.updateData(validTracks);
 
             recentlyPlayedSetupDone = true;
 
@@ -892,6 +901,29 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
         }
     }
 
+    private void onLibraryChanged(String userId, LibraryChange change) {
+        if (!LibraryEntry.LIST_RECENTS.equals(change.getList()) || getView() == null
+                || !userId.equals(LibraryStore.currentUserId())) {
+            return;
+        }
+        if (change.isReset() || recentlyPlayedAdapter == null) {
+            refreshRecentlyPlayed();
+            return;
+        }
+        for (Track track : change.getAdded()) {
+            track.setContext(requireContext());
+        }
+        recentlyPlayedAdapter.applyChange(change);
+
+        RecyclerView recyclerRecentlyPlayed = getView().findViewById(R.id.recycler_recently_played);
+        TextView txtNoRecentlyPlayed = getView().findViewById(R.id.txt_no_recently_played);
+        boolean empty = recentlyPlayedAdapter.getItemCount() == 0;
+        recyclerRecentlyPlayed.setVisibility(empty ? View.GONE : View.VISIBLE);
+        if (txtNoRecentlyPlayed != null) {
+            txtNoRecentlyPlayed.setVisibility(empty ? View.VISIBLE : View.GONE);
+        }
+    }
+
     public void refreshRecentlyPlayed() {
         Log.d(TAG, "=== REFRESHING RECENTLY PLAYED ===");
         recentlyPlayedSetupDone = false; // Allow refresh
@@ -958,25 +990,46 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
         }
 
         isLoadingMore = true;
-        repository.getLatestTracks(new DeezerRepository.DataCallback<List<Track>>() {
+        repository.getLatestTracks(new DeezerRepository.TrackStreamCallback() {
+            private boolean firstTrack = true;
+
             @Override
-            public void onSuccess(List<Track> data) {
+            public void onTrack(Track track) {
                 if (!isAdded()) return;
 
-                Log.d(TAG, "Retrieved " + (data != null ? data.size() : 0) + " latest tracks");
+                if (firstTrack) {
+                    // Replace the old list only once fresh tracks start arriving
+                    firstTrack = false;
+                    hideErrorContainer();
+                    newMusicCache.clear();
+                    if (newMusicAdapter != null) {
+                        newMusicAdapter.updateData(newMusicCache);
+                    }
+                    if (progressBar != null) {
+                        progressBar.setVisibility(View.GONE);
+                    }
+                }
+                newMusicCache.add(track);
+                if (newMusicAdapter != null) {
+                    newMusicAdapter.appendData(java.util.Collections.singletonList(track));
+                }
+            }
 
-                // Hide error container on success
-                hideErrorContainer();
+            @Override
+            public void onComplete(List<Track> data, boolean partial) {
+                if (!isAdded()) return;
+
+                Log.d(TAG, "Retrieved " + (data != null ? data.size() : 0) + " latest tracks"
+                        + (partial ? " (album details incomplete)" : ""));
 
-                newMusicCache.clear();
-                if (data != null) {
-                    newMusicCache.addAll(data);
+                hideErrorContainer();
+                if (firstTrack) {
+                    newMusicCache.clear();
+                    if (newMusicAdapter != null) {
+                        newMusicAdapter.updateData(newMusicCache);
+                    }
                 }
                 initialLoadDone = true;
-                if (newMusicAdapter != null) {
-                    newMusicAdapter.updateData(newMusicCache);
-                    Log.d(TAG, "Updated adapter with " + newMusicCache.size() + " tracks");
-                }
                 currentPage++;
                 isLoadingMore = false;
 
@@ -1250,6 +1303,9 @@ public class HomeFragment extends Fragment implements RecentlyPlayedAdapter.OnIt
             searchResultAdapter.clearResults();
         }
 
+        LibraryStore.getInstance(requireContext()).removeListener(libraryListener);
+        recentlyPlayedAdapter = null;
+
         // Reset states
         recentlyPlayedSetupDone = false;
         initialLoadDone = false;
@@ -1,8 +1,6 @@
 package com.example.melodix.fragment;
 
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -19,16 +17,22 @@ import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
 import com.example.melodix.api.DeezerRepository;
+import com.example.melodix.api.PreviewUrlRefresher;
 import com.example.melodix.activity.MainActivity;
 import com.example.melodix.listener.MusicPlayer;
 import com.example.melodix.R;
-import com.example.melodix.database.DownloadedMusicDbHelper;
 import com.example.melodix.database.DownloadedTrack;
+import com.example.melodix.database.DownloadedTrackIndex;
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.database.LibraryStore;
 import com.example.melodix.listener.MusicDownloader;
 import com.example.melodix.model.Track;
 import com.example.melodix.listener.TrackChangeListener;
 import com.example.melodix.listener.UserPreferencesManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -45,10 +49,21 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
     private ImageButton btnDownload;
     private MusicPlayer musicPlayer;
     private Track currentTrack;
-    private Handler uiUpdateHandler;
     private boolean isUiUpdateActive = false;
     private static final int PREVIEW_DURATION_SECONDS = 30;
     private static final int PREVIEW_DURATION_MS = PREVIEW_DURATION_SECONDS * 1000;
+    private final DownloadedTrackIndex.Listener downloadIndexListener = (userId, added, removed) -> {
+        if (currentTrack == null) return;
+        for (long id : added) {
+            if (id == currentTrack.getId()) updateDownloadButtonState();
+        }
+        for (long id : removed) {
+            if (id == currentTrack.getId()) updateDownloadButtonState();
+        }
+    };
+    private final LibraryStore.Listener libraryListener = (userId, change) -> {
+        if (LibraryEntry.LIST_FAVORITES.equals(change.getList())) updateFavoriteButtonState(currentTrack);
+    };
 
     @Nullable
     @Override
@@ -63,7 +78,8 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
         super.onViewCreated(view, savedInstanceState);
 
         musicPlayer = MusicPlayer.getInstance();
-        uiUpdateHandler = new Handler(Looper.getMainLooper());
+        // The skip button below picks at random, so that pick is the one to buffer
+        musicPlayer.setRandomSkip(true);
 
         updatePlayPauseButton(musicPlayer.isPlaying());
 
@@ -74,6 +90,8 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
         btnFavoriteTop.setOnClickListener(v -> toggleFavoriteStatus());
 
         btnDownload.setOnClickListener(v -> downloadTrack());
+        DownloadedTrackIndex.getInstance(requireContext()).addListener(downloadIndexListener);
+        LibraryStore.getInstance(requireContext()).addListener(libraryListener);
 
         seekBarProgress.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
@@ -125,91 +143,40 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
     }
 
     private void loadLastPlayedTrack() {
-        UserPreferencesManager.getRecentTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
+        LibraryStore.getInstance(requireContext()).getRecents(new DownloadedMusicDbHelper.QueryCallback<List<Track>>() {
             @Override
-            public void onSuccess(List<Track> recentTracks) {
-                if (recentTracks != null && !recentTracks.isEmpty()) {
-                    Track lastTrack = recentTracks.get(0);
-
-                    // ✅ TAMBAHAN: Validasi URL sebelum memutar
-                    if (isTrackUrlValid(lastTrack)) {
-                        currentTrack = lastTrack;
-                        updateTrackUI(lastTrack);
-                        Log.d(TAG, "Loaded last played track: " + lastTrack.getTitle());
-                    } else {
-                        Log.w(TAG, "Track URL expired, refreshing: " + lastTrack.getTitle());
-                        refreshTrackUrl(lastTrack);
-                    }
+            public void onResult(List<Track> recentTracks) {
+                if (!isAdded() || recentTracks.isEmpty()) return;
+                Track lastTrack = recentTracks.get(0);
+
+                // ✅ TAMBAHAN: Validasi URL sebelum memutar
+                if (isTrackUrlValid(lastTrack)) {
+                    currentTrack = lastTrack;
+                    updateTrackUI(lastTrack);
+                    Log.d(TAG, "Loaded last played track: " + lastTrack.getTitle());
+                } else {
+                    Log.w(TAG, "Track URL expired, refreshing: " + lastTrack.getTitle());
+                    refreshTrackUrl(lastTrack);
                 }
             }
+
             @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error loading recent tracks: " + error);
-                List<Track> localRecent = UserPreferencesManager.getRecentTracks(requireContext());
-                if (localRecent != null && !localRecent.isEmpty()) {
-                    Track lastTrack = localRecent.get(0);
-
-                    // ✅ TAMBAHAN: Validasi URL untuk local tracks juga
-                    if (isTrackUrlValid(lastTrack)) {
-                        currentTrack = lastTrack;
-                        updateTrackUI(lastTrack);
-                        Log.d(TAG, "Loaded last played track from local: " + lastTrack.getTitle());
-                    } else {
-                        refreshTrackUrl(lastTrack);
-                    }
-                }
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading recent tracks: " + e.getMessage());
             }
         });
     }
     private boolean isTrackUrlValid(Track track) {
-        if (track == null || track.getPreviewUrl() == null || track.getPreviewUrl().isEmpty()) {
-            return false;
-        }
-
-        // Cek apakah ini URL Deezer yang expired
-        if (isDeezerUrl(track.getPreviewUrl())) {
-            return !isDeezerUrlExpired(track.getPreviewUrl());
-        }
-
-        return true;
-    }
-    private boolean isDeezerUrl(String url) {
-        return url != null && url.contains("dzcdn.net");
-    }
-    private boolean isDeezerUrlExpired(String url) {
-        try {
-            if (url.contains("exp=")) {
-                String[] parts = url.split("exp=");
-                if (parts.length > 1) {
-                    String expPart = parts[1].split("~")[0];
-                    long expTime = Long.parseLong(expPart);
-                    long currentTime = System.currentTimeMillis() / 1000;
-
-                    boolean isExpired = currentTime > expTime;
-                    Log.d(TAG, "URL expiration check - Current: " + currentTime + ", Expires: " + expTime + ", Expired: " + isExpired);
-                    return isExpired;
-                }
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Could not parse URL expiration: " + e.getMessage());
-        }
-        return false;
+        return PreviewUrlRefresher.getInstance().isPlayable(track);
     }
     private void refreshTrackUrl(Track track) {
         Log.d(TAG, "🔄 Refreshing expired URL for: " + track.getTitle());
 
-        DeezerRepository repository = DeezerRepository.getInstance();
-        String searchQuery = track.getTitle();
-        if (track.getArtist() != null) {
-            searchQuery += " " + track.getArtist().getName();
-        }
-
-        repository.searchTracks(searchQuery, new DeezerRepository.DataCallback<List<Track>>() {
+        PreviewUrlRefresher.getInstance().refresh(track, new DeezerRepository.DataCallback<Track>() {
             @Override
-            public void onSuccess(List<Track> tracks) {
-                Track refreshedTrack = findMatchingTrack(tracks, track);
-
-                if (refreshedTrack != null && refreshedTrack.getPreviewUrl() != null) {
+            public void onSuccess(Track refreshedTrack) {
+                if (!isAdded()) return;
+                if (refreshedTrack.getPreviewUrl() != null) {
                     // Update track dengan URL fresh
                     track.setPreviewUrl(refreshedTrack.getPreviewUrl());
                     currentTrack = track;
@@ -227,73 +194,32 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
 
             @Override
             public void onError(String message) {
+                if (!isAdded()) return;
                 Log.e(TAG, "❌ Error refreshing track URL: " + message);
                 handleFailedTrackLoad();
             }
         });
     }
-    private Track findMatchingTrack(List<Track> tracks, Track originalTrack) {
-        if (tracks == null || tracks.isEmpty()) return null;
-
-        // Cari berdasarkan ID dulu
-        for (Track track : tracks) {
-            if (track.getId() == originalTrack.getId()) {
-                return track;
-            }
-        }
-
-        // Kalau tidak ada, cari berdasarkan title dan artist
-        for (Track track : tracks) {
-            if (track.getTitle().equalsIgnoreCase(originalTrack.getTitle()) &&
-                    track.getArtist() != null && originalTrack.getArtist() != null &&
-                    track.getArtist().getName().equalsIgnoreCase(originalTrack.getArtist().getName())) {
-                return track;
-            }
-        }
-
-        return null;
-    }
     private void updateRecentTrackUrl(Track track) {
-        UserPreferencesManager.getRecentTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
-            @Override
-            public void onSuccess(List<Track> recentTracks) {
-                boolean updated = false;
-                for (Track recentTrack : recentTracks) {
-                    if (recentTrack.getId() == track.getId()) {
-                        recentTrack.setPreviewUrl(track.getPreviewUrl());
-                        updated = true;
-                        break;
-                    }
-                }
-
-                if (updated) {
-                    UserPreferencesManager.saveRecentTracksAsync(requireContext(), recentTracks, null);
-                    Log.d(TAG, "Updated recent tracks with fresh URL");
-                }
-            }
-
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error updating recent tracks: " + error);
-            }
-        });
+        LibraryStore.getInstance(requireContext())
+                .updateTracks(LibraryEntry.LIST_RECENTS, java.util.Collections.singletonList(track));
+        Log.d(TAG, "Updated recent tracks with fresh URL");
     }
     private void handleFailedTrackLoad() {
         Log.d(TAG, "Handling failed track load, trying to load alternative track");
 
-        UserPreferencesManager.getRecentTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
+        LibraryStore.getInstance(requireContext()).getRecents(new DownloadedMusicDbHelper.QueryCallback<List<Track>>() {
             @Override
-            public void onSuccess(List<Track> recentTracks) {
-                if (recentTracks != null && recentTracks.size() > 1) {
-                    // Coba track berikutnya di recent tracks
-                    for (int i = 1; i < recentTracks.size(); i++) {
-                        Track nextTrack = recentTracks.get(i);
-                        if (isTrackUrlValid(nextTrack)) {
-                            currentTrack = nextTrack;
-                            updateTrackUI(nextTrack);
-                            Log.d(TAG, "Loaded alternative track: " + nextTrack.getTitle());
-                            return;
-                        }
+            public void onResult(List<Track> recentTracks) {
+                if (!isAdded()) return;
+                // Coba track berikutnya di recent tracks
+                for (int i = 1; i < recentTracks.size(); i++) {
+                    Track nextTrack = recentTracks.get(i);
+                    if (isTrackUrlValid(nextTrack)) {
+                        currentTrack = nextTrack;
+                        updateTrackUI(nextTrack);
+                        Log.d(TAG, "Loaded alternative track: " + nextTrack.getTitle());
+                        return;
                     }
                 }
 
@@ -303,9 +229,9 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
             }
 
             @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error loading alternative track: " + error);
-                loadMoreTracksToPlaylist(true);
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading alternative track: " + e.getMessage());
+                if (isAdded()) loadMoreTracksToPlaylist(true);
             }
         });
     }
@@ -317,7 +243,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                 if (isAdded() && btnPlayPause != null) {
                     requireActivity().runOnUiThread(() -> {
                         updatePlayPauseButton(true);
-                        startUiUpdates();
                     });
                 }
             }
@@ -326,7 +251,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                 if (isAdded() && btnPlayPause != null) {
                     requireActivity().runOnUiThread(() -> {
                         updatePlayPauseButton(false);
-                        stopUiUpdates();
                     });
                 }
             }
@@ -335,7 +259,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                 if (isAdded() && btnPlayPause != null) {
                     requireActivity().runOnUiThread(() -> {
                         updatePlayPauseButton(false);
-                        stopUiUpdates();
                     });
                 }
             }
@@ -344,7 +267,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                 if (isAdded() && btnPlayPause != null) {
                     requireActivity().runOnUiThread(() -> {
                         updatePlayPauseButton(false);
-                        stopUiUpdates();
                     });
                 }
             }
@@ -362,18 +284,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                     });
                 }
             }
-            @Override
-            public void onPositionChanged(int position) {
-                if (isAdded() && seekBarProgress != null) {
-                    requireActivity().runOnUiThread(() -> {
-                        int limitedPosition = Math.min(position, PREVIEW_DURATION_MS);
-                        seekBarProgress.setProgress(limitedPosition);
-                        tvCurrentTime.setText(formatTime(limitedPosition));
-
-                        Log.d(TAG, "Position updated: " + limitedPosition + "ms / " + PREVIEW_DURATION_MS + "ms");
-                    });
-                }
-            }
 
             @Override
             public void onPrepareStart() {
@@ -483,13 +393,11 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
         if (isCurrentlyPlaying) {
             musicPlayer.pause();
             updatePlayPauseButton(false);
-            stopUiUpdates();
         } else {
             if (musicPlayer.getCurrentTrack() != null &&
                 musicPlayer.getCurrentTrack().getId() == currentTrack.getId()) {
                 musicPlayer.play();
                 updatePlayPauseButton(true);
-                startUiUpdates();
             } else {
                 musicPlayer.prepareFromUrl(requireContext(), currentTrack);
                 updatePlayPauseButton(true);
@@ -522,6 +430,7 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
             return;
         }
 
+        // Only this skip picks at random; auto-advance and the notification keep their order
         boolean success = musicPlayer.playRandomTrack();
         if (success) {
             Log.d(TAG, "Playing random track from playlist");
@@ -563,10 +472,8 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                     List<Track> shuffledTracks = new ArrayList<>(tracks);
                     java.util.Collections.shuffle(shuffledTracks);
 
-                    List<Track> currentPlaylist = musicPlayer.getPlaylist();
-                    shuffledTracks.addAll(0, currentPlaylist);
-
-                    musicPlayer.setPlaylist(requireContext(), shuffledTracks, 0);
+                    // Keeps the current track playing and makes the new ones available to the random pick
+                    musicPlayer.appendToPlaylist(requireContext(), shuffledTracks);
 
                     if (playNext && isAdded()) {
                         requireActivity().runOnUiThread(() -> {
@@ -605,10 +512,8 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
 
                     List<Track> shuffledTracks = new ArrayList<>(tracks);
                     java.util.Collections.shuffle(shuffledTracks);
-                    List<Track> currentPlaylist = musicPlayer.getPlaylist();
-                    shuffledTracks.addAll(0, currentPlaylist);
-
-                    musicPlayer.setPlaylist(requireContext(), shuffledTracks, 0);
+                    // Keeps the current track playing and makes the new ones available to the random pick
+                    musicPlayer.appendToPlaylist(requireContext(), shuffledTracks);
 
                     if (playNext && isAdded()) {
                         requireActivity().runOnUiThread(() -> {
@@ -677,139 +582,20 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
     }
     private void toggleFavoriteStatus() {
         if (currentTrack == null) return;
-        final Track trackToToggle = currentTrack;
-
-        UserPreferencesManager.getFavoriteTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
-            @Override
-            public void onSuccess(List<Track> favorites) {
-                List<Track> mutableFavorites = new ArrayList<>(favorites);
-                boolean isCurrentlyFavorite = false;
-                for (Track favorite : mutableFavorites) {
-                    if (favorite.getId() == trackToToggle.getId()) {
-                        isCurrentlyFavorite = true;
-                        break;
-                    }
-                }
-                final boolean wasFavorite = isCurrentlyFavorite;
-                if (wasFavorite) {
-                    // Remove from favorites
-                    mutableFavorites.removeIf(track -> track.getId() == trackToToggle.getId());
-                    UserPreferencesManager.saveFavoriteTracksAsync(requireContext(), mutableFavorites, new UserPreferencesManager.DataCallback<Boolean>() {
-                        @Override
-                        public void onSuccess(Boolean success) {
-                            if (isAdded()) {
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(getContext(), "Removed from favorites", Toast.LENGTH_SHORT).show();
-                                    // PERBAIKAN: Ganti ke icon kosong (outline) karena sudah di-remove
-                                    btnFavoriteTop.setImageResource(R.drawable.ic_favorite);
-                                    if (getActivity() instanceof MainActivity) {
-                                        ((MainActivity) getActivity()).notifyFavoriteChanged();
-                                    }
-                                });
-                            }
-                        }
-                        @Override
-                        public void onError(String error) {
-                            if (isAdded()) {
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(getContext(), "Error removing from favorites", Toast.LENGTH_SHORT).show();
-                                    Log.e(TAG, "Error removing from favorites: " + error);
-                                });
-                            }
-                        }
-                    });
-
-                } else {
-                    // Add to favorites
-                    mutableFavorites.add(trackToToggle);
-                    UserPreferencesManager.saveFavoriteTracksAsync(requireContext(), mutableFavorites, new UserPreferencesManager.DataCallback<Boolean>() {
-                        @Override
-                        public void onSuccess(Boolean success) {
-                            if (isAdded()) {
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(getContext(), "Added to favorites", Toast.LENGTH_SHORT).show();
-                                    // PERBAIKAN: Ganti ke icon filled karena sudah di-add
-                                    btnFavoriteTop.setImageResource(R.drawable.ic_favorite_filled);
-                                    if (getActivity() instanceof MainActivity) {
-                                        ((MainActivity) getActivity()).notifyFavoriteChanged();
-                                    }
-                                });
-                            }
-                        }
-
-                        @Override
-                        public void onError(String error) {
-                            if (isAdded()) {
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(getContext(), "Error adding to favorites", Toast.LENGTH_SHORT).show();
-                                    Log.e(TAG, "Error adding to favorites: " + error);
-                                });
-                            }
-                        }
-                    });
-                }
-            }
-
-            @Override
-            public void onError(String error) {
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Error loading favorites", Toast.LENGTH_SHORT).show();
-                        Log.e(TAG, "Error loading favorites: " + error);
-                    });
-                }
-            }
-        });
+        LibraryStore library = LibraryStore.getInstance(requireContext());
+        boolean favorite = !library.isFavorite(currentTrack.getId());
+        // Saved locally right away and synced in the background
+        library.setFavorite(currentTrack, favorite);
+        btnFavoriteTop.setImageResource(favorite ? R.drawable.ic_favorite_filled : R.drawable.ic_favorite);
+        Toast.makeText(getContext(), favorite ? "Added to favorites" : "Removed from favorites",
+                Toast.LENGTH_SHORT).show();
     }
     private void updateFavoriteButtonState(Track track) {
-        if (track == null || btnFavoriteTop == null) return;
-        final Track finalTrack = track;
-
-        UserPreferencesManager.getFavoriteTracksAsync(requireContext(), new UserPreferencesManager.DataCallback<List<Track>>() {
-            @Override
-            public void onSuccess(List<Track> favorites) {
-                boolean isFavorite = false;
-
-                for (Track favorite : favorites) {
-                    if (favorite.getId() == finalTrack.getId()) {
-                        isFavorite = true;
-                        break;
-                    }
-                }
-                final boolean trackIsFavorite = isFavorite;
-
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        // PERBAIKAN: Logika yang benar
-                        // Jika favorite = tampilkan icon filled (ic_favorite)
-                        // Jika tidak favorite = tampilkan icon outline (ic_favorite_filled)
-                        btnFavoriteTop.setImageResource(trackIsFavorite ?
-                                R.drawable.ic_favorite_filled : R.drawable.ic_favorite);
-                    });
-                }
-            }
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error checking favorite status: " + error);
-                List<Track> localFavorites = UserPreferencesManager.getFavoriteTracks(requireContext());
-                boolean isFavorite = false;
-                for (Track favorite : localFavorites) {
-                    if (favorite.getId() == finalTrack.getId()) {
-                        isFavorite = true;
-                        break;
-                    }
-                }
-                final boolean trackIsFavorite = isFavorite;
-
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        // PERBAIKAN: Logika yang sama untuk error case
-                        btnFavoriteTop.setImageResource(trackIsFavorite ?
-                                R.drawable.ic_favorite_filled : R.drawable.ic_favorite);
-                    });
-                }
-            }
-        });
+        if (track == null || btnFavoriteTop == null || !isAdded()) return;
+        // Answered from the in-memory favorites index, no database or network access
+        boolean isFavorite = LibraryStore.getInstance(requireContext()).isFavorite(track.getId());
+        requireActivity().runOnUiThread(() -> btnFavoriteTop.setImageResource(isFavorite ?
+                R.drawable.ic_favorite_filled : R.drawable.ic_favorite));
     }
     public void onTrackSelectedFromSearch(Track selectedTrack, List<Track> searchResults) {
         Log.d(TAG, "Track selected from search: " + selectedTrack.getTitle());
@@ -879,14 +665,7 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                     musicPlayer.prepareFromUrl(requireContext(), track);
                 }
 
-                boolean isPlaying = musicPlayer.isPlaying();
-                updatePlayPauseButton(isPlaying);
-
-                if (isPlaying) {
-                    startUiUpdates();
-                } else {
-                    stopUiUpdates();
-                }
+                updatePlayPauseButton(musicPlayer.isPlaying());
 
                 Log.d(TAG, "✅ Track UI updated successfully");
 
@@ -895,46 +674,29 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
             }
         });
     }
+    private final MusicPlayer.PositionObserver positionObserver = position -> {
+        if (!isAdded() || seekBarProgress == null) return;
+        int limitedPosition = Math.min(position, PREVIEW_DURATION_MS);
+        seekBarProgress.setProgress(limitedPosition);
+        tvCurrentTime.setText(formatTime(limitedPosition));
+
+        if (limitedPosition >= PREVIEW_DURATION_MS && musicPlayer.isPlaying()) {
+            Log.d(TAG, "Preview completed, stopping playback");
+            musicPlayer.pause();
+            updatePlayPauseButton(false);
+        }
+    };
+
+    // The player only ticks while playing, so this just tracks whether the position is on screen
     private void startUiUpdates() {
         if (isUiUpdateActive) return;
-
         isUiUpdateActive = true;
-        uiUpdateHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (musicPlayer != null && musicPlayer.isPlaying() && isAdded()) {
-                    int currentPosition = musicPlayer.getCurrentPosition();
-
-                    int maxPosition = PREVIEW_DURATION_MS;
-                    if (currentPosition > maxPosition) {
-                        currentPosition = maxPosition;
-                    }
-
-                    if (seekBarProgress != null) {
-                        seekBarProgress.setProgress(currentPosition);
-                    }
-                    if (tvCurrentTime != null) {
-                        tvCurrentTime.setText(formatTime(currentPosition));
-                    }
-
-                    if (currentPosition >= maxPosition) {
-                        Log.d(TAG, "Preview completed, stopping playback");
-                        musicPlayer.pause();
-                        updatePlayPauseButton(false);
-                        stopUiUpdates();
-                        return;
-                    }
-                }
-                if (isUiUpdateActive && isAdded() && isVisible()) {
-                    uiUpdateHandler.postDelayed(this, 1000);
-                }
-            }
-        });
+        musicPlayer.addPositionObserver(positionObserver);
     }
 
     private void stopUiUpdates() {
         isUiUpdateActive = false;
-        uiUpdateHandler.removeCallbacksAndMessages(null);
+        musicPlayer.removePositionObserver(positionObserver);
     }
 
     @Override
@@ -943,6 +705,8 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
             ((MainActivity) getActivity()).removeTrackChangeListener(this);
         }
 
+        DownloadedTrackIndex.getInstance(requireContext()).removeListener(downloadIndexListener);
+        LibraryStore.getInstance(requireContext()).removeListener(libraryListener);
         stopUiUpdates();
         super.onDestroyView();
     }
@@ -956,9 +720,7 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
     @Override
     public void onResume() {
         super.onResume();
-        if (musicPlayer.isPlaying()) {
-            startUiUpdates();
-        }
+        startUiUpdates();
     }
 
     @Override
@@ -1040,12 +802,6 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
                                 Toast.makeText(getContext(),
                                         "Download complete: " + currentTrack.getTitle(),
                                         Toast.LENGTH_SHORT).show();
-
-                                if (getActivity() instanceof MainActivity) {
-                                    MainActivity mainActivity = (MainActivity) getActivity();
-                                    mainActivity.refreshDownloadedMusic();
-                                    mainActivity.notifyDownloadCompleted(currentTrack);
-                                }
                                 updateDownloadButtonState();
                             });
                         }
@@ -1087,23 +843,9 @@ public class MusicFragment extends Fragment implements TrackChangeListener {
         if (track instanceof DownloadedTrack) {
             return track.isDownloaded();
         }
-        try {
-            DownloadedMusicDbHelper dbHelper =
-                    new DownloadedMusicDbHelper(requireContext());
-            java.util.List<Track> localTracks =
-                    com.example.melodix.fragment.DownloadedMusicFragment.getDownloadedTracksFromDb(dbHelper);
-
-            for (Track localTrack : localTracks) {
-                if (localTrack.getId() == track.getId()) {
-                    Log.d(TAG, "Track found in local database: " + track.getTitle());
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking local database: " + e.getMessage());
-        }
-
-        return false;
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUid() : "anonymous";
+        return DownloadedTrackIndex.getInstance(requireContext()).contains(userId, track.getId());
     }
 }
 
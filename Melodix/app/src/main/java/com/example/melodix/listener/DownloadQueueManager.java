@@ -0,0 +1,462 @@
+package com.example.melodix.listener;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.melodix.database.DownloadJob;
+import com.example.melodix.database.DownloadedTrackIndex;
+import com.example.melodix.database.DownloadedMusicContract.DownloadQueueEntry;
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.model.Track;
+import com.example.melodix.model.TrackJson;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download queue persisted in the {@code download_queue} table.
+ *
+ * Jobs move through queued, active, paused, failed and completed. Higher priority jobs start
+ * first, so a download the user tapped overtakes a running "download all". At most
+ * {@link #setMaxConcurrentDownloads} jobs run at once and all of them share one optional
+ * {@link BandwidthLimiter}. Jobs that were active when the process died are queued again on
+ * start and resume from their partial file.
+ *
+ * All queue bookkeeping happens on a single scheduler thread; callbacks arrive on the main thread.
+ */
+public class DownloadQueueManager {
+    private static final String TAG = "DownloadQueueManager";
+    private static DownloadQueueManager instance;
+
+    private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 3;
+    // Finished bulk downloads are saved together once this many are waiting or the queue runs
+    // dry. The delay only catches a batch that stalls part way, so it is long enough not to
+    // split a steady bulk download into many small commits.
+    private static final int SAVE_BATCH_SIZE = 50;
+    private static final long SAVE_DELAY_MS = 30_000;
+
+    private final Context context;
+    private final DownloadedMusicDbHelper dbHelper;
+    private final Gson gson = TrackJson.gson();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ThreadPoolExecutor workers;
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(0);
+
+    // Only touched on the scheduler thread
+    private final Map<Long, ActiveJob> running = new HashMap<>();
+    private final Map<Long, List<MusicDownloader.DownloadCallback>> callbacks = new HashMap<>();
+    private final List<FinishedDownload> unsaved = new ArrayList<>();
+    private ScheduledFuture<?> scheduledSave;
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+
+    private static class ActiveJob {
+        final DownloadJob job;
+        Future<?> future;
+
+        ActiveJob(DownloadJob job) {
+            this.job = job;
+        }
+    }
+
+    private static class FinishedDownload {
+        final DownloadJob job;
+        final Track track;
+        final File file;
+
+        FinishedDownload(DownloadJob job, Track track, File file) {
+            this.job = job;
+            this.track = track;
+            this.file = file;
+        }
+    }
+
+    // Counts per-track results of a bulk request, on the main thread
+    private static class BulkProgress implements MusicDownloader.DownloadCallback {
+        private final MusicDownloader.BulkDownloadCallback callback;
+        private final int total;
+        private int completed = 0;
+        private int failed = 0;
+
+        BulkProgress(MusicDownloader.BulkDownloadCallback callback, int total) {
+            this.callback = callback;
+            this.total = total;
+        }
+
+        @Override
+        public void onDownloadStarted() {
+        }
+
+        @Override
+        public void onDownloadProgress(int progress) {
+        }
+
+        @Override
+        public void onDownloadComplete(File downloadedFile) {
+            completed++;
+            report();
+        }
+
+        @Override
+        public void onDownloadError(String message) {
+            failed++;
+            report();
+        }
+
+        private void report() {
+            callback.onProgress(completed, failed, total);
+            if (completed + failed == total) {
+                callback.onComplete(completed, failed);
+            }
+        }
+    }
+
+    private DownloadQueueManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DownloadedMusicDbHelper.getInstance(this.context);
+        workers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        workers.allowCoreThreadTimeOut(true);
+
+        scheduler.execute(() -> {
+            int requeued = dbHelper.requeueActiveDownloadJobs();
+            if (requeued > 0) {
+                Log.d(TAG, "🔄 Requeued " + requeued + " interrupted downloads");
+            }
+            schedule();
+        });
+    }
+
+    public static synchronized DownloadQueueManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadQueueManager(context);
+        }
+        return instance;
+    }
+
+    private static String currentUserId() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : "anonymous";
+    }
+
+    public void setMaxConcurrentDownloads(int max) {
+        final int limit = Math.max(1, max);
+        scheduler.execute(() -> {
+            maxConcurrent = limit;
+            if (limit > workers.getMaximumPoolSize()) {
+                workers.setMaximumPoolSize(limit);
+                workers.setCorePoolSize(limit);
+            } else {
+                workers.setCorePoolSize(limit);
+                workers.setMaximumPoolSize(limit);
+            }
+            schedule();
+        });
+    }
+
+    /**
+     * Caps the combined rate of all downloads, 0 for no cap.
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        bandwidthLimiter.setBytesPerSecond(Math.max(0, bytesPerSecond));
+    }
+
+    /**
+     * Adds the track to the queue for the current user. Queueing a track that is already
+     * queued or running only raises its priority and adds the callback.
+     *
+     * @param priority one of {@link DownloadQueueEntry#PRIORITY_USER} or {@link DownloadQueueEntry#PRIORITY_BULK}
+     */
+    public void enqueue(Track track, int priority, MusicDownloader.DownloadCallback callback) {
+        final String trackJson = gson.toJson(track, Track.class);
+        final String userId = currentUserId();
+        scheduler.execute(() -> {
+            dbHelper.queueDownloadJob(userId, track.getId(), trackJson, priority);
+            addCallback(track.getId(), callback);
+            schedule();
+        });
+    }
+
+    /**
+     * Adds many tracks in one transaction. Tracks that are already downloaded or have no
+     * preview URL are left out and not counted.
+     */
+    public void enqueueAll(List<Track> tracks, int priority, MusicDownloader.BulkDownloadCallback callback) {
+        final List<Track> copy = new ArrayList<>(tracks);
+        final String userId = currentUserId();
+        scheduler.execute(() -> {
+            DownloadedTrackIndex downloaded = DownloadedTrackIndex.getInstance(context);
+            Map<Long, String> trackJsonById = new LinkedHashMap<>();
+            for (Track track : copy) {
+                if (track == null || track.getPreviewUrl() == null || downloaded.contains(userId, track.getId())) continue;
+                trackJsonById.put(track.getId(), gson.toJson(track, Track.class));
+            }
+            Log.d(TAG, "📥 Queueing " + trackJsonById.size() + " of " + copy.size() + " tracks for download");
+
+            final int total = trackJsonById.size();
+            if (total == 0) {
+                if (callback != null) mainHandler.post(() -> callback.onComplete(0, 0));
+                return;
+            }
+            dbHelper.queueDownloadJobs(userId, trackJsonById, priority);
+            if (callback != null) {
+                BulkProgress progress = new BulkProgress(callback, total);
+                for (Long trackId : trackJsonById.keySet()) {
+                    addCallback(trackId, progress);
+                }
+            }
+            schedule();
+        });
+    }
+
+    /**
+     * Stops the job if it is running and forgets it, including any partial file.
+     */
+    public void cancel(long trackId) {
+        final String userId = currentUserId();
+        scheduler.execute(() -> {
+            DownloadJob job = dbHelper.getDownloadJob(userId, trackId);
+            stop(trackId);
+            dbHelper.removeDownloadJob(userId, trackId);
+            if (job != null) {
+                Track track = gson.fromJson(job.getTrackJson(), Track.class);
+                File target = MusicDownloader.outputFileFor(context, track);
+                if (!DownloadEngine.deletePartial(target)) {
+                    Log.w(TAG, "Could not delete partial file for " + target);
+                }
+            }
+            notifyError(trackId, "Download cancelled");
+            Log.d(TAG, "❌ Cancelled download of track " + trackId);
+        });
+    }
+
+    /**
+     * Stops the job but keeps it, and its partial file, for {@link #resume}.
+     */
+    public void pause(long trackId) {
+        final String userId = currentUserId();
+        scheduler.execute(() -> {
+            DownloadJob job = dbHelper.getDownloadJob(userId, trackId);
+            if (job == null) return;
+            stop(trackId);
+            dbHelper.setDownloadJobState(userId, trackId, DownloadQueueEntry.STATE_PAUSED, null);
+            Log.d(TAG, "⏸️ Paused download of track " + trackId);
+            schedule();
+        });
+    }
+
+    public void resume(long trackId) {
+        final String userId = currentUserId();
+        scheduler.execute(() -> {
+            DownloadJob job = dbHelper.getDownloadJob(userId, trackId);
+            if (job == null || !DownloadQueueEntry.STATE_PAUSED.equals(job.getState())) return;
+            dbHelper.setDownloadJobState(userId, trackId, DownloadQueueEntry.STATE_QUEUED, null);
+            schedule();
+        });
+    }
+
+    private void stop(long trackId) {
+        ActiveJob active = running.remove(trackId);
+        if (active != null) {
+            active.future.cancel(true);
+        }
+    }
+
+    private void addCallback(long trackId, MusicDownloader.DownloadCallback callback) {
+        if (callback == null) return;
+        List<MusicDownloader.DownloadCallback> list = callbacks.get(trackId);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            callbacks.put(trackId, list);
+        }
+        list.add(callback);
+    }
+
+    private void schedule() {
+        String userId = currentUserId();
+        while (running.size() < maxConcurrent) {
+            DownloadJob job = dbHelper.nextQueuedDownloadJob(userId);
+            if (job == null) return;
+            dbHelper.setDownloadJobState(userId, job.getTrackId(), DownloadQueueEntry.STATE_ACTIVE, null);
+            ActiveJob active = new ActiveJob(job);
+            running.put(job.getTrackId(), active);
+            active.future = workers.submit(() -> runJob(active));
+        }
+    }
+
+    // Runs on a worker thread
+    private void runJob(ActiveJob active) {
+        DownloadJob job = active.job;
+        long trackId = job.getTrackId();
+        Track track = gson.fromJson(job.getTrackJson(), Track.class);
+        File outputFile = MusicDownloader.outputFileFor(context, track);
+        try {
+            File downloadsDir = outputFile.getParentFile();
+            if (downloadsDir != null && !downloadsDir.exists() && !downloadsDir.mkdirs()) {
+                throw new IOException("Could not create downloads directory");
+            }
+            if (!outputFile.exists()) {
+                DownloadEngine.download(track.getPreviewUrl(), outputFile,
+                        progress -> scheduler.execute(() -> notifyProgress(trackId, progress)),
+                        bandwidthLimiter);
+            }
+            scheduler.execute(() -> onJobFinished(active, track, outputFile, null, false));
+        } catch (DownloadEngine.HttpStatusException e) {
+            Log.e(TAG, "Download rejected by server: " + e.getMessage());
+            scheduler.execute(() -> onJobFinished(active, track, null, "Download failed: " + e.getMessage(), false));
+        } catch (Exception e) {
+            // The partial file is kept so the next attempt can resume from it
+            Log.e(TAG, "Download error", e);
+            scheduler.execute(() -> onJobFinished(active, track, null, "Download failed: " + e.getMessage(), true));
+        }
+    }
+
+    private void onJobFinished(ActiveJob active, Track track, File outputFile, String error,
+                               boolean countAttempt) {
+        DownloadJob job = active.job;
+        long trackId = job.getTrackId();
+        if (running.get(trackId) != active) {
+            // Paused or cancelled while running, the state was already recorded
+            return;
+        }
+        running.remove(trackId);
+
+        if (error != null) {
+            dbHelper.setDownloadJobState(job.getUserId(), trackId, DownloadQueueEntry.STATE_FAILED, error);
+            if (countAttempt) {
+                dbHelper.incrementDownloadJobAttempts(job.getUserId(), trackId);
+            }
+            notifyError(trackId, error);
+            schedule();
+            return;
+        }
+
+        unsaved.add(new FinishedDownload(job, track, outputFile));
+        schedule();
+        // Someone is waiting on a single download, or the queue just ran dry
+        if (job.getPriority() >= DownloadQueueEntry.PRIORITY_USER || unsaved.size() >= SAVE_BATCH_SIZE
+                || running.isEmpty()) {
+            saveFinished();
+        } else if (scheduledSave == null) {
+            scheduledSave = scheduler.schedule(this::saveFinished, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes every finished download to the database in one transaction and to the cloud
+     * history in one batched write, then reports them as complete.
+     */
+    private void saveFinished() {
+        // A batch saved early takes the timer with it, so the next batch gets the full delay
+        if (scheduledSave != null) {
+            scheduledSave.cancel(false);
+            scheduledSave = null;
+        }
+        if (unsaved.isEmpty()) return;
+        final List<FinishedDownload> batch = new ArrayList<>(unsaved);
+        unsaved.clear();
+
+        List<ContentValues> rows = new ArrayList<>(batch.size());
+        List<Track> tracks = new ArrayList<>(batch.size());
+        List<String> paths = new ArrayList<>(batch.size());
+        for (FinishedDownload finished : batch) {
+            String path = finished.file.getAbsolutePath();
+            rows.add(MusicDownloader.downloadedTrackValues(finished.job.getUserId(), finished.track, path));
+            tracks.add(finished.track);
+            paths.add(path);
+        }
+
+        try {
+            dbHelper.completeDownloads(rows);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error saving downloaded tracks", e);
+            for (FinishedDownload finished : batch) {
+                dbHelper.setDownloadJobState(finished.job.getUserId(), finished.job.getTrackId(),
+                        DownloadQueueEntry.STATE_FAILED, e.getMessage());
+                notifyError(finished.job.getTrackId(), "Could not save download: " + e.getMessage());
+            }
+            return;
+        }
+
+        Map<String, List<Long>> idsByUser = new HashMap<>();
+        for (FinishedDownload finished : batch) {
+            List<Long> ids = idsByUser.get(finished.job.getUserId());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByUser.put(finished.job.getUserId(), ids);
+            }
+            ids.add(finished.job.getTrackId());
+        }
+        for (Map.Entry<String, List<Long>> entry : idsByUser.entrySet()) {
+            long[] ids = new long[entry.getValue().size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = entry.getValue().get(i);
+            }
+            DownloadedTrackIndex.getInstance(context).markDownloaded(entry.getKey(), ids);
+        }
+
+        MusicDownloader.saveToCloudDownloadHistory(context, tracks, paths,
+                new UserPreferencesManager.DataCallback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean success) {
+                        Log.d(TAG, "Successfully synced " + tracks.size() + " downloads to cloud");
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.w(TAG, "Failed to sync downloads to cloud (offline mode): " + error);
+                    }
+                });
+
+        for (FinishedDownload finished : batch) {
+            final List<MusicDownloader.DownloadCallback> list = callbacks.remove(finished.job.getTrackId());
+            if (list == null) continue;
+            mainHandler.post(() -> {
+                for (MusicDownloader.DownloadCallback callback : list) {
+                    callback.onDownloadComplete(finished.file);
+                }
+            });
+        }
+        Log.d(TAG, "✅ Saved " + batch.size() + " finished downloads");
+    }
+
+    private void notifyProgress(long trackId, int progress) {
+        List<MusicDownloader.DownloadCallback> list = callbacks.get(trackId);
+        if (list == null) return;
+        final List<MusicDownloader.DownloadCallback> snapshot = new ArrayList<>(list);
+        mainHandler.post(() -> {
+            for (MusicDownloader.DownloadCallback callback : snapshot) {
+                callback.onDownloadProgress(progress);
+            }
+        });
+    }
+
+    private void notifyError(long trackId, String message) {
+        final List<MusicDownloader.DownloadCallback> list = callbacks.remove(trackId);
+        if (list == null) return;
+        mainHandler.post(() -> {
+            for (MusicDownloader.DownloadCallback callback : list) {
+                callback.onDownloadError(message);
+            }
+        });
+    }
+}
@@ -0,0 +1,761 @@
+package com.example.melodix.listener;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.DownloadedMusicContract.LibraryOutboxEntry;
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.database.LibraryOp;
+import com.example.melodix.database.LibraryStore;
+import com.example.melodix.model.Track;
+import com.example.melodix.model.TrackJson;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the favorites and recently played tracks in {@link LibraryStore} in step with
+ * Firestore.
+ *
+ * Favorites are stored as one document per track in {@code users/{uid}/favorites}, so adding
+ * or removing one is a single small write whatever the size of the library. Edits are taken
+ * from the outbox in order and written in batches; the outbox is cleared up to the last edit
+ * once its batch is committed. Each play is appended to {@code users/{uid}/recentPlays} as a
+ * document of its own, so a play is one write with no read before it, and plays from
+ * overlapping sessions or rapid skipping cannot overwrite each other.
+ *
+ * Remote changes arrive through snapshot listeners on both collections, attached while a user
+ * is signed in. Every favorite write stamps the document with the server time, and a removed
+ * favorite is kept as a tombstone rather than deleted, so the favorites listener only asks for
+ * documents stamped after the newest one this device has applied; attaching it reads what
+ * changed while the app was away, not the whole library. The favorites are paged in whole
+ * only the first time, or after more than {@link #RESEED_AFTER_MS} offline, when tombstones
+ * this device has not seen may have expired. The recent tracks are taken from the newest plays
+ * each time they change, and once the play log grows long it is compacted to the newest play
+ * of each recent track.
+ *
+ * Full syncs run when the signed-in user changes and when the network comes back; local edits
+ * only push. Users whose lists are still arrays in the user document are moved to the
+ * collections on their first sync, which pulls both lists once before the listeners take over.
+ *
+ * Runs on the main thread; database work goes to the database I/O thread.
+ */
+public class LibrarySyncer {
+    private static final String TAG = "LibrarySyncer";
+    private static LibrarySyncer instance;
+
+    private static final String USERS_COLLECTION = "users";
+    private static final String FAVORITES_COLLECTION = "favorites";
+    private static final String LEGACY_FAVORITES_FIELD = "favorites";
+    private static final String PLAYS_COLLECTION = "recentPlays";
+    private static final String LEGACY_RECENTS_FIELD = "recentTracks";
+    // Set on the user document once its lists live in the collections
+    private static final String FAVORITES_MIGRATED_FIELD = "favoritesInCollection";
+    private static final String RECENTS_MIGRATED_FIELD = "recentsInCollection";
+    private static final String ADDED_AT_FIELD = "addedAt";
+    private static final String UPDATED_AT_FIELD = "updatedAt";
+    private static final String DELETED_FIELD = "deleted";
+    // A Firestore TTL policy on this field clears out old tombstones; see the README
+    private static final String EXPIRE_AT_FIELD = "expireAt";
+    private static final String PLAYED_AT_FIELD = "playedAt";
+
+    // Lets a burst of edits go out as one batch
+    private static final long SYNC_DELAY_MS = 2000;
+    private static final int PAGE_SIZE = 200;
+    // Newest plays read to find the recent tracks; more than this many plays triggers compaction
+    private static final int PLAYS_SCAN_LIMIT = 50;
+    // Stays under Firestore's limit of 500 writes per batch
+    private static final int MAX_BATCH_WRITES = 450;
+
+    private static final String PREFS_NAME = "library_sync";
+    // Newest server time applied from the favorites, and when this device last heard from them
+    private static final String KEY_FAVORITES_CURSOR = "favoritesCursor_";
+    private static final String KEY_FAVORITES_SYNCED_AT = "favoritesSyncedAt_";
+    private static final long TOMBSTONE_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+    // Well inside the tombstone lifetime, so clock differences between devices do not matter
+    private static final long RESEED_AFTER_MS = 14L * 24 * 60 * 60 * 1000;
+    // Writes still in flight when the cursor was saved can land with a slightly older time;
+    // reading them twice does no harm
+    private static final long CURSOR_OVERLAP_MS = 5 * 60 * 1000;
+
+    private final DownloadedMusicDbHelper dbHelper;
+    private final LibraryStore store;
+    private final SharedPreferences prefs;
+    private final FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+    private final Gson gson = TrackJson.gson();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable syncRunnable = this::sync;
+
+    private boolean syncing = false;
+    private boolean syncAgain = false;
+    private boolean pullRequested = false;
+    private boolean compactionDue = false;
+
+    // Snapshot listeners of the signed-in user, attached once their lists live in the collections
+    private String listeningUserId;
+    private ListenerRegistration favoritesRegistration;
+    private ListenerRegistration playsRegistration;
+    private final DownloadedMusicDbHelper.QueryCallback<Void> applied = new DownloadedMusicDbHelper.QueryCallback<Void>() {
+        @Override
+        public void onResult(Void result) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+            Log.e(TAG, "❌ Error applying remote library changes", e);
+        }
+    };
+
+    // What a sync pulled; a list is null when it was not pulled
+    private static class Remote {
+        boolean pull;
+        boolean favoritesMigrated;
+        boolean recentsMigrated;
+        List<Track> legacyFavorites;
+        List<Track> legacyRecents;
+        List<Track> favorites;
+        List<Track> recents;
+        boolean compactionDue;
+    }
+
+    // The writes of one sync and the last outbox entry they cover
+    private class Push {
+        final List<WriteBatch> batches = new ArrayList<>();
+        long lastOpId;
+        boolean moreOps;
+        private int writes = MAX_BATCH_WRITES;
+
+        // The batch for the next write, starting a new one when the current one is full
+        WriteBatch batch() {
+            if (writes == MAX_BATCH_WRITES) {
+                batches.add(firestore.batch());
+                writes = 0;
+            }
+            writes++;
+            return batches.get(batches.size() - 1);
+        }
+    }
+
+    private LibrarySyncer(Context context) {
+        Context appContext = context.getApplicationContext();
+        dbHelper = DownloadedMusicDbHelper.getInstance(appContext);
+        store = LibraryStore.getInstance(appContext);
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        store.setOnOutboxChanged(this::requestSync);
+        FirebaseAuth.getInstance().addAuthStateListener(auth -> onAuthChanged());
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    mainHandler.post(LibrarySyncer.this::requestFullSync);
+                }
+            });
+        }
+    }
+
+    public static synchronized LibrarySyncer getInstance(Context context) {
+        if (instance == null) {
+            instance = new LibrarySyncer(context);
+        }
+        return instance;
+    }
+
+    /** Schedules a push of local edits; requests made within {@link #SYNC_DELAY_MS} share one. */
+    public void requestSync() {
+        mainHandler.removeCallbacks(syncRunnable);
+        mainHandler.postDelayed(syncRunnable, SYNC_DELAY_MS);
+    }
+
+    /** Same as {@link #requestSync} but also pulls changes made on other devices. */
+    public void requestFullSync() {
+        pullRequested = true;
+        requestSync();
+    }
+
+    private void onAuthChanged() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (listeningUserId != null && (currentUser == null || !listeningUserId.equals(currentUser.getUid()))) {
+            stopListening();
+        }
+        requestFullSync();
+    }
+
+    private void sync() {
+        if (syncing) {
+            syncAgain = true;
+            return;
+        }
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) return;
+        String userId = currentUser.getUid();
+        boolean pull = pullRequested;
+        pullRequested = false;
+        syncing = true;
+
+        userDocument(userId).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                failSync(pull, task.getException());
+                return;
+            }
+            DocumentSnapshot document = task.getResult();
+            Remote remote = new Remote();
+            remote.pull = pull;
+            remote.favoritesMigrated = isSet(document, FAVORITES_MIGRATED_FIELD);
+            remote.recentsMigrated = isSet(document, RECENTS_MIGRATED_FIELD);
+            remote.legacyFavorites = readTracks(document, LEGACY_FAVORITES_FIELD);
+            remote.legacyRecents = readTracks(document, LEGACY_RECENTS_FIELD);
+            if (remote.favoritesMigrated && remote.recentsMigrated) {
+                // The listeners pull both lists, the favorites from where this device left off
+                listen(userId);
+                remote.pull = false;
+            }
+            pullFavorites(userId, remote);
+        });
+    }
+
+    // The network callback asks again once there is a connection
+    private void failSync(boolean pull, Exception e) {
+        Log.w(TAG, "⚠️ Could not reach library, edits stay in the outbox", e);
+        pullRequested |= pull;
+        finishSync();
+    }
+
+    private void pullFavorites(String userId, Remote remote) {
+        if (!remote.pull && remote.favoritesMigrated) {
+            pullRecents(userId, remote);
+            return;
+        }
+        fetchFavorites(userId, null, new ArrayList<>(), task -> {
+            if (!task.isSuccessful()) {
+                failSync(remote.pull, task.getException());
+                return;
+            }
+            remote.favorites = favoritesFrom(task.getResult());
+            pullRecents(userId, remote);
+        });
+    }
+
+    private void pullRecents(String userId, Remote remote) {
+        if (!remote.pull && remote.recentsMigrated) {
+            prepare(userId, remote);
+            return;
+        }
+        // Compaction keeps the log short, so the newest plays hold the recent tracks
+        playsCollection(userId).orderBy(PLAYED_AT_FIELD, Query.Direction.DESCENDING)
+                .limit(PLAYS_SCAN_LIMIT).get().addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        failSync(remote.pull, task.getException());
+                        return;
+                    }
+                    List<DocumentSnapshot> plays = task.getResult().getDocuments();
+                    remote.recents = recentsFrom(plays);
+                    remote.compactionDue = plays.size() == PLAYS_SCAN_LIMIT;
+                    prepare(userId, remote);
+                });
+    }
+
+    // Reads the favorites collection one page at a time, oldest first. Tombstones have no
+    // ADDED_AT_FIELD, so ordering by it leaves them out.
+    private void fetchFavorites(String userId, DocumentSnapshot after, List<DocumentSnapshot> into,
+                                OnCompleteListener<List<DocumentSnapshot>> listener) {
+        Query query = favoritesCollection(userId).orderBy(ADDED_AT_FIELD).limit(PAGE_SIZE);
+        if (after != null) query = query.startAfter(after);
+        query.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                listener.onComplete(Tasks.forException(task.getException()));
+                return;
+            }
+            List<DocumentSnapshot> page = task.getResult().getDocuments();
+            into.addAll(page);
+            if (page.size() == PAGE_SIZE) {
+                fetchFavorites(userId, page.get(page.size() - 1), into, listener);
+            } else {
+                Log.d(TAG, "Pulled " + into.size() + " favorites");
+                listener.onComplete(Tasks.forResult(into));
+            }
+        });
+    }
+
+    private void prepare(String userId, Remote remote) {
+        dbHelper.queryAsync(db -> merge(db, userId, remote), new DownloadedMusicDbHelper.QueryCallback<Push>() {
+            @Override
+            public void onResult(Push push) {
+                if (push.batches.isEmpty()) {
+                    Log.d(TAG, "✅ Library up to date");
+                    afterPush(userId, remote);
+                } else {
+                    pushLibrary(userId, remote, push);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                finishSync();
+            }
+        });
+    }
+
+    // Runs on the database I/O thread, so no edit can land between reading the outbox and
+    // building the writes that cover it
+    private Push merge(DownloadedMusicDbHelper db, String userId, Remote remote) {
+        List<LibraryOp> ops = db.loadLibraryOps(userId, MAX_BATCH_WRITES);
+        if (!remote.favoritesMigrated) {
+            // Whatever is in the legacy array joins the collection
+            remote.favorites = new ArrayList<>(remote.favorites);
+            if (remote.legacyFavorites != null) remote.favorites.addAll(remote.legacyFavorites);
+        }
+        if (!remote.recentsMigrated && remote.legacyRecents != null) {
+            for (Track track : remote.legacyRecents) {
+                addDistinct(remote.recents, track);
+            }
+        }
+        if (remote.favorites != null) store.mergeRemote(userId, LibraryEntry.LIST_FAVORITES, remote.favorites);
+        if (remote.recents != null) {
+            store.mergeRemote(userId, LibraryEntry.LIST_RECENTS,
+                    remote.recents.subList(0, Math.min(remote.recents.size(), LibraryStore.MAX_RECENTS)));
+        }
+
+        Push push = new Push();
+        long now = System.currentTimeMillis();
+        if (!remote.favoritesMigrated) {
+            // Uploads the merged list, which also covers favorites only this device had
+            List<Track> favorites = store.loadTracks(userId, LibraryEntry.LIST_FAVORITES);
+            long addedAt = now - favorites.size();
+            for (Track track : favorites) {
+                push.batch().set(favoriteDocument(userId, track.getId()), favoriteData(track, addedAt++));
+            }
+        }
+        if (!remote.recentsMigrated) {
+            List<Track> recents = store.loadTracks(userId, LibraryEntry.LIST_RECENTS);
+            long playedAt = now - recents.size();
+            // Oldest first, so each play is newer than the one before
+            for (int i = recents.size() - 1; i >= 0; i--) {
+                Track track = recents.get(i);
+                push.batch().set(playDocument(userId, track.getId(), playedAt),
+                        convertTrackToMap(track, PLAYED_AT_FIELD, playedAt++));
+            }
+        }
+        for (LibraryOp op : ops) {
+            push.lastOpId = op.getId();
+            boolean isRecent = LibraryEntry.LIST_RECENTS.equals(op.getList());
+            // Already part of the uploads above
+            if (isRecent ? !remote.recentsMigrated : !remote.favoritesMigrated) continue;
+            Track track = op.getTrackJson() != null ? gson.fromJson(op.getTrackJson(), Track.class) : null;
+            if (isRecent) {
+                // A play is appended, never rewritten, so overlapping plays cannot lose each other
+                push.batch().set(playDocument(userId, op.getTrackId(), op.getCreatedAt()),
+                        convertTrackToMap(track, PLAYED_AT_FIELD, op.getCreatedAt()));
+            } else if (LibraryOutboxEntry.OP_DELETE.equals(op.getOp())) {
+                push.batch().set(favoriteDocument(userId, op.getTrackId()), tombstoneData(now));
+            } else {
+                push.batch().set(favoriteDocument(userId, op.getTrackId()), favoriteData(track, op.getCreatedAt()));
+            }
+        }
+        push.moreOps = ops.size() == MAX_BATCH_WRITES;
+
+        Map<String, Object> userData = new HashMap<>();
+        if (!remote.favoritesMigrated) {
+            userData.put(FAVORITES_MIGRATED_FIELD, true);
+            userData.put(LEGACY_FAVORITES_FIELD, FieldValue.delete());
+        }
+        if (!remote.recentsMigrated) {
+            userData.put(RECENTS_MIGRATED_FIELD, true);
+            userData.put(LEGACY_RECENTS_FIELD, FieldValue.delete());
+        }
+        if (!userData.isEmpty()) {
+            // Goes into the last batch, which is committed after the others, so a migration
+            // only counts as done once all of it is in
+            push.batch().set(userDocument(userId), userData, SetOptions.merge());
+        }
+        return push;
+    }
+
+    // Commits the batches one after another, then clears the outbox entries they cover
+    private void pushLibrary(String userId, Remote remote, Push push) {
+        if (push.batches.isEmpty()) {
+            acknowledge(userId, remote, push);
+            return;
+        }
+        push.batches.remove(0).commit().addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                pushLibrary(userId, remote, push);
+            } else {
+                // Every write is idempotent, so the whole push is simply tried again later
+                Log.w(TAG, "⚠️ Could not push library, edits stay in the outbox", task.getException());
+                finishSync();
+            }
+        });
+    }
+
+    private void acknowledge(String userId, Remote remote, Push push) {
+        if (push.lastOpId == 0) {
+            Log.d(TAG, "✅ Library pushed");
+            afterPush(userId, remote);
+            return;
+        }
+        dbHelper.queryAsync(db -> db.acknowledgeLibraryOps(userId, push.lastOpId),
+                new DownloadedMusicDbHelper.QueryCallback<Integer>() {
+                    @Override
+                    public void onResult(Integer acknowledged) {
+                        Log.d(TAG, "✅ Pushed " + acknowledged + " library edits");
+                        if (push.moreOps) syncAgain = true;
+                        afterPush(userId, remote);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        finishSync();
+                    }
+                });
+    }
+
+    // The push went through, so the user's lists are in the collections by now
+    private void afterPush(String userId, Remote remote) {
+        listen(userId);
+        if (remote.compactionDue || compactionDue) {
+            compactionDue = false;
+            compactPlays(userId);
+        } else {
+            finishSync();
+        }
+    }
+
+    // Deletes every play except the newest one of each of the newest MAX_RECENTS tracks. Runs
+    // on full syncs once the log has grown past PLAYS_SCAN_LIMIT; a log longer than one batch
+    // is finished by later syncs.
+    private void compactPlays(String userId) {
+        playsCollection(userId).orderBy(PLAYED_AT_FIELD, Query.Direction.DESCENDING)
+                .limit(MAX_BATCH_WRITES).get().addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "⚠️ Could not read plays to compact", task.getException());
+                        finishSync();
+                        return;
+                    }
+                    Set<Long> kept = new HashSet<>();
+                    WriteBatch batch = firestore.batch();
+                    int deletes = 0;
+                    for (DocumentSnapshot play : task.getResult().getDocuments()) {
+                        Track track = convertMapToTrack(play.getData());
+                        if (track != null && kept.size() < LibraryStore.MAX_RECENTS && kept.add(track.getId())) {
+                            continue;
+                        }
+                        batch.delete(play.getReference());
+                        deletes++;
+                    }
+                    if (deletes == 0) {
+                        finishSync();
+                        return;
+                    }
+                    int deleted = deletes;
+                    batch.commit().addOnCompleteListener(commit -> {
+                        if (commit.isSuccessful()) {
+                            Log.d(TAG, "🧹 Compacted " + deleted + " old plays");
+                        } else {
+                            Log.w(TAG, "⚠️ Could not compact plays", commit.getException());
+                        }
+                        finishSync();
+                    });
+                });
+    }
+
+    private void finishSync() {
+        syncing = false;
+        if (syncAgain) {
+            syncAgain = false;
+            requestSync();
+        }
+    }
+
+    private void listen(String userId) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (userId.equals(listeningUserId) || currentUser == null || !userId.equals(currentUser.getUid())) {
+            return;
+        }
+        stopListening();
+        listeningUserId = userId;
+        long syncedAt = prefs.getLong(KEY_FAVORITES_SYNCED_AT + userId, 0);
+        if (System.currentTimeMillis() - syncedAt > RESEED_AFTER_MS) {
+            seedFavorites(userId);
+        } else {
+            listenToFavorites(userId, 0);
+        }
+        playsRegistration = playsCollection(userId).orderBy(PLAYED_AT_FIELD, Query.Direction.DESCENDING)
+                .limit(PLAYS_SCAN_LIMIT)
+                .addSnapshotListener((snapshot, error) -> onPlaysSnapshot(userId, snapshot, error));
+        Log.d(TAG, "👂 Listening to library of " + userId);
+    }
+
+    // Pages in every favorite and merges them as a whole, then listens from the newest one
+    private void seedFavorites(String userId) {
+        fetchFavorites(userId, null, new ArrayList<>(), task -> {
+            if (!userId.equals(listeningUserId) || favoritesRegistration != null) return;
+            if (!task.isSuccessful()) {
+                // As with a failed listener, the next full sync starts over
+                Log.w(TAG, "⚠️ Could not pull favorites", task.getException());
+                stopListening();
+                return;
+            }
+            List<DocumentSnapshot> documents = task.getResult();
+            long newest = newestUpdate(documents);
+            // Queued ahead of anything the listener delivers
+            dbHelper.queryAsync(db -> {
+                List<Track> favorites = favoritesFrom(documents);
+                store.mergeRemote(userId, LibraryEntry.LIST_FAVORITES, favorites);
+                saveFavoritesCursor(userId, newest);
+                Log.d(TAG, "Pulled " + favorites.size() + " favorites");
+                return null;
+            }, applied);
+            listenToFavorites(userId, newest);
+        });
+    }
+
+    private void listenToFavorites(String userId, long newest) {
+        long cursor = Math.max(prefs.getLong(KEY_FAVORITES_CURSOR + userId, 0), newest);
+        Date after = new Date(Math.max(0, cursor - CURSOR_OVERLAP_MS));
+        favoritesRegistration = favoritesCollection(userId)
+                .whereGreaterThan(UPDATED_AT_FIELD, new Timestamp(after))
+                .orderBy(UPDATED_AT_FIELD)
+                .addSnapshotListener((snapshot, error) -> onFavoritesSnapshot(userId, snapshot, error));
+    }
+
+    private void stopListening() {
+        if (favoritesRegistration != null) favoritesRegistration.remove();
+        if (playsRegistration != null) playsRegistration.remove();
+        favoritesRegistration = null;
+        playsRegistration = null;
+        listeningUserId = null;
+    }
+
+    // A listener that fails is closed for good; the next full sync attaches new ones
+    private boolean failed(FirebaseFirestoreException error) {
+        if (error == null) return false;
+        Log.w(TAG, "⚠️ Library listener failed", error);
+        stopListening();
+        return true;
+    }
+
+    // Only favorites stamped after the cursor come in here, the first snapshot included. Our
+    // own writes come back too; the store ignores those while they are in the outbox and finds
+    // nothing to change once they are not.
+    private void onFavoritesSnapshot(String userId, QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (failed(error)) return;
+        List<DocumentChange> changes = snapshot.getDocumentChanges();
+        // A snapshot from the cache may be behind the server, so only server snapshots move the
+        // cursor; the changes in it are applied either way, as they are not delivered again
+        boolean fromServer = !snapshot.getMetadata().isFromCache();
+        if (changes.isEmpty() && !fromServer) return;
+        dbHelper.queryAsync(db -> {
+            List<Track> changed = new ArrayList<>();
+            List<Long> removed = new ArrayList<>();
+            List<DocumentSnapshot> documents = new ArrayList<>(changes.size());
+            for (DocumentChange change : changes) {
+                DocumentSnapshot doc = change.getDocument();
+                documents.add(doc);
+                // A tombstone, or a document that left the query, which only a real delete or an
+                // expired tombstone does
+                if (change.getType() == DocumentChange.Type.REMOVED || isSet(doc, DELETED_FIELD)) {
+                    Long trackId = trackIdOf(doc);
+                    if (trackId != null) removed.add(trackId);
+                    continue;
+                }
+                Track track = convertMapToTrack(doc.getData());
+                if (track != null) changed.add(track);
+            }
+            long[] removedIds = new long[removed.size()];
+            for (int i = 0; i < removedIds.length; i++) {
+                removedIds[i] = removed.get(i);
+            }
+            if (!changed.isEmpty() || removedIds.length > 0) {
+                store.applyRemoteFavorites(userId, changed, removedIds);
+            }
+            if (fromServer) saveFavoritesCursor(userId, newestUpdate(documents));
+            return null;
+        }, applied);
+    }
+
+    // Keeps the newest server time seen and notes that this device is caught up as of now
+    private void saveFavoritesCursor(String userId, long newestUpdate) {
+        long cursor = Math.max(prefs.getLong(KEY_FAVORITES_CURSOR + userId, 0), newestUpdate);
+        prefs.edit()
+                .putLong(KEY_FAVORITES_CURSOR + userId, cursor)
+                .putLong(KEY_FAVORITES_SYNCED_AT + userId, System.currentTimeMillis())
+                .apply();
+    }
+
+    // Writes still waiting for the server have no time yet and are left out
+    private static long newestUpdate(List<DocumentSnapshot> documents) {
+        long newest = 0;
+        for (DocumentSnapshot doc : documents) {
+            Timestamp updatedAt = doc.getTimestamp(UPDATED_AT_FIELD);
+            if (updatedAt != null) newest = Math.max(newest, updatedAt.toDate().getTime());
+        }
+        return newest;
+    }
+
+    private List<Track> favoritesFrom(List<DocumentSnapshot> documents) {
+        List<Track> favorites = new ArrayList<>(documents.size());
+        for (DocumentSnapshot doc : documents) {
+            Track track = convertMapToTrack(doc.getData());
+            if (track != null) favorites.add(track);
+        }
+        return favorites;
+    }
+
+    // Favorite documents are named after their track
+    private static Long trackIdOf(DocumentSnapshot doc) {
+        try {
+            return Long.parseLong(doc.getId());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void onPlaysSnapshot(String userId, QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (failed(error) || snapshot.getMetadata().isFromCache()) return;
+        List<DocumentSnapshot> plays = snapshot.getDocuments();
+        if (plays.size() == PLAYS_SCAN_LIMIT && !compactionDue) {
+            compactionDue = true;
+            requestSync();
+        }
+        dbHelper.queryAsync(db -> {
+            List<Track> recents = recentsFrom(plays);
+            store.mergeRemote(userId, LibraryEntry.LIST_RECENTS,
+                    recents.subList(0, Math.min(recents.size(), LibraryStore.MAX_RECENTS)));
+            return null;
+        }, applied);
+    }
+
+    // Distinct tracks of the plays, newest first
+    private List<Track> recentsFrom(List<DocumentSnapshot> plays) {
+        List<Track> recents = new ArrayList<>();
+        for (DocumentSnapshot play : plays) {
+            Track track = convertMapToTrack(play.getData());
+            if (track != null) addDistinct(recents, track);
+        }
+        return recents;
+    }
+
+    private DocumentReference userDocument(String userId) {
+        return firestore.collection(USERS_COLLECTION).document(userId);
+    }
+
+    private CollectionReference playsCollection(String userId) {
+        return userDocument(userId).collection(PLAYS_COLLECTION);
+    }
+
+    // Derived from the play, so pushing it again after a failure does not add a second one
+    private DocumentReference playDocument(String userId, long trackId, long playedAt) {
+        return playsCollection(userId).document(trackId + "_" + playedAt);
+    }
+
+    private CollectionReference favoritesCollection(String userId) {
+        return userDocument(userId).collection(FAVORITES_COLLECTION);
+    }
+
+    private DocumentReference favoriteDocument(String userId, long trackId) {
+        return favoritesCollection(userId).document(String.valueOf(trackId));
+    }
+
+    private static boolean isSet(DocumentSnapshot document, String field) {
+        return document != null && document.exists() && Boolean.TRUE.equals(document.getBoolean(field));
+    }
+
+    // Adds the track unless a newer entry for it is already in the list
+    private static void addDistinct(List<Track> newestFirst, Track track) {
+        for (Track existing : newestFirst) {
+            if (existing.getId() == track.getId()) return;
+        }
+        newestFirst.add(track);
+    }
+
+    // Null when the document has no such list
+    @SuppressWarnings("unchecked")
+    private List<Track> readTracks(DocumentSnapshot document, String field) {
+        if (document == null || !document.exists() || !document.contains(field)) return null;
+        try {
+            return convertMapListToTracks((List<Map<String, Object>>) document.get(field));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error parsing " + field + " from Firestore", e);
+            return null;
+        }
+    }
+
+    private Map<String, Object> favoriteData(Track track, long addedAt) {
+        Map<String, Object> trackMap = convertTrackToMap(track, ADDED_AT_FIELD, addedAt);
+        trackMap.put(UPDATED_AT_FIELD, FieldValue.serverTimestamp());
+        return trackMap;
+    }
+
+    // Replaces the favorite, so other devices listening for newer documents see it go
+    private static Map<String, Object> tombstoneData(long now) {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put(DELETED_FIELD, true);
+        tombstone.put(UPDATED_AT_FIELD, FieldValue.serverTimestamp());
+        tombstone.put(EXPIRE_AT_FIELD, new Timestamp(new Date(now + TOMBSTONE_TTL_MS)));
+        return tombstone;
+    }
+
+    private Map<String, Object> convertTrackToMap(Track track, String timeField, long time) {
+        Map<String, Object> trackMap = TrackJson.toMap(track);
+        trackMap.put(timeField, time);
+        return trackMap;
+    }
+
+    private Track convertMapToTrack(Map<String, Object> trackMap) {
+        if (trackMap == null) return null;
+        try {
+            return TrackJson.fromMap(trackMap);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error converting map to track", e);
+            return null;
+        }
+    }
+
+    private List<Track> convertMapListToTracks(List<Map<String, Object>> mapList) {
+        List<Track> tracks = new ArrayList<>();
+        if (mapList == null) {
+            return tracks;
+        }
+        for (Map<String, Object> trackMap : mapList) {
+            Track track = convertMapToTrack(trackMap);
+            if (track != null) {
+                tracks.add(track);
+            }
+        }
+        return tracks;
+    }
+}
@@ -2,30 +2,24 @@ package com.example.melodix.listener;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.example.melodix.database.DownloadedMusicContract;
+import com.example.melodix.database.DownloadedMusicContract.DownloadQueueEntry;
 import com.example.melodix.database.DownloadedMusicDbHelper;
 import com.example.melodix.model.Track;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 
 public class MusicDownloader {
     private static final String TAG = "MusicDownloader";
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(4);
     private static final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     public interface DownloadCallback {
@@ -35,6 +29,11 @@ public class MusicDownloader {
         void onDownloadError(String message);
     }
 
+    public interface BulkDownloadCallback {
+        void onProgress(int completed, int failed, int total);
+        void onComplete(int completed, int failed);
+    }
+
     public static void downloadTrack(Context context, Track track, DownloadCallback callback) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         String userId = currentUser != null ? currentUser.getUid() : "anonymous";
@@ -45,9 +44,7 @@ public class MusicDownloader {
         }
         if (isTrackDownloaded(context, track.getId())) {
             mainHandler.post(() -> {
-                File downloadsDir = new File(context.getExternalFilesDir(null), "downloads");
-                String filename = track.getId() + "_" + sanitizeFilename(track.getTitle()) + ".mp3";
-                File outputFile = new File(downloadsDir, filename);
+                File outputFile = outputFileFor(context, track);
                 if (outputFile.exists()) {
                     callback.onDownloadComplete(outputFile);
                 } else {
@@ -57,102 +54,58 @@ public class MusicDownloader {
             });
             return;
         }
-        File downloadsDir = new File(context.getExternalFilesDir(null), "downloads");
-        if (!downloadsDir.exists()) {
-            if (!downloadsDir.mkdirs()) {
-                mainHandler.post(() -> callback.onDownloadError("Could not create downloads directory"));
-                return;
-            }
-        }
-        String filename = track.getId() + "_" + sanitizeFilename(track.getTitle()) + ".mp3";
-        File outputFile = new File(downloadsDir, filename);
+        File outputFile = outputFileFor(context, track);
         if (outputFile.exists()) {
             mainHandler.post(() -> callback.onDownloadComplete(outputFile));
             return;
         }
 
         mainHandler.post(callback::onDownloadStarted);
+        DownloadQueueManager.getInstance(context)
+                .enqueue(track, DownloadQueueEntry.PRIORITY_USER, callback);
+    }
 
-        executorService.execute(() -> {
-            HttpURLConnection connection = null;
-            InputStream input = null;
-            FileOutputStream output = null;
+    /**
+     * Queues every track for download behind anything the user started by hand. Tracks
+     * that are already downloaded or have no preview are skipped. Finished downloads are
+     * saved to the database and to the cloud history in batches.
+     */
+    public static void downloadTracks(Context context, List<Track> tracks, BulkDownloadCallback callback) {
+        DownloadQueueManager.getInstance(context)
+                .enqueueAll(tracks, DownloadQueueEntry.PRIORITY_BULK, callback);
+    }
 
-            try {
-                URL url = new URL(track.getPreviewUrl());
-                connection = (HttpURLConnection) url.openConnection();
-                connection.connect();
+    /**
+     * Removes a queued or running download and its partial file.
+     */
+    public static void cancelDownload(Context context, long trackId) {
+        DownloadQueueManager.getInstance(context).cancel(trackId);
+    }
 
-                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                    throw new IOException("HTTP error code: " + connection.getResponseCode());
-                }
-                int fileLength = connection.getContentLength();
-                input = connection.getInputStream();
-                output = new FileOutputStream(outputFile);
-
-                byte[] data = new byte[4096];
-                long total = 0;
-                int count;
-
-                while ((count = input.read(data)) != -1) {
-                    total += count;
-                    if (fileLength > 0) {
-                        final int progress = (int) (total * 100 / fileLength);
-                        mainHandler.post(() -> callback.onDownloadProgress(progress));
-                    }
-
-                    output.write(data, 0, count);
-                }
-                saveTrackToDatabase(context, track, outputFile.getAbsolutePath());
-                saveToCloudDownloadHistory(context, track, outputFile.getAbsolutePath(), new UserPreferencesManager.DataCallback<Boolean>() {
-                    @Override
-                    public void onSuccess(Boolean success) {
-                        Log.d(TAG, "Successfully synced download to cloud: " + track.getTitle());
-                    }
-                    @Override
-                    public void onError(String error) {
-                        Log.w(TAG, "Failed to sync download to cloud (offline mode): " + error);
-                    }
-                });
-                mainHandler.post(() -> callback.onDownloadComplete(outputFile));
-
-            } catch (Exception e) {
-                Log.e(TAG, "Download error", e);
-                if (outputFile.exists()) {
-                    outputFile.delete();
-                }
-                mainHandler.post(() -> callback.onDownloadError("Download failed: " + e.getMessage()));
-            } finally {
-                try {
-                    if (output != null) output.close();
-                    if (input != null) input.close();
-                } catch (IOException ignored) { }
-
-                if (connection != null) connection.disconnect();
-            }
-        });
+    static File outputFileFor(Context context, Track track) {
+        File downloadsDir = new File(context.getExternalFilesDir(null), "downloads");
+        String filename = track.getId() + "_" + sanitizeFilename(track.getTitle()) + ".mp3";
+        return new File(downloadsDir, filename);
     }
-    private static void saveToCloudDownloadHistory(Context context, Track track, String localFilePath, UserPreferencesManager.DataCallback<Boolean> callback) {
+
+    /**
+     * One batched history write for many finished downloads.
+     */
+    static void saveToCloudDownloadHistory(Context context, List<Track> tracks, List<String> localFilePaths, UserPreferencesManager.DataCallback<Boolean> callback) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) {
             Log.w(TAG, "User not logged in, skipping cloud sync");
             if (callback != null) callback.onError("User not logged in");
             return;
         }
-        UserPreferencesManager.addToDownloadHistoryAsync(context, track, localFilePath, callback);
+        UserPreferencesManager.addToDownloadHistoryBatchAsync(context, tracks, localFilePaths, callback);
     }
 
     private static String sanitizeFilename(String input) {
         return input.replaceAll("[\\\\/:*?\"<>|]", "_");
     }
 
-    private static void saveTrackToDatabase(Context context, Track track, String filePath) {
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        String userId = currentUser != null ? currentUser.getUid() : "anonymous";
-
-        DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(context);
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
+    static ContentValues downloadedTrackValues(String userId, Track track, String filePath) {
         ContentValues values = new ContentValues();
         values.put(DownloadedMusicContract.TrackEntry.COLUMN_USER_ID, userId);
         values.put(DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID, track.getId());
@@ -164,9 +117,7 @@ public class MusicDownloader {
             values.put(DownloadedMusicContract.TrackEntry.COLUMN_ALBUM_ART, track.getAlbum().getCoverMedium());
         }
         values.put(DownloadedMusicContract.TrackEntry.COLUMN_DOWNLOAD_DATE, System.currentTimeMillis());
-
-        db.insert(DownloadedMusicContract.TrackEntry.TABLE_NAME, null, values);
-        db.close();
+        return values;
     }
 
     public static boolean isTrackDownloaded(Context context, long trackId) {
@@ -176,37 +127,20 @@ public class MusicDownloader {
     }
 
     public static boolean isTrackDownloaded(Context context, String userId, long trackId) {
-        DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(context);
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String selection = DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " = ? AND " +
-                DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID + " = ?";
-        String[] selectionArgs = { userId, String.valueOf(trackId) };
-
-        boolean isDownloaded = false;
-
         try {
-            android.database.Cursor cursor = db.query(
-                    DownloadedMusicContract.TrackEntry.TABLE_NAME,
-                    new String[] { DownloadedMusicContract.TrackEntry._ID },
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    null
-            );
-
-            isDownloaded = cursor != null && cursor.getCount() > 0;
-
-            if (cursor != null) {
-                cursor.close();
-            }
-        } catch (Exception e) {
+            return DownloadedMusicDbHelper.getInstance(context).isTrackDownloaded(userId, trackId);
+        } catch (SQLiteException e) {
             Log.e(TAG, "Error checking if track is downloaded", e);
-        } finally {
-            db.close();
+            return false;
         }
+    }
 
-        return isDownloaded;
+    /**
+     * @return where the current user's download of the track was saved, or null
+     */
+    public static String getDownloadedFilePath(Context context, long trackId) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUid() : "anonymous";
+        return DownloadedMusicDbHelper.getInstance(context).getTrackFilePath(userId, trackId);
     }
 }
\ No newline at end of file
@@ -8,53 +8,51 @@ import com.example.melodix.database.DownloadedAlbum;
 import com.example.melodix.database.DownloadedArtist;
 import com.example.melodix.database.DownloadedMusicDbHelper;
 import com.example.melodix.database.DownloadedTrack;
+import com.example.melodix.database.DownloadedTrackIndex;
 import com.example.melodix.fragment.DownloadedMusicFragment;
-import com.example.melodix.model.Album;
-import com.example.melodix.model.Artist;
 import com.example.melodix.model.Track;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.SetOptions;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import com.google.gson.reflect.TypeToken;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.io.File;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.lang.reflect.Field;
 
 public class UserPreferencesManager {
     private static final String TAG = "UserPrefsManager";
     private static final String PREF_NAME_PREFIX = "MelodixPrefs_";
     private static final String PREF_ANONYMOUS = "MelodixPrefs_anonymous";
-    private static final String KEY_CURRENT_TRACK = "currentTrack";
-    private static final String KEY_PLAYBACK_POSITION = "playbackPosition";
-    private static final String KEY_PLAYBACK_QUEUE = "playbackQueue";
     private static final String KEY_PROFILE_IMAGE_URL = "profileImageUrl";
     private static final String USERS_COLLECTION = "users";
-    private static final String FAVORITES_FIELD = "favorites";
-    private static final String RECENT_TRACKS_FIELD = "recentTracks";
     private static final String PROFILE_IMAGE_FIELD = "profileImageUrl";
     private static final String DISPLAY_NAME_FIELD = "displayName";
     private static final String EMAIL_FIELD = "email";
     private static final String CREATED_AT_FIELD = "createdAt";
     private static final String UPDATED_AT_FIELD = "updatedAt";
+    // Firestore rejects batches with more writes than this
+    private static final int MAX_BATCH_WRITES = 500;
+    private static final String DOWNLOADED_AT_FIELD = "downloadedAt";
+    private static final String DELETED_FIELD = "deleted";
+    // A Firestore TTL policy on this field clears out old tombstones; see the README
+    private static final String EXPIRE_AT_FIELD = "expireAt";
+    private static final long TOMBSTONE_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final int HISTORY_PAGE_SIZE = 200;
 
     private static FirebaseFirestore db = FirebaseFirestore.getInstance();
 
@@ -63,6 +61,14 @@ public class UserPreferencesManager {
         void onError(String error);
     }
 
+    public interface DownloadHistoryListener {
+        /** The whole history; comes first. */
+        void onHistoryLoaded(List<Track> history);
+
+        /** Entries added, changed or removed since the last delivery. */
+        void onHistoryChanged(List<Track> added, List<Track> modified, long[] removed);
+    }
+
     // User Profile Management Methods
     public static void getUserProfileAsync(Context context, DataCallback<Map<String, Object>> callback) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
@@ -262,64 +268,6 @@ public class UserPreferencesManager {
         return url;
     }
 
-    private static Gson getGson() {
-        JsonSerializer<Track> trackSerializer = new JsonSerializer<Track>() {
-            @Override
-            public JsonElement serialize(Track track, Type typeOfSrc, JsonSerializationContext context) {
-                JsonObject jsonObject = new JsonObject();
-                jsonObject.addProperty("_class", track.getClass().getName());
-                jsonObject.addProperty("id", track.getId());
-                jsonObject.addProperty("title", track.getTitle());
-                jsonObject.addProperty("duration", track.getDuration());
-                jsonObject.addProperty("previewUrl", track.getPreviewUrl());
-                jsonObject.addProperty("isDownloaded", track.isDownloaded());
-                if (track.getArtist() != null) {
-                    jsonObject.add("artist", context.serialize(track.getArtist()));
-                }
-                if (track.getAlbum() != null) {
-                    jsonObject.add("album", context.serialize(track.getAlbum()));
-                }
-                return jsonObject;
-            }
-        };
-        JsonDeserializer<Track> trackDeserializer = new JsonDeserializer<Track>() {
-            @Override
-            public Track deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-                JsonObject jsonObject = json.getAsJsonObject();
-                Track track;
-                if (jsonObject.has("_class")) {
-                    String className = jsonObject.get("_class").getAsString();
-                    if (className.equals(DownloadedTrack.class.getName())) {
-                        track = new DownloadedTrack();
-                    } else {
-                        track = new Track();
-                    }
-                } else {
-                    track = new Track();
-                }
-                if (jsonObject.has("id")) track.setId(jsonObject.get("id").getAsLong());
-                if (jsonObject.has("title")) track.setTitle(jsonObject.get("title").getAsString());
-                if (jsonObject.has("duration")) track.setDuration(jsonObject.get("duration").getAsInt());
-                if (jsonObject.has("previewUrl")) track.setPreviewUrl(jsonObject.get("previewUrl").getAsString());
-
-                if (jsonObject.has("artist")) {
-                    Artist artist = context.deserialize(jsonObject.get("artist"), Artist.class);
-                    track.setArtist(artist);
-                }
-
-                if (jsonObject.has("album")) {
-                    Album album = context.deserialize(jsonObject.get("album"), Album.class);
-                    track.setAlbum(album);
-                }
-                return track;
-            }
-        };
-        return new GsonBuilder()
-                .registerTypeAdapter(Track.class, trackSerializer)
-                .registerTypeAdapter(Track.class, trackDeserializer)
-                .create();
-    }
-
     public static SharedPreferences getUserPreferences(Context context) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         String prefName;
@@ -331,327 +279,156 @@ public class UserPreferencesManager {
         return context.getSharedPreferences(prefName, Context.MODE_PRIVATE);
     }
 
-    // Rest of your existing methods remain unchanged...
-    public static void getFavoriteTracksAsync(Context context, DataCallback<List<Track>> callback) {
+    /**
+     * Listens to the user's cloud download history. The whole history is delivered first and
+     * after that only the entries that change. When nobody is signed in, or the history cannot
+     * be read, the local downloads stand in for it. Returns null when there is nothing to remove.
+     *
+     * The history is read in pages of {@link #HISTORY_PAGE_SIZE}, and the listener only asks
+     * for entries stamped after the newest of them; removed entries are kept as tombstones so
+     * that it sees them go.
+     */
+    public static ListenerRegistration listenToDownloadHistory(Context context, DownloadHistoryListener listener) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+
         if (currentUser == null) {
-            List<Track> localFavorites = getFavoriteTracksLocal(context);
-            callback.onSuccess(localFavorites);
-            return;
+            // Fallback to local downloads only
+            listener.onHistoryLoaded(getLocalDownloads(context));
+            return null;
         }
+
         String userId = currentUser.getUid();
-        DocumentReference userDoc = db.collection(USERS_COLLECTION).document(userId);
-        userDoc.get().addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                DocumentSnapshot document = task.getResult();
-                if (document.exists() && document.contains(FAVORITES_FIELD)) {
-                    try {
-                        List<Map<String, Object>> favoritesData = (List<Map<String, Object>>) document.get(FAVORITES_FIELD);
-                        List<Track> favorites = convertMapListToTracks(favoritesData);
-                        saveFavoriteTracksLocal(context, favorites);
-                        callback.onSuccess(favorites);
-                        Log.d(TAG, "Loaded " + favorites.size() + " favorites from Firestore");
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing favorites from Firestore", e);
-                        List<Track> localFavorites = getFavoriteTracksLocal(context);
-                        callback.onSuccess(localFavorites);
-                    }
-                } else {
-                    List<Track> localFavorites = getFavoriteTracksLocal(context);
-                    if (!localFavorites.isEmpty()) {
-                        saveFavoriteTracksAsync(context, localFavorites, new DataCallback<Boolean>() {
-                            @Override
-                            public void onSuccess(Boolean success) {
-                                Log.d(TAG, "Migrated local favorites to Firestore");
-                            }
-                            @Override
-                            public void onError(String error) {
-                                Log.e(TAG, "Failed to migrate favorites: " + error);
-                            }
-                        });
-                    }
-                    callback.onSuccess(localFavorites);
+        HistoryRegistration registration = new HistoryRegistration();
+        loadDownloadHistory(context, userId, null, null, new ArrayList<>(), registration, listener);
+        return registration;
+    }
+
+    // Reads the history one page at a time, newest first, then listens for what comes after it
+    private static void loadDownloadHistory(Context context, String userId, DocumentSnapshot after,
+                                            Timestamp newest, List<Track> downloadHistory,
+                                            HistoryRegistration registration, DownloadHistoryListener listener) {
+        Query page = downloadHistoryCollection(userId)
+                .orderBy(DOWNLOADED_AT_FIELD, Query.Direction.DESCENDING)
+                .limit(HISTORY_PAGE_SIZE);
+        if (after != null) page = page.startAfter(after);
+        page.get().addOnCompleteListener(task -> {
+            if (registration.removed) return;
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Error loading download history", task.getException());
+                // Fallback to local downloads
+                listener.onHistoryLoaded(getLocalDownloads(context));
+                return;
+            }
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            Timestamp newestSoFar = newest;
+            if (newestSoFar == null && !documents.isEmpty()) {
+                newestSoFar = documents.get(0).getTimestamp(DOWNLOADED_AT_FIELD);
+            }
+            for (DocumentSnapshot doc : documents) {
+                if (isTombstone(doc)) continue;
+                Track track = convertHistoryDocument(context, userId, doc);
+                if (track != null) {
+                    downloadHistory.add(track);
                 }
-            } else {
-                Log.e(TAG, "Error getting favorites from Firestore", task.getException());
-                List<Track> localFavorites = getFavoriteTracksLocal(context);
-                callback.onSuccess(localFavorites);
             }
-        });
-    }
-
-    // Continue with all your existing methods...
-    // (I'm keeping the rest of the code the same to maintain functionality)
-
-    public static void saveFavoriteTracksAsync(Context context, List<Track> favorites, DataCallback<Boolean> callback) {
-        saveFavoriteTracksLocal(context, favorites);
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        if (currentUser == null) {
-            Log.w(TAG, "User not logged in, favorites saved locally only");
-            if (callback != null) callback.onSuccess(true);
-            return;
-        }
-        String userId = currentUser.getUid();
-        DocumentReference userDoc = db.collection(USERS_COLLECTION).document(userId);
-        List<Map<String, Object>> favoritesData = convertTracksToMapList(favorites);
-
-        Map<String, Object> data = new HashMap<>();
-        data.put(FAVORITES_FIELD, favoritesData);
-
-        userDoc.set(data, SetOptions.merge()).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                Log.d(TAG, "Favorites saved to Firestore successfully");
-                if (callback != null) callback.onSuccess(true);
-            } else {
-                Log.e(TAG, "Error saving favorites to Firestore", task.getException());
-                if (callback != null) callback.onError(task.getException().getMessage());
+            if (documents.size() == HISTORY_PAGE_SIZE) {
+                loadDownloadHistory(context, userId, documents.get(documents.size() - 1), newestSoFar,
+                        downloadHistory, registration, listener);
+                return;
             }
+            listener.onHistoryLoaded(downloadHistory);
+            Log.d(TAG, "Loaded " + downloadHistory.size() + " download history items");
+            registration.attach(listenToDownloadHistoryChanges(context, userId,
+                    newestSoFar != null ? newestSoFar : new Timestamp(new Date(0)), listener));
         });
     }
 
-    public static void getRecentTracksAsync(Context context, DataCallback<List<Track>> callback) {
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-
-        if (currentUser == null) {
-            List<Track> localRecent = getRecentTracksLocal(context);
-            callback.onSuccess(localRecent);
-            return;
-        }
-
-        String userId = currentUser.getUid();
-        DocumentReference userDoc = db.collection(USERS_COLLECTION).document(userId);
+    private static ListenerRegistration listenToDownloadHistoryChanges(Context context, String userId,
+                                                                       Timestamp after, DownloadHistoryListener listener) {
+        return downloadHistoryCollection(userId)
+                .whereGreaterThan(DOWNLOADED_AT_FIELD, after)
+                .orderBy(DOWNLOADED_AT_FIELD)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        Log.e(TAG, "Error listening to download history", error);
+                        return;
+                    }
 
-        userDoc.get().addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                DocumentSnapshot document = task.getResult();
-                if (document.exists() && document.contains(RECENT_TRACKS_FIELD)) {
-                    try {
-                        List<Map<String, Object>> recentData = (List<Map<String, Object>>) document.get(RECENT_TRACKS_FIELD);
-                        List<Track> recentTracks = convertMapListToTracks(recentData);
-                        saveRecentTracksLocal(context, recentTracks);
-                        callback.onSuccess(recentTracks);
-                        Log.d(TAG, "Loaded " + recentTracks.size() + " recent tracks from Firestore");
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing recent tracks from Firestore", e);
-                        List<Track> localRecent = getRecentTracksLocal(context);
-                        callback.onSuccess(localRecent);
+                    List<Track> added = new ArrayList<>();
+                    List<Track> modified = new ArrayList<>();
+                    List<Long> removed = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        // Leaving the query means a real delete or an expired tombstone
+                        if (change.getType() == DocumentChange.Type.REMOVED || isTombstone(change.getDocument())) {
+                            Long trackId = change.getDocument().getLong("trackId");
+                            if (trackId != null) removed.add(trackId);
+                            continue;
+                        }
+                        Track track = convertHistoryDocument(context, userId, change.getDocument());
+                        if (track == null) continue;
+                        if (change.getType() == DocumentChange.Type.ADDED) {
+                            added.add(track);
+                        } else {
+                            modified.add(track);
+                        }
                     }
-                } else {
-                    List<Track> localRecent = getRecentTracksLocal(context);
-                    callback.onSuccess(localRecent);
-                }
-            } else {
-                Log.e(TAG, "Error getting recent tracks from Firestore", task.getException());
-                List<Track> localRecent = getRecentTracksLocal(context);
-                callback.onSuccess(localRecent);
-            }
-        });
+                    if (added.isEmpty() && modified.isEmpty() && removed.isEmpty()) return;
+                    long[] removedIds = new long[removed.size()];
+                    for (int i = 0; i < removedIds.length; i++) {
+                        removedIds[i] = removed.get(i);
+                    }
+                    listener.onHistoryChanged(added, modified, removedIds);
+                    Log.d(TAG, "Download history changed: +" + added.size() + " ~" + modified.size()
+                            + " -" + removedIds.length);
+                });
     }
 
-    public static void saveRecentTracksAsync(Context context, List<Track> recentTracks, DataCallback<Boolean> callback) {
-        saveRecentTracksLocal(context, recentTracks);
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        if (currentUser == null) {
-            Log.w(TAG, "User not logged in, recent tracks saved locally only");
-            if (callback != null) callback.onSuccess(true);
-            return;
-        }
-        String userId = currentUser.getUid();
-        DocumentReference userDoc = db.collection(USERS_COLLECTION).document(userId);
-        List<Map<String, Object>> recentData = convertTracksToMapList(recentTracks);
-
-        Map<String, Object> data = new HashMap<>();
-        data.put(RECENT_TRACKS_FIELD, recentData);
+    // Stands in for the change listener, which is only attached once the history is read
+    private static class HistoryRegistration implements ListenerRegistration {
+        private boolean removed;
+        private ListenerRegistration changes;
 
-        userDoc.set(data, SetOptions.merge()).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                Log.d(TAG, "Recent tracks saved to Firestore successfully");
-                if (callback != null) callback.onSuccess(true);
+        void attach(ListenerRegistration changes) {
+            if (removed) {
+                changes.remove();
             } else {
-                Log.e(TAG, "Error saving recent tracks to Firestore", task.getException());
-                if (callback != null) callback.onError(task.getException().getMessage());
+                this.changes = changes;
             }
-        });
-    }
-
-    public static List<Track> getFavoriteTracks(Context context) {
-        return getFavoriteTracksLocal(context);
-    }
-
-    public static List<Track> getRecentTracks(Context context) {
-        return getRecentTracksLocal(context);
-    }
-
-    public static void saveRecentTracks(Context context, List<Track> tracks) {
-        saveRecentTracksLocal(context, tracks);
-    }
-
-    private static List<Track> getFavoriteTracksLocal(Context context) {
-        SharedPreferences prefs = getUserPreferences(context);
-        String json = prefs.getString("favorites", null);
-
-        if (json == null) {
-            return new ArrayList<>();
-        }
-
-        try {
-            Gson gson = getGson();
-            Type type = new TypeToken<ArrayList<Track>>() {}.getType();
-            List<Track> tracks = gson.fromJson(json, type);
-            return tracks != null ? tracks : new ArrayList<>();
-        } catch (Exception e) {
-            Log.e(TAG, "Error deserializing favorite tracks: " + e.getMessage(), e);
-            return new ArrayList<>();
-        }
-    }
-
-    private static void saveFavoriteTracksLocal(Context context, List<Track> tracks) {
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        try {
-            Gson gson = getGson();
-            String json = gson.toJson(tracks);
-            editor.putString("favorites", json);
-            editor.apply();
-            Log.d(TAG, "Saved " + tracks.size() + " favorites locally");
-        } catch (Exception e) {
-            Log.e(TAG, "Error serializing favorite tracks: " + e.getMessage(), e);
-        }
-    }
-
-    private static List<Track> getRecentTracksLocal(Context context) {
-        SharedPreferences prefs = getUserPreferences(context);
-        String json = prefs.getString("recentTracks", null);
-
-        if (json == null) {
-            return new ArrayList<>();
         }
 
-        try {
-            Gson gson = getGson();
-            Type type = new TypeToken<ArrayList<Track>>() {}.getType();
-            List<Track> tracks = gson.fromJson(json, type);
-            return tracks != null ? tracks : new ArrayList<>();
-        } catch (Exception e) {
-            Log.e(TAG, "Error deserializing recent tracks: " + e.getMessage(), e);
-            return new ArrayList<>();
+        @Override
+        public void remove() {
+            removed = true;
+            if (changes != null) changes.remove();
         }
     }
 
-    private static void saveRecentTracksLocal(Context context, List<Track> tracks) {
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        try {
-            Gson gson = getGson();
-            String json = gson.toJson(tracks);
-            editor.putString("recentTracks", json);
-            editor.apply();
-            Log.d(TAG, "Saved " + tracks.size() + " recent tracks locally");
-        } catch (Exception e) {
-            Log.e(TAG, "Error serializing recent tracks: " + e.getMessage(), e);
-        }
-    }
-
-    public static void getDownloadHistoryAsync(Context context, DataCallback<List<Track>> callback) {
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-
-        if (currentUser == null) {
-            // Fallback to local downloads only
-            List<Track> localDownloads = getLocalDownloads(context);
-            callback.onSuccess(localDownloads);
-            return;
-        }
-
-        String userId = currentUser.getUid();
-        db.collection(USERS_COLLECTION)
+    private static CollectionReference downloadHistoryCollection(String userId) {
+        return db.collection(USERS_COLLECTION)
                 .document(userId)
-                .collection("downloadHistory")
-                .orderBy("downloadedAt", Query.Direction.DESCENDING)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        List<Track> downloadHistory = new ArrayList<>();
-
-                        for (DocumentSnapshot doc : task.getResult()) {
-                            Track track = convertDocumentToTrack(doc);
-                            if (track != null) {
-                                boolean isLocal = isTrackAvailableLocally(context, track);
-                                setTrackDownloadedStatus(track, isLocal);
+                .collection("downloadHistory");
+    }
 
-                                downloadHistory.add(track);
-                            }
-                        }
-                        callback.onSuccess(downloadHistory);
-                        Log.d(TAG, "Loaded " + downloadHistory.size() + " download history items");
-                    } else {
-                        Log.e(TAG, "Error getting download history", task.getException());
-                        // Fallback to local downloads
-                        List<Track> localDownloads = getLocalDownloads(context);
-                        callback.onSuccess(localDownloads);
-                    }
-                });
+    private static boolean isTombstone(DocumentSnapshot doc) {
+        return Boolean.TRUE.equals(doc.getBoolean(DELETED_FIELD));
     }
 
-    public static void addToRecentTracksAsync(Context context, Track track, DataCallback<Boolean> callback) {
-        if (track == null) {
-            if (callback != null) callback.onError("Track is null");
-            return;
+    private static Track convertHistoryDocument(Context context, String userId, DocumentSnapshot doc) {
+        Track track = convertDocumentToTrack(doc);
+        if (track != null) {
+            boolean isLocal = isTrackAvailableLocally(context, userId, track);
+            setTrackDownloadedStatus(track, isLocal);
         }
-        getRecentTracksAsync(context, new DataCallback<List<Track>>() {
-            @Override
-            public void onSuccess(List<Track> recentTracks) {
-                recentTracks.removeIf(t -> t != null && t.getId() == track.getId());
-                recentTracks.add(0, track);
-                if (recentTracks.size() > 10) {
-                    recentTracks = new ArrayList<>(recentTracks.subList(0, 10));
-                }
-                saveRecentTracksAsync(context, recentTracks, callback);
-                Log.d(TAG, "Added track to recent: " + track.getTitle());
-            }
-
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "Error getting recent tracks for add: " + error);
-                try {
-                    List<Track> localRecent = getRecentTracksLocal(context);
-                    localRecent.removeIf(t -> t != null && t.getId() == track.getId());
-                    localRecent.add(0, track);
-
-                    if (localRecent.size() > 10) {
-                        localRecent = new ArrayList<>(localRecent.subList(0, 10));
-                    }
-
-                    saveRecentTracksLocal(context, localRecent);
-                    if (callback != null) callback.onSuccess(true);
-                } catch (Exception e) {
-                    if (callback != null) callback.onError("Failed to add to recent tracks: " + e.getMessage());
-                }
-            }
-        });
+        return track;
     }
 
     private static void setTrackDownloadedStatus(Track track, boolean isDownloaded) {
-        try {
-            if (track instanceof DownloadedTrack) {
-                Field downloadedField = DownloadedTrack.class.getDeclaredField("isDownloaded");
-                downloadedField.setAccessible(true);
-                downloadedField.set(track, isDownloaded);
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Could not set downloaded status for track: " + track.getTitle(), e);
+        if (track instanceof DownloadedTrack) {
+            ((DownloadedTrack) track).setDownloaded(isDownloaded);
         }
     }
 
-    public static void addToDownloadHistoryAsync(Context context, Track track, String localFilePath, DataCallback<Boolean> callback) {
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-
-        if (currentUser == null) {
-            if (callback != null) callback.onError("User not logged in");
-            return;
-        }
-
-        String userId = currentUser.getUid();
-
+    private static Map<String, Object> downloadHistoryData(Track track, String localFilePath) {
         Map<String, Object> downloadData = new HashMap<>();
         downloadData.put("trackId", track.getId());
         downloadData.put("title", track.getTitle());
@@ -659,8 +436,12 @@ public class UserPreferencesManager {
         downloadData.put("albumArt", track.getAlbum() != null ? track.getAlbum().getCoverMedium() : null);
         downloadData.put("previewUrl", track.getPreviewUrl());
         downloadData.put("duration", track.getDuration());
-        downloadData.put("downloadedAt", FieldValue.serverTimestamp());
+        downloadData.put(DOWNLOADED_AT_FIELD, FieldValue.serverTimestamp());
         downloadData.put("localFilePath", localFilePath);
+        // Written with merge, so a download after a removal has to clear the tombstone,
+        // expiry included, or the TTL policy would delete the entry
+        downloadData.put(DELETED_FIELD, FieldValue.delete());
+        downloadData.put(EXPIRE_AT_FIELD, FieldValue.delete());
 
         if (localFilePath != null) {
             File file = new File(localFilePath);
@@ -668,12 +449,22 @@ public class UserPreferencesManager {
                 downloadData.put("fileSize", file.length());
             }
         }
+        return downloadData;
+    }
 
-        db.collection(USERS_COLLECTION)
-                .document(userId)
-                .collection("downloadHistory")
+    public static void addToDownloadHistoryAsync(Context context, Track track, String localFilePath, DataCallback<Boolean> callback) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+
+        if (currentUser == null) {
+            if (callback != null) callback.onError("User not logged in");
+            return;
+        }
+
+        String userId = currentUser.getUid();
+
+        downloadHistoryCollection(userId)
                 .document(String.valueOf(track.getId()))
-                .set(downloadData, SetOptions.merge())
+                .set(downloadHistoryData(track, localFilePath), SetOptions.merge())
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Log.d(TAG, "Download history saved for: " + track.getTitle());
@@ -685,6 +476,53 @@ public class UserPreferencesManager {
                 });
     }
 
+    /**
+     * Saves many download history entries with batched writes, {@link #MAX_BATCH_WRITES}
+     * documents per commit, instead of one request per track.
+     *
+     * @param localFilePaths file path per track, same order as {@code tracks}
+     */
+    public static void addToDownloadHistoryBatchAsync(Context context, List<Track> tracks, List<String> localFilePaths, DataCallback<Boolean> callback) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+
+        if (currentUser == null) {
+            if (callback != null) callback.onError("User not logged in");
+            return;
+        }
+        if (tracks.isEmpty()) {
+            if (callback != null) callback.onSuccess(true);
+            return;
+        }
+
+        CollectionReference history = downloadHistoryCollection(currentUser.getUid());
+
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int start = 0; start < tracks.size(); start += MAX_BATCH_WRITES) {
+            int end = Math.min(start + MAX_BATCH_WRITES, tracks.size());
+            WriteBatch batch = db.batch();
+            for (int i = start; i < end; i++) {
+                Track track = tracks.get(i);
+                batch.set(history.document(String.valueOf(track.getId())),
+                        downloadHistoryData(track, localFilePaths.get(i)), SetOptions.merge());
+            }
+            commits.add(batch.commit());
+        }
+
+        Tasks.whenAllComplete(commits).addOnCompleteListener(task -> {
+            for (Task<Void> commit : commits) {
+                if (!commit.isSuccessful()) {
+                    Log.e(TAG, "Error saving download history batch", commit.getException());
+                    if (callback != null) callback.onError(commit.getException() != null
+                            ? commit.getException().getMessage() : "Batch write failed");
+                    return;
+                }
+            }
+            Log.d(TAG, "Download history saved for " + tracks.size() + " tracks in "
+                    + commits.size() + " batches");
+            if (callback != null) callback.onSuccess(true);
+        });
+    }
+
     public static void removeFromDownloadHistoryAsync(Context context, Track track, DataCallback<Boolean> callback) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
 
@@ -695,11 +533,15 @@ public class UserPreferencesManager {
 
         String userId = currentUser.getUid();
 
-        db.collection(USERS_COLLECTION)
-                .document(userId)
-                .collection("downloadHistory")
+        // A tombstone rather than a delete, so listeners on other devices see the entry go
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("trackId", track.getId());
+        tombstone.put(DELETED_FIELD, true);
+        tombstone.put(DOWNLOADED_AT_FIELD, FieldValue.serverTimestamp());
+        tombstone.put(EXPIRE_AT_FIELD, new Timestamp(new Date(System.currentTimeMillis() + TOMBSTONE_TTL_MS)));
+        downloadHistoryCollection(userId)
                 .document(String.valueOf(track.getId()))
-                .delete()
+                .set(tombstone)
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Log.d(TAG, "Removed from download history: " + track.getTitle());
@@ -712,30 +554,18 @@ public class UserPreferencesManager {
     }
 
     private static List<Track> getLocalDownloads(Context context) {
-        DownloadedMusicDbHelper dbHelper = new DownloadedMusicDbHelper(context);
+        DownloadedMusicDbHelper dbHelper = DownloadedMusicDbHelper.getInstance(context);
         return DownloadedMusicFragment.getDownloadedTracksFromDb(dbHelper);
     }
 
-    private static boolean isTrackAvailableLocally(Context context, Track track) {
-        List<Track> localTracks = getLocalDownloads(context);
-        return localTracks.stream().anyMatch(local -> local.getId() == track.getId());
+    private static boolean isTrackAvailableLocally(Context context, String userId, Track track) {
+        return DownloadedTrackIndex.getInstance(context).contains(userId, track.getId());
     }
 
     private static Track convertDocumentToTrack(DocumentSnapshot doc) {
         try {
-            boolean isLocallyAvailable = false;
-            DownloadedTrack track = new DownloadedTrack() {
-                private boolean downloaded = false;
-
-                @Override
-                public boolean isDownloaded() {
-                    return downloaded;
-                }
-
-                public void setDownloadedStatus(boolean status) {
-                    this.downloaded = status;
-                }
-            };
+            DownloadedTrack track = new DownloadedTrack();
+            track.setDownloaded(false);
 
             track.setId(doc.getLong("trackId"));
             track.setTitle(doc.getString("title"));
@@ -763,126 +593,6 @@ public class UserPreferencesManager {
         }
     }
 
-    private static List<Map<String, Object>> convertTracksToMapList(List<Track> tracks) {
-        List<Map<String, Object>> mapList = new ArrayList<>();
-        Gson gson = getGson();
-
-        for (Track track : tracks) {
-            try {
-                String json = gson.toJson(track);
-                Type type = new TypeToken<Map<String, Object>>() {}.getType();
-                Map<String, Object> trackMap = gson.fromJson(json, type);
-                mapList.add(trackMap);
-            } catch (Exception e) {
-                Log.e(TAG, "Error converting track to map: " + track.getTitle(), e);
-            }
-        }
-        return mapList;
-    }
-
-    private static List<Track> convertMapListToTracks(List<Map<String, Object>> mapList) {
-        List<Track> tracks = new ArrayList<>();
-        Gson gson = getGson();
-
-        if (mapList == null) {
-            return tracks;
-        }
-
-        for (Map<String, Object> trackMap : mapList) {
-            try {
-
-                String json = gson.toJson(trackMap);
-                Track track = gson.fromJson(json, Track.class);
-                if (track != null) {
-                    tracks.add(track);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error converting map to track", e);
-            }
-        }
-
-        return tracks;
-    }
-
-    public static void saveCurrentTrack(Context context, Track track) {
-        if (track == null) return;
-
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        try {
-            Gson gson = getGson();
-            String json = gson.toJson(track);
-            editor.putString(KEY_CURRENT_TRACK, json);
-            editor.apply();
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving current track: " + e.getMessage(), e);
-        }
-    }
-
-    public static void savePlaybackPosition(Context context, int position) {
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putInt(KEY_PLAYBACK_POSITION, position);
-        editor.apply();
-    }
-
-    public static void savePlaybackQueue(Context context, List<Track> queue) {
-        if (queue == null) return;
-
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        try {
-            Gson gson = getGson();
-            String json = gson.toJson(queue);
-            editor.putString(KEY_PLAYBACK_QUEUE, json);
-            editor.apply();
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving playback queue: " + e.getMessage(), e);
-        }
-    }
-
-    public static Track getCurrentTrack(Context context) {
-        SharedPreferences prefs = getUserPreferences(context);
-        String json = prefs.getString(KEY_CURRENT_TRACK, null);
-        if (json == null) {
-            return null;
-        }
-        try {
-            Gson gson = getGson();
-            return gson.fromJson(json, Track.class);
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading current track: " + e.getMessage(), e);
-            return null;
-        }
-    }
-
-    public static List<Track> getPlaybackQueue(Context context) {
-        SharedPreferences prefs = getUserPreferences(context);
-        String json = prefs.getString(KEY_PLAYBACK_QUEUE, null);
-        if (json == null) {
-            return new ArrayList<>();
-        }
-        try {
-            Gson gson = getGson();
-            Type type = new TypeToken<ArrayList<Track>>() {}.getType();
-            return gson.fromJson(json, type);
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading playback queue: " + e.getMessage(), e);
-            return new ArrayList<>();
-        }
-    }
-
-    public static void clearPlaybackState(Context context) {
-        if (context == null) return;
-
-        SharedPreferences prefs = getUserPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.remove(KEY_CURRENT_TRACK);
-        editor.remove(KEY_PLAYBACK_POSITION);
-        editor.remove(KEY_PLAYBACK_QUEUE);
-        editor.apply();
-    }
-
     public static void clearUserPreferences(Context context) {
         if (context == null) return;
 
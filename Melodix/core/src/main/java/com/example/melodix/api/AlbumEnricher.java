@@ -0,0 +1,191 @@
+package com.example.melodix.api;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.example.melodix.model.Album;
+import com.example.melodix.model.Track;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Fills in missing album details (release date, cover) for a list of tracks.
+ *
+ * Albums already in the {@link DeezerEntityStore} are used directly; tracks on the same
+ * album share one {@code getAlbum} request, at most {@code maxInFlight}
+ * requests run at a time, and every track is handed to the listener as soon as its album
+ * is known. Whatever is still outstanding when the deadline passes is cancelled and the
+ * list is delivered as-is.
+ *
+ * All callbacks arrive on the handler's thread, which must also be the thread Retrofit
+ * delivers responses on (the main thread on Android).
+ */
+class AlbumEnricher {
+    private static final String TAG = "AlbumEnricher";
+
+    interface Listener {
+        void onTrackReady(Track track);
+        void onFinished(List<Track> tracks, boolean timedOut);
+    }
+
+    private final DeezerApiService apiService;
+    private final DeezerEntityStore entityStore;
+    private final int maxInFlight;
+    private final long deadlineMs;
+    private final Handler handler;
+
+    AlbumEnricher(DeezerApiService apiService, DeezerEntityStore entityStore,
+                  int maxInFlight, long deadlineMs, Handler handler) {
+        this.apiService = apiService;
+        this.entityStore = entityStore;
+        this.maxInFlight = maxInFlight;
+        this.deadlineMs = deadlineMs;
+        this.handler = handler;
+    }
+
+    static boolean needsAlbumDetails(Track track) {
+        return track.getAlbum() != null && track.getAlbum().getReleaseDate() == null
+                && track.getAlbum().getId() > 0;
+    }
+
+    void enrich(List<Track> tracks, Listener listener) {
+        new Run(tracks, listener).start();
+    }
+
+    private class Run {
+        private final List<Track> tracks;
+        private final Listener listener;
+        private final Map<Long, List<Track>> waitingByAlbum = new LinkedHashMap<>();
+        private final ArrayDeque<Long> pendingAlbums = new ArrayDeque<>();
+        private final List<Call<Album>> inFlight = new ArrayList<>();
+        private final Runnable deadline = this::onDeadline;
+        private boolean finished = false;
+
+        Run(List<Track> tracks, Listener listener) {
+            this.tracks = tracks;
+            this.listener = listener;
+        }
+
+        void start() {
+            List<Track> ready = new ArrayList<>();
+            for (Track track : tracks) {
+                if (needsAlbumDetails(track)) {
+                    long albumId = track.getAlbum().getId();
+                    Album known = entityStore.getAlbum(albumId);
+                    if (known != null && known.getReleaseDate() != null) {
+                        applyAlbum(track, known);
+                        ready.add(track);
+                        continue;
+                    }
+                    List<Track> group = waitingByAlbum.get(albumId);
+                    if (group == null) {
+                        group = new ArrayList<>();
+                        waitingByAlbum.put(albumId, group);
+                    }
+                    group.add(track);
+                } else {
+                    ready.add(track);
+                }
+            }
+            pendingAlbums.addAll(waitingByAlbum.keySet());
+            Log.d(TAG, (tracks.size() - ready.size()) + " tracks need details from "
+                    + waitingByAlbum.size() + " albums");
+
+            for (Track track : ready) {
+                listener.onTrackReady(track);
+            }
+            if (waitingByAlbum.isEmpty()) {
+                finish(false);
+                return;
+            }
+            handler.postDelayed(deadline, deadlineMs);
+            fillSlots();
+        }
+
+        private void fillSlots() {
+            while (!finished && inFlight.size() < maxInFlight && !pendingAlbums.isEmpty()) {
+                final long albumId = pendingAlbums.poll();
+                final Call<Album> call = apiService.getAlbum(albumId);
+                inFlight.add(call);
+                call.enqueue(new Callback<Album>() {
+                    @Override
+                    public void onResponse(Call<Album> c, Response<Album> response) {
+                        Album album = response.isSuccessful() && response.body() != null
+                                ? entityStore.internAlbum(response.body()) : null;
+                        onAlbumResult(call, albumId, album);
+                    }
+
+                    @Override
+                    public void onFailure(Call<Album> c, Throwable t) {
+                        if (!c.isCanceled()) {
+                            Log.e(TAG, "Failed to fetch album details: " + t.getMessage());
+                        }
+                        onAlbumResult(call, albumId, null);
+                    }
+                });
+            }
+        }
+
+        private void onAlbumResult(Call<Album> call, long albumId, Album album) {
+            if (finished) return;
+            inFlight.remove(call);
+
+            List<Track> group = waitingByAlbum.remove(albumId);
+            if (group != null) {
+                for (Track track : group) {
+                    if (album != null && album.getReleaseDate() != null) {
+                        applyAlbum(track, album);
+                    }
+                    listener.onTrackReady(track);
+                }
+            }
+
+            if (waitingByAlbum.isEmpty()) {
+                Log.d(TAG, "Completed fetching album details for " + tracks.size() + " tracks");
+                finish(false);
+            } else {
+                fillSlots();
+            }
+        }
+
+        private void onDeadline() {
+            if (finished) return;
+            Log.w(TAG, "Album details deadline reached with " + waitingByAlbum.size()
+                    + " albums outstanding, returning partial results");
+            List<Call<Album>> outstanding = new ArrayList<>(inFlight);
+            finish(true);
+            for (Call<Album> call : outstanding) {
+                call.cancel();
+            }
+        }
+
+        private void finish(boolean timedOut) {
+            finished = true;
+            handler.removeCallbacks(deadline);
+            listener.onFinished(tracks, timedOut);
+        }
+    }
+
+    private static void applyAlbum(Track track, Album fullAlbum) {
+        String existingCover = null;
+        if (track.getAlbum() != null && track.getAlbum().getCoverMedium() != null) {
+            existingCover = track.getAlbum().getCoverMedium();
+        }
+
+        track.setAlbum(fullAlbum);
+
+        if (existingCover != null && track.getAlbum().getCoverMedium() == null) {
+            track.getAlbum().setCoverMedium(existingCover);
+        }
+        Log.d(TAG, "Updated track: " + track.getTitle() +
+                " with release date: " + fullAlbum.getReleaseDate());
+    }
+}
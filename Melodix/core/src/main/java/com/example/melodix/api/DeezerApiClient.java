@@ -0,0 +1,51 @@
+package com.example.melodix.api;
+
+import android.content.Context;
+
+import java.io.File;
+
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+public class DeezerApiClient {
+    private static final String BASE_URL = "https://api.deezer.com/";
+    private static final String CACHE_DIR_NAME = "deezer_http";
+    private static Retrofit retrofit = null;
+    private static File cacheDir = null;
+
+    /**
+     * Enables the on-disk response cache. Must be called before the first {@link #getClient()}
+     * call, which {@code MelodixApplication} does on startup.
+     */
+    public static synchronized void init(Context context) {
+        if (cacheDir == null) {
+            cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+        }
+    }
+
+    public static synchronized Retrofit getClient() {
+        if (retrofit == null) {
+            OkHttpClient okHttpClient;
+            if (cacheDir != null) {
+                okHttpClient = DeezerResponseCache.buildClient(cacheDir,
+                        DeezerResponseCache.DEFAULT_MAX_SIZE_BYTES,
+                        DeezerResponseCache.defaultRules());
+            } else {
+                okHttpClient = new OkHttpClient.Builder()
+                        .build();
+            }
+
+            retrofit = new Retrofit.Builder()
+                    .baseUrl(BASE_URL)
+                    .addConverterFactory(GsonConverterFactory.create())
+                    .client(okHttpClient)
+                    .build();
+        }
+        return retrofit;
+    }
+
+    public static DeezerApiService getApiService() {
+        return getClient().create(DeezerApiService.class);
+    }
+}
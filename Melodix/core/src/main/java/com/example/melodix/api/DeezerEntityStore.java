@@ -0,0 +1,168 @@
+package com.example.melodix.api;
+
+import android.util.Log;
+
+import com.example.melodix.model.Album;
+import com.example.melodix.model.Artist;
+import com.example.melodix.model.Track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide identity map for Deezer entities. Every track, album and artist that comes
+ * back from the API is passed through here so that all screens share one instance per id,
+ * and album/track lookups can be answered without another request.
+ */
+public class DeezerEntityStore {
+    private static final String TAG = "DeezerEntityStore";
+    private static DeezerEntityStore instance;
+
+    private static final int MAX_TRACKS = 1000;
+    private static final long MAX_TRACK_BYTES = 1024 * 1024;
+    private static final int MAX_ALBUMS = 500;
+    private static final long MAX_ALBUM_BYTES = 256 * 1024;
+    private static final int MAX_ARTISTS = 500;
+    private static final long MAX_ARTIST_BYTES = 128 * 1024;
+
+    // Rough per-object overhead plus two bytes per char for each string field
+    private static final int OBJECT_OVERHEAD = 48;
+
+    private final EntityCache<Long, Track> tracks = new EntityCache<>(MAX_TRACKS, MAX_TRACK_BYTES,
+            track -> OBJECT_OVERHEAD + chars(track.getTitle()) + chars(track.getPreviewUrl()) + chars(track.getType()));
+    private final EntityCache<Long, Album> albums = new EntityCache<>(MAX_ALBUMS, MAX_ALBUM_BYTES,
+            album -> OBJECT_OVERHEAD + chars(album.getTitle()) + chars(album.getCover())
+                    + chars(album.getCoverMedium()) + chars(album.getReleaseDate()));
+    private final EntityCache<Long, Artist> artists = new EntityCache<>(MAX_ARTISTS, MAX_ARTIST_BYTES,
+            artist -> OBJECT_OVERHEAD + chars(artist.getName()) + chars(artist.getPictureMedium()));
+
+    private DeezerEntityStore() { }
+
+    public static synchronized DeezerEntityStore getInstance() {
+        if (instance == null) {
+            instance = new DeezerEntityStore();
+        }
+        return instance;
+    }
+
+    private static int chars(String s) {
+        return s != null ? 2 * s.length() : 0;
+    }
+
+    public Track getTrack(long id) {
+        return tracks.get(id);
+    }
+
+    public Album getAlbum(long id) {
+        return albums.get(id);
+    }
+
+    public Artist getArtist(long id) {
+        return artists.get(id);
+    }
+
+    /**
+     * Returns the shared instance for this track's id, updated with any newer fields from
+     * {@code fresh}. Subclasses such as downloaded tracks carry their own state and are
+     * returned untouched.
+     */
+    public Track internTrack(Track fresh) {
+        if (fresh == null || fresh.getId() <= 0 || fresh.getClass() != Track.class) {
+            return fresh;
+        }
+        fresh.setArtist(internArtist(fresh.getArtist()));
+        fresh.setAlbum(internAlbum(fresh.getAlbum()));
+
+        Track cached = tracks.get(fresh.getId());
+        if (cached == null || cached == fresh) {
+            tracks.put(fresh.getId(), fresh);
+            return fresh;
+        }
+        if (fresh.getTitle() != null) cached.setTitle(fresh.getTitle());
+        if (fresh.getDuration() > 0) cached.setDuration(fresh.getDuration());
+        if (fresh.getPreviewUrl() != null) cached.setPreviewUrl(fresh.getPreviewUrl());
+        if (fresh.getArtist() != null) cached.setArtist(fresh.getArtist());
+        if (fresh.getAlbum() != null) cached.setAlbum(fresh.getAlbum());
+        if (fresh.getType() != null) cached.setType(fresh.getType());
+        // Re-put so the cache counts the updated fields instead of the size stored for the old ones
+        tracks.put(cached.getId(), cached);
+        return cached;
+    }
+
+    public List<Track> internTracks(List<Track> fresh) {
+        if (fresh == null) return null;
+        List<Track> result = new ArrayList<>(fresh.size());
+        for (Track track : fresh) {
+            result.add(internTrack(track));
+        }
+        return result;
+    }
+
+    /**
+     * Search and chart results carry a trimmed album without a release date; the full
+     * album from {@code getAlbum} wins over it whichever arrives first.
+     */
+    public Album internAlbum(Album fresh) {
+        if (fresh == null || fresh.getId() <= 0) {
+            return fresh;
+        }
+        Album cached = albums.get(fresh.getId());
+        if (cached == null || (cached.getReleaseDate() == null && fresh.getReleaseDate() != null)) {
+            if (cached != null && fresh.getCoverMedium() == null) {
+                fresh.setCoverMedium(cached.getCoverMedium());
+            }
+            if (fresh.getArtist() != null) {
+                fresh.setArtist(internArtist(fresh.getArtist()));
+            }
+            albums.put(fresh.getId(), fresh);
+            return fresh;
+        }
+        if (cached.getCoverMedium() == null && fresh.getCoverMedium() != null) {
+            cached.setCoverMedium(fresh.getCoverMedium());
+            albums.put(cached.getId(), cached);
+        }
+        return cached;
+    }
+
+    public List<Album> internAlbums(List<Album> fresh) {
+        if (fresh == null) return null;
+        List<Album> result = new ArrayList<>(fresh.size());
+        for (Album album : fresh) {
+            result.add(internAlbum(album));
+        }
+        return result;
+    }
+
+    public Artist internArtist(Artist fresh) {
+        if (fresh == null || fresh.getId() <= 0) {
+            return fresh;
+        }
+        Artist cached = artists.get(fresh.getId());
+        if (cached == null || (cached.getPictureMedium() == null && fresh.getPictureMedium() != null)) {
+            artists.put(fresh.getId(), fresh);
+            return fresh;
+        }
+        return cached;
+    }
+
+    public List<Artist> internArtists(List<Artist> fresh) {
+        if (fresh == null) return null;
+        List<Artist> result = new ArrayList<>(fresh.size());
+        for (Artist artist : fresh) {
+            result.add(internArtist(artist));
+        }
+        return result;
+    }
+
+    public void clear() {
+        tracks.clear();
+        albums.clear();
+        artists.clear();
+    }
+
+    public void logStats() {
+        Log.d(TAG, "Tracks: " + tracks);
+        Log.d(TAG, "Albums: " + albums);
+        Log.d(TAG, "Artists: " + artists);
+    }
+}
@@ -11,6 +11,7 @@ import com.example.melodix.model.ArtistSearchResponse;
 import com.example.melodix.model.SearchResponse;
 import com.example.melodix.model.Track;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -21,14 +22,28 @@ import retrofit2.Response;
 
 public class DeezerRepository {
     private static final String TAG = "DeezerRepository";
+    private static final int MAX_ALBUM_REQUESTS = 4;
+    private static final long ALBUM_DETAILS_DEADLINE_MS = 4000;
     private static DeezerRepository instance;
     private DeezerApiService apiService;
     private final Executor diskIO;
     private final Executor networkIO;
     private final Executor mainThread;
+    private final AlbumEnricher albumEnricher;
+    private final DeezerEntityStore entityStore;
+
+    // Identical requests made while one is already running share its response
+    private final SingleFlight<List<Track>> trackListFlight = new SingleFlight<>("tracks", ArrayList::new);
+    private final SingleFlight<List<Artist>> artistListFlight = new SingleFlight<>("artists", ArrayList::new);
+    private final SingleFlight<List<Album>> albumListFlight = new SingleFlight<>("albums", ArrayList::new);
+    private final SingleFlight<Track> trackFlight = new SingleFlight<>("track", null);
+    private final SingleFlight<Album> albumFlight = new SingleFlight<>("album", null);
 
     private DeezerRepository() {
         apiService = DeezerApiClient.getApiService();
+        entityStore = DeezerEntityStore.getInstance();
+        albumEnricher = new AlbumEnricher(apiService, entityStore, MAX_ALBUM_REQUESTS,
+                ALBUM_DETAILS_DEADLINE_MS, new Handler(Looper.getMainLooper()));
 
         diskIO = Executors.newSingleThreadExecutor();
         networkIO = Executors.newFixedThreadPool(3);
@@ -55,13 +70,23 @@ public class DeezerRepository {
         void onError(String message);
     }
 
+    public interface TrackStreamCallback {
+        void onTrack(Track track);
+        void onComplete(List<Track> tracks, boolean partial);
+        void onError(String message);
+    }
+
     public void searchTracks(String query, final DataCallback<List<Track>> callback) {
+        trackListFlight.execute("search:" + query, callback, done -> fetchSearchTracks(query, done));
+    }
+
+    private void fetchSearchTracks(String query, final DataCallback<List<Track>> callback) {
         Log.d(TAG, "Searching tracks with query: " + query);
         apiService.searchTracks(query).enqueue(new Callback<SearchResponse>() {
             @Override
             public void onResponse(Call<SearchResponse> call, Response<SearchResponse> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    List<Track> tracks = response.body().getTracks();
+                    List<Track> tracks = entityStore.internTracks(response.body().getTracks());
                     int tracksWithDates = 0;
                     if (tracks != null) {
                         for (Track track : tracks) {
@@ -77,7 +102,7 @@ public class DeezerRepository {
                         Log.d(TAG, "Search successful but no tracks returned");
                     }
 
-                    callback.onSuccess(response.body().getTracks());
+                    callback.onSuccess(tracks);
                 } else {
                     Log.e(TAG, "Search failed: " + response.code() + " - " + response.message());
                     callback.onError("Failed to search tracks: " + response.code());
@@ -91,12 +116,16 @@ public class DeezerRepository {
         });
     }
     public void getTopTracks(final DataCallback<List<Track>> callback) {
+        trackListFlight.execute("chart", callback, this::fetchTopTracks);
+    }
+
+    private void fetchTopTracks(final DataCallback<List<Track>> callback) {
         Log.d(TAG, "Getting top tracks");
         apiService.getTopTracks().enqueue(new Callback<SearchResponse>() {
             @Override
             public void onResponse(Call<SearchResponse> call, Response<SearchResponse> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    List<Track> tracks = response.body().getTracks();
+                    List<Track> tracks = entityStore.internTracks(response.body().getTracks());
                     int tracksWithDates = 0;
                     if (tracks != null) {
                         for (Track track : tracks) {
@@ -112,7 +141,7 @@ public class DeezerRepository {
                         Log.d(TAG, "Top tracks successful but no tracks returned");
                     }
 
-                    callback.onSuccess(response.body().getTracks());
+                    callback.onSuccess(tracks);
                 } else {
                     Log.e(TAG, "Top tracks fetch failed: " + response.code() + " - " + response.message());
                     callback.onError("Failed to get top tracks: " + response.code());
@@ -126,77 +155,52 @@ public class DeezerRepository {
             }
         });
     }
-    private void fetchAlbumDetailsForTracks(List<Track> tracks, final DataCallback<List<Track>> callback) {
-        final int[] processedCount = {0};
-        final int totalTracks = tracks.size();
-
-        for (int i = 0; i < tracks.size(); i++) {
-            final Track track = tracks.get(i);
-
-            if ((track.getAlbum() == null || track.getAlbum().getReleaseDate() == null) &&
-                track.getAlbum() != null && track.getAlbum().getId() > 0) {
-
-                apiService.getAlbum(track.getAlbum().getId()).enqueue(new Callback<Album>() {
-                    @Override
-                    public void onResponse(Call<Album> call, Response<Album> response) {
-                        synchronized (processedCount) {
-                            processedCount[0]++;
-
-                            if (response.isSuccessful() && response.body() != null) {
-                                Album fullAlbum = response.body();
-                                if (fullAlbum.getReleaseDate() != null) {
-                                    String existingCover = null;
-                                    if (track.getAlbum() != null && track.getAlbum().getCoverMedium() != null) {
-                                        existingCover = track.getAlbum().getCoverMedium();
-                                    }
-
-                                    track.setAlbum(fullAlbum);
-
-                                    if (existingCover != null && track.getAlbum().getCoverMedium() == null) {
-                                        track.getAlbum().setCoverMedium(existingCover);
-                                    }
-
-                                    Log.d(TAG, "Updated track: " + track.getTitle() +
-                                          " with release date: " + fullAlbum.getReleaseDate());
-                                }
-                            }
-                            if (processedCount[0] >= totalTracks) {
-                                Log.d(TAG, "Completed fetching album details for " + totalTracks + " tracks");
-                                callback.onSuccess(tracks);
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<Album> call, Throwable t) {
-                        synchronized (processedCount) {
-                            processedCount[0]++;
-                            Log.e(TAG, "Failed to fetch album details: " + t.getMessage());
-                            if (processedCount[0] >= totalTracks) {
-                                callback.onSuccess(tracks);
-                            }
-                        }
-                    }
-                });
-            } else {
-                synchronized (processedCount) {
-                    processedCount[0]++;
+    private void fetchAlbumDetailsForTracks(List<Track> tracks, final TrackStreamCallback callback) {
+        albumEnricher.enrich(tracks, new AlbumEnricher.Listener() {
+            @Override
+            public void onTrackReady(Track track) {
+                callback.onTrack(track);
+            }
 
-                    if (processedCount[0] >= totalTracks) {
-                        callback.onSuccess(tracks);
-                    }
-                }
+            @Override
+            public void onFinished(List<Track> enriched, boolean timedOut) {
+                callback.onComplete(enriched, timedOut);
             }
-        }
+        });
     }
 
     public void getLatestTracks(final DataCallback<List<Track>> callback) {
+        trackListFlight.execute("latest", callback, this::fetchLatestTracks);
+    }
+
+    private void fetchLatestTracks(final DataCallback<List<Track>> callback) {
+        getLatestTracks(new TrackStreamCallback() {
+            @Override
+            public void onTrack(Track track) { }
+
+            @Override
+            public void onComplete(List<Track> tracks, boolean partial) {
+                callback.onSuccess(tracks);
+            }
+
+            @Override
+            public void onError(String message) {
+                callback.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #getLatestTracks(DataCallback)}, but hands each track over as soon as its
+     * album details are known instead of waiting for the slowest album lookup.
+     */
+    public void getLatestTracks(final TrackStreamCallback callback) {
         Log.d(TAG, "Getting latest music tracks");
         apiService.searchTracks("new releases 2025").enqueue(new Callback<SearchResponse>() {
             @Override
             public void onResponse(Call<SearchResponse> call, Response<SearchResponse> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    List<Track> tracks = response.body().getTracks();
+                    List<Track> tracks = entityStore.internTracks(response.body().getTracks());
                     Log.d(TAG, "Latest tracks fetch successful. Found " +
                           (tracks != null ? tracks.size() : 0) + " tracks");
 
@@ -209,12 +213,10 @@ public class DeezerRepository {
                         }
                         if (missingReleaseDates > 0) {
                             Log.d(TAG, missingReleaseDates + " out of " + tracks.size() + " tracks are missing release dates. Fetching album details...");
-                            fetchAlbumDetailsForTracks(tracks, callback);
-                        } else {
-                            callback.onSuccess(tracks);
                         }
+                        fetchAlbumDetailsForTracks(tracks, callback);
                     } else {
-                        callback.onSuccess(tracks);
+                        callback.onComplete(tracks, false);
                     }
                 } else {
                     Log.e(TAG, "Latest tracks fetch failed: " + response.code() + " - " + response.message());
@@ -228,13 +230,92 @@ public class DeezerRepository {
             }
         });
     }
+    /**
+     * Looks the track up in the entity store first and only goes to the network on a miss.
+     */
+    public void getTrack(long trackId, final DataCallback<Track> callback) {
+        Track cached = entityStore.getTrack(trackId);
+        if (cached != null) {
+            callback.onSuccess(cached);
+            return;
+        }
+        trackFlight.execute(String.valueOf(trackId), callback, done -> fetchTrack(trackId, done));
+    }
+
+    private void fetchTrack(long trackId, final DataCallback<Track> callback) {
+        Log.d(TAG, "Getting track: " + trackId);
+        apiService.getTrack(trackId).enqueue(new Callback<Track>() {
+            @Override
+            public void onResponse(Call<Track> call, Response<Track> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().getId() > 0) {
+                    callback.onSuccess(entityStore.internTrack(response.body()));
+                } else {
+                    Log.e(TAG, "Track fetch failed: " + response.code() + " - " + response.message());
+                    callback.onError("Failed to get track: " + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Track> call, Throwable t) {
+                Log.e(TAG, "Track network error: " + t.getMessage(), t);
+                callback.onError("Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Fetches the track from the network even when it is in the entity store, for a fresh
+     * preview URL. The new fields are merged into the shared instance.
+     */
+    public void refreshTrack(long trackId, final DataCallback<Track> callback) {
+        trackFlight.execute(String.valueOf(trackId), callback, done -> fetchTrack(trackId, done));
+    }
+
+    /**
+     * Returns the full album (with release date) from the entity store when it is already
+     * known, otherwise fetches it.
+     */
+    public void getAlbum(long albumId, final DataCallback<Album> callback) {
+        Album cached = entityStore.getAlbum(albumId);
+        if (cached != null && cached.getReleaseDate() != null) {
+            callback.onSuccess(cached);
+            return;
+        }
+        albumFlight.execute(String.valueOf(albumId), callback, done -> fetchAlbum(albumId, done));
+    }
+
+    private void fetchAlbum(long albumId, final DataCallback<Album> callback) {
+        Log.d(TAG, "Getting album: " + albumId);
+        apiService.getAlbum(albumId).enqueue(new Callback<Album>() {
+            @Override
+            public void onResponse(Call<Album> call, Response<Album> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().getId() > 0) {
+                    callback.onSuccess(entityStore.internAlbum(response.body()));
+                } else {
+                    Log.e(TAG, "Album fetch failed: " + response.code() + " - " + response.message());
+                    callback.onError("Failed to get album: " + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Album> call, Throwable t) {
+                Log.e(TAG, "Album network error: " + t.getMessage(), t);
+                callback.onError("Network error: " + t.getMessage());
+            }
+        });
+    }
+
     public void searchArtists(String query, final DataCallback<List<Artist>> callback) {
+        artistListFlight.execute(query, callback, done -> fetchSearchArtists(query, done));
+    }
+
+    private void fetchSearchArtists(String query, final DataCallback<List<Artist>> callback) {
         Log.d(TAG, "Searching artists with query: " + query);
         apiService.searchArtists(query).enqueue(new Callback<ArtistSearchResponse>() {
             @Override
             public void onResponse(Call<ArtistSearchResponse> call, Response<ArtistSearchResponse> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    List<Artist> artists = response.body().getArtists();
+                    List<Artist> artists = entityStore.internArtists(response.body().getArtists());
                     Log.d(TAG, "Artist search successful. Found " +
                             (artists != null ? artists.size() : 0) + " artists");
                     callback.onSuccess(artists);
@@ -252,12 +333,16 @@ public class DeezerRepository {
         });
     }
     public void searchAlbums(String query, final DataCallback<List<Album>> callback) {
+        albumListFlight.execute(query, callback, done -> fetchSearchAlbums(query, done));
+    }
+
+    private void fetchSearchAlbums(String query, final DataCallback<List<Album>> callback) {
         Log.d(TAG, "Searching albums with query: " + query);
         apiService.searchAlbums(query).enqueue(new Callback<AlbumSearchResponse>() {
             @Override
             public void onResponse(Call<AlbumSearchResponse> call, Response<AlbumSearchResponse> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    List<Album> albums = response.body().getAlbums();
+                    List<Album> albums = entityStore.internAlbums(response.body().getAlbums());
                     Log.d(TAG, "Album search successful. Found " +
                             (albums != null ? albums.size() : 0) + " albums");
                     callback.onSuccess(albums);
@@ -274,4 +359,19 @@ public class DeezerRepository {
             }
         });
     }
+
+    /**
+     * Number of repository calls that were answered by joining a request already in flight.
+     */
+    public long getCoalescedCallCount() {
+        return trackListFlight.getSavedCount() + artistListFlight.getSavedCount()
+                + albumListFlight.getSavedCount() + trackFlight.getSavedCount()
+                + albumFlight.getSavedCount();
+    }
+
+    public long getTotalCallCount() {
+        return trackListFlight.getCallCount() + artistListFlight.getCallCount()
+                + albumListFlight.getCallCount() + trackFlight.getCallCount()
+                + albumFlight.getCallCount();
+    }
 }
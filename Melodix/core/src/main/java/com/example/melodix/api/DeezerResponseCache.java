@@ -0,0 +1,199 @@
+package com.example.melodix.api;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Size-bounded on-disk cache for Deezer API responses.
+ *
+ * Deezer does not send useful caching headers, so a network interceptor stamps each
+ * successful response with a max-age taken from the first matching {@link Rule}. An
+ * application interceptor then serves cached entries first: fresh entries are returned
+ * as-is, stale entries that are still inside the rule's stale window are returned at once
+ * while the same request is refreshed in the background.
+ */
+public class DeezerResponseCache {
+    private static final String TAG = "DeezerResponseCache";
+    static final String HEADER_REVALIDATE = "X-Melodix-Revalidate";
+    private static final String STALE_WARNING = "110";
+    private static final int ERROR_PEEK_BYTES = 16;
+
+    public static final long DEFAULT_MAX_SIZE_BYTES = 20L * 1024 * 1024;
+
+    public static class Rule {
+        final String pathPrefix;
+        final int maxAgeSeconds;
+        final int maxStaleSeconds;
+
+        public Rule(String pathPrefix, int maxAgeSeconds, int maxStaleSeconds) {
+            this.pathPrefix = pathPrefix;
+            this.maxAgeSeconds = maxAgeSeconds;
+            this.maxStaleSeconds = maxStaleSeconds;
+        }
+    }
+
+    private final List<Rule> rules;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private volatile OkHttpClient client;
+
+    private DeezerResponseCache(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * Charts change a few times a day, album and artist pages almost never, and search
+     * results are only reused for quick repeats of the same query.
+     */
+    public static List<Rule> defaultRules() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new Rule("/chart", (int) TimeUnit.MINUTES.toSeconds(10), (int) TimeUnit.DAYS.toSeconds(1)));
+        rules.add(new Rule("/album/", (int) TimeUnit.HOURS.toSeconds(6), (int) TimeUnit.DAYS.toSeconds(7)));
+        rules.add(new Rule("/artist/", (int) TimeUnit.HOURS.toSeconds(6), (int) TimeUnit.DAYS.toSeconds(7)));
+        rules.add(new Rule("/search", (int) TimeUnit.MINUTES.toSeconds(2), (int) TimeUnit.HOURS.toSeconds(1)));
+        return rules;
+    }
+
+    public static OkHttpClient buildClient(File cacheDir, long maxSizeBytes, List<Rule> rules) {
+        DeezerResponseCache responseCache = new DeezerResponseCache(rules);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(new Cache(cacheDir, maxSizeBytes))
+                .addInterceptor(responseCache.new StaleWhileRevalidateInterceptor())
+                .addNetworkInterceptor(responseCache.new FreshnessInterceptor())
+                .build();
+        // Background refreshes go through the same client so they land in the same cache.
+        responseCache.client = client;
+        return client;
+    }
+
+    Rule ruleFor(Request request) {
+        if (!"GET".equals(request.method())) return null;
+        String path = request.url().encodedPath();
+        for (Rule rule : rules) {
+            if (path.startsWith(rule.pathPrefix)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private class FreshnessInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            Rule rule = ruleFor(request);
+            if (rule == null) {
+                return response;
+            }
+            if (!response.isSuccessful() || isDeezerError(response)) {
+                return response.newBuilder()
+                        .header("Cache-Control", "no-store")
+                        .build();
+            }
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .header("Cache-Control", "public, max-age=" + rule.maxAgeSeconds)
+                    .build();
+        }
+
+        // Deezer reports quota and lookup failures as HTTP 200 with an "error" object.
+        private boolean isDeezerError(Response response) throws IOException {
+            ResponseBody peek = response.peekBody(ERROR_PEEK_BYTES);
+            return peek.string().replace(" ", "").startsWith("{\"error\"");
+        }
+    }
+
+    private class StaleWhileRevalidateInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (request.header(HEADER_REVALIDATE) != null) {
+                return chain.proceed(request.newBuilder()
+                        .removeHeader(HEADER_REVALIDATE)
+                        .cacheControl(CacheControl.FORCE_NETWORK)
+                        .build());
+            }
+
+            Rule rule = ruleFor(request);
+            if (rule == null) {
+                return chain.proceed(request);
+            }
+
+            Response cached = chain.proceed(request.newBuilder()
+                    .cacheControl(new CacheControl.Builder()
+                            .onlyIfCached()
+                            .maxStale(rule.maxStaleSeconds, TimeUnit.SECONDS)
+                            .build())
+                    .build());
+
+            if (cached.code() == 504) {
+                cached.close();
+                Log.d(TAG, "Cache miss: " + request.url().encodedPath());
+                return chain.proceed(request);
+            }
+
+            if (isStale(cached)) {
+                Log.d(TAG, "Serving stale response, revalidating: " + request.url().encodedPath());
+                revalidate(request);
+            } else {
+                Log.d(TAG, "Cache hit: " + request.url().encodedPath());
+            }
+            return cached;
+        }
+    }
+
+    private boolean isStale(Response response) {
+        for (String warning : response.headers("Warning")) {
+            if (warning.startsWith(STALE_WARNING)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void revalidate(Request request) {
+        final String key = request.url().toString();
+        if (client == null || !revalidating.add(key)) {
+            return;
+        }
+        client.newCall(request.newBuilder().header(HEADER_REVALIDATE, "1").build())
+                .enqueue(new Callback() {
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        try (ResponseBody body = response.body()) {
+                            // Reading the body to the end is what commits it to the cache.
+                            if (body != null) body.bytes();
+                        } catch (IOException e) {
+                            Log.w(TAG, "Background refresh failed: " + e.getMessage());
+                        } finally {
+                            revalidating.remove(key);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        revalidating.remove(key);
+                        Log.w(TAG, "Background refresh failed: " + e.getMessage());
+                    }
+                });
+    }
+}
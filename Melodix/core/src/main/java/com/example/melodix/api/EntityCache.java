@@ -0,0 +1,113 @@
+package com.example.melodix.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used map bounded both by number of entries and by an estimated size in
+ * bytes. Whichever limit is hit first causes the oldest entries to be dropped.
+ */
+public class EntityCache<K, V> {
+
+    public interface Sizer<V> {
+        int sizeOf(V value);
+    }
+
+    // Each entry keeps the size it was counted at, so values changed in place and put again
+    // are uncounted by what was actually added for them
+    private static final class Entry<V> {
+        final V value;
+        final int bytes;
+
+        Entry(V value, int bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Sizer<V> sizer;
+    private long sizeBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public EntityCache(int maxEntries, long maxBytes, Sizer<V> sizer) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.sizer = sizer;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry != null) {
+            hitCount++;
+            return entry.value;
+        }
+        missCount++;
+        return null;
+    }
+
+    public synchronized void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, sizer.sizeOf(value));
+        Entry<V> previous = map.put(key, entry);
+        if (previous != null) {
+            sizeBytes -= previous.bytes;
+        }
+        sizeBytes += entry.bytes;
+        trim();
+    }
+
+    public synchronized void remove(K key) {
+        Entry<V> previous = map.remove(key);
+        if (previous != null) {
+            sizeBytes -= previous.bytes;
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        sizeBytes = 0;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+        while ((map.size() > maxEntries || sizeBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            sizeBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hitCount + missCount;
+        int hitPercent = lookups > 0 ? (int) (100 * hitCount / lookups) : 0;
+        return "entries=" + map.size() + ", bytes=" + sizeBytes + ", hits=" + hitCount
+                + ", misses=" + missCount + " (" + hitPercent + "% hit), evictions=" + evictionCount;
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.melodix.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.melodix.model.Track;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps Deezer preview URLs usable.
+ *
+ * Preview URLs on dzcdn.net carry an {@code exp=} token. The token is parsed once per URL
+ * and tracks that screens {@link #watch} are kept in a queue ordered by expiry, so they can
+ * be refreshed in the background a few minutes before they run out. Refreshes use the exact
+ * {@code track/{id}} endpoint, at most {@link #MAX_PARALLEL_REFRESHES} at a time, except for
+ * {@link #ensureFresh} which is used right before playback and jumps the queue.
+ *
+ * Must be used from the main thread.
+ */
+public class PreviewUrlRefresher {
+    private static final String TAG = "PreviewUrlRefresher";
+    private static PreviewUrlRefresher instance;
+
+    private static final int MAX_PARALLEL_REFRESHES = 3;
+    // Background refreshes start this long before a URL expires
+    private static final long REFRESH_LEAD_SECONDS = 5 * 60;
+    // A URL is good enough to start a 30 second preview if it lives at least this long
+    private static final long PLAYBACK_MARGIN_SECONDS = 45;
+
+    public interface BatchCallback {
+        void onComplete(List<Track> refreshed, List<Track> failed);
+    }
+
+    private static class Expiry {
+        final long trackId;
+        final long expiresAt;
+
+        Expiry(long trackId, long expiresAt) {
+            this.trackId = trackId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final DeezerRepository repository;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Parsed expiry per URL, so the token is only parsed again when the URL changes
+    private final Map<Long, String> parsedUrls = new HashMap<>();
+    private final Map<Long, Long> expiries = new HashMap<>();
+
+    // Track instances a screen asked us to keep fresh, by id
+    private final Map<Long, List<Track>> watched = new HashMap<>();
+    // Track instances waiting on a one-off refresh, by id
+    private final Map<Long, List<Track>> oneOff = new HashMap<>();
+    private final PriorityQueue<Expiry> queue = new PriorityQueue<>(16,
+            (a, b) -> Long.compare(a.expiresAt, b.expiresAt));
+
+    private final Map<Long, List<DeezerRepository.DataCallback<Track>>> waiting = new HashMap<>();
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    private final Runnable tick = this::refreshDueTracks;
+
+    private PreviewUrlRefresher() {
+        repository = DeezerRepository.getInstance();
+    }
+
+    public static synchronized PreviewUrlRefresher getInstance() {
+        if (instance == null) {
+            instance = new PreviewUrlRefresher();
+        }
+        return instance;
+    }
+
+    public static boolean isDeezerUrl(String url) {
+        return url != null && url.contains("dzcdn.net");
+    }
+
+    /**
+     * Reads the {@code exp=} token of a Deezer preview URL.
+     *
+     * @return expiry in epoch seconds, or 0 when the URL has no readable token
+     */
+    public static long parseExpiry(String url) {
+        if (url == null) return 0;
+        int start = url.indexOf("exp=");
+        if (start < 0) return 0;
+        start += 4;
+        int end = start;
+        while (end < url.length() && Character.isDigit(url.charAt(end))) {
+            end++;
+        }
+        if (end == start) return 0;
+        try {
+            return Long.parseLong(url.substring(start, end));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Could not parse URL expiration: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private long expiryOf(Track track) {
+        String url = track.getPreviewUrl();
+        if (!isDeezerUrl(url)) return 0;
+        if (url.equals(parsedUrls.get(track.getId()))) {
+            Long cached = expiries.get(track.getId());
+            if (cached != null) return cached;
+        }
+        long expiresAt = parseExpiry(url);
+        parsedUrls.put(track.getId(), url);
+        expiries.put(track.getId(), expiresAt);
+        return expiresAt;
+    }
+
+    /**
+     * True when the track has a preview URL that will still work for at least
+     * {@code marginSeconds}. Non-Deezer and local URLs are always considered fresh.
+     */
+    public boolean isFresh(Track track, long marginSeconds) {
+        if (track == null || track.getPreviewUrl() == null || track.getPreviewUrl().isEmpty()) {
+            return false;
+        }
+        long expiresAt = expiryOf(track);
+        return expiresAt == 0 || expiresAt > nowSeconds() + marginSeconds;
+    }
+
+    public boolean isPlayable(Track track) {
+        return isFresh(track, PLAYBACK_MARGIN_SECONDS);
+    }
+
+    /**
+     * Hands the track back straight away when its URL is good enough to play, otherwise
+     * refreshes it ahead of any background work.
+     */
+    public void ensureFresh(Track track, DeezerRepository.DataCallback<Track> callback) {
+        if (isPlayable(track)) {
+            callback.onSuccess(track);
+            return;
+        }
+        refresh(track, callback);
+    }
+
+    /**
+     * Fetches a new preview URL for the track regardless of its expiry, for example after
+     * playback of a URL that looked valid failed.
+     */
+    public void refresh(Track track, DeezerRepository.DataCallback<Track> callback) {
+        if (track == null || track.getId() <= 0) {
+            callback.onError("Invalid track");
+            return;
+        }
+        addHolder(oneOff, track);
+        enqueue(track.getId(), true, callback);
+    }
+
+    /**
+     * Refreshes every track in the list whose URL is missing or about to expire, and reports
+     * once all of them are done.
+     */
+    public void refreshExpired(List<Track> tracks, BatchCallback callback) {
+        final List<Track> refreshed = new ArrayList<>();
+        final List<Track> failed = new ArrayList<>();
+        final List<Track> due = new ArrayList<>();
+        for (Track track : tracks) {
+            if (track != null && track.getId() > 0 && !isFresh(track, REFRESH_LEAD_SECONDS)) {
+                due.add(track);
+            }
+        }
+        if (due.isEmpty()) {
+            callback.onComplete(refreshed, failed);
+            return;
+        }
+        Log.d(TAG, "Refreshing " + due.size() + " of " + tracks.size() + " preview URLs");
+
+        final int[] remaining = {due.size()};
+        for (final Track track : due) {
+            addHolder(oneOff, track);
+            enqueue(track.getId(), false, new DeezerRepository.DataCallback<Track>() {
+                @Override
+                public void onSuccess(Track fresh) {
+                    refreshed.add(track);
+                    if (--remaining[0] == 0) callback.onComplete(refreshed, failed);
+                }
+
+                @Override
+                public void onError(String message) {
+                    failed.add(track);
+                    if (--remaining[0] == 0) callback.onComplete(refreshed, failed);
+                }
+            });
+        }
+    }
+
+    /**
+     * Keeps the URLs of these tracks fresh in the background until {@link #unwatch} is called.
+     */
+    public void watch(Collection<? extends Track> tracks) {
+        for (Track track : tracks) {
+            if (track == null || track.getId() <= 0 || !isDeezerUrl(track.getPreviewUrl())) continue;
+            addHolder(watched, track);
+            long expiresAt = expiryOf(track);
+            if (expiresAt > 0) {
+                queue.add(new Expiry(track.getId(), expiresAt));
+            }
+        }
+        scheduleNext();
+    }
+
+    public void unwatch(Collection<? extends Track> tracks) {
+        for (Track track : tracks) {
+            if (track == null) continue;
+            List<Track> holders = watched.get(track.getId());
+            if (holders == null) continue;
+            removeByIdentity(holders, track);
+            if (holders.isEmpty()) {
+                watched.remove(track.getId());
+            }
+        }
+    }
+
+    private static void addHolder(Map<Long, List<Track>> holdersById, Track track) {
+        List<Track> holders = holdersById.get(track.getId());
+        if (holders == null) {
+            holders = new ArrayList<>(1);
+            holdersById.put(track.getId(), holders);
+        }
+        for (Track holder : holders) {
+            if (holder == track) return;
+        }
+        holders.add(track);
+    }
+
+    private static void removeByIdentity(List<Track> list, Track track) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == track) list.remove(i);
+        }
+    }
+
+    private void scheduleNext() {
+        handler.removeCallbacks(tick);
+        Expiry next;
+        while ((next = queue.peek()) != null && !isCurrent(next)) {
+            queue.poll();
+        }
+        if (next == null) return;
+        long delaySeconds = Math.max(0, next.expiresAt - REFRESH_LEAD_SECONDS - nowSeconds());
+        handler.postAtTime(tick, SystemClock.uptimeMillis() + delaySeconds * 1000);
+    }
+
+    // Entries go stale when the track was unwatched or its URL has changed since
+    private boolean isCurrent(Expiry entry) {
+        Long expiresAt = expiries.get(entry.trackId);
+        return watched.containsKey(entry.trackId) && expiresAt != null && expiresAt == entry.expiresAt;
+    }
+
+    private void refreshDueTracks() {
+        long dueBy = nowSeconds() + REFRESH_LEAD_SECONDS;
+        int count = 0;
+        Expiry next;
+        while ((next = queue.peek()) != null && next.expiresAt <= dueBy) {
+            queue.poll();
+            if (isCurrent(next)) {
+                enqueue(next.trackId, false, null);
+                count++;
+            }
+        }
+        if (count > 0) {
+            Log.d(TAG, "Refreshing " + count + " preview URLs ahead of expiry");
+        }
+        scheduleNext();
+    }
+
+    private void enqueue(long trackId, boolean urgent, DeezerRepository.DataCallback<Track> callback) {
+        List<DeezerRepository.DataCallback<Track>> callbacks = waiting.get(trackId);
+        boolean alreadyQueued = callbacks != null;
+        if (!alreadyQueued) {
+            callbacks = new ArrayList<>();
+            waiting.put(trackId, callbacks);
+        }
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+
+        if (urgent) {
+            // Playback is waiting on this one, don't hold it behind the batch
+            if (pending.remove(trackId) || !alreadyQueued) {
+                start(trackId);
+            }
+        } else if (!alreadyQueued) {
+            pending.add(trackId);
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (inFlight < MAX_PARALLEL_REFRESHES && !pending.isEmpty()) {
+            start(pending.poll());
+        }
+    }
+
+    private void start(final long trackId) {
+        inFlight++;
+        repository.refreshTrack(trackId, new DeezerRepository.DataCallback<Track>() {
+            @Override
+            public void onSuccess(Track fresh) {
+                onRefreshResult(trackId, fresh, null);
+            }
+
+            @Override
+            public void onError(String message) {
+                onRefreshResult(trackId, null, message);
+            }
+        });
+    }
+
+    private void onRefreshResult(long trackId, Track fresh, String error) {
+        inFlight--;
+        List<DeezerRepository.DataCallback<Track>> callbacks = waiting.remove(trackId);
+        if (callbacks == null) callbacks = new ArrayList<>();
+
+        if (fresh != null && fresh.getPreviewUrl() != null && !fresh.getPreviewUrl().isEmpty()) {
+            String url = fresh.getPreviewUrl();
+            applyUrl(watched.get(trackId), url);
+            applyUrl(oneOff.get(trackId), url);
+            long expiresAt = parseExpiry(url);
+            parsedUrls.put(trackId, url);
+            expiries.put(trackId, expiresAt);
+            if (expiresAt > 0 && watched.containsKey(trackId)) {
+                queue.add(new Expiry(trackId, expiresAt));
+            }
+            Log.d(TAG, "Refreshed preview URL for track " + trackId);
+            for (DeezerRepository.DataCallback<Track> callback : callbacks) {
+                callback.onSuccess(fresh);
+            }
+        } else {
+            String message = error != null ? error : "No preview available";
+            Log.w(TAG, "Could not refresh preview URL for track " + trackId + ": " + message);
+            for (DeezerRepository.DataCallback<Track> callback : callbacks) {
+                callback.onError(message);
+            }
+        }
+
+        oneOff.remove(trackId);
+        scheduleNext();
+        drain();
+    }
+
+    private static void applyUrl(List<Track> holders, String url) {
+        if (holders == null) return;
+        for (Track holder : holders) {
+            holder.setPreviewUrl(url);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.melodix.api;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent identical requests into one. The first caller for a key starts the
+ * load; callers that arrive while it is still running are queued behind it and all of them
+ * receive the same result. Nothing is cached once the load has finished.
+ */
+class SingleFlight<T> {
+    private static final String TAG = "SingleFlight";
+
+    interface Loader<T> {
+        void load(DeezerRepository.DataCallback<T> done);
+    }
+
+    private final String name;
+    private final UnaryOperator<T> copier;
+    private final Map<String, List<DeezerRepository.DataCallback<T>>> inFlight = new HashMap<>();
+    private long callCount = 0;
+    private long savedCount = 0;
+
+    /**
+     * @param copier gives every waiting caller its own copy of a shared result so that one
+     *               screen mutating it cannot affect another; may be {@code null}
+     */
+    SingleFlight(String name, UnaryOperator<T> copier) {
+        this.name = name;
+        this.copier = copier;
+    }
+
+    void execute(final String key, DeezerRepository.DataCallback<T> callback, Loader<T> loader) {
+        synchronized (this) {
+            callCount++;
+            List<DeezerRepository.DataCallback<T>> waiting = inFlight.get(key);
+            if (waiting != null) {
+                waiting.add(callback);
+                savedCount++;
+                Log.d(TAG, name + ": joined in-flight request for " + key
+                        + " (" + savedCount + " of " + callCount + " calls saved)");
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(key, waiting);
+        }
+
+        loader.load(new DeezerRepository.DataCallback<T>() {
+            @Override
+            public void onSuccess(T data) {
+                List<DeezerRepository.DataCallback<T>> waiting = take(key);
+                for (int i = 0; i < waiting.size(); i++) {
+                    // The first caller keeps the original, everyone else gets a copy
+                    T result = (i == 0 || copier == null || data == null) ? data : copier.apply(data);
+                    waiting.get(i).onSuccess(result);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                for (DeezerRepository.DataCallback<T> callback : take(key)) {
+                    callback.onError(message);
+                }
+            }
+        });
+    }
+
+    private synchronized List<DeezerRepository.DataCallback<T>> take(String key) {
+        List<DeezerRepository.DataCallback<T>> waiting = inFlight.remove(key);
+        return waiting != null ? waiting : new ArrayList<>();
+    }
+
+    synchronized long getCallCount() {
+        return callCount;
+    }
+
+    synchronized long getSavedCount() {
+        return savedCount;
+    }
+}
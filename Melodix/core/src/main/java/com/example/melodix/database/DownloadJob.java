@@ -0,0 +1,53 @@
+package com.example.melodix.database;
+
+/**
+ * One row of the download queue table.
+ */
+public class DownloadJob {
+    private final String userId;
+    private final long trackId;
+    private final String trackJson;
+    private final int priority;
+    private final String state;
+    private final int attempts;
+    private final String error;
+
+    public DownloadJob(String userId, long trackId, String trackJson, int priority,
+                       String state, int attempts, String error) {
+        this.userId = userId;
+        this.trackId = trackId;
+        this.trackJson = trackJson;
+        this.priority = priority;
+        this.state = state;
+        this.attempts = attempts;
+        this.error = error;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getTrackId() {
+        return trackId;
+    }
+
+    public String getTrackJson() {
+        return trackJson;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.melodix.database;
+
+import android.provider.BaseColumns;
+
+public final class DownloadedMusicContract {
+    private DownloadedMusicContract() {}
+
+    public static class TrackEntry implements BaseColumns {
+        public static final String TABLE_NAME = "downloaded_tracks";
+        public static final String COLUMN_USER_ID = "user_id";  // New column for user ID
+        public static final String COLUMN_TRACK_ID = "track_id";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_ARTIST = "artist";
+        public static final String COLUMN_FILE_PATH = "file_path";
+        public static final String COLUMN_DURATION = "duration";
+        public static final String COLUMN_ALBUM_ART = "album_art";
+        public static final String COLUMN_DOWNLOAD_DATE = "download_date";
+    }
+
+    public static class DownloadQueueEntry implements BaseColumns {
+        public static final String TABLE_NAME = "download_queue";
+        public static final String COLUMN_USER_ID = "user_id";
+        public static final String COLUMN_TRACK_ID = "track_id";
+        public static final String COLUMN_TRACK_JSON = "track_json";
+        public static final String COLUMN_PRIORITY = "priority";
+        public static final String COLUMN_STATE = "state";
+        public static final String COLUMN_ATTEMPTS = "attempts";
+        public static final String COLUMN_ERROR = "error";
+        public static final String COLUMN_CREATED_AT = "created_at";
+        public static final String COLUMN_UPDATED_AT = "updated_at";
+
+        public static final String STATE_QUEUED = "queued";
+        public static final String STATE_ACTIVE = "active";
+        public static final String STATE_PAUSED = "paused";
+        public static final String STATE_FAILED = "failed";
+        // Only found in databases from before version 6; finished jobs are now deleted
+        public static final String STATE_COMPLETED = "completed";
+
+        // Higher runs first
+        public static final int PRIORITY_BULK = 0;
+        public static final int PRIORITY_USER = 10;
+    }
+
+    public static class PlaybackQueueEntry implements BaseColumns {
+        public static final String TABLE_NAME = "playback_queue";
+        public static final String COLUMN_USER_ID = "user_id";
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_TRACK_ID = "track_id";
+        public static final String COLUMN_TRACK_JSON = "track_json";
+    }
+
+    public static class PlaybackStateEntry implements BaseColumns {
+        public static final String TABLE_NAME = "playback_state";
+        public static final String COLUMN_USER_ID = "user_id";
+        public static final String COLUMN_CURRENT_INDEX = "current_index";
+        public static final String COLUMN_POSITION_MS = "position_ms";
+        public static final String COLUMN_UPDATED_AT = "updated_at";
+    }
+
+    public static class LibraryEntry implements BaseColumns {
+        public static final String TABLE_NAME = "library_tracks";
+        public static final String COLUMN_USER_ID = "user_id";
+        public static final String COLUMN_LIST = "list";
+        public static final String COLUMN_TRACK_ID = "track_id";
+        public static final String COLUMN_TRACK_JSON = "track_json";
+        public static final String COLUMN_ADDED_AT = "added_at";
+
+        public static final String LIST_FAVORITES = "favorites";
+        public static final String LIST_RECENTS = "recents";
+    }
+
+    /** Library edits not yet pushed to Firestore, oldest first by {@link #_ID}. */
+    public static class LibraryOutboxEntry implements BaseColumns {
+        public static final String TABLE_NAME = "library_outbox";
+        public static final String COLUMN_USER_ID = "user_id";
+        public static final String COLUMN_LIST = "list";
+        public static final String COLUMN_OP = "op";
+        public static final String COLUMN_TRACK_ID = "track_id";
+        public static final String COLUMN_TRACK_JSON = "track_json";
+        public static final String COLUMN_CREATED_AT = "created_at";
+
+        public static final String OP_PUT = "put";
+        public static final String OP_DELETE = "delete";
+    }
+}
@@ -0,0 +1,725 @@
+package com.example.melodix.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.melodix.database.DownloadedMusicContract.DownloadQueueEntry;
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.DownloadedMusicContract.LibraryOutboxEntry;
+import com.example.melodix.database.DownloadedMusicContract.PlaybackQueueEntry;
+import com.example.melodix.database.DownloadedMusicContract.PlaybackStateEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DownloadedMusicDbHelper extends SQLiteOpenHelper {
+    private static final String TAG = "DownloadedMusicDbHelper";
+    private static final String DATABASE_NAME = "downloadedmusic.db";
+    private static final int DATABASE_VERSION = 6;
+
+    private static final String JOB_SELECTION = DownloadQueueEntry.COLUMN_USER_ID + "=? AND " +
+            DownloadQueueEntry.COLUMN_TRACK_ID + "=?";
+
+    private static final String[] JOB_COLUMNS = {
+            DownloadQueueEntry.COLUMN_USER_ID,
+            DownloadQueueEntry.COLUMN_TRACK_ID,
+            DownloadQueueEntry.COLUMN_TRACK_JSON,
+            DownloadQueueEntry.COLUMN_PRIORITY,
+            DownloadQueueEntry.COLUMN_STATE,
+            DownloadQueueEntry.COLUMN_ATTEMPTS,
+            DownloadQueueEntry.COLUMN_ERROR
+    };
+
+    private static final String TRACK_SELECTION = DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + "=? AND " +
+            DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID + "=?";
+
+    private static final String LIBRARY_SELECTION = LibraryEntry.COLUMN_USER_ID + "=? AND " +
+            LibraryEntry.COLUMN_LIST + "=?";
+    private static final String LIBRARY_TRACK_SELECTION = LIBRARY_SELECTION + " AND " +
+            LibraryEntry.COLUMN_TRACK_ID + "=?";
+    private static final String OUTBOX_SELECTION = LibraryOutboxEntry.COLUMN_USER_ID + "=? AND " +
+            LibraryOutboxEntry.COLUMN_LIST + "=?";
+
+    private static DownloadedMusicDbHelper instance;
+
+    public interface Query<T> {
+        T run(DownloadedMusicDbHelper dbHelper);
+    }
+
+    public interface QueryCallback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+        }
+    }
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Compiled once and reused for every lookup; a statement is not thread-safe, so the
+    // methods using them are synchronized
+    private SQLiteStatement isDownloadedStatement;
+    private SQLiteStatement filePathStatement;
+
+    /**
+     * The database stays open for the life of the process, so callers must not close it.
+     */
+    public static synchronized DownloadedMusicDbHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadedMusicDbHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DownloadedMusicDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        final String SQL_CREATE_ENTRIES =
+                "CREATE TABLE " + DownloadedMusicContract.TrackEntry.TABLE_NAME + " (" +
+                        DownloadedMusicContract.TrackEntry._ID + " INTEGER PRIMARY KEY," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " TEXT NOT NULL," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID + " INTEGER," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_TITLE + " TEXT," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_ARTIST + " TEXT," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_FILE_PATH + " TEXT," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_DURATION + " INTEGER," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_ALBUM_ART + " TEXT," +
+                        DownloadedMusicContract.TrackEntry.COLUMN_DOWNLOAD_DATE + " INTEGER," +
+                        "UNIQUE(" + DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + ", " +
+                        DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID + "))";
+
+        db.execSQL(SQL_CREATE_ENTRIES);
+        createDownloadQueueTable(db);
+        createPlaybackTables(db);
+        createLibraryTables(db);
+    }
+
+    private void createDownloadQueueTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + DownloadQueueEntry.TABLE_NAME + " (" +
+                DownloadQueueEntry._ID + " INTEGER PRIMARY KEY," +
+                DownloadQueueEntry.COLUMN_USER_ID + " TEXT NOT NULL," +
+                DownloadQueueEntry.COLUMN_TRACK_ID + " INTEGER NOT NULL," +
+                DownloadQueueEntry.COLUMN_TRACK_JSON + " TEXT NOT NULL," +
+                DownloadQueueEntry.COLUMN_PRIORITY + " INTEGER NOT NULL DEFAULT 0," +
+                DownloadQueueEntry.COLUMN_STATE + " TEXT NOT NULL," +
+                DownloadQueueEntry.COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0," +
+                DownloadQueueEntry.COLUMN_ERROR + " TEXT," +
+                DownloadQueueEntry.COLUMN_CREATED_AT + " INTEGER," +
+                DownloadQueueEntry.COLUMN_UPDATED_AT + " INTEGER," +
+                "UNIQUE(" + DownloadQueueEntry.COLUMN_USER_ID + ", " +
+                DownloadQueueEntry.COLUMN_TRACK_ID + "))");
+        db.execSQL("CREATE INDEX idx_download_queue_next ON " + DownloadQueueEntry.TABLE_NAME + " (" +
+                DownloadQueueEntry.COLUMN_USER_ID + ", " + DownloadQueueEntry.COLUMN_STATE + ", " +
+                DownloadQueueEntry.COLUMN_PRIORITY + " DESC, " + DownloadQueueEntry.COLUMN_CREATED_AT + ")");
+    }
+
+    private void createPlaybackTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + PlaybackQueueEntry.TABLE_NAME + " (" +
+                PlaybackQueueEntry.COLUMN_USER_ID + " TEXT NOT NULL," +
+                PlaybackQueueEntry.COLUMN_POSITION + " INTEGER NOT NULL," +
+                PlaybackQueueEntry.COLUMN_TRACK_ID + " INTEGER NOT NULL," +
+                PlaybackQueueEntry.COLUMN_TRACK_JSON + " TEXT NOT NULL," +
+                "PRIMARY KEY(" + PlaybackQueueEntry.COLUMN_USER_ID + ", " +
+                PlaybackQueueEntry.COLUMN_POSITION + "))");
+        db.execSQL("CREATE TABLE " + PlaybackStateEntry.TABLE_NAME + " (" +
+                PlaybackStateEntry.COLUMN_USER_ID + " TEXT PRIMARY KEY," +
+                PlaybackStateEntry.COLUMN_CURRENT_INDEX + " INTEGER NOT NULL DEFAULT -1," +
+                PlaybackStateEntry.COLUMN_POSITION_MS + " INTEGER NOT NULL DEFAULT 0," +
+                PlaybackStateEntry.COLUMN_UPDATED_AT + " INTEGER)");
+    }
+
+    private void createLibraryTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + LibraryEntry.TABLE_NAME + " (" +
+                LibraryEntry.COLUMN_USER_ID + " TEXT NOT NULL," +
+                LibraryEntry.COLUMN_LIST + " TEXT NOT NULL," +
+                LibraryEntry.COLUMN_TRACK_ID + " INTEGER NOT NULL," +
+                LibraryEntry.COLUMN_TRACK_JSON + " TEXT NOT NULL," +
+                LibraryEntry.COLUMN_ADDED_AT + " INTEGER NOT NULL," +
+                "PRIMARY KEY(" + LibraryEntry.COLUMN_USER_ID + ", " + LibraryEntry.COLUMN_LIST + ", " +
+                LibraryEntry.COLUMN_TRACK_ID + "))");
+        db.execSQL("CREATE INDEX idx_library_tracks_order ON " + LibraryEntry.TABLE_NAME + " (" +
+                LibraryEntry.COLUMN_USER_ID + ", " + LibraryEntry.COLUMN_LIST + ", " +
+                LibraryEntry.COLUMN_ADDED_AT + ")");
+        // AUTOINCREMENT so acknowledged ids are never handed out again
+        db.execSQL("CREATE TABLE " + LibraryOutboxEntry.TABLE_NAME + " (" +
+                LibraryOutboxEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                LibraryOutboxEntry.COLUMN_USER_ID + " TEXT NOT NULL," +
+                LibraryOutboxEntry.COLUMN_LIST + " TEXT NOT NULL," +
+                LibraryOutboxEntry.COLUMN_OP + " TEXT NOT NULL," +
+                LibraryOutboxEntry.COLUMN_TRACK_ID + " INTEGER NOT NULL," +
+                LibraryOutboxEntry.COLUMN_TRACK_JSON + " TEXT," +
+                LibraryOutboxEntry.COLUMN_CREATED_AT + " INTEGER)");
+        db.execSQL("CREATE INDEX idx_library_outbox_user ON " + LibraryOutboxEntry.TABLE_NAME + " (" +
+                LibraryOutboxEntry.COLUMN_USER_ID + ", " + LibraryOutboxEntry.COLUMN_LIST + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + DownloadedMusicContract.TrackEntry.TABLE_NAME +
+                    " ADD COLUMN " + DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + " TEXT DEFAULT ''");
+        }
+        if (oldVersion < 3) {
+            createDownloadQueueTable(db);
+        }
+        if (oldVersion < 4) {
+            createPlaybackTables(db);
+        }
+        if (oldVersion < 5) {
+            createLibraryTables(db);
+        }
+        if (oldVersion < 6) {
+            // Finished jobs used to stay in the queue for good
+            db.delete(DownloadQueueEntry.TABLE_NAME, DownloadQueueEntry.COLUMN_STATE + "=?",
+                    new String[]{DownloadQueueEntry.STATE_COMPLETED});
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Readers no longer block on the download queue's writes
+        db.enableWriteAheadLogging();
+    }
+
+    /**
+     * Runs {@code query} on the database I/O thread and delivers the result on the main thread.
+     */
+    public <T> void queryAsync(Query<T> query, QueryCallback<T> callback) {
+        ioExecutor.execute(() -> {
+            try {
+                T result = query.run(this);
+                mainHandler.post(() -> callback.onResult(result));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error running database query", e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    public synchronized boolean isTrackDownloaded(String userId, long trackId) {
+        if (isDownloadedStatement == null) {
+            isDownloadedStatement = getReadableDatabase().compileStatement(
+                    "SELECT COUNT(*) FROM " + DownloadedMusicContract.TrackEntry.TABLE_NAME +
+                    " WHERE " + TRACK_SELECTION);
+        }
+        SQLiteStatement statement = isDownloadedStatement;
+        statement.bindString(1, userId);
+        statement.bindLong(2, trackId);
+        try {
+            return statement.simpleQueryForLong() > 0;
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /**
+     * @return the stored file path of the user's download, or null if there is none
+     */
+    public synchronized String getTrackFilePath(String userId, long trackId) {
+        if (filePathStatement == null) {
+            filePathStatement = getReadableDatabase().compileStatement(
+                    "SELECT " + DownloadedMusicContract.TrackEntry.COLUMN_FILE_PATH +
+                    " FROM " + DownloadedMusicContract.TrackEntry.TABLE_NAME +
+                    " WHERE " + TRACK_SELECTION + " LIMIT 1");
+        }
+        SQLiteStatement statement = filePathStatement;
+        statement.bindString(1, userId);
+        statement.bindLong(2, trackId);
+        try {
+            return statement.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            Log.d(TAG, "No file path found for track " + trackId);
+            return null;
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    public int deleteDownloadedTrack(String userId, long trackId) {
+        return getWritableDatabase().delete(DownloadedMusicContract.TrackEntry.TABLE_NAME,
+                TRACK_SELECTION, new String[]{userId, String.valueOf(trackId)});
+    }
+
+    /**
+     * Adds a job to the download queue, or puts an existing paused or failed job back in
+     * the queue. An existing job keeps the higher of its old and new priority.
+     */
+    public void queueDownloadJob(String userId, long trackId, String trackJson, int priority) {
+        Map<Long, String> single = new LinkedHashMap<>();
+        single.put(trackId, trackJson);
+        queueDownloadJobs(userId, single, priority);
+    }
+
+    /**
+     * Same as {@link #queueDownloadJob} for many tracks, in a single transaction.
+     *
+     * @param trackJsonById serialized track per track id, in queue order
+     */
+    public void queueDownloadJobs(String userId, Map<Long, String> trackJsonById, int priority) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<Long, String> entry : trackJsonById.entrySet()) {
+                long trackId = entry.getKey();
+                DownloadJob existing = getDownloadJob(db, userId, trackId);
+                ContentValues values = new ContentValues();
+                values.put(DownloadQueueEntry.COLUMN_TRACK_JSON, entry.getValue());
+                values.put(DownloadQueueEntry.COLUMN_UPDATED_AT, now);
+                if (existing == null) {
+                    values.put(DownloadQueueEntry.COLUMN_USER_ID, userId);
+                    values.put(DownloadQueueEntry.COLUMN_TRACK_ID, trackId);
+                    values.put(DownloadQueueEntry.COLUMN_PRIORITY, priority);
+                    values.put(DownloadQueueEntry.COLUMN_STATE, DownloadQueueEntry.STATE_QUEUED);
+                    // Keeps the list order among jobs queued in the same millisecond
+                    values.put(DownloadQueueEntry.COLUMN_CREATED_AT, now++);
+                    db.insert(DownloadQueueEntry.TABLE_NAME, null, values);
+                } else {
+                    values.put(DownloadQueueEntry.COLUMN_PRIORITY, Math.max(priority, existing.getPriority()));
+                    if (!DownloadQueueEntry.STATE_ACTIVE.equals(existing.getState())) {
+                        values.put(DownloadQueueEntry.COLUMN_STATE, DownloadQueueEntry.STATE_QUEUED);
+                        values.putNull(DownloadQueueEntry.COLUMN_ERROR);
+                    }
+                    db.update(DownloadQueueEntry.TABLE_NAME, values, JOB_SELECTION,
+                            new String[]{userId, String.valueOf(trackId)});
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Records finished downloads in one transaction: each row goes into the downloaded
+     * tracks table and the matching queue job is removed.
+     *
+     * @param trackRows {@link DownloadedMusicContract.TrackEntry} values, including user and track id
+     */
+    public void completeDownloads(List<ContentValues> trackRows) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues row : trackRows) {
+                db.insertWithOnConflict(DownloadedMusicContract.TrackEntry.TABLE_NAME, null, row,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                db.delete(DownloadQueueEntry.TABLE_NAME, JOB_SELECTION, new String[]{
+                        row.getAsString(DownloadedMusicContract.TrackEntry.COLUMN_USER_ID),
+                        row.getAsString(DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Saved " + trackRows.size() + " downloaded tracks in one transaction");
+    }
+
+    LongHashSet loadDownloadedTrackIds(String userId) {
+        try (Cursor cursor = getReadableDatabase().query(DownloadedMusicContract.TrackEntry.TABLE_NAME,
+                new String[]{DownloadedMusicContract.TrackEntry.COLUMN_TRACK_ID},
+                DownloadedMusicContract.TrackEntry.COLUMN_USER_ID + "=?", new String[]{userId},
+                null, null, null)) {
+            LongHashSet ids = new LongHashSet(cursor.getCount());
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+            return ids;
+        }
+    }
+
+    private static DownloadJob readJob(Cursor cursor) {
+        return new DownloadJob(cursor.getString(0), cursor.getLong(1), cursor.getString(2),
+                cursor.getInt(3), cursor.getString(4), cursor.getInt(5), cursor.getString(6));
+    }
+
+    private DownloadJob getDownloadJob(SQLiteDatabase db, String userId, long trackId) {
+        try (Cursor cursor = db.query(DownloadQueueEntry.TABLE_NAME, JOB_COLUMNS, JOB_SELECTION,
+                new String[]{userId, String.valueOf(trackId)}, null, null, null)) {
+            return cursor.moveToFirst() ? readJob(cursor) : null;
+        }
+    }
+
+    public DownloadJob getDownloadJob(String userId, long trackId) {
+        return getDownloadJob(getReadableDatabase(), userId, trackId);
+    }
+
+    /**
+     * Highest-priority queued job for the user, oldest first within a priority.
+     */
+    public DownloadJob nextQueuedDownloadJob(String userId) {
+        try (Cursor cursor = getReadableDatabase().query(DownloadQueueEntry.TABLE_NAME, JOB_COLUMNS,
+                DownloadQueueEntry.COLUMN_USER_ID + "=? AND " + DownloadQueueEntry.COLUMN_STATE + "=?",
+                new String[]{userId, DownloadQueueEntry.STATE_QUEUED}, null, null,
+                DownloadQueueEntry.COLUMN_PRIORITY + " DESC, " + DownloadQueueEntry.COLUMN_CREATED_AT + " ASC",
+                "1")) {
+            return cursor.moveToFirst() ? readJob(cursor) : null;
+        }
+    }
+
+    public List<DownloadJob> getDownloadJobs(String userId) {
+        List<DownloadJob> jobs = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(DownloadQueueEntry.TABLE_NAME, JOB_COLUMNS,
+                DownloadQueueEntry.COLUMN_USER_ID + "=?", new String[]{userId}, null, null,
+                DownloadQueueEntry.COLUMN_PRIORITY + " DESC, " + DownloadQueueEntry.COLUMN_CREATED_AT + " ASC")) {
+            while (cursor.moveToNext()) {
+                jobs.add(readJob(cursor));
+            }
+        }
+        return jobs;
+    }
+
+    public void setDownloadJobState(String userId, long trackId, String state, String error) {
+        ContentValues values = new ContentValues();
+        values.put(DownloadQueueEntry.COLUMN_STATE, state);
+        values.put(DownloadQueueEntry.COLUMN_ERROR, error);
+        values.put(DownloadQueueEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        getWritableDatabase().update(DownloadQueueEntry.TABLE_NAME, values, JOB_SELECTION,
+                new String[]{userId, String.valueOf(trackId)});
+    }
+
+    public void incrementDownloadJobAttempts(String userId, long trackId) {
+        getWritableDatabase().execSQL("UPDATE " + DownloadQueueEntry.TABLE_NAME + " SET " +
+                DownloadQueueEntry.COLUMN_ATTEMPTS + " = " + DownloadQueueEntry.COLUMN_ATTEMPTS + " + 1 WHERE " +
+                JOB_SELECTION, new Object[]{userId, trackId});
+    }
+
+    public void removeDownloadJob(String userId, long trackId) {
+        getWritableDatabase().delete(DownloadQueueEntry.TABLE_NAME, JOB_SELECTION,
+                new String[]{userId, String.valueOf(trackId)});
+    }
+
+    /**
+     * Jobs that were running when the process died go back to the queue.
+     */
+    public int requeueActiveDownloadJobs() {
+        ContentValues values = new ContentValues();
+        values.put(DownloadQueueEntry.COLUMN_STATE, DownloadQueueEntry.STATE_QUEUED);
+        return getWritableDatabase().update(DownloadQueueEntry.TABLE_NAME, values,
+                DownloadQueueEntry.COLUMN_STATE + "=?", new String[]{DownloadQueueEntry.STATE_ACTIVE});
+    }
+
+    /**
+     * Applies a batch of playback state changes in one transaction. Replacing the queue
+     * rewrites it; appending only inserts the new rows; a moved index or position touches a
+     * single row.
+     */
+    public void writePlaybackState(String userId, PlaybackStateDelta delta) {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] user = {userId};
+        db.beginTransaction();
+        try {
+            if (delta.clear || delta.replaceQueue) {
+                db.delete(PlaybackQueueEntry.TABLE_NAME, PlaybackQueueEntry.COLUMN_USER_ID + "=?", user);
+            }
+            if (delta.clear) {
+                db.delete(PlaybackStateEntry.TABLE_NAME, PlaybackStateEntry.COLUMN_USER_ID + "=?", user);
+            }
+            if (!delta.trackIds.isEmpty()) {
+                int position = delta.replaceQueue ? 0 : delta.firstPosition;
+                ContentValues row = new ContentValues();
+                for (int i = 0; i < delta.trackIds.size(); i++) {
+                    row.put(PlaybackQueueEntry.COLUMN_USER_ID, userId);
+                    row.put(PlaybackQueueEntry.COLUMN_POSITION, position + i);
+                    row.put(PlaybackQueueEntry.COLUMN_TRACK_ID, delta.trackIds.get(i));
+                    row.put(PlaybackQueueEntry.COLUMN_TRACK_JSON, delta.trackJson.get(i));
+                    db.insertWithOnConflict(PlaybackQueueEntry.TABLE_NAME, null, row,
+                            SQLiteDatabase.CONFLICT_REPLACE);
+                }
+            }
+            if (delta.currentIndex >= 0 || delta.positionMs >= 0) {
+                ContentValues state = new ContentValues();
+                if (delta.currentIndex >= 0) {
+                    state.put(PlaybackStateEntry.COLUMN_CURRENT_INDEX, delta.currentIndex);
+                }
+                if (delta.positionMs >= 0) {
+                    state.put(PlaybackStateEntry.COLUMN_POSITION_MS, delta.positionMs);
+                }
+                state.put(PlaybackStateEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+                if (db.update(PlaybackStateEntry.TABLE_NAME, state,
+                        PlaybackStateEntry.COLUMN_USER_ID + "=?", user) == 0) {
+                    state.put(PlaybackStateEntry.COLUMN_USER_ID, userId);
+                    db.insert(PlaybackStateEntry.TABLE_NAME, null, state);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The saved queue and position of a user, or {@code null} when nothing is saved.
+     */
+    public SavedPlaybackState loadPlaybackState(String userId) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] user = {userId};
+        List<String> trackJson = new ArrayList<>();
+        try (Cursor cursor = db.query(PlaybackQueueEntry.TABLE_NAME,
+                new String[]{PlaybackQueueEntry.COLUMN_TRACK_JSON},
+                PlaybackQueueEntry.COLUMN_USER_ID + "=?", user, null, null,
+                PlaybackQueueEntry.COLUMN_POSITION)) {
+            while (cursor.moveToNext()) {
+                trackJson.add(cursor.getString(0));
+            }
+        }
+        if (trackJson.isEmpty()) return null;
+
+        int currentIndex = -1;
+        long positionMs = 0;
+        try (Cursor cursor = db.query(PlaybackStateEntry.TABLE_NAME,
+                new String[]{PlaybackStateEntry.COLUMN_CURRENT_INDEX, PlaybackStateEntry.COLUMN_POSITION_MS},
+                PlaybackStateEntry.COLUMN_USER_ID + "=?", user, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                currentIndex = cursor.getInt(0);
+                positionMs = cursor.getLong(1);
+            }
+        }
+        return new SavedPlaybackState(trackJson, currentIndex, positionMs);
+    }
+
+    LongHashSet loadLibraryTrackIds(String userId, String list) {
+        try (Cursor cursor = getReadableDatabase().query(LibraryEntry.TABLE_NAME,
+                new String[]{LibraryEntry.COLUMN_TRACK_ID}, LIBRARY_SELECTION,
+                new String[]{userId, list}, null, null, null)) {
+            LongHashSet ids = new LongHashSet(cursor.getCount());
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Serialized tracks of one of the user's library lists, in the order they were added.
+     */
+    public List<String> loadLibraryTracks(String userId, String list, boolean newestFirst) {
+        List<String> trackJson = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(LibraryEntry.TABLE_NAME,
+                new String[]{LibraryEntry.COLUMN_TRACK_JSON}, LIBRARY_SELECTION,
+                new String[]{userId, list}, null, null,
+                LibraryEntry.COLUMN_ADDED_AT + (newestFirst ? " DESC" : " ASC"))) {
+            while (cursor.moveToNext()) {
+                trackJson.add(cursor.getString(0));
+            }
+        }
+        return trackJson;
+    }
+
+    /**
+     * Adds a track to a library list, or removes it, in one transaction with its outbox
+     * entry. An earlier edit of the same track that is still in the outbox is replaced, so
+     * the outbox holds at most one edit per track.
+     *
+     * @param op          {@link LibraryOutboxEntry#OP_PUT} or {@link LibraryOutboxEntry#OP_DELETE}
+     * @param trackJson   serialized track; ignored when removing
+     * @param keepNewest  drops all but this many most recently added tracks, or 0 to keep all
+     */
+    public void editLibrary(String userId, String list, String op, long trackId, String trackJson,
+                            int keepNewest) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        String[] track = {userId, list, String.valueOf(trackId)};
+        db.beginTransaction();
+        try {
+            if (LibraryOutboxEntry.OP_DELETE.equals(op)) {
+                db.delete(LibraryEntry.TABLE_NAME, LIBRARY_TRACK_SELECTION, track);
+            } else {
+                putLibraryTrack(db, userId, list, trackId, trackJson, now);
+            }
+            if (keepNewest > 0) {
+                trimLibrary(db, userId, list, keepNewest);
+            }
+            db.delete(LibraryOutboxEntry.TABLE_NAME, OUTBOX_SELECTION + " AND " +
+                    LibraryOutboxEntry.COLUMN_TRACK_ID + "=?", track);
+            ContentValues entry = new ContentValues();
+            entry.put(LibraryOutboxEntry.COLUMN_USER_ID, userId);
+            entry.put(LibraryOutboxEntry.COLUMN_LIST, list);
+            entry.put(LibraryOutboxEntry.COLUMN_OP, op);
+            entry.put(LibraryOutboxEntry.COLUMN_TRACK_ID, trackId);
+            entry.put(LibraryOutboxEntry.COLUMN_TRACK_JSON, trackJson);
+            entry.put(LibraryOutboxEntry.COLUMN_CREATED_AT, now);
+            db.insert(LibraryOutboxEntry.TABLE_NAME, null, entry);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the stored copy of a track that is already in a list, keeping its place.
+     * Local only; nothing goes to the outbox.
+     */
+    public void updateLibraryTrack(String userId, String list, long trackId, String trackJson) {
+        ContentValues values = new ContentValues();
+        values.put(LibraryEntry.COLUMN_TRACK_JSON, trackJson);
+        getWritableDatabase().update(LibraryEntry.TABLE_NAME, values, LIBRARY_TRACK_SELECTION,
+                new String[]{userId, list, String.valueOf(trackId)});
+    }
+
+    /** Empties a library list on this device only. */
+    public void clearLibrary(String userId, String list) {
+        getWritableDatabase().delete(LibraryEntry.TABLE_NAME, LIBRARY_SELECTION, new String[]{userId, list});
+    }
+
+    /**
+     * Replaces a library list with the remote copy, then replays the user's edits still in
+     * the outbox on top of it, all in one transaction. Local edits therefore survive a pull
+     * that happens before they were pushed.
+     *
+     * @param newestFirst whether the remote lists its tracks newest first
+     */
+    public void mergeRemoteLibrary(String userId, String list, List<Long> trackIds, List<String> trackJson,
+                                   boolean newestFirst) {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] selection = {userId, list};
+        long now = System.currentTimeMillis();
+        int count = trackIds.size();
+        db.beginTransaction();
+        try {
+            db.delete(LibraryEntry.TABLE_NAME, LIBRARY_SELECTION, selection);
+            for (int i = 0; i < count; i++) {
+                // Timestamps only need to reproduce the remote order
+                long addedAt = newestFirst ? now - i : now - count + i;
+                putLibraryTrack(db, userId, list, trackIds.get(i), trackJson.get(i), addedAt);
+            }
+            try (Cursor cursor = db.query(LibraryOutboxEntry.TABLE_NAME, new String[]{
+                            LibraryOutboxEntry.COLUMN_OP, LibraryOutboxEntry.COLUMN_TRACK_ID,
+                            LibraryOutboxEntry.COLUMN_TRACK_JSON},
+                    OUTBOX_SELECTION, selection, null, null, LibraryOutboxEntry._ID)) {
+                while (cursor.moveToNext()) {
+                    long trackId = cursor.getLong(1);
+                    if (LibraryOutboxEntry.OP_DELETE.equals(cursor.getString(0))) {
+                        db.delete(LibraryEntry.TABLE_NAME, LIBRARY_TRACK_SELECTION,
+                                new String[]{userId, list, String.valueOf(trackId)});
+                    } else {
+                        // Pending additions are newer than anything the remote has
+                        putLibraryTrack(db, userId, list, trackId, cursor.getString(2), ++now);
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Applies tracks added, changed or removed remotely to a library list in one transaction.
+     * Tracks with an edit still in the outbox are left alone, since the local edit is newer.
+     * New tracks go after the ones already in the list.
+     *
+     * @return ids of the tracks whose rows were added, rewritten with different data or deleted
+     */
+    public long[] applyRemoteLibraryChanges(String userId, String list, List<Long> trackIds,
+                                            List<String> trackJson, long[] removedIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        long[] changed = new long[trackIds.size() + removedIds.length];
+        int count = 0;
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            LongHashSet pending;
+            try (Cursor cursor = db.query(LibraryOutboxEntry.TABLE_NAME,
+                    new String[]{LibraryOutboxEntry.COLUMN_TRACK_ID}, OUTBOX_SELECTION,
+                    new String[]{userId, list}, null, null, null)) {
+                pending = new LongHashSet(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    pending.add(cursor.getLong(0));
+                }
+            }
+            for (int i = 0; i < trackIds.size(); i++) {
+                long trackId = trackIds.get(i);
+                if (pending.contains(trackId)) continue;
+                String[] track = {userId, list, String.valueOf(trackId)};
+                String stored = null;
+                try (Cursor cursor = db.query(LibraryEntry.TABLE_NAME,
+                        new String[]{LibraryEntry.COLUMN_TRACK_JSON}, LIBRARY_TRACK_SELECTION,
+                        track, null, null, null)) {
+                    if (cursor.moveToFirst()) stored = cursor.getString(0);
+                }
+                if (stored == null) {
+                    putLibraryTrack(db, userId, list, trackId, trackJson.get(i), ++now);
+                } else if (!stored.equals(trackJson.get(i))) {
+                    ContentValues values = new ContentValues();
+                    values.put(LibraryEntry.COLUMN_TRACK_JSON, trackJson.get(i));
+                    db.update(LibraryEntry.TABLE_NAME, values, LIBRARY_TRACK_SELECTION, track);
+                } else {
+                    continue;
+                }
+                changed[count++] = trackId;
+            }
+            for (long trackId : removedIds) {
+                if (pending.contains(trackId)) continue;
+                if (db.delete(LibraryEntry.TABLE_NAME, LIBRARY_TRACK_SELECTION,
+                        new String[]{userId, list, String.valueOf(trackId)}) > 0) {
+                    changed[count++] = trackId;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count == changed.length ? changed : Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * The user's oldest outbox entries, at most {@code limit} of them, oldest first.
+     */
+    public List<LibraryOp> loadLibraryOps(String userId, int limit) {
+        List<LibraryOp> ops = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(LibraryOutboxEntry.TABLE_NAME, new String[]{
+                        LibraryOutboxEntry._ID, LibraryOutboxEntry.COLUMN_LIST, LibraryOutboxEntry.COLUMN_OP,
+                        LibraryOutboxEntry.COLUMN_TRACK_ID, LibraryOutboxEntry.COLUMN_TRACK_JSON,
+                        LibraryOutboxEntry.COLUMN_CREATED_AT},
+                LibraryOutboxEntry.COLUMN_USER_ID + "=?", new String[]{userId}, null, null,
+                LibraryOutboxEntry._ID, String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                ops.add(new LibraryOp(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3), cursor.getString(4), cursor.getLong(5)));
+            }
+        }
+        return ops;
+    }
+
+    /** Drops the user's outbox entries up to and including {@code lastOpId} once they are pushed. */
+    public int acknowledgeLibraryOps(String userId, long lastOpId) {
+        return getWritableDatabase().delete(LibraryOutboxEntry.TABLE_NAME,
+                LibraryOutboxEntry.COLUMN_USER_ID + "=? AND " + LibraryOutboxEntry._ID + "<=?",
+                new String[]{userId, String.valueOf(lastOpId)});
+    }
+
+    private static void putLibraryTrack(SQLiteDatabase db, String userId, String list, long trackId,
+                                        String trackJson, long addedAt) {
+        ContentValues row = new ContentValues();
+        row.put(LibraryEntry.COLUMN_USER_ID, userId);
+        row.put(LibraryEntry.COLUMN_LIST, list);
+        row.put(LibraryEntry.COLUMN_TRACK_ID, trackId);
+        row.put(LibraryEntry.COLUMN_TRACK_JSON, trackJson);
+        row.put(LibraryEntry.COLUMN_ADDED_AT, addedAt);
+        db.insertWithOnConflict(LibraryEntry.TABLE_NAME, null, row, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static void trimLibrary(SQLiteDatabase db, String userId, String list, int keepNewest) {
+        db.execSQL("DELETE FROM " + LibraryEntry.TABLE_NAME + " WHERE " + LIBRARY_SELECTION + " AND " +
+                LibraryEntry.COLUMN_TRACK_ID + " NOT IN (SELECT " + LibraryEntry.COLUMN_TRACK_ID +
+                " FROM " + LibraryEntry.TABLE_NAME + " WHERE " + LIBRARY_SELECTION +
+                " ORDER BY " + LibraryEntry.COLUMN_ADDED_AT + " DESC LIMIT " + keepNewest + ")",
+                new Object[]{userId, list, userId, list});
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.melodix.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory set of downloaded track ids per user, read from the database once and then
+ * kept current by the download and delete paths, so "is this track downloaded" never
+ * touches SQLite or allocates.
+ *
+ * Changes are published to {@link Listener}s on the main thread.
+ */
+public class DownloadedTrackIndex {
+    private static final String TAG = "DownloadedTrackIndex";
+    private static DownloadedTrackIndex instance;
+
+    public interface Listener {
+        void onDownloadedTracksChanged(String userId, long[] added, long[] removed);
+    }
+
+    private static final long[] NONE = new long[0];
+
+    private final DownloadedMusicDbHelper dbHelper;
+    private final Map<String, LongHashSet> idsByUser = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private DownloadedTrackIndex(Context context) {
+        dbHelper = DownloadedMusicDbHelper.getInstance(context);
+    }
+
+    public static synchronized DownloadedTrackIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadedTrackIndex(context);
+        }
+        return instance;
+    }
+
+    private LongHashSet idsFor(String userId) {
+        LongHashSet ids = idsByUser.get(userId);
+        if (ids == null) {
+            ids = dbHelper.loadDownloadedTrackIds(userId);
+            idsByUser.put(userId, ids);
+            Log.d(TAG, "Indexed " + ids.size() + " downloaded tracks for " + userId);
+        }
+        return ids;
+    }
+
+    public synchronized boolean contains(String userId, long trackId) {
+        return idsFor(userId).contains(trackId);
+    }
+
+    public synchronized int size(String userId) {
+        return idsFor(userId).size();
+    }
+
+    public void markDownloaded(String userId, long... trackIds) {
+        long[] added;
+        synchronized (this) {
+            added = apply(idsFor(userId), trackIds, true);
+        }
+        if (added.length > 0) publish(userId, added, NONE);
+    }
+
+    public void markRemoved(String userId, long... trackIds) {
+        long[] removed;
+        synchronized (this) {
+            removed = apply(idsFor(userId), trackIds, false);
+        }
+        if (removed.length > 0) publish(userId, NONE, removed);
+    }
+
+    // Returns only the ids whose state actually changed
+    private static long[] apply(LongHashSet ids, long[] trackIds, boolean add) {
+        long[] changed = new long[trackIds.length];
+        int count = 0;
+        for (long trackId : trackIds) {
+            if (add ? ids.add(trackId) : ids.remove(trackId)) {
+                changed[count++] = trackId;
+            }
+        }
+        return count == changed.length ? changed : Arrays.copyOf(changed, count);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void publish(String userId, long[] added, long[] removed) {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onDownloadedTracksChanged(userId, added, removed);
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.melodix.database;
+
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.model.Track;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in one of a user's library lists, row by row, so a screen can update only the
+ * rows involved instead of reading the whole list again. Added tracks belong at the end of the
+ * favorites and at the front of the recently played tracks, in the order given.
+ *
+ * A change that cannot be described that way, e.g. the list was cleared or reordered, is a
+ * reset; the screen then reads the list again.
+ */
+public class LibraryChange {
+    private static final long[] NONE = new long[0];
+
+    private final String list;
+    private final List<Track> added;
+    private final List<Track> updated;
+    private final long[] removed;
+    private final boolean reset;
+
+    LibraryChange(String list, List<Track> added, List<Track> updated, long[] removed) {
+        this(list, added, updated, removed, false);
+    }
+
+    private LibraryChange(String list, List<Track> added, List<Track> updated, long[] removed, boolean reset) {
+        this.list = list;
+        this.added = added;
+        this.updated = updated;
+        this.removed = removed;
+        this.reset = reset;
+    }
+
+    static LibraryChange added(String list, Track track, long... removed) {
+        return new LibraryChange(list, Collections.singletonList(track), Collections.emptyList(), removed);
+    }
+
+    static LibraryChange removed(String list, long trackId) {
+        return new LibraryChange(list, Collections.emptyList(), Collections.emptyList(), new long[]{trackId});
+    }
+
+    static LibraryChange reset(String list) {
+        return new LibraryChange(list, Collections.emptyList(), Collections.emptyList(), NONE, true);
+    }
+
+    /** {@link LibraryEntry#LIST_FAVORITES} or {@link LibraryEntry#LIST_RECENTS}. */
+    public String getList() {
+        return list;
+    }
+
+    /** Whether the list is shown newest first, so added tracks go to the front. */
+    public boolean isNewestFirst() {
+        return LibraryEntry.LIST_RECENTS.equals(list);
+    }
+
+    public List<Track> getAdded() {
+        return added;
+    }
+
+    /** Newer copies of tracks already in the list; they keep their place. */
+    public List<Track> getUpdated() {
+        return updated;
+    }
+
+    public long[] getRemoved() {
+        return removed;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public boolean isEmpty() {
+        return !reset && added.isEmpty() && updated.isEmpty() && removed.length == 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.melodix.database;
+
+/**
+ * One row of the library outbox: a favorite or recently played track added or removed on
+ * this device and not yet pushed.
+ */
+public class LibraryOp {
+    private final long id;
+    private final String list;
+    private final String op;
+    private final long trackId;
+    private final String trackJson;
+    private final long createdAt;
+
+    public LibraryOp(long id, String list, String op, long trackId, String trackJson, long createdAt) {
+        this.id = id;
+        this.list = list;
+        this.op = op;
+        this.trackId = trackId;
+        this.trackJson = trackJson;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getList() {
+        return list;
+    }
+
+    /** {@link DownloadedMusicContract.LibraryOutboxEntry#OP_PUT} or {@link DownloadedMusicContract.LibraryOutboxEntry#OP_DELETE}. */
+    public String getOp() {
+        return op;
+    }
+
+    public long getTrackId() {
+        return trackId;
+    }
+
+    /** Serialized track; null when the track was removed. */
+    public String getTrackJson() {
+        return trackJson;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,581 @@
+package com.example.melodix.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.database.DownloadedMusicContract.LibraryOutboxEntry;
+import com.example.melodix.model.Track;
+import com.example.melodix.model.TrackJson;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Favorites and recently played tracks of each user, kept in the {@code library_tracks} table
+ * so both render immediately and work offline.
+ *
+ * Favorite ids are also held in memory, so "is this track a favorite" never touches SQLite,
+ * and so are the recently played tracks, in a ring buffer that a play updates at once. Both
+ * are read on the database I/O thread when a user signs in. The lock guards only these
+ * in-memory copies and is never held over database work, so the main thread does not wait
+ * on a sync; the sync reads and writes first and then puts new copies in place in one step.
+ * Every edit is written together with an entry in the {@code library_outbox} table; a syncer
+ * pushes those to the server and brings remote changes back in with {@link #mergeRemote} and
+ * {@link #applyRemoteFavorites}. Every change, local or remote, is published to
+ * {@link Listener}s on the main thread as a {@link LibraryChange} naming the rows involved.
+ */
+public class LibraryStore {
+    private static final String TAG = "LibraryStore";
+    private static LibraryStore instance;
+
+    public static final int MAX_RECENTS = 10;
+
+    // Where older versions kept both lists, in the per-user preferences of UserPreferencesManager
+    private static final String LEGACY_PREF_NAME_PREFIX = "MelodixPrefs_";
+    private static final String LEGACY_KEY_FAVORITES = "favorites";
+    private static final String LEGACY_KEY_RECENTS = "recentTracks";
+
+    public interface Listener {
+        void onLibraryChanged(String userId, LibraryChange change);
+    }
+
+    private static final long[] NONE = new long[0];
+
+    private final Context context;
+    private final DownloadedMusicDbHelper dbHelper;
+    private final Gson gson = TrackJson.gson();
+    // Guarded by this. Remote changes put new instances in place; local edits change them in
+    // place, and check once written whether the instance they changed has been replaced since.
+    private final Map<String, LongHashSet> favoriteIdsByUser = new HashMap<>();
+    private final Map<String, RecentTracksBuffer> recentsByUser = new HashMap<>();
+    private final Set<String> loadingUsers = new HashSet<>();
+    // Guarded by migrationLock, which is held over database work and so never taken by the lists
+    private final Set<String> migratedUsers = new HashSet<>();
+    private final Object migrationLock = new Object();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Runnable onOutboxChanged;
+
+    private LibraryStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DownloadedMusicDbHelper.getInstance(this.context);
+        // Also called right away for the user already signed in
+        FirebaseAuth.getInstance().addAuthStateListener(auth -> load(currentUserId()));
+    }
+
+    public static synchronized LibraryStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LibraryStore(context);
+        }
+        return instance;
+    }
+
+    public static String currentUserId() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : "anonymous";
+    }
+
+    private static boolean isNewestFirst(String list) {
+        return LibraryEntry.LIST_RECENTS.equals(list);
+    }
+
+    /**
+     * Reads the user's favorite ids and recently played tracks into memory on the database I/O
+     * thread, unless they are there already. Listeners get a favorites reset once it is done.
+     */
+    public void load(String userId) {
+        synchronized (this) {
+            if (favoriteIdsByUser.containsKey(userId) && recentsByUser.containsKey(userId)) return;
+            if (!loadingUsers.add(userId)) return;
+        }
+        dbHelper.queryAsync(db -> {
+            loadFavoriteIds(userId);
+            loadRecentTracks(userId);
+            return null;
+        }, new DownloadedMusicDbHelper.QueryCallback<Void>() {
+            @Override
+            public void onResult(Void result) {
+                synchronized (LibraryStore.this) {
+                    loadingUsers.remove(userId);
+                }
+                // Hearts drawn before this showed every track as not a favorite
+                notifyListeners(userId, LibraryChange.reset(LibraryEntry.LIST_FAVORITES));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                synchronized (LibraryStore.this) {
+                    loadingUsers.remove(userId);
+                }
+                Log.e(TAG, "❌ Error loading library for " + userId, e);
+            }
+        });
+    }
+
+    // Reads the database when the ids are not in memory yet, so not on the main thread
+    private void loadFavoriteIds(String userId) {
+        synchronized (this) {
+            if (favoriteIdsByUser.containsKey(userId)) return;
+        }
+        migrateLegacy(userId);
+        LongHashSet ids = dbHelper.loadLibraryTrackIds(userId, LibraryEntry.LIST_FAVORITES);
+        synchronized (this) {
+            if (favoriteIdsByUser.containsKey(userId)) return;
+            favoriteIdsByUser.put(userId, ids);
+        }
+        Log.d(TAG, "Indexed " + ids.size() + " favorites for " + userId);
+    }
+
+    // Reads the database when the tracks are not in memory yet, so not on the main thread
+    private void loadRecentTracks(String userId) {
+        synchronized (this) {
+            if (recentsByUser.containsKey(userId)) return;
+        }
+        migrateLegacy(userId);
+        RecentTracksBuffer recents = new RecentTracksBuffer(MAX_RECENTS);
+        recents.fill(readTracks(userId, LibraryEntry.LIST_RECENTS));
+        synchronized (this) {
+            if (!recentsByUser.containsKey(userId)) recentsByUser.put(userId, recents);
+        }
+    }
+
+    /**
+     * Answered from memory. Until the user's favorites are loaded, see {@link #load}, every
+     * track is reported as not a favorite.
+     */
+    public boolean isFavorite(long trackId) {
+        String userId = currentUserId();
+        synchronized (this) {
+            LongHashSet ids = favoriteIdsByUser.get(userId);
+            if (ids != null) return ids.contains(trackId);
+        }
+        load(userId);
+        return false;
+    }
+
+    /** Favorites of the current user in the order they were added, delivered on the main thread. */
+    public void getFavorites(DownloadedMusicDbHelper.QueryCallback<List<Track>> callback) {
+        String userId = currentUserId();
+        dbHelper.queryAsync(db -> loadTracks(userId, LibraryEntry.LIST_FAVORITES), callback);
+    }
+
+    /** Recently played tracks of the current user, newest first, delivered on the main thread. */
+    public void getRecents(DownloadedMusicDbHelper.QueryCallback<List<Track>> callback) {
+        String userId = currentUserId();
+        dbHelper.queryAsync(db -> loadTracks(userId, LibraryEntry.LIST_RECENTS), callback);
+    }
+
+    /** Same as {@link #getFavorites} but reads the database on the calling thread. */
+    public List<Track> loadFavorites() {
+        return loadTracks(currentUserId(), LibraryEntry.LIST_FAVORITES);
+    }
+
+    /** Same as {@link #getRecents} but reads the database on the calling thread. */
+    public List<Track> loadRecents() {
+        return loadTracks(currentUserId(), LibraryEntry.LIST_RECENTS);
+    }
+
+    public List<Track> loadTracks(String userId, String list) {
+        if (LibraryEntry.LIST_RECENTS.equals(list)) {
+            loadRecentTracks(userId);
+            synchronized (this) {
+                return recentsByUser.get(userId).toList();
+            }
+        }
+        migrateLegacy(userId);
+        return readTracks(userId, list);
+    }
+
+    private List<Track> readTracks(String userId, String list) {
+        return readTracks(userId, list, null);
+    }
+
+    // Also collects the stored JSON of each track read into storedJson, when given
+    private List<Track> readTracks(String userId, String list, List<String> storedJson) {
+        List<String> stored = dbHelper.loadLibraryTracks(userId, list, isNewestFirst(list));
+        List<Track> tracks = new ArrayList<>(stored.size());
+        for (String json : stored) {
+            try {
+                Track track = gson.fromJson(json, Track.class);
+                if (track == null) continue;
+                tracks.add(track);
+                if (storedJson != null) storedJson.add(json);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Skipping unreadable library entry: " + e.getMessage());
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Adds the track to the current user's favorites or removes it. {@link #isFavorite} reflects
+     * the change right away; the database write and outbox entry follow on the I/O thread.
+     */
+    public void setFavorite(Track track, boolean favorite) {
+        if (track == null) return;
+        String userId = currentUserId();
+        long trackId = track.getId();
+        LongHashSet edited;
+        synchronized (this) {
+            edited = favoriteIdsByUser.get(userId);
+            if (edited != null && (favorite ? !edited.add(trackId) : !edited.remove(trackId))) return;
+        }
+        // Not loaded yet; queued ahead of the edit, which then applies itself to the loaded ids
+        if (edited == null) load(userId);
+        String list = LibraryEntry.LIST_FAVORITES;
+        String json = favorite ? gson.toJson(track, Track.class) : null;
+        edit(userId, list, favorite ? LibraryOutboxEntry.OP_PUT : LibraryOutboxEntry.OP_DELETE, trackId, json, 0,
+                favorite ? LibraryChange.added(list, track) : LibraryChange.removed(list, trackId),
+                () -> reapplyFavorite(userId, edited, trackId, favorite));
+        Log.d(TAG, (favorite ? "❤️ Added to" : "💔 Removed from") + " favorites: " + track.getTitle());
+    }
+
+    /**
+     * Moves the track to the front of the current user's recently played tracks. Listeners
+     * hear about it right away; the play is saved and queued for upload in the background.
+     */
+    public void addRecent(Track track) {
+        if (track == null) return;
+        String userId = currentUserId();
+        String list = LibraryEntry.LIST_RECENTS;
+        RecentTracksBuffer edited;
+        long[] removed = NONE;
+        synchronized (this) {
+            edited = recentsByUser.get(userId);
+            // A replayed track leaves its old row; otherwise the oldest one may drop off
+            if (edited != null && edited.contains(track.getId())) {
+                edited.push(track);
+                removed = new long[]{track.getId()};
+            } else if (edited != null) {
+                Track dropped = edited.push(track);
+                if (dropped != null) removed = new long[]{dropped.getId()};
+            }
+        }
+        if (edited != null) {
+            publish(userId, LibraryChange.added(list, track, removed));
+        } else {
+            load(userId);
+        }
+        // Without the ring there is no telling which row the play replaces; screens reload
+        edit(userId, list, LibraryOutboxEntry.OP_PUT, track.getId(), gson.toJson(track, Track.class), MAX_RECENTS,
+                edited != null ? null : LibraryChange.reset(list), () -> reapplyRecent(userId, edited, track));
+    }
+
+    /**
+     * Saves newer copies of tracks already in a list, e.g. with refreshed preview URLs,
+     * without moving them. Preview URLs expire, so this stays on the device.
+     */
+    public void updateTracks(String list, List<Track> tracks) {
+        if (tracks == null || tracks.isEmpty()) return;
+        String userId = currentUserId();
+        List<String> json = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            json.add(gson.toJson(track, Track.class));
+        }
+        if (LibraryEntry.LIST_RECENTS.equals(list)) {
+            synchronized (this) {
+                // When not loaded yet, the load reads the updated rows
+                RecentTracksBuffer recents = recentsByUser.get(userId);
+                if (recents != null) {
+                    for (Track track : tracks) {
+                        recents.update(track);
+                    }
+                }
+            }
+        }
+        dbHelper.queryAsync(db -> {
+            for (int i = 0; i < tracks.size(); i++) {
+                db.updateLibraryTrack(userId, list, tracks.get(i).getId(), json.get(i));
+            }
+            return null;
+        }, new DownloadedMusicDbHelper.QueryCallback<Void>() {
+            // Callers already hold the updated tracks; nothing to publish
+            @Override
+            public void onResult(Void result) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Error updating " + list + " for " + userId, e);
+            }
+        });
+    }
+
+    /** Empties the current user's recently played tracks on this device only. */
+    public void clearRecents() {
+        String userId = currentUserId();
+        RecentTracksBuffer cleared;
+        synchronized (this) {
+            cleared = recentsByUser.get(userId);
+            if (cleared != null) cleared.clear();
+        }
+        dbHelper.queryAsync(db -> {
+            db.clearLibrary(userId, LibraryEntry.LIST_RECENTS);
+            synchronized (this) {
+                // A load that ran before the clear was written still holds the old tracks
+                RecentTracksBuffer recents = recentsByUser.get(userId);
+                if (recents != null && recents != cleared) recents.clear();
+            }
+            return null;
+        }, publishing(userId, LibraryEntry.LIST_RECENTS, LibraryChange.reset(LibraryEntry.LIST_RECENTS), false));
+    }
+
+    /**
+     * Replaces a list with the remote copy and replays edits still waiting in the outbox on
+     * top of it. Listeners hear only about the rows that differ. Blocks on the database, so
+     * call it from the database I/O thread.
+     *
+     * @param remoteTracks the remote list in its own order, newest first for recents
+     */
+    public void mergeRemote(String userId, String list, List<Track> remoteTracks) {
+        List<Long> trackIds = new ArrayList<>(remoteTracks.size());
+        List<String> json = new ArrayList<>(remoteTracks.size());
+        for (Track track : remoteTracks) {
+            trackIds.add(track.getId());
+            json.add(gson.toJson(track, Track.class));
+        }
+        migrateLegacy(userId);
+        boolean recents = LibraryEntry.LIST_RECENTS.equals(list);
+        List<String> beforeJson = new ArrayList<>();
+        List<Track> before;
+        if (recents) {
+            // What listeners were last told, which may include plays not written yet
+            loadRecentTracks(userId);
+            synchronized (this) {
+                before = recentsByUser.get(userId).toList();
+            }
+            for (Track track : before) {
+                beforeJson.add(gson.toJson(track, Track.class));
+            }
+        } else {
+            before = readTracks(userId, list, beforeJson);
+        }
+        dbHelper.mergeRemoteLibrary(userId, list, trackIds, json, isNewestFirst(list));
+        List<String> afterJson = new ArrayList<>();
+        List<Track> after = readTracks(userId, list, afterJson);
+        if (recents) {
+            // Replayed plays can push the list past what the ring holds
+            if (after.size() > MAX_RECENTS) {
+                after = after.subList(0, MAX_RECENTS);
+                afterJson = afterJson.subList(0, MAX_RECENTS);
+            }
+            RecentTracksBuffer merged = new RecentTracksBuffer(MAX_RECENTS);
+            merged.fill(after);
+            synchronized (this) {
+                recentsByUser.put(userId, merged);
+            }
+        } else {
+            LongHashSet merged = dbHelper.loadLibraryTrackIds(userId, list);
+            synchronized (this) {
+                favoriteIdsByUser.put(userId, merged);
+            }
+        }
+        LibraryChange change = diff(list, before, beforeJson, after, afterJson);
+        if (!change.isEmpty()) publish(userId, change);
+    }
+
+    /**
+     * Applies favorites added, changed or removed on the server since the last merge, leaving
+     * alone tracks with an edit still in the outbox. Blocks on the database, so call it from
+     * the database I/O thread.
+     */
+    public void applyRemoteFavorites(String userId, List<Track> changedTracks, long[] removedIds) {
+        String list = LibraryEntry.LIST_FAVORITES;
+        List<Long> trackIds = new ArrayList<>(changedTracks.size());
+        List<String> json = new ArrayList<>(changedTracks.size());
+        for (Track track : changedTracks) {
+            trackIds.add(track.getId());
+            json.add(gson.toJson(track, Track.class));
+        }
+        loadFavoriteIds(userId);
+        long[] changed = dbHelper.applyRemoteLibraryChanges(userId, list, trackIds, json, removedIds);
+        if (changed.length == 0) return;
+        LongHashSet changedIds = new LongHashSet(changed.length);
+        for (long trackId : changed) {
+            changedIds.add(trackId);
+        }
+        LibraryChange change;
+        synchronized (this) {
+            // A copy, so edits not written yet notice the replacement and apply themselves again
+            LongHashSet favoriteIds = new LongHashSet(favoriteIdsByUser.get(userId));
+            List<Track> added = new ArrayList<>();
+            List<Track> updated = new ArrayList<>();
+            for (Track track : changedTracks) {
+                if (!changedIds.contains(track.getId())) continue;
+                if (favoriteIds.add(track.getId())) {
+                    added.add(track);
+                } else {
+                    updated.add(track);
+                }
+            }
+            long[] removed = new long[removedIds.length];
+            int count = 0;
+            for (long trackId : removedIds) {
+                if (changedIds.contains(trackId) && favoriteIds.remove(trackId)) removed[count++] = trackId;
+            }
+            favoriteIdsByUser.put(userId, favoriteIds);
+            change = new LibraryChange(list, added, updated, Arrays.copyOf(removed, count));
+        }
+        publish(userId, change);
+    }
+
+    // The rows that differ between two versions of a list. Tracks that stayed must keep their
+    // order and new ones must sit where LibraryChange puts them; anything else is a reset.
+    static LibraryChange diff(String list, List<Track> before, List<String> beforeJson,
+                              List<Track> after, List<String> afterJson) {
+        Map<Long, String> jsonBefore = new HashMap<>(before.size() * 2);
+        for (int i = 0; i < before.size(); i++) {
+            jsonBefore.put(before.get(i).getId(), beforeJson.get(i));
+        }
+        LongHashSet idsAfter = new LongHashSet(after.size());
+        List<Track> added = new ArrayList<>();
+        List<Track> updated = new ArrayList<>();
+        List<Long> kept = new ArrayList<>();
+        for (int i = 0; i < after.size(); i++) {
+            Track track = after.get(i);
+            idsAfter.add(track.getId());
+            String previous = jsonBefore.get(track.getId());
+            if (previous == null) {
+                added.add(track);
+                continue;
+            }
+            kept.add(track.getId());
+            if (!previous.equals(afterJson.get(i))) updated.add(track);
+        }
+        long[] removed = new long[before.size()];
+        int count = 0;
+        int next = 0;
+        for (Track track : before) {
+            if (!idsAfter.contains(track.getId())) {
+                removed[count++] = track.getId();
+            } else if (kept.get(next++) != track.getId()) {
+                return LibraryChange.reset(list);
+            }
+        }
+        int firstAdded = LibraryEntry.LIST_RECENTS.equals(list) ? 0 : after.size() - added.size();
+        for (int i = 0; i < added.size(); i++) {
+            if (after.get(firstAdded + i).getId() != added.get(i).getId()) return LibraryChange.reset(list);
+        }
+        return new LibraryChange(list, added, updated, Arrays.copyOf(removed, count));
+    }
+
+    /** Runs on the main thread after each edit that left an entry in the outbox. */
+    public void setOnOutboxChanged(Runnable onOutboxChanged) {
+        this.onOutboxChanged = onOutboxChanged;
+    }
+
+    // Runs afterWrite on the I/O thread and publishes the change, if any, once the write is done
+    private void edit(String userId, String list, String op, long trackId, String json, int keepNewest,
+                      LibraryChange change, Runnable afterWrite) {
+        dbHelper.queryAsync(db -> {
+            db.editLibrary(userId, list, op, trackId, json, keepNewest);
+            afterWrite.run();
+            return null;
+        }, publishing(userId, list, change, true));
+    }
+
+    // A load or remote change read the database before this edit was written and put ids in
+    // place that do not have it yet
+    private synchronized void reapplyFavorite(String userId, LongHashSet edited, long trackId, boolean favorite) {
+        LongHashSet ids = favoriteIdsByUser.get(userId);
+        if (ids == null || ids == edited) return;
+        if (favorite) {
+            ids.add(trackId);
+        } else {
+            ids.remove(trackId);
+        }
+    }
+
+    // Same for a play; later plays apply themselves after this one, so the order holds
+    private synchronized void reapplyRecent(String userId, RecentTracksBuffer edited, Track track) {
+        RecentTracksBuffer recents = recentsByUser.get(userId);
+        if (recents == null || recents == edited || recents.contains(track.getId())) return;
+        recents.push(track);
+    }
+
+    private DownloadedMusicDbHelper.QueryCallback<Void> publishing(String userId, String list,
+                                                                   LibraryChange change, boolean outboxChanged) {
+        return new DownloadedMusicDbHelper.QueryCallback<Void>() {
+            @Override
+            public void onResult(Void result) {
+                if (change != null) notifyListeners(userId, change);
+                Runnable callback = onOutboxChanged;
+                if (outboxChanged && callback != null) callback.run();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Error saving " + list + " for " + userId, e);
+            }
+        };
+    }
+
+    // Moves lists from the preferences into the database the first time a user's library is
+    // read on this install
+    private void migrateLegacy(String userId) {
+        synchronized (migrationLock) {
+            if (!migratedUsers.add(userId)) return;
+            SharedPreferences prefs = context.getSharedPreferences(
+                    LEGACY_PREF_NAME_PREFIX + userId, Context.MODE_PRIVATE);
+            migrateLegacyList(prefs, LEGACY_KEY_FAVORITES, userId, LibraryEntry.LIST_FAVORITES);
+            migrateLegacyList(prefs, LEGACY_KEY_RECENTS, userId, LibraryEntry.LIST_RECENTS);
+        }
+    }
+
+    private void migrateLegacyList(SharedPreferences prefs, String key, String userId, String list) {
+        String stored = prefs.getString(key, null);
+        if (stored == null) return;
+        List<Track> tracks;
+        try {
+            tracks = gson.fromJson(stored, new TypeToken<ArrayList<Track>>() {}.getType());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable legacy " + list + ": " + e.getMessage());
+            tracks = null;
+        }
+        if (tracks != null && !tracks.isEmpty()
+                && dbHelper.loadLibraryTrackIds(userId, list).size() == 0) {
+            List<Long> trackIds = new ArrayList<>(tracks.size());
+            List<String> json = new ArrayList<>(tracks.size());
+            for (Track track : tracks) {
+                if (track == null) continue;
+                trackIds.add(track.getId());
+                json.add(gson.toJson(track, Track.class));
+            }
+            dbHelper.mergeRemoteLibrary(userId, list, trackIds, json, isNewestFirst(list));
+            Log.d(TAG, "🔄 Moved " + trackIds.size() + " " + list + " out of preferences");
+        }
+        prefs.edit().remove(key).apply();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void publish(String userId, LibraryChange change) {
+        mainHandler.post(() -> notifyListeners(userId, change));
+    }
+
+    private void notifyListeners(String userId, LibraryChange change) {
+        for (Listener listener : listeners) {
+            listener.onLibraryChanged(userId, change);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.melodix.database;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of {@code long} values, so lookups and inserts neither box
+ * the key nor allocate an entry object. Not thread-safe.
+ */
+class LongHashSet {
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 0 marks a free slot, so a 0 key is tracked on the side
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+
+    LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        slots = new long[capacity];
+    }
+
+    LongHashSet(LongHashSet other) {
+        slots = other.slots.clone();
+        containsZero = other.containsZero;
+        size = other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == EMPTY) return false;
+            if (slot == value) return true;
+        }
+    }
+
+    boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!containsZero) return false;
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != value) {
+            if (slots[i] == EMPTY) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = EMPTY;
+        size--;
+        // Shift later entries of the same probe run back so lookups still find them
+        for (int j = (i + 1) & mask; slots[j] != EMPTY; j = (j + 1) & mask) {
+            int home = mix(slots[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                slots[i] = slots[j];
+                slots[j] = EMPTY;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(slots, EMPTY);
+        containsZero = false;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int i = mix(value) & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
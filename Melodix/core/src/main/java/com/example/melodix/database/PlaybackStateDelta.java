@@ -0,0 +1,26 @@
+package com.example.melodix.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to a user's saved playback state since the last write. Only the parts that
+ * changed are set; an unchanged queue costs nothing to save.
+ */
+public class PlaybackStateDelta {
+    /** Drop everything saved for the user before applying the rest. */
+    public boolean clear;
+    /** The queue was replaced; {@link #trackJson} holds all of it. */
+    public boolean replaceQueue;
+    /** Queue position of the first entry in {@link #trackJson} when appending. */
+    public int firstPosition = -1;
+    public final List<Long> trackIds = new ArrayList<>();
+    public final List<String> trackJson = new ArrayList<>();
+    /** -1 when the current index did not change. */
+    public int currentIndex = -1;
+    public long positionMs = -1;
+
+    public boolean isEmpty() {
+        return !clear && !replaceQueue && trackIds.isEmpty() && currentIndex < 0 && positionMs < 0;
+    }
+}
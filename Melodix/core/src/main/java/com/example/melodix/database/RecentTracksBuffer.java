@@ -0,0 +1,86 @@
+package com.example.melodix.database;
+
+import com.example.melodix.model.Track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of the most recently played tracks, newest first. Once full, each new track
+ * takes the slot of the oldest; playing a track that is already in the ring moves it to the
+ * front instead of adding a second copy.
+ *
+ * Not thread-safe; {@link LibraryStore} guards it.
+ */
+class RecentTracksBuffer {
+    private final Track[] slots;
+    private int head = 0; // Slot of the newest track
+    private int size = 0;
+
+    RecentTracksBuffer(int capacity) {
+        slots = new Track[capacity];
+    }
+
+    private int slot(int index) {
+        return (head + index) % slots.length;
+    }
+
+    private int indexOf(long trackId) {
+        for (int i = 0; i < size; i++) {
+            if (slots[slot(i)].getId() == trackId) return i;
+        }
+        return -1;
+    }
+
+    boolean contains(long trackId) {
+        return indexOf(trackId) >= 0;
+    }
+
+    /** Puts the track at the front and returns the oldest one if that pushed it out, else null. */
+    Track push(Track track) {
+        int existing = indexOf(track.getId());
+        if (existing >= 0) {
+            // Closes the gap by moving the newer tracks back one slot
+            for (int i = existing; i > 0; i--) {
+                slots[slot(i)] = slots[slot(i - 1)];
+            }
+            slots[head] = track;
+            return null;
+        }
+        head = (head - 1 + slots.length) % slots.length;
+        Track dropped = slots[head];
+        slots[head] = track;
+        if (size < slots.length) size++;
+        return dropped;
+    }
+
+    /** Replaces the stored copy of a track, keeping its place. */
+    void update(Track track) {
+        int index = indexOf(track.getId());
+        if (index >= 0) slots[slot(index)] = track;
+    }
+
+    /** Replaces the contents with {@code newestFirst}, dropping what does not fit. */
+    void fill(List<Track> newestFirst) {
+        clear();
+        for (int i = Math.min(newestFirst.size(), slots.length) - 1; i >= 0; i--) {
+            push(newestFirst.get(i));
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    List<Track> toList() {
+        List<Track> tracks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tracks.add(slots[slot(i)]);
+        }
+        return tracks;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.melodix.database;
+
+import java.util.List;
+
+/**
+ * A user's playback queue and position as last saved.
+ */
+public class SavedPlaybackState {
+    private final List<String> trackJson;
+    private final int currentIndex;
+    private final long positionMs;
+
+    public SavedPlaybackState(List<String> trackJson, int currentIndex, long positionMs) {
+        this.trackJson = trackJson;
+        this.currentIndex = currentIndex;
+        this.positionMs = positionMs;
+    }
+
+    /** Serialized tracks in queue order. */
+    public List<String> getTrackJson() {
+        return trackJson;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public long getPositionMs() {
+        return positionMs;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.melodix.listener;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioAttributes;
+import android.media.AudioFocusRequest;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Holds audio focus for {@link MusicPlayer} and watches for the output route going away.
+ *
+ * Focus changes and the becoming-noisy broadcast are delivered on the player thread, so the
+ * player can react to them without any locking. The player decides what each event means;
+ * this class only keeps track of whether focus is held and whether the noisy receiver is
+ * registered.
+ */
+class AudioFocusController {
+    private static final String TAG = "AudioFocusController";
+
+    interface Callbacks {
+        /** Focus is gone for good, until the user starts playback again. */
+        void onFocusLost();
+
+        /** Focus is gone for a while, e.g. during a call or a navigation prompt. */
+        void onFocusLostTransient();
+
+        /** Another app plays a short sound over ours; lower the volume. */
+        void onDuck();
+
+        void onFocusGained();
+
+        /** Headphones were unplugged or a Bluetooth device disconnected. */
+        void onBecomingNoisy();
+    }
+
+    private final Context context;
+    private final AudioManager audioManager;
+    private final Handler handler;
+    private final Callbacks callbacks;
+    private final AudioFocusRequest focusRequest;
+    private boolean hasFocus = false;
+    private boolean noisyReceiverRegistered = false;
+
+    private final BroadcastReceiver noisyReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (AudioManager.ACTION_AUDIO_BECOMING_NOISY.equals(intent.getAction())) {
+                Log.d(TAG, "🎧 Audio output disconnected");
+                callbacks.onBecomingNoisy();
+            }
+        }
+    };
+
+    AudioFocusController(Context context, Handler handler, Callbacks callbacks) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) this.context.getSystemService(Context.AUDIO_SERVICE);
+        this.handler = handler;
+        this.callbacks = callbacks;
+        focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .build())
+                .setAcceptsDelayedFocusGain(true)
+                .setWillPauseWhenDucked(false)
+                .setOnAudioFocusChangeListener(this::onAudioFocusChange, handler)
+                .build();
+    }
+
+    /**
+     * Asks for focus before playback starts. Returns {@link AudioManager#AUDIOFOCUS_REQUEST_GRANTED},
+     * {@link AudioManager#AUDIOFOCUS_REQUEST_DELAYED} when focus will come through
+     * {@link Callbacks#onFocusGained()} later, or {@link AudioManager#AUDIOFOCUS_REQUEST_FAILED}.
+     * Only a granted request may start playback.
+     */
+    int request() {
+        if (hasFocus) return AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+        if (audioManager == null) return AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+        int result = audioManager.requestAudioFocus(focusRequest);
+        hasFocus = result == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+        return result;
+    }
+
+    void abandon() {
+        if (audioManager != null) {
+            audioManager.abandonAudioFocusRequest(focusRequest);
+        }
+        hasFocus = false;
+    }
+
+    /** Listens for the output route going away while playback is running. */
+    void setNoisyReceiverEnabled(boolean enabled) {
+        if (enabled == noisyReceiverRegistered) return;
+        if (enabled) {
+            context.registerReceiver(noisyReceiver,
+                    new IntentFilter(AudioManager.ACTION_AUDIO_BECOMING_NOISY), null, handler);
+        } else {
+            context.unregisterReceiver(noisyReceiver);
+        }
+        noisyReceiverRegistered = enabled;
+    }
+
+    private void onAudioFocusChange(int focusChange) {
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+                hasFocus = true;
+                callbacks.onFocusGained();
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS:
+                hasFocus = false;
+                callbacks.onFocusLost();
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+                // Still in the focus stack, so AUDIOFOCUS_GAIN follows; until then a play
+                // has to ask again, and is told to wait or refused during a call
+                hasFocus = false;
+                callbacks.onFocusLostTransient();
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                callbacks.onDuck();
+                break;
+            default:
+                Log.w(TAG, "Unknown audio focus change: " + focusChange);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.melodix.listener;
+
+import android.os.SystemClock;
+
+/**
+ * Token bucket shared by all download threads so their combined rate stays under a cap.
+ * A rate of 0 means unlimited.
+ */
+public class BandwidthLimiter {
+    private volatile long bytesPerSecond;
+    private double available;
+    private long lastRefill = SystemClock.elapsedRealtime();
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Takes {@code bytes} from the bucket, sleeping until the bucket is no longer in debt.
+     */
+    public void acquire(int bytes) throws InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) return;
+
+        long waitMs;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            // Allow at most one second of burst after an idle period
+            available = Math.min(rate, available + (now - lastRefill) * rate / 1000.0);
+            lastRefill = now;
+            available -= bytes;
+            waitMs = available < 0 ? (long) (-available * 1000 / rate) : 0;
+        }
+        if (waitMs > 0) {
+            Thread.sleep(waitMs);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.melodix.listener;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Blocking HTTP download into a file, meant to run on a background thread.
+ *
+ * Bytes go to {@code <target>.part} first. If the connection drops, the next attempt asks
+ * the server for the rest with a {@code Range} header instead of starting over, and the
+ * partial file is kept on failure so a later download of the same file can resume too.
+ * The server's ETag or Last-Modified is kept next to the partial file and sent as
+ * {@code If-Range}, so a file that changed on the server is downloaded again from the start
+ * rather than appended to the old bytes. The partial file is only ever truncated, never
+ * replaced, because a reader such as {@link PreviewCache} may have it open.
+ * The finished file is moved into place in one step, so {@code target} either does not
+ * exist or is complete.
+ */
+public class DownloadEngine {
+    private static final String TAG = "DownloadEngine";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_BASE_DELAY_MS = 1000;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    // One buffer per download thread, reused for every file that thread handles
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    public interface ProgressListener {
+        /** Called on the download thread, at most every {@link #PROGRESS_INTERVAL_MS}. */
+        void onProgress(int percent);
+    }
+
+    /**
+     * The server answered with a status that retrying will not fix, for example 403 for
+     * an expired preview URL.
+     */
+    public static class HttpStatusException extends IOException {
+        public final int statusCode;
+
+        HttpStatusException(int statusCode) {
+            super("HTTP error code: " + statusCode);
+            this.statusCode = statusCode;
+        }
+    }
+
+    public static File partFileFor(File target) {
+        return new File(target.getPath() + ".part");
+    }
+
+    private static File validatorFileFor(File target) {
+        return new File(target.getPath() + ".part.validator");
+    }
+
+    /** Deletes what an unfinished download of {@code target} left behind. */
+    public static boolean deletePartial(File target) {
+        File validator = validatorFileFor(target);
+        if (validator.exists() && !validator.delete()) {
+            Log.w(TAG, "Could not delete " + validator);
+        }
+        File part = partFileFor(target);
+        return !part.exists() || part.delete();
+    }
+
+    public static void download(String url, File target, ProgressListener listener) throws IOException {
+        download(url, target, listener, null);
+    }
+
+    /**
+     * @param limiter shared rate cap, or {@code null} for no cap
+     */
+    public static void download(String url, File target, ProgressListener listener,
+                                BandwidthLimiter limiter) throws IOException {
+        File part = partFileFor(target);
+        IOException lastError = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                if (transfer(url, target, listener, limiter)) {
+                    moveIntoPlace(part, target);
+                    validatorFileFor(target).delete();
+                    if (listener != null) listener.onProgress(100);
+                    return;
+                }
+            } catch (HttpStatusException e) {
+                throw e;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                lastError = e;
+                Log.w(TAG, "Download attempt " + attempt + "/" + MAX_ATTEMPTS + " failed at "
+                        + part.length() + " bytes: " + e.getMessage());
+            }
+
+            if (attempt < MAX_ATTEMPTS) {
+                try {
+                    Thread.sleep(RETRY_BASE_DELAY_MS << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Download interrupted");
+                }
+            }
+        }
+        throw lastError != null ? lastError : new IOException("Download failed");
+    }
+
+    /**
+     * One request/response cycle. Returns true once the part file holds the whole body.
+     */
+    private static boolean transfer(String url, File target, ProgressListener listener,
+                                    BandwidthLimiter limiter) throws IOException {
+        File part = partFileFor(target);
+        long existing = part.exists() ? part.length() : 0;
+        String validator = existing > 0 ? readValidator(target) : null;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (validator != null) {
+            connection.setRequestProperty("Range", "bytes=" + existing + "-");
+            connection.setRequestProperty("If-Range", validator);
+        } else {
+            // Nothing to check the partial bytes against, so they cannot be trusted
+            existing = 0;
+        }
+
+        try {
+            int code = connection.getResponseCode();
+            boolean append;
+            long total;
+
+            if (code == HttpURLConnection.HTTP_PARTIAL && existing > 0) {
+                append = true;
+                total = totalFromContentRange(connection.getHeaderField("Content-Range"));
+                if (total < 0 && connection.getContentLengthLong() >= 0) {
+                    total = existing + connection.getContentLengthLong();
+                }
+                Log.d(TAG, "Resuming download at " + existing + " bytes");
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                // Fresh download, or the file changed on the server and If-Range sent it whole
+                append = false;
+                existing = 0;
+                total = connection.getContentLengthLong();
+                saveValidator(target, connection);
+            } else if (code == 416 && existing > 0) {
+                long serverTotal = totalFromContentRange(connection.getHeaderField("Content-Range"));
+                if (serverTotal == existing) {
+                    return true;
+                }
+                Log.w(TAG, "Partial file no longer matches the server copy, restarting");
+                truncate(part);
+                validatorFileFor(target).delete();
+                connection.disconnect();
+                return transfer(url, target, listener, limiter);
+            } else {
+                throw new HttpStatusException(code);
+            }
+
+            try (InputStream input = connection.getInputStream();
+                 FileOutputStream output = new FileOutputStream(part, append)) {
+                byte[] buffer = BUFFER.get();
+                long written = existing;
+                long lastReport = 0;
+                int lastPercent = -1;
+                int count;
+
+                while ((count = input.read(buffer)) != -1) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Download interrupted");
+                    }
+                    output.write(buffer, 0, count);
+                    if (limiter != null) {
+                        try {
+                            limiter.acquire(count);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Download interrupted");
+                        }
+                    }
+                    written += count;
+
+                    if (listener != null && total > 0) {
+                        long now = SystemClock.uptimeMillis();
+                        int percent = (int) (written * 100 / total);
+                        if (percent != lastPercent && now - lastReport >= PROGRESS_INTERVAL_MS) {
+                            lastReport = now;
+                            lastPercent = percent;
+                            listener.onProgress(percent);
+                        }
+                    }
+                }
+
+                if (total > 0 && written < total) {
+                    throw new IOException("Connection closed at " + written + " of " + total + " bytes");
+                }
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // "bytes 100-999/1000" or "bytes */1000"
+    private static long totalFromContentRange(String contentRange) {
+        if (contentRange == null) return -1;
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || slash == contentRange.length() - 1) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // If-Range needs a strong ETag; Last-Modified is the fallback
+    private static void saveValidator(File target, HttpURLConnection connection) throws IOException {
+        String validator = connection.getHeaderField("ETag");
+        if (validator == null || validator.startsWith("W/")) {
+            validator = connection.getHeaderField("Last-Modified");
+        }
+        File file = validatorFileFor(target);
+        if (validator == null) {
+            file.delete();
+            return;
+        }
+        Files.write(file.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readValidator(File target) {
+        File file = validatorFileFor(target);
+        if (!file.exists()) return null;
+        try {
+            String validator = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return validator.isEmpty() ? null : validator;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // In place, so readers holding the file open keep a valid handle
+    private static void truncate(File part) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(0);
+        }
+    }
+
+    private static void moveIntoPlace(File part, File target) throws IOException {
+        try {
+            Files.move(part.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
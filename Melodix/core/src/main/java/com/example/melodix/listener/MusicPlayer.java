@@ -0,0 +1,1275 @@
+package com.example.melodix.listener;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.melodix.api.DeezerRepository;
+import com.example.melodix.api.PreviewUrlRefresher;
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.model.Track;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * App-wide player. Every MediaPlayer call runs on a dedicated player thread: public
+ * commands called from other threads are queued onto it, and status callbacks are delivered
+ * on the main thread.
+ */
+public class MusicPlayer {
+    private static final String TAG = "MusicPlayer";
+    private static MusicPlayer instance;
+    private volatile MediaPlayer mediaPlayer;
+    private volatile boolean isPrepared = false;
+    private volatile boolean isPlaying = false;
+    private final PlaybackStatusDispatcher playbackStatusListener = new PlaybackStatusDispatcher();
+    private final HandlerThread playerThread;
+    // Runs on the player thread
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PositionTicker positionTicker;
+    private volatile Track currentTrack;
+    private final List<Track> playlist = new CopyOnWriteArrayList<>();
+    private volatile int currentTrackIndex = -1;
+    // Last position read on the player thread, so other threads never touch MediaPlayer
+    private volatile int knownPosition;
+    private volatile long knownPositionAt;
+    private volatile int knownDuration;
+    private boolean autoPlayNext = true;
+    private final ShuffleEngine shuffle = new ShuffleEngine();
+    private Context applicationContext;
+
+    // Second player that buffers the upcoming track while the current one plays
+    private MediaPlayer standbyPlayer;
+    private Track standbyTrack;
+    private int standbyIndex = -1;
+    private boolean standbyPrepared = false;
+    // Set while the skip button picks at random; the standby then buffers that pick.
+    // Auto-advance always keeps playlist order.
+    private volatile boolean randomSkip = false;
+    // The current track was reached through the shuffle order, so going back walks it too
+    private volatile boolean lastMoveRandom = false;
+    private final PlaybackRecovery recovery = new PlaybackRecovery();
+    private static final int PREFETCH_AHEAD = 3;
+    private static final float DUCK_VOLUME = 0.2f;
+
+    // Player thread only
+    private AudioFocusController audioFocus;
+    // Paused by a transient focus loss rather than by the user
+    private boolean resumeOnFocusGain = false;
+    private float volume = 1f;
+    public interface OnPlaybackStatusListener {
+        void onPlaybackStarted();
+        void onPlaybackPaused();
+        void onPlaybackStopped();
+        void onPlaybackCompleted();
+        void onDurationChanged(int duration);
+        void onPrepareStart();
+        void onPrepareComplete();
+        void onError(String message);
+        default void onTrackChanged(Track newTrack) {}
+        default void onPlaylistChanged(List<Track> playlist, int currentIndex) {}
+    }
+
+    /** Receives the playback position on the main thread, see {@link #addPositionObserver}. */
+    public interface PositionObserver {
+        void onPositionChanged(int position);
+    }
+    public boolean isPlaying() {
+        return isPlaying;
+    }
+    private MusicPlayer() {
+        playerThread = new HandlerThread("MusicPlayer", Process.THREAD_PRIORITY_AUDIO);
+        playerThread.start();
+        handler = new Handler(playerThread.getLooper());
+        positionTicker = new PositionTicker(handler, mainHandler, this::getCurrentPosition);
+        // Created on the player thread so MediaPlayer delivers its callbacks there
+        FutureTask<MediaPlayer> create = new FutureTask<>(MediaPlayer::new);
+        handler.post(create);
+        try {
+            mediaPlayer = create.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Could not create MediaPlayer", e);
+        }
+        attachPlaybackListeners(mediaPlayer);
+    }
+
+    private boolean isOnPlayerThread() {
+        return Looper.myLooper() == handler.getLooper();
+    }
+
+    /**
+     * Queues {@code command} on the player thread when called from anywhere else. Returns
+     * false when already on the player thread, where the caller just carries on.
+     */
+    private boolean postToPlayerThread(Runnable command) {
+        if (isOnPlayerThread()) return false;
+        handler.post(command);
+        return true;
+    }
+
+    private void updateKnownPosition(int position) {
+        knownPosition = position;
+        knownPositionAt = SystemClock.uptimeMillis();
+    }
+
+    // The URL refresher keeps its state on the main thread; results come back to this one
+    private void ensureFreshUrl(Track track, DeezerRepository.DataCallback<Track> callback) {
+        mainHandler.post(() -> PreviewUrlRefresher.getInstance().ensureFresh(track, onPlayerThread(callback)));
+    }
+
+    private void refreshUrl(Track track, DeezerRepository.DataCallback<Track> callback) {
+        mainHandler.post(() -> PreviewUrlRefresher.getInstance().refresh(track, onPlayerThread(callback)));
+    }
+
+    private DeezerRepository.DataCallback<Track> onPlayerThread(DeezerRepository.DataCallback<Track> callback) {
+        return new DeezerRepository.DataCallback<Track>() {
+            @Override
+            public void onSuccess(Track result) {
+                handler.post(() -> callback.onSuccess(result));
+            }
+
+            @Override
+            public void onError(String message) {
+                handler.post(() -> callback.onError(message));
+            }
+        };
+    }
+
+    private void rewatchPlaylist(List<Track> previous) {
+        List<Track> current = new ArrayList<>(playlist);
+        mainHandler.post(() -> {
+            PreviewUrlRefresher.getInstance().unwatch(previous);
+            PreviewUrlRefresher.getInstance().watch(current);
+        });
+    }
+
+    private void attachPlaybackListeners(MediaPlayer player) {
+        player.setOnCompletionListener(mp -> {
+            // A player that was handed off already finished its part
+            if (mp != mediaPlayer) return;
+            isPlaying = false;
+            positionTicker.setActive(false);
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onPlaybackCompleted();
+            }
+            if (autoPlayNext) {
+                playNextTrack();
+            }
+        });
+
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "MediaPlayer error: " + what + ", " + extra);
+            isPlaying = false;
+            isPrepared = false;
+            positionTicker.setActive(false);
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onError("Media player error: " + what);
+            }
+            return true;
+        });
+    }
+    public static synchronized MusicPlayer getInstance() {
+        if (instance == null) {
+            instance = new MusicPlayer();
+        }
+        return instance;
+    }
+    /**
+     * Reports the position every {@link PositionTicker#DEFAULT_INTERVAL_MS} while playing.
+     * Register while the position is on screen and remove when it is not.
+     */
+    public void addPositionObserver(PositionObserver observer) {
+        addPositionObserver(observer, PositionTicker.DEFAULT_INTERVAL_MS);
+    }
+
+    public void addPositionObserver(PositionObserver observer, int intervalMs) {
+        positionTicker.addObserver(observer, intervalMs);
+    }
+
+    public void removePositionObserver(PositionObserver observer) {
+        positionTicker.removeObserver(observer);
+    }
+
+    public void setPlaybackStatusListener(OnPlaybackStatusListener listener) {
+        playbackStatusListener.primary = listener;
+    }
+
+    /** Registers a listener next to the one set by {@link #setPlaybackStatusListener}. */
+    public void addPlaybackStatusListener(OnPlaybackStatusListener listener) {
+        playbackStatusListener.observers.addIfAbsent(listener);
+    }
+
+    public void removePlaybackStatusListener(OnPlaybackStatusListener listener) {
+        playbackStatusListener.observers.remove(listener);
+    }
+
+    private void savePlaybackState() {
+        if (applicationContext == null) return;
+        PlaybackStateStore.getInstance(applicationContext)
+                .currentChanged(currentTrackIndex, mediaPlayer.getCurrentPosition());
+    }
+
+    public Track getCurrentTrack() {
+        return currentTrack;
+    }
+
+    public void setPlaylist(Context context, List<Track> tracks, int startTrackIndex) {
+        if (tracks == null || tracks.isEmpty()) {
+            return;
+        }
+        if (!isOnPlayerThread()) {
+            List<Track> snapshot = new ArrayList<>(tracks);
+            int index = startTrackIndex;
+            handler.post(() -> setPlaylist(context, snapshot, index));
+            return;
+        }
+        List<Track> previous = new ArrayList<>(playlist);
+        releaseStandby();
+        playlist.clear();
+        playlist.addAll(tracks);
+        rewatchPlaylist(previous);
+
+        if (startTrackIndex < 0) startTrackIndex = 0;
+        if (startTrackIndex >= tracks.size()) startTrackIndex = tracks.size() - 1;
+
+        currentTrackIndex = startTrackIndex;
+        shuffle.reset(playlist.size(), currentTrackIndex);
+        lastMoveRandom = false;
+
+        for (Track track : playlist) {
+            track.setContext(context);
+        }
+        if (context != null) {
+            PlaybackStateStore.getInstance(context).queueReplaced(playlist);
+        }
+
+        prepareFromUrl(context, playlist.get(currentTrackIndex));
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onPlaylistChanged(playlist, currentTrackIndex);
+        }
+    }
+    /**
+     * Adds tracks to the end of the playlist without interrupting playback. In shuffle order
+     * they are mixed into the tracks that have not played yet.
+     */
+    public void appendToPlaylist(Context context, List<Track> tracks) {
+        if (tracks == null || tracks.isEmpty()) return;
+        if (!isOnPlayerThread()) {
+            List<Track> snapshot = new ArrayList<>(tracks);
+            handler.post(() -> appendToPlaylist(context, snapshot));
+            return;
+        }
+        if (playlist.isEmpty()) {
+            setPlaylist(context, tracks, 0);
+            return;
+        }
+        for (Track track : tracks) {
+            track.setContext(context);
+        }
+        List<Track> previous = new ArrayList<>(playlist);
+        playlist.addAll(tracks);
+        rewatchPlaylist(previous);
+        shuffle.append(tracks.size());
+        if (context != null) {
+            PlaybackStateStore.getInstance(context).queueAppended(previous.size(), tracks);
+        }
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onPlaylistChanged(playlist, currentTrackIndex);
+        }
+        if (isPrepared) {
+            prepareStandby();
+            prefetchUpcoming();
+        }
+    }
+
+    public boolean playRandomTrack() {
+        if (postToPlayerThread(this::playRandomTrack)) {
+            return !playlist.isEmpty() || applicationContext != null;
+        }
+        if (playlist.isEmpty()) {
+            Log.e(TAG, "Cannot play random track: playlist is empty");
+            if (applicationContext != null && playlist.isEmpty()) {
+                PlaybackStateStore.Snapshot saved = PlaybackStateStore.getInstance(applicationContext).load();
+                if (saved != null) {
+                    Log.d(TAG, "Restoring queue for random play.");
+                    playlist.addAll(saved.getQueue());
+                    currentTrackIndex = saved.getCurrentIndex();
+                    shuffle.reset(playlist.size(), currentTrackIndex);
+                } else {
+                    return false;
+                }
+            } else if (applicationContext == null) {
+                 Log.e(TAG, "Application context is null, cannot restore queue for random play");
+                 return false;
+            }
+        }
+        if (playlist.size() == 1) {
+            currentTrackIndex = 0;
+            Context context = getValidContext();
+            if (context == null) {
+                Log.e(TAG, "Cannot play track: context is null");
+                return false;
+            }
+            prepareFromUrl(context, playlist.get(0));
+            return true;
+        }
+        int randomIndex = shuffle.next();
+        currentTrackIndex = randomIndex;
+        lastMoveRandom = true;
+
+        if (currentTrackIndex < 0 || currentTrackIndex >= playlist.size()) {
+            Log.e(TAG, "Invalid track index: " + currentTrackIndex + ", playlist size: " + playlist.size());
+            return false;
+        }
+
+        Log.d(TAG, "Playing track index " + randomIndex + " of " + playlist.size());
+        Context context = getValidContext();
+
+        if (context != null) {
+            Track randomTrack = playlist.get(currentTrackIndex);
+            Log.d(TAG, "Playing random track: " + randomTrack.getTitle());
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onTrackChanged(randomTrack);
+            }
+            playPlaylistEntry(context, currentTrackIndex, randomTrack);
+            return true;
+        } else {
+            Log.e(TAG, "Context is null, can't play random track");
+            return false;
+        }
+    }
+    /**
+     * The tracks that will play after the current one, in order: the next random picks while
+     * the skip picks at random, the playlist order otherwise.
+     */
+    public List<Track> getUpcomingTracks(int count) {
+        List<Track> upcoming = new ArrayList<>();
+        for (int index : upcomingIndices(shuffle, playlist.size(), currentTrackIndex, randomSkip, count)) {
+            upcoming.add(playlist.get(index));
+        }
+        return upcoming;
+    }
+
+    // The random picks are read off the shuffle order that playRandomTrack walks, up to the
+    // end of the round; the next round is only drawn when it starts
+    static List<Integer> upcomingIndices(ShuffleEngine shuffle, int size, int current,
+                                         boolean randomSkip, int count) {
+        List<Integer> upcoming = new ArrayList<>();
+        if (size < 2 || current < 0) return upcoming;
+        if (randomSkip) {
+            for (int i = 1; i <= count; i++) {
+                int index = shuffle.peek(i);
+                if (index < 0) break;
+                upcoming.add(index);
+            }
+        } else {
+            for (int i = 1; i < size && upcoming.size() < count; i++) {
+                upcoming.add((current + i) % size);
+            }
+        }
+        return upcoming;
+    }
+
+    private void prefetchUpcoming() {
+        if (applicationContext == null) return;
+        PreviewPrefetcher.getInstance(applicationContext).prefetch(getUpcomingTracks(PREFETCH_AHEAD));
+    }
+
+    /**
+     * Tells the player that skipping goes through {@link #playRandomTrack}, so the standby
+     * player buffers the next random pick rather than the next track in playlist order.
+     */
+    public void setRandomSkip(boolean enabled) {
+        if (postToPlayerThread(() -> setRandomSkip(enabled))) return;
+        if (randomSkip == enabled) return;
+        randomSkip = enabled;
+        if (isPrepared) {
+            prepareStandby();
+            prefetchUpcoming();
+        }
+    }
+
+    public boolean isRandomSkip() {
+        return randomSkip;
+    }
+
+    private Context getValidContext() {
+        Context context = null;
+        if (context == null && currentTrack != null) {
+            context = currentTrack.getContext();
+        }
+        if (context == null && !playlist.isEmpty()) {
+            for (Track track : playlist) {
+                if (track != null && track.getContext() != null) {
+                    context = track.getContext();
+                    break;
+                }
+            }
+        }
+
+        return context;
+    }
+    public boolean playNextTrack() {
+        if (postToPlayerThread(this::playNextTrack)) return !playlist.isEmpty();
+        if (playlist.isEmpty()) {
+            Log.e(TAG, "Cannot play next track: playlist is empty");
+            return false;
+        }
+        if (currentTrackIndex >= playlist.size() - 1) {
+            currentTrackIndex = 0;
+        } else {
+            currentTrackIndex++;
+        }
+        lastMoveRandom = false;
+        Context context = getValidContext();
+        if (context != null) {
+            Track nextTrack = playlist.get(currentTrackIndex);
+            Log.d(TAG, "Playing next track: " + nextTrack.getTitle());
+            shuffle.markPlayed(currentTrackIndex);
+            currentTrack = nextTrack;
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onTrackChanged(nextTrack);
+            }
+            playPlaylistEntry(context, currentTrackIndex, nextTrack);
+            return true;
+        } else {
+            Log.e(TAG, "Context is null, can't play next track");
+            return false;
+        }
+    }
+    public boolean playPreviousTrack() {
+        if (postToPlayerThread(this::playPreviousTrack)) return !playlist.isEmpty();
+        if (playlist.isEmpty()) {
+            Log.e(TAG, "Cannot play previous track: playlist is empty");
+            return false;
+        }
+        if (getCurrentPosition() > 3000) {
+            seekTo(0);
+            return true;
+        }
+        // After random picks, back means the track picked before this one, not its neighbour
+        int shufflePrevious = lastMoveRandom ? shuffle.previous() : -1;
+        boolean inShuffleOrder = shufflePrevious >= 0;
+        if (inShuffleOrder) {
+            currentTrackIndex = shufflePrevious;
+        } else if (currentTrackIndex <= 0) {
+            lastMoveRandom = false;
+            currentTrackIndex = playlist.size() - 1;
+        } else {
+            lastMoveRandom = false;
+            currentTrackIndex--;
+        }
+        Context context = getValidContext();
+        if (context != null) {
+            if (currentTrackIndex >= 0 && currentTrackIndex < playlist.size()) {
+                Track prevTrack = playlist.get(currentTrackIndex);
+                Log.d(TAG, "Playing previous track: " + prevTrack.getTitle());
+                currentTrack = prevTrack;
+
+                // Stepping back already moved the shuffle cursor onto it
+                if (!inShuffleOrder) shuffle.markPlayed(currentTrackIndex);
+
+                if (playbackStatusListener != null) {
+                    playbackStatusListener.onTrackChanged(prevTrack);
+                }
+                playPlaylistEntry(context, currentTrackIndex, prevTrack);
+                return true;
+            } else {
+                Log.e(TAG, "Invalid track index: " + currentTrackIndex);
+                return false;
+            }
+        } else {
+            Log.e(TAG, "Context is null, can't play previous track");
+            return false;
+        }
+    }
+    public boolean hasPreviousTrack() {
+        if (lastMoveRandom) return shuffle.hasPrevious();
+        return !playlist.isEmpty() && currentTrackIndex > 0;
+    }
+
+    public void prepareFromUrl(Context context, Track track) {
+        prepareFromUrl(context, track, true);
+    }
+
+    /**
+     * Starts the playlist entry at {@code index}, straight from the standby player when it
+     * already buffered that entry, otherwise through a normal prepare.
+     */
+    private void playPlaylistEntry(Context context, int index, Track track) {
+        if (standbyPrepared && standbyIndex == index && standbyTrack == track) {
+            promoteStandby();
+        } else {
+            prepareFromUrl(context, track);
+        }
+    }
+
+    /**
+     * Buffers the track a skip would play next on the standby player, so the switch happens
+     * without a new prepare. When that is also the track auto-advance plays, the standby is
+     * chained behind the current player for a gapless hand-off.
+     */
+    private void prepareStandby() {
+        if (playlist.size() < 2 || currentTrackIndex < 0 || currentTrackIndex >= playlist.size()) {
+            releaseStandby();
+            return;
+        }
+        int index;
+        if (randomSkip) {
+            index = shuffle.peek(1);
+            if (index < 0) {
+                // Last track of the round; the next round is drawn when it is needed
+                releaseStandby();
+                return;
+            }
+        } else {
+            index = (currentTrackIndex + 1) % playlist.size();
+        }
+        Track next = playlist.get(index);
+        if (next == currentTrack) {
+            releaseStandby();
+            return;
+        }
+        if (standbyTrack == next && standbyIndex == index) {
+            // Already buffering the right track
+            linkStandby();
+            return;
+        }
+
+        releaseStandby();
+        if (next.getPreviewUrl() == null || next.getPreviewUrl().isEmpty()) return;
+        standbyTrack = next;
+        standbyIndex = index;
+        ensureFreshUrl(next, new DeezerRepository.DataCallback<Track>() {
+            @Override
+            public void onSuccess(Track fresh) {
+                if (standbyTrack == next && standbyPlayer == null) {
+                    startStandby(next);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.w(TAG, "Not buffering next track, URL refresh failed: " + message);
+                if (standbyTrack == next && standbyPlayer == null) {
+                    standbyTrack = null;
+                    standbyIndex = -1;
+                }
+            }
+        });
+    }
+
+    private void startStandby(Track track) {
+        MediaPlayer player = new MediaPlayer();
+        standbyPlayer = player;
+        try {
+            player.setAudioAttributes(new AudioAttributes.Builder()
+                    .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                    .setUsage(AudioAttributes.USAGE_MEDIA)
+                    .build());
+            // Matches a ducked volume if it takes over mid-duck
+            player.setVolume(volume, volume);
+            prepareDataSource(player, track);
+            player.setOnPreparedListener(mp -> {
+                if (standbyPlayer != mp) return;
+                standbyPrepared = true;
+                Log.d(TAG, "⏩ Next track buffered: " + track.getTitle());
+                linkStandby();
+            });
+            player.setOnErrorListener((mp, what, extra) -> {
+                Log.w(TAG, "Standby player error: " + what + ", " + extra);
+                if (standbyPlayer == mp) {
+                    releaseStandby();
+                }
+                return true;
+            });
+            player.prepareAsync();
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            Log.w(TAG, "Could not buffer next track: " + e.getMessage());
+            releaseStandby();
+        }
+    }
+
+    // Lets MediaPlayer start the standby the moment the current track ends, as long as it
+    // holds the track auto-advance plays next
+    private void linkStandby() {
+        if (!standbyPrepared || !isPrepared || !autoPlayNext) return;
+        if (standbyIndex != (currentTrackIndex + 1) % playlist.size()) return;
+        try {
+            mediaPlayer.setNextMediaPlayer(standbyPlayer);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            Log.w(TAG, "Could not chain next player: " + e.getMessage());
+        }
+    }
+
+    private void releaseStandby() {
+        if (standbyPlayer != null) {
+            if (isPrepared) {
+                try {
+                    mediaPlayer.setNextMediaPlayer(null);
+                } catch (IllegalStateException e) {
+                    Log.w(TAG, "Could not unchain next player: " + e.getMessage());
+                }
+            }
+            standbyPlayer.release();
+            standbyPlayer = null;
+        }
+        standbyTrack = null;
+        standbyIndex = -1;
+        standbyPrepared = false;
+    }
+
+    /**
+     * Makes the standby player the current one. After a gapless hand-off it is already
+     * playing; after a manual skip it is started here.
+     */
+    private void promoteStandby() {
+        MediaPlayer previous = mediaPlayer;
+        mediaPlayer = standbyPlayer;
+        currentTrack = standbyTrack;
+        currentTrackIndex = standbyIndex;
+        standbyPlayer = null;
+        standbyTrack = null;
+        standbyIndex = -1;
+        standbyPrepared = false;
+
+        previous.setOnCompletionListener(null);
+        previous.release();
+        attachPlaybackListeners(mediaPlayer);
+        isPrepared = true;
+        knownDuration = mediaPlayer.getDuration();
+        updateKnownPosition(mediaPlayer.getCurrentPosition());
+        Log.d(TAG, "⏩ Switched to buffered track: " + currentTrack.getTitle());
+
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onPrepareComplete();
+            playbackStatusListener.onDurationChanged(mediaPlayer.getDuration());
+        }
+        if (mediaPlayer.isPlaying()) {
+            isPlaying = true;
+            PlaybackService.start(applicationContext);
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onPlaybackStarted();
+            }
+            positionTicker.setActive(true);
+            savePlaybackState();
+        } else {
+            isPlaying = false;
+            play();
+        }
+        prepareStandby();
+        prefetchUpcoming();
+    }
+
+    public void prepareFromUrl(Context context, Track track, boolean autoPlay) {
+        if (postToPlayerThread(() -> prepareFromUrl(context, track, autoPlay))) return;
+        Log.d(TAG, "=== PREPARE FROM URL ===");
+        Log.d(TAG, "Track: " + (track != null ? track.getTitle() : "null"));
+        Log.d(TAG, "Auto play: " + autoPlay);
+
+        if (track == null) {
+            Log.e(TAG, "❌ Track is null, cannot prepare.");
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onError("Invalid track");
+            }
+            return;
+        }
+        if (context == null) {
+            Log.e(TAG, "❌ Context is null, cannot prepare.");
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onError("Context unavailable");
+            }
+            return;
+        }
+        if (track.getPreviewUrl() == null || track.getPreviewUrl().isEmpty()) {
+            Log.e(TAG, "❌ No preview URL available for track: " + track.getTitle());
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onError("No preview available for this track");
+            }
+            return;
+        }
+        currentTrack = track;
+        this.applicationContext = context.getApplicationContext();
+
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onPrepareStart();
+        }
+        ensureFreshUrl(track, new DeezerRepository.DataCallback<Track>() {
+            @Override
+            public void onSuccess(Track fresh) {
+                if (currentTrack != track) return;
+                prepareMediaPlayer(track, autoPlay);
+            }
+
+            @Override
+            public void onError(String message) {
+                if (currentTrack != track) return;
+                Log.w(TAG, "⚠️ Could not refresh preview URL, trying anyway: " + message);
+                prepareMediaPlayer(track, autoPlay);
+            }
+        });
+    }
+    private void prepareMediaPlayer(Track track, boolean autoPlay) {
+        recovery.begin(track.getId());
+        prepareMediaPlayer(track, track, autoPlay);
+    }
+
+    /**
+     * Prepares {@code source} as the audio for {@code track}. The source is the track itself,
+     * or a stand-in pointing at a downloaded or cached file when recovery falls back to one.
+     */
+    private void prepareMediaPlayer(Track track, Track source, boolean autoPlay) {
+        Log.d(TAG, "=== PREPARING MEDIA PLAYER ===");
+        Log.d(TAG, "Track: " + track.getTitle());
+        Log.d(TAG, "URL: " + source.getPreviewUrl());
+        String url = source.getPreviewUrl();
+        String host = PlaybackRecovery.hostOf(url);
+
+        try {
+            mediaPlayer.reset();
+            isPrepared = false;
+
+            AudioAttributes audioAttributes = new AudioAttributes.Builder()
+                    .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                    .setUsage(AudioAttributes.USAGE_MEDIA)
+                    .build();
+            mediaPlayer.setAudioAttributes(audioAttributes);
+            prepareDataSource(mediaPlayer, source);
+            mediaPlayer.setOnPreparedListener(mp -> {
+                Log.d(TAG, "✅ MediaPlayer prepared successfully");
+                recovery.onPrepared(host);
+                isPrepared = true;
+                knownDuration = mp.getDuration();
+                updateKnownPosition(0);
+
+                if (playbackStatusListener != null) {
+                    playbackStatusListener.onPrepareComplete();
+                    playbackStatusListener.onDurationChanged(mp.getDuration());
+                }
+
+                if (autoPlay) {
+                    play();
+                }
+
+                savePlaybackState();
+                prepareStandby();
+                prefetchUpcoming();
+            });
+
+            mediaPlayer.setOnErrorListener((mp, what, extra) -> {
+                Log.e(TAG, "❌ MediaPlayer error: what=" + what + ", extra=" + extra);
+                isPrepared = false;
+                isPlaying = false;
+
+                recover(track, source, autoPlay, PlaybackRecovery.classify(what, extra, url), host,
+                        mapErrorToUserMessage(what, extra));
+                return true;
+            });
+
+            Log.d(TAG, "Starting async preparation...");
+            mediaPlayer.prepareAsync();
+
+        } catch (IOException e) {
+            Log.e(TAG, "❌ IOException in prepareMediaPlayer: " + e.getMessage(), e);
+            recover(track, source, autoPlay, PlaybackRecovery.classify(e, url), host,
+                    "Network error. Please check your connection.");
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "❌ IllegalArgumentException: " + e.getMessage(), e);
+            recover(track, source, autoPlay, PlaybackRecovery.classify(e, url), host, "Invalid URL format");
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "❌ IllegalStateException: " + e.getMessage(), e);
+            recover(track, source, autoPlay, PlaybackRecovery.classify(e, url), host,
+                    "MediaPlayer in invalid state");
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Unexpected error: " + e.getMessage(), e);
+            recover(track, source, autoPlay, PlaybackRecovery.classify(e, url), host,
+                    "Unexpected error: " + e.getMessage());
+        }
+    }
+    private void prepareDataSource(MediaPlayer player, Track track) throws IOException {
+        String url = track.getPreviewUrl();
+
+        Log.d(TAG, "Preparing data source for URL: " + url);
+
+        if (isLocalFile(url)) {
+            Log.d(TAG, "📁 Setting up local file");
+            android.net.Uri uri = android.net.Uri.parse(url);
+            player.setDataSource(applicationContext, uri);
+        } else if (isDeezerUrl(url)) {
+            Log.d(TAG, "🎵 Setting up Deezer URL through preview cache");
+            PreviewCache.getInstance(applicationContext).setDataSource(player, track.getId(), url);
+        } else {
+            Log.d(TAG, "🌐 Setting up standard URL");
+            player.setDataSource(url);
+        }
+    }
+
+    private boolean isDeezerUrl(String url) {
+        return url != null && url.contains("dzcdn.net");
+    }
+    private boolean isLocalFile(String url) {
+        return url != null && url.startsWith("file://");
+    }
+    private void recover(Track track, Track source, boolean autoPlay, PlaybackRecovery.ErrorKind kind,
+                         String host, String userMessage) {
+        // The user moved on while this track was loading
+        if (currentTrack != track) return;
+        Log.w(TAG, "🔥 " + kind + " error for " + track.getTitle());
+        applyRecovery(track, source, autoPlay, recovery.onFailure(kind, host), userMessage);
+    }
+
+    private void applyRecovery(Track track, Track source, boolean autoPlay,
+                               PlaybackRecovery.Decision decision, String userMessage) {
+        switch (decision.action) {
+            case RETRY:
+                Log.d(TAG, "🔄 Retrying in " + decision.delayMs + " ms");
+                handler.postDelayed(() -> {
+                    if (currentTrack == track) prepareMediaPlayer(track, source, autoPlay);
+                }, decision.delayMs);
+                return;
+            case LOCAL_FILE: {
+                String localPath = getLocalFilePath(track);
+                if (localPath != null) {
+                    Log.d(TAG, "📱 Trying downloaded version");
+                    prepareMediaPlayer(track, createLocalTrack(track, localPath), autoPlay);
+                    return;
+                }
+                break;
+            }
+            case CACHED_BYTES: {
+                File cached = applicationContext != null
+                        ? PreviewCache.getInstance(applicationContext).getCachedFile(track.getId()) : null;
+                String cachedUrl = cached != null ? "file://" + cached.getPath() : null;
+                if (cachedUrl != null && !cachedUrl.equals(source.getPreviewUrl())) {
+                    Log.d(TAG, "💾 Trying cached preview");
+                    prepareMediaPlayer(track, createLocalTrack(track, cached.getPath()), autoPlay);
+                    return;
+                }
+                break;
+            }
+            case REFRESH_URL:
+                if (applicationContext != null && track.getId() > 0) {
+                    refreshTrackUrl(track, autoPlay, userMessage);
+                    return;
+                }
+                break;
+            case SKIP:
+                if (playlist.size() > 1) {
+                    skipToNextTrackOnError(track, userMessage, decision.delayMs);
+                    return;
+                }
+                break;
+            case GIVE_UP:
+                Log.e(TAG, "❌ Giving up on " + track.getTitle());
+                if (playbackStatusListener != null) {
+                    playbackStatusListener.onError(userMessage);
+                }
+                return;
+        }
+        // That fallback does not apply to this track
+        applyRecovery(track, source, autoPlay, recovery.nextFallback(), userMessage);
+    }
+
+    private String getLocalFilePath(Track track) {
+        if (applicationContext == null) {
+            Log.w(TAG, "Application context is null");
+            return null;
+        }
+        try {
+            FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+            String userId = currentUser != null ? currentUser.getUid() : "anonymous";
+            String filePath = DownloadedMusicDbHelper.getInstance(applicationContext)
+                    .getTrackFilePath(userId, track.getId());
+
+            if (filePath != null) {
+                Log.d(TAG, "Found local file path: " + filePath);
+                java.io.File file = new java.io.File(filePath);
+                if (file.exists() && file.canRead()) {
+                    return filePath;
+                } else {
+                    Log.w(TAG, "Local file does not exist or cannot be read: " + filePath);
+                    return null;
+                }
+            }
+            Log.d(TAG, "No local file path found for track ID: " + track.getId());
+            return null;
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting local file path: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    private Track createLocalTrack(Track originalTrack, String localPath) {
+        Track localTrack = originalTrack.copy();
+        localTrack.setPreviewUrl("file://" + localPath);
+        localTrack.setContext(applicationContext);
+        return localTrack;
+    }
+    // Fetches the exact track again for a new signed preview URL
+    private void refreshTrackUrl(Track track, boolean autoPlay, String userMessage) {
+        Log.d(TAG, "🔄 Attempting to refresh URL for: " + track.getTitle());
+        final String oldUrl = track.getPreviewUrl();
+        refreshUrl(track, new DeezerRepository.DataCallback<Track>() {
+            @Override
+            public void onSuccess(Track refreshedTrack) {
+                recovery.recordSuccess(PlaybackRecovery.API_HOST);
+                if (currentTrack != track) return;
+                String freshUrl = refreshedTrack.getPreviewUrl();
+                if (freshUrl != null && !freshUrl.equals(oldUrl)) {
+                    Log.d(TAG, "✅ Got refreshed URL, retrying");
+                    track.setPreviewUrl(freshUrl);
+                    prepareMediaPlayer(track, track, autoPlay);
+                } else {
+                    Log.w(TAG, "❌ Could not get fresh URL");
+                    applyRecovery(track, track, autoPlay, recovery.nextFallback(), userMessage);
+                }
+            }
+            @Override
+            public void onError(String message) {
+                Log.e(TAG, "❌ Error refreshing track: " + message);
+                recovery.recordFailure(PlaybackRecovery.API_HOST);
+                if (currentTrack != track) return;
+                applyRecovery(track, track, autoPlay, recovery.nextFallback(), userMessage);
+            }
+        });
+    }
+    private void skipToNextTrackOnError(Track track, String originalError, long delayMs) {
+        Log.d(TAG, "⏭️ Auto-skipping to next track due to error");
+
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onError("Skipping track: " + originalError);
+        }
+        handler.postDelayed(() -> {
+            if (currentTrack != track) return;
+            boolean skipped = randomSkip ? playRandomTrack() : playNextTrack();
+            if (!skipped && playbackStatusListener != null) {
+                playbackStatusListener.onError("No more tracks available");
+            }
+        }, delayMs);
+    }
+    private String mapErrorToUserMessage(int what, int extra) {
+        switch (what) {
+            case MediaPlayer.MEDIA_ERROR_IO:
+                return "Network connection error. Please check your internet connection.";
+            case MediaPlayer.MEDIA_ERROR_MALFORMED:
+                return "Invalid audio format. Skipping to next track.";
+            case MediaPlayer.MEDIA_ERROR_UNSUPPORTED:
+                return "Audio format not supported. Skipping to next track.";
+            case MediaPlayer.MEDIA_ERROR_TIMED_OUT:
+                return "Connection timed out. Please try again.";
+            default:
+                return "Playback error occurred. Trying next track.";
+        }
+    }
+    public void play() {
+        if (postToPlayerThread(this::play)) return;
+        if (isPrepared && !mediaPlayer.isPlaying()) {
+            AudioFocusController focus = audioFocus();
+            int result = focus != null ? focus.request() : AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+            if (result == AudioManager.AUDIOFOCUS_REQUEST_FAILED) {
+                Log.w(TAG, "Audio focus denied, not starting playback");
+                return;
+            }
+            if (result == AudioManager.AUDIOFOCUS_REQUEST_DELAYED) {
+                // Starts from onFocusGained once the other app lets go
+                Log.d(TAG, "⏳ Waiting for audio focus");
+                resumeOnFocusGain = true;
+                return;
+            }
+            resumeOnFocusGain = false;
+            startPlayback();
+        } else if (!isPrepared) {
+            Log.w(TAG, "MediaPlayer not prepared, cannot play.");
+        }
+    }
+
+    public void pause() {
+        if (postToPlayerThread(this::pause)) return;
+        pausePlayback();
+        releaseAudioFocus();
+    }
+
+    private void startPlayback() {
+        mediaPlayer.setVolume(volume, volume);
+        mediaPlayer.start();
+        isPlaying = true;
+        updateKnownPosition(mediaPlayer.getCurrentPosition());
+        if (audioFocus != null) {
+            audioFocus.setNoisyReceiverEnabled(true);
+        }
+        PlaybackService.start(applicationContext);
+        if (playbackStatusListener != null) {
+            playbackStatusListener.onPlaybackStarted();
+        }
+        positionTicker.setActive(true);
+        savePlaybackState();
+    }
+
+    // Leaves the player prepared, so resuming is just start() at the same position
+    private void pausePlayback() {
+        if (audioFocus != null) {
+            audioFocus.setNoisyReceiverEnabled(false);
+        }
+        if (mediaPlayer.isPlaying()) {
+            mediaPlayer.pause();
+            isPlaying = false;
+            updateKnownPosition(mediaPlayer.getCurrentPosition());
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onPlaybackPaused();
+            }
+            positionTicker.setActive(false);
+            savePlaybackState();
+        }
+    }
+
+    private AudioFocusController audioFocus() {
+        if (audioFocus == null && applicationContext != null) {
+            audioFocus = new AudioFocusController(applicationContext, handler, new AudioFocusController.Callbacks() {
+                @Override
+                public void onFocusLost() {
+                    Log.d(TAG, "🔇 Audio focus lost");
+                    resumeOnFocusGain = false;
+                    pausePlayback();
+                    audioFocus.abandon();
+                }
+
+                @Override
+                public void onFocusLostTransient() {
+                    Log.d(TAG, "🔇 Audio focus lost for now");
+                    if (isPlaying || resumeOnFocusGain) {
+                        resumeOnFocusGain = true;
+                        pausePlayback();
+                    }
+                }
+
+                @Override
+                public void onDuck() {
+                    setVolume(DUCK_VOLUME);
+                }
+
+                @Override
+                public void onFocusGained() {
+                    setVolume(1f);
+                    if (resumeOnFocusGain && isPrepared && !mediaPlayer.isPlaying()) {
+                        Log.d(TAG, "🔊 Audio focus back, resuming");
+                        resumeOnFocusGain = false;
+                        startPlayback();
+                    }
+                }
+
+                @Override
+                public void onBecomingNoisy() {
+                    resumeOnFocusGain = false;
+                    pausePlayback();
+                }
+            });
+        }
+        return audioFocus;
+    }
+
+    private void setVolume(float volume) {
+        this.volume = volume;
+        try {
+            if (mediaPlayer != null) mediaPlayer.setVolume(volume, volume);
+            if (standbyPlayer != null) standbyPlayer.setVolume(volume, volume);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Could not change volume: " + e.getMessage());
+        }
+    }
+
+    private void releaseAudioFocus() {
+        resumeOnFocusGain = false;
+        if (audioFocus != null) {
+            audioFocus.setNoisyReceiverEnabled(false);
+            audioFocus.abandon();
+        }
+    }
+
+    public void stop() {
+        if (postToPlayerThread(this::stop)) return;
+        releaseStandby();
+        releaseAudioFocus();
+        if (mediaPlayer.isPlaying() || isPrepared) {
+            mediaPlayer.stop();
+            mediaPlayer.reset();
+            isPrepared = false;
+            isPlaying = false;
+            currentTrack = null;
+            currentTrackIndex = -1;
+            if (playbackStatusListener != null) {
+                playbackStatusListener.onPlaybackStopped();
+            }
+            positionTicker.setActive(false);
+            if (applicationContext != null) {
+                PlaybackStateStore.getInstance(applicationContext).clear();
+            }
+        }
+    }
+
+    public void release() {
+        if (postToPlayerThread(this::release)) return;
+        positionTicker.setActive(false);
+        releaseStandby();
+        releaseAudioFocus();
+        if (mediaPlayer != null) {
+            if (applicationContext != null) {
+                PlaybackStateStore store = PlaybackStateStore.getInstance(applicationContext);
+                if (currentTrack != null && (isPlaying || isPrepared)) {
+                    savePlaybackState();
+                } else {
+                    store.clear();
+                }
+                store.flush();
+            }
+            mediaPlayer.release();
+            mediaPlayer = null;
+        }
+        synchronized (MusicPlayer.class) {
+            if (instance == this) instance = null;
+        }
+        playerThread.quitSafely();
+        Log.d(TAG, "MusicPlayer released");
+    }
+
+    public void seekTo(int position) {
+        if (!isOnPlayerThread()) {
+            updateKnownPosition(position);
+            handler.post(() -> seekTo(position));
+            return;
+        }
+        if (isPrepared) {
+            mediaPlayer.seekTo(position);
+            updateKnownPosition(position);
+            positionTicker.publish(position);
+            savePlaybackState();
+        }
+    }
+
+    public int getCurrentPosition() {
+        if (isPrepared && !isOnPlayerThread()) {
+            // Extrapolated from the last reading while playing
+            long position = knownPosition;
+            if (isPlaying) {
+                position += SystemClock.uptimeMillis() - knownPositionAt;
+            }
+            return (int) (knownDuration > 0 ? Math.min(position, knownDuration) : position);
+        }
+        if (isPrepared) {
+            try {
+                int position = mediaPlayer.getCurrentPosition();
+                updateKnownPosition(position);
+                return position;
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error getting current position", e);
+                return 0;
+            }
+        }
+        return 0;
+    }
+    public int getDuration() {
+        if (isPrepared && !isOnPlayerThread()) {
+            return knownDuration;
+        }
+        if (isPrepared) {
+            try {
+                return mediaPlayer.getDuration();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error getting duration", e);
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    public List<Track> getPlaylist() {
+        return new ArrayList<>(playlist);
+    }
+
+    /**
+     * Posts every status callback to the main thread and hands it to the listener set by
+     * {@link #setPlaybackStatusListener} and to all registered observers.
+     */
+    private class PlaybackStatusDispatcher implements OnPlaybackStatusListener {
+        volatile OnPlaybackStatusListener primary;
+        final CopyOnWriteArrayList<OnPlaybackStatusListener> observers = new CopyOnWriteArrayList<>();
+
+        private void dispatch(Consumer<OnPlaybackStatusListener> event) {
+            mainHandler.post(() -> {
+                OnPlaybackStatusListener listener = primary;
+                if (listener != null) {
+                    event.accept(listener);
+                }
+                for (OnPlaybackStatusListener observer : observers) {
+                    event.accept(observer);
+                }
+            });
+        }
+
+        @Override
+        public void onPlaybackStarted() {
+            dispatch(OnPlaybackStatusListener::onPlaybackStarted);
+        }
+
+        @Override
+        public void onPlaybackPaused() {
+            dispatch(OnPlaybackStatusListener::onPlaybackPaused);
+        }
+
+        @Override
+        public void onPlaybackStopped() {
+            dispatch(OnPlaybackStatusListener::onPlaybackStopped);
+        }
+
+        @Override
+        public void onPlaybackCompleted() {
+            dispatch(OnPlaybackStatusListener::onPlaybackCompleted);
+        }
+
+        @Override
+        public void onDurationChanged(int duration) {
+            dispatch(listener -> listener.onDurationChanged(duration));
+        }
+
+        @Override
+        public void onPrepareStart() {
+            dispatch(OnPlaybackStatusListener::onPrepareStart);
+        }
+
+        @Override
+        public void onPrepareComplete() {
+            dispatch(OnPlaybackStatusListener::onPrepareComplete);
+        }
+
+        @Override
+        public void onError(String message) {
+            dispatch(listener -> listener.onError(message));
+        }
+
+        @Override
+        public void onTrackChanged(Track newTrack) {
+            dispatch(listener -> listener.onTrackChanged(newTrack));
+        }
+
+        @Override
+        public void onPlaylistChanged(List<Track> playlist, int currentIndex) {
+            List<Track> snapshot = new ArrayList<>(playlist);
+            dispatch(listener -> listener.onPlaylistChanged(snapshot, currentIndex));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.melodix.listener;
+
+import android.media.MediaPlayer;
+import android.os.SystemClock;
+
+import com.example.melodix.api.PreviewUrlRefresher;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides what {@link MusicPlayer} does after a track fails to prepare or play.
+ *
+ * Each failure is classified first. Network errors are retried with exponential backoff and
+ * jitter, as long as the host's circuit breaker is closed. Everything else, and network
+ * errors once retries run out, walks an ordered list of fallbacks: the downloaded file, the
+ * cached preview, a fresh URL for the exact track, and finally skipping it. Every track gets
+ * a deadline and only a few tracks in a row may be skipped, so a dead network ends in an
+ * error message instead of an endless loop of retries and API calls.
+ *
+ * Only used from the player thread.
+ */
+class PlaybackRecovery {
+    enum ErrorKind {
+        /** The signed preview URL ran out; the same URL will never work again. */
+        EXPIRED_URL,
+        /** Connection trouble; the same URL may work a moment later. */
+        NETWORK,
+        /** The data itself cannot be played. */
+        CODEC,
+        UNKNOWN
+    }
+
+    enum Action {
+        RETRY,
+        LOCAL_FILE,
+        CACHED_BYTES,
+        REFRESH_URL,
+        SKIP,
+        /** Too many tracks failed in a row; stop and report the error. */
+        GIVE_UP
+    }
+
+    static final class Decision {
+        final Action action;
+        final long delayMs;
+
+        Decision(Action action, long delayMs) {
+            this.action = action;
+            this.delayMs = delayMs;
+        }
+    }
+
+    // Fallbacks in the order they are tried
+    private static final Action[] FALLBACKS = {
+            Action.LOCAL_FILE, Action.CACHED_BYTES, Action.REFRESH_URL, Action.SKIP
+    };
+
+    static final String API_HOST = "api.deezer.com";
+
+    private static final int MAX_NETWORK_RETRIES = 3;
+    private static final int MAX_UNKNOWN_RETRIES = 1;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_CAP_MS = 8000;
+    private static final long TRACK_DEADLINE_MS = 20_000;
+    private static final int MAX_CONSECUTIVE_SKIPS = 3;
+    private static final long SKIP_DELAY_MS = 1000;
+
+    private static final int BREAKER_THRESHOLD = 3;
+    private static final long BREAKER_OPEN_MS = 30_000;
+
+    private static class CircuitBreaker {
+        int failures;
+        long openUntil;
+    }
+
+    private final Random random;
+    private final LongSupplier clock;
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    private long trackId = -1;
+    private long startedAt;
+    private int retries;
+    private int nextFallback;
+    private int consecutiveSkips;
+
+    PlaybackRecovery() {
+        this(new Random(), SystemClock::elapsedRealtime);
+    }
+
+    /** @param clock milliseconds since some fixed point, like {@link SystemClock#elapsedRealtime()} */
+    PlaybackRecovery(Random random, LongSupplier clock) {
+        this.random = random;
+        this.clock = clock;
+    }
+
+    static ErrorKind classify(int what, int extra, String url) {
+        if (isExpired(url)) return ErrorKind.EXPIRED_URL;
+        if (extra == MediaPlayer.MEDIA_ERROR_MALFORMED || extra == MediaPlayer.MEDIA_ERROR_UNSUPPORTED) {
+            return ErrorKind.CODEC;
+        }
+        if (extra == MediaPlayer.MEDIA_ERROR_IO || extra == MediaPlayer.MEDIA_ERROR_TIMED_OUT) {
+            return ErrorKind.NETWORK;
+        }
+        return ErrorKind.UNKNOWN;
+    }
+
+    static ErrorKind classify(Exception e, String url) {
+        if (isExpired(url)) return ErrorKind.EXPIRED_URL;
+        if (e instanceof DownloadEngine.HttpStatusException) {
+            int status = ((DownloadEngine.HttpStatusException) e).statusCode;
+            return status == 403 || status == 404 || status == 410 ? ErrorKind.EXPIRED_URL : ErrorKind.NETWORK;
+        }
+        if (e instanceof IOException) return ErrorKind.NETWORK;
+        // A URL MediaPlayer refuses outright will not get better by retrying
+        if (e instanceof IllegalArgumentException) return ErrorKind.CODEC;
+        return ErrorKind.UNKNOWN;
+    }
+
+    private static boolean isExpired(String url) {
+        if (!PreviewUrlRefresher.isDeezerUrl(url)) return false;
+        long expiresAt = PreviewUrlRefresher.parseExpiry(url);
+        return expiresAt > 0 && expiresAt <= System.currentTimeMillis() / 1000;
+    }
+
+    static String hostOf(String url) {
+        if (url == null) return null;
+        int start = url.indexOf("://");
+        if (start < 0 || url.startsWith("file://")) return null;
+        start += 3;
+        int end = start;
+        while (end < url.length() && "/:?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+        return end > start ? url.substring(start, end) : null;
+    }
+
+    /** Starts tracking a track, unless it is the one already being recovered. */
+    void begin(long trackId) {
+        if (this.trackId == trackId) return;
+        this.trackId = trackId;
+        startedAt = clock.getAsLong();
+        retries = 0;
+        nextFallback = 0;
+    }
+
+    /** The track prepared; its host is healthy and the skip streak is over. */
+    void onPrepared(String host) {
+        recordSuccess(host);
+        trackId = -1;
+        consecutiveSkips = 0;
+    }
+
+    Decision onFailure(ErrorKind kind, String host) {
+        if (kind == ErrorKind.NETWORK || kind == ErrorKind.UNKNOWN) {
+            recordFailure(host);
+        }
+        boolean withinDeadline = clock.getAsLong() - startedAt < TRACK_DEADLINE_MS;
+        int maxRetries = kind == ErrorKind.NETWORK ? MAX_NETWORK_RETRIES
+                : kind == ErrorKind.UNKNOWN ? MAX_UNKNOWN_RETRIES : 0;
+        if (withinDeadline && retries < maxRetries && isClosed(host)) {
+            return new Decision(Action.RETRY, backoff(retries++));
+        }
+        return nextFallback();
+    }
+
+    /**
+     * The next fallback to try. Call again when the returned one does not apply to the track,
+     * e.g. there is no downloaded file.
+     */
+    Decision nextFallback() {
+        while (nextFallback < FALLBACKS.length) {
+            Action action = FALLBACKS[nextFallback++];
+            if (action == Action.REFRESH_URL && !isClosed(API_HOST)) continue;
+            if (action == Action.SKIP) {
+                if (++consecutiveSkips > MAX_CONSECUTIVE_SKIPS) {
+                    consecutiveSkips = 0;
+                    trackId = -1;
+                    return new Decision(Action.GIVE_UP, 0);
+                }
+                trackId = -1;
+                return new Decision(Action.SKIP, SKIP_DELAY_MS);
+            }
+            return new Decision(action, 0);
+        }
+        trackId = -1;
+        return new Decision(Action.GIVE_UP, 0);
+    }
+
+    /** Whether requests to {@code host} may go out. A {@code null} host is local and always allowed. */
+    boolean isClosed(String host) {
+        if (host == null) return true;
+        CircuitBreaker breaker = breakers.get(host);
+        // Once the open period is over a single trial request goes through
+        return breaker == null || clock.getAsLong() >= breaker.openUntil;
+    }
+
+    void recordSuccess(String host) {
+        if (host != null) breakers.remove(host);
+    }
+
+    void recordFailure(String host) {
+        if (host == null) return;
+        CircuitBreaker breaker = breakers.get(host);
+        if (breaker == null) {
+            breaker = new CircuitBreaker();
+            breakers.put(host, breaker);
+        }
+        if (++breaker.failures >= BREAKER_THRESHOLD) {
+            breaker.openUntil = clock.getAsLong() + BREAKER_OPEN_MS;
+        }
+    }
+
+    // Half the exponential delay plus up to the other half at random
+    private long backoff(int attempt) {
+        long delay = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << Math.min(attempt, 16));
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.melodix.listener;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.graphics.drawable.Icon;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import com.example.melodix.core.R;
+import com.example.melodix.model.Track;
+
+/**
+ * Foreground service that keeps the process alive while {@link MusicPlayer} is playing, so
+ * playback outlives the activity and its fragments. It shows the playback notification and
+ * turns the notification buttons into player commands.
+ */
+public class PlaybackService extends Service implements MusicPlayer.OnPlaybackStatusListener {
+    private static final String TAG = "PlaybackService";
+
+    private static final String CHANNEL_ID = "playback";
+    private static final int NOTIFICATION_ID = 1001;
+
+    public static final String ACTION_TOGGLE = "com.example.melodix.action.TOGGLE";
+    public static final String ACTION_NEXT = "com.example.melodix.action.NEXT";
+    public static final String ACTION_PREVIOUS = "com.example.melodix.action.PREVIOUS";
+    public static final String ACTION_STOP = "com.example.melodix.action.STOP";
+
+    private static volatile boolean running = false;
+
+    private MusicPlayer musicPlayer;
+    private boolean foreground = false;
+
+    /** Starts the service unless it is already running. Safe to call from any thread. */
+    public static void start(Context context) {
+        if (running || context == null) return;
+        try {
+            context.startForegroundService(new Intent(context, PlaybackService.class));
+        } catch (IllegalStateException e) {
+            // Not allowed while the app is in the background; playback continues regardless
+            Log.w(TAG, "Could not start playback service: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        running = true;
+        createNotificationChannel();
+        musicPlayer = MusicPlayer.getInstance();
+        musicPlayer.addPlaybackStatusListener(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (!ACTION_STOP.equals(action)) {
+            // Must be in the foreground shortly after startForegroundService
+            goForeground();
+        }
+
+        if (ACTION_TOGGLE.equals(action)) {
+            if (musicPlayer.isPlaying()) {
+                musicPlayer.pause();
+            } else {
+                musicPlayer.play();
+            }
+        } else if (ACTION_NEXT.equals(action)) {
+            musicPlayer.playNextTrack();
+        } else if (ACTION_PREVIOUS.equals(action)) {
+            musicPlayer.playPreviousTrack();
+        } else if (ACTION_STOP.equals(action)) {
+            musicPlayer.stop();
+            stopSelf();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        musicPlayer.removePlaybackStatusListener(this);
+        running = false;
+        super.onDestroy();
+    }
+
+    private void goForeground() {
+        Notification notification = buildNotification();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PLAYBACK);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
+            }
+            foreground = true;
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Could not move playback service to the foreground: " + e.getMessage());
+            updateNotification();
+        }
+    }
+
+    private void updateNotification() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    private void createNotificationChannel() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager == null) return;
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                getString(R.string.playback_channel_name), NotificationManager.IMPORTANCE_LOW);
+        channel.setShowBadge(false);
+        manager.createNotificationChannel(channel);
+    }
+
+    private Notification buildNotification() {
+        Track track = musicPlayer.getCurrentTrack();
+        boolean playing = musicPlayer.isPlaying();
+
+        // Brings the app's task back to the front, or starts it if it is gone
+        Intent openApp = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        PendingIntent contentIntent = openApp != null
+                ? PendingIntent.getActivity(this, 0, openApp,
+                        PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT)
+                : null;
+
+        return new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_media_play)
+                .setContentTitle(track != null ? track.getTitle() : getApplicationInfo().loadLabel(getPackageManager()))
+                .setContentText(track != null && track.getArtist() != null ? track.getArtist().getName() : null)
+                .setContentIntent(contentIntent)
+                .setDeleteIntent(commandIntent(ACTION_STOP))
+                .setOngoing(playing)
+                .setVisibility(Notification.VISIBILITY_PUBLIC)
+                .addAction(action(android.R.drawable.ic_media_previous, "Previous", ACTION_PREVIOUS))
+                .addAction(playing
+                        ? action(android.R.drawable.ic_media_pause, "Pause", ACTION_TOGGLE)
+                        : action(android.R.drawable.ic_media_play, "Play", ACTION_TOGGLE))
+                .addAction(action(android.R.drawable.ic_media_next, "Next", ACTION_NEXT))
+                .setStyle(new Notification.MediaStyle().setShowActionsInCompactView(0, 1, 2))
+                .build();
+    }
+
+    private Notification.Action action(int icon, String title, String command) {
+        return new Notification.Action.Builder(Icon.createWithResource(this, icon), title,
+                commandIntent(command)).build();
+    }
+
+    private PendingIntent commandIntent(String action) {
+        Intent intent = new Intent(this, PlaybackService.class).setAction(action);
+        return PendingIntent.getService(this, action.hashCode(), intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    @Override
+    public void onPlaybackStarted() {
+        goForeground();
+    }
+
+    @Override
+    public void onPlaybackPaused() {
+        // Paused playback may be dismissed and the process reclaimed
+        if (foreground) {
+            stopForeground(STOP_FOREGROUND_DETACH);
+            foreground = false;
+        }
+        updateNotification();
+    }
+
+    @Override
+    public void onPlaybackStopped() {
+        stopForeground(STOP_FOREGROUND_REMOVE);
+        foreground = false;
+        stopSelf();
+    }
+
+    @Override
+    public void onPlaybackCompleted() {
+    }
+
+    @Override
+    public void onDurationChanged(int duration) {
+    }
+
+    @Override
+    public void onPrepareStart() {
+    }
+
+    @Override
+    public void onPrepareComplete() {
+    }
+
+    @Override
+    public void onError(String message) {
+    }
+
+    @Override
+    public void onTrackChanged(Track newTrack) {
+        updateNotification();
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.melodix.listener;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import com.example.melodix.database.DownloadedMusicDbHelper;
+import com.example.melodix.database.PlaybackStateDelta;
+import com.example.melodix.database.SavedPlaybackState;
+import com.example.melodix.model.Track;
+import com.example.melodix.model.TrackJson;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saved playback queue and position, kept in the {@code playback_queue} and
+ * {@code playback_state} tables.
+ *
+ * Callers report what changed rather than the whole state. Changes are merged in memory and
+ * written together once they have settled for {@link #WRITE_DELAY_MS}, on a writer thread of
+ * their own: moving to another track updates one row, loading more tracks inserts only the
+ * new ones, and only replacing the queue rewrites it.
+ */
+public class PlaybackStateStore {
+    private static final String TAG = "PlaybackStateStore";
+    private static PlaybackStateStore instance;
+
+    private static final long WRITE_DELAY_MS = 1000;
+
+    // Where older versions kept the state, in the per-user preferences of UserPreferencesManager
+    private static final String LEGACY_PREF_NAME_PREFIX = "MelodixPrefs_";
+    private static final String LEGACY_KEY_CURRENT_TRACK = "currentTrack";
+    private static final String LEGACY_KEY_PLAYBACK_POSITION = "playbackPosition";
+    private static final String LEGACY_KEY_PLAYBACK_QUEUE = "playbackQueue";
+
+    private final Context context;
+    private final DownloadedMusicDbHelper dbHelper;
+    private final Gson gson = TrackJson.gson();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+
+    // Guarded by this
+    private PlaybackStateDelta pending = new PlaybackStateDelta();
+    private String pendingUserId;
+    private boolean writeScheduled = false;
+
+    /** Queue and position to resume from. */
+    public static class Snapshot {
+        private final List<Track> queue;
+        private final int currentIndex;
+        private final long positionMs;
+
+        Snapshot(List<Track> queue, int currentIndex, long positionMs) {
+            this.queue = queue;
+            this.currentIndex = currentIndex;
+            this.positionMs = positionMs;
+        }
+
+        public List<Track> getQueue() {
+            return queue;
+        }
+
+        /** Index into {@link #getQueue()}, always valid for a non-empty queue. */
+        public int getCurrentIndex() {
+            return currentIndex;
+        }
+
+        public long getPositionMs() {
+            return positionMs;
+        }
+    }
+
+    private PlaybackStateStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DownloadedMusicDbHelper.getInstance(this.context);
+    }
+
+    public static synchronized PlaybackStateStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaybackStateStore(context);
+        }
+        return instance;
+    }
+
+    private static String currentUserId() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : "anonymous";
+    }
+
+    /** The whole queue changed. */
+    public void queueReplaced(List<Track> queue) {
+        List<String> json = toJson(queue);
+        synchronized (this) {
+            PlaybackStateDelta delta = pendingFor(currentUserId());
+            delta.replaceQueue = true;
+            delta.firstPosition = 0;
+            delta.trackIds.clear();
+            delta.trackJson.clear();
+            addTracks(delta, queue, json);
+            scheduleWrite();
+        }
+    }
+
+    /** {@code tracks} were added to the queue starting at {@code firstPosition}. */
+    public void queueAppended(int firstPosition, List<Track> tracks) {
+        List<String> json = toJson(tracks);
+        synchronized (this) {
+            PlaybackStateDelta delta = pendingFor(currentUserId());
+            if (!delta.trackIds.isEmpty()
+                    && delta.firstPosition + delta.trackIds.size() != firstPosition) {
+                // Not a continuation of the pending rows; save those first
+                writeNow();
+                delta = pendingFor(pendingUserId);
+            }
+            if (delta.trackIds.isEmpty() && !delta.replaceQueue) {
+                delta.firstPosition = firstPosition;
+            }
+            addTracks(delta, tracks, json);
+            scheduleWrite();
+        }
+    }
+
+    /** Playback moved to {@code index} in the queue, at {@code positionMs} into the track. */
+    public synchronized void currentChanged(int index, long positionMs) {
+        if (index < 0) return;
+        PlaybackStateDelta delta = pendingFor(currentUserId());
+        delta.currentIndex = index;
+        delta.positionMs = Math.max(0, positionMs);
+        scheduleWrite();
+    }
+
+    /** Forgets the saved queue and position. */
+    public synchronized void clear() {
+        pendingFor(currentUserId());
+        // Anything not yet written is moot
+        pending = new PlaybackStateDelta();
+        pending.clear = true;
+        scheduleWrite();
+    }
+
+    /** Writes pending changes without waiting for the delay, e.g. before the player goes away. */
+    public synchronized void flush() {
+        writeNow();
+    }
+
+    /**
+     * Loads the saved state of the current user, or {@code null} when nothing is saved.
+     * Blocks on the database, so call it off the main thread.
+     */
+    public Snapshot load() {
+        String userId = currentUserId();
+        synchronized (this) {
+            writeNow();
+        }
+        SavedPlaybackState saved;
+        try {
+            saved = writer.submit(() -> loadOrMigrate(userId)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "❌ Error loading playback state", e.getCause());
+            return null;
+        }
+        if (saved == null) return null;
+
+        List<Track> queue = new ArrayList<>(saved.getTrackJson().size());
+        for (String json : saved.getTrackJson()) {
+            try {
+                Track track = gson.fromJson(json, Track.class);
+                if (track != null) queue.add(track);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Skipping unreadable queue entry: " + e.getMessage());
+            }
+        }
+        if (queue.isEmpty()) return null;
+        int index = saved.getCurrentIndex();
+        if (index < 0 || index >= queue.size()) index = 0;
+        Log.d(TAG, "✅ Restored queue of " + queue.size() + " tracks at index " + index);
+        return new Snapshot(queue, index, saved.getPositionMs());
+    }
+
+    // Runs on the writer thread
+    private SavedPlaybackState loadOrMigrate(String userId) {
+        SavedPlaybackState saved = dbHelper.loadPlaybackState(userId);
+        if (saved != null) return saved;
+
+        SharedPreferences prefs = context.getSharedPreferences(
+                LEGACY_PREF_NAME_PREFIX + userId, Context.MODE_PRIVATE);
+        List<Track> legacyQueue;
+        Track legacyCurrent;
+        try {
+            legacyQueue = gson.fromJson(prefs.getString(LEGACY_KEY_PLAYBACK_QUEUE, null),
+                    new TypeToken<ArrayList<Track>>() {}.getType());
+            legacyCurrent = gson.fromJson(prefs.getString(LEGACY_KEY_CURRENT_TRACK, null), Track.class);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable legacy playback state: " + e.getMessage());
+            legacyQueue = null;
+            legacyCurrent = null;
+        }
+        if (legacyQueue == null || legacyQueue.isEmpty()) return null;
+        int index = 0;
+        if (legacyCurrent != null) {
+            for (int i = 0; i < legacyQueue.size(); i++) {
+                if (legacyQueue.get(i).getId() == legacyCurrent.getId()) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        PlaybackStateDelta delta = new PlaybackStateDelta();
+        delta.replaceQueue = true;
+        addTracks(delta, legacyQueue, toJson(legacyQueue));
+        delta.currentIndex = index;
+        delta.positionMs = 0;
+        write(userId, delta);
+        prefs.edit()
+                .remove(LEGACY_KEY_CURRENT_TRACK)
+                .remove(LEGACY_KEY_PLAYBACK_POSITION)
+                .remove(LEGACY_KEY_PLAYBACK_QUEUE)
+                .apply();
+        Log.d(TAG, "🔄 Moved " + legacyQueue.size() + " queued tracks out of preferences");
+        return new SavedPlaybackState(delta.trackJson, index, 0);
+    }
+
+    // Must hold the lock. Starts a fresh delta when the signed-in user changed.
+    private PlaybackStateDelta pendingFor(String userId) {
+        if (pendingUserId != null && !pendingUserId.equals(userId)) {
+            writeNow();
+        }
+        pendingUserId = userId;
+        return pending;
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled) return;
+        writeScheduled = true;
+        writer.schedule(() -> {
+            synchronized (PlaybackStateStore.this) {
+                writeNow();
+            }
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Must hold the lock; hands the pending delta to the writer thread
+    private void writeNow() {
+        writeScheduled = false;
+        if (pending.isEmpty() || pendingUserId == null) return;
+        PlaybackStateDelta delta = pending;
+        String userId = pendingUserId;
+        pending = new PlaybackStateDelta();
+        writer.execute(() -> write(userId, delta));
+    }
+
+    private void write(String userId, PlaybackStateDelta delta) {
+        try {
+            dbHelper.writePlaybackState(userId, delta);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "❌ Error saving playback state", e);
+        }
+    }
+
+    private List<String> toJson(List<Track> tracks) {
+        if (tracks == null) return Collections.emptyList();
+        List<String> json = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            json.add(gson.toJson(track, Track.class));
+        }
+        return json;
+    }
+
+    private static void addTracks(PlaybackStateDelta delta, List<Track> tracks, List<String> json) {
+        for (int i = 0; i < json.size(); i++) {
+            delta.trackIds.add(tracks.get(i).getId());
+            delta.trackJson.add(json.get(i));
+        }
+    }
+}
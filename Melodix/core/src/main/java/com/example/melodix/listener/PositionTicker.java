@@ -0,0 +1,90 @@
+package com.example.melodix.listener;
+
+import android.os.Handler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * The one clock that publishes playback position. It reads the position on the player
+ * thread and hands it to registered observers on the main thread.
+ *
+ * It ticks at the shortest interval any observer asked for, and only while playback is
+ * running and at least one observer is registered. Screens register while visible, so
+ * with the app in the background nothing wakes up just to report the position.
+ */
+class PositionTicker {
+    static final int DEFAULT_INTERVAL_MS = 1000;
+
+    private final Handler playerHandler;
+    private final Handler mainHandler;
+    private final IntSupplier positionSource;
+    private final Map<MusicPlayer.PositionObserver, Integer> observers = new ConcurrentHashMap<>();
+    private volatile boolean active = false;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            if (!active || observers.isEmpty()) return;
+            publish(positionSource.getAsInt());
+            playerHandler.postDelayed(this, interval());
+        }
+    };
+
+    PositionTicker(Handler playerHandler, Handler mainHandler, IntSupplier positionSource) {
+        this.playerHandler = playerHandler;
+        this.mainHandler = mainHandler;
+        this.positionSource = positionSource;
+    }
+
+    void addObserver(MusicPlayer.PositionObserver observer, int intervalMs) {
+        observers.put(observer, Math.max(intervalMs, 16));
+        // Show the current position straight away, even while paused
+        playerHandler.post(() -> {
+            int position = positionSource.getAsInt();
+            mainHandler.post(() -> {
+                if (observers.containsKey(observer)) {
+                    observer.onPositionChanged(position);
+                }
+            });
+        });
+        reschedule();
+    }
+
+    void removeObserver(MusicPlayer.PositionObserver observer) {
+        if (observers.remove(observer) != null && observers.isEmpty()) {
+            playerHandler.removeCallbacks(tick);
+        }
+    }
+
+    /** Starts or stops ticking with playback. */
+    void setActive(boolean active) {
+        this.active = active;
+        reschedule();
+    }
+
+    /** Reports a position change that did not come from the clock, such as a seek. */
+    void publish(int position) {
+        mainHandler.post(() -> {
+            for (MusicPlayer.PositionObserver observer : observers.keySet()) {
+                observer.onPositionChanged(position);
+            }
+        });
+    }
+
+    private void reschedule() {
+        playerHandler.removeCallbacks(tick);
+        if (active && !observers.isEmpty()) {
+            playerHandler.post(tick);
+        }
+    }
+
+    private int interval() {
+        int shortest = Integer.MAX_VALUE;
+        for (int interval : observers.values()) {
+            shortest = Math.min(shortest, interval);
+        }
+        return shortest == Integer.MAX_VALUE ? DEFAULT_INTERVAL_MS : shortest;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.melodix.listener;
+
+import android.content.Context;
+import android.media.MediaDataSource;
+import android.media.MediaPlayer;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Disk cache for streamed preview audio, keyed by track id.
+ *
+ * The first play of a preview downloads it into the cache while the player reads the
+ * bytes that have arrived so far; later plays open the cached file directly. The cache is
+ * trimmed to {@link #MAX_CACHE_BYTES}, least recently played first.
+ */
+public class PreviewCache {
+    private static final String TAG = "PreviewCache";
+
+    private static final String CACHE_DIR = "previews";
+    private static final long MAX_CACHE_BYTES = 50L * 1024 * 1024;
+    private static final long READ_WAIT_MS = 50;
+    // Current and standby player can both be streaming
+    private static final int MAX_PARALLEL_FILLS = 2;
+
+    private static PreviewCache instance;
+
+    private final File directory;
+    private final ExecutorService fillExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_FILLS);
+    // Prefetches queue up separately so they never hold up a preview that is playing; a
+    // prefetch a player asks for before it has started moves over to the fill pool
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    // Fills in progress, so two players asking for the same track share one download
+    private final Map<Long, Fill> fills = new HashMap<>();
+
+    private PreviewCache(Context context) {
+        directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create preview cache directory");
+        }
+    }
+
+    public static synchronized PreviewCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PreviewCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Points {@code player} at the cached copy of the preview when there is one, otherwise at
+     * a source that streams {@code url} into the cache as it plays.
+     */
+    public void setDataSource(MediaPlayer player, long trackId, String url) throws IOException {
+        File cached = fileFor(trackId);
+        if (cached.exists()) {
+            Log.d(TAG, "💾 Playing preview from cache: " + trackId);
+            cached.setLastModified(System.currentTimeMillis());
+            player.setDataSource(cached.getPath());
+            return;
+        }
+        Log.d(TAG, "🌐 Streaming preview into cache: " + trackId);
+        player.setDataSource(new StreamingSource(acquireFill(trackId, url)));
+    }
+
+    /**
+     * Downloads a preview into the cache ahead of time, unless it is cached or already
+     * being downloaded.
+     */
+    public synchronized void prefetch(long trackId, String url) {
+        Fill fill = fills.get(trackId);
+        if (isCached(trackId) || (fill != null && !fill.failed)) return;
+        try {
+            fill = new Fill(trackId, url);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not prefetch preview " + trackId + ": " + e.getMessage());
+            return;
+        }
+        fills.put(trackId, fill);
+        fill.start(prefetchExecutor);
+    }
+
+    public boolean isCached(long trackId) {
+        return fileFor(trackId).exists();
+    }
+
+    /** The complete cached preview, or {@code null} when it is not cached. */
+    public File getCachedFile(long trackId) {
+        File file = fileFor(trackId);
+        return file.exists() ? file : null;
+    }
+
+    private File fileFor(long trackId) {
+        return new File(directory, trackId + ".mp3");
+    }
+
+    private synchronized Fill acquireFill(long trackId, String url) throws IOException {
+        Fill fill = fills.get(trackId);
+        if (fill == null || fill.failed) {
+            fill = new Fill(trackId, url);
+            fills.put(trackId, fill);
+            fill.start(fillExecutor);
+        } else if (fill.executor == prefetchExecutor && fill.future.cancel(false)) {
+            // Still queued behind other prefetches, which the player would wait for
+            Log.d(TAG, "Promoting queued prefetch of preview " + trackId);
+            fill.start(fillExecutor);
+        }
+        fill.users++;
+        return fill;
+    }
+
+    private synchronized void releaseFill(Fill fill) {
+        if (--fill.users > 0) return;
+        if (fills.get(fill.trackId) == fill) {
+            fills.remove(fill.trackId);
+        }
+        if (fill.done) {
+            fill.closeReader();
+        } else {
+            // Nobody is listening any more; the partial file stays so the next play resumes
+            fill.cancel();
+        }
+    }
+
+    private synchronized void onFillFinished(Fill fill) {
+        if (fill.users == 0) {
+            if (fills.get(fill.trackId) == fill) {
+                fills.remove(fill.trackId);
+            }
+            fill.closeReader();
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_CACHE_BYTES) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_CACHE_BYTES) break;
+            if (isFilling(file)) continue;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                Log.d(TAG, "Evicted cached preview: " + file.getName());
+            }
+        }
+    }
+
+    private boolean isFilling(File file) {
+        for (Fill fill : fills.values()) {
+            if (!fill.done && file.equals(fill.part)) return true;
+        }
+        return false;
+    }
+
+    /** One download of a preview into the cache directory. */
+    private class Fill {
+        final long trackId;
+        final String url;
+        final File target;
+        final File part;
+        final RandomAccessFile reader;
+        int users;
+        volatile boolean done;
+        volatile boolean failed;
+        volatile IOException error;
+        private ExecutorService executor;
+        private Future<?> future;
+
+        Fill(long trackId, String url) throws IOException {
+            this.trackId = trackId;
+            this.url = url;
+            this.target = fileFor(trackId);
+            this.part = DownloadEngine.partFileFor(target);
+            if (!part.exists() && !part.createNewFile()) {
+                throw new IOException("Could not create " + part);
+            }
+            // Opened before the download starts; the handle stays valid after the rename
+            this.reader = new RandomAccessFile(part, "r");
+        }
+
+        void start(ExecutorService executor) {
+            this.executor = executor;
+            future = executor.submit(() -> {
+                try {
+                    DownloadEngine.download(url, target, null);
+                    done = true;
+                    Log.d(TAG, "✅ Cached preview: " + trackId);
+                } catch (IOException e) {
+                    error = e;
+                    failed = true;
+                    Log.w(TAG, "Preview fill failed for " + trackId + ": " + e.getMessage());
+                }
+                onFillFinished(this);
+            });
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(true);
+            }
+            failed = true;
+            closeReader();
+        }
+
+        /**
+         * Reads from the part of the file that has arrived, waiting for more while the
+         * download is still running.
+         */
+        int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            while (true) {
+                // Read the flags first so bytes written just before completion are not missed
+                boolean finished = done;
+                boolean aborted = failed;
+                long available;
+                synchronized (reader) {
+                    available = reader.length();
+                    if (position < available) {
+                        reader.seek(position);
+                        return reader.read(buffer, offset, (int) Math.min(size, available - position));
+                    }
+                }
+                if (finished) return -1;
+                if (aborted) {
+                    throw error != null ? error : new IOException("Preview download cancelled");
+                }
+                try {
+                    Thread.sleep(READ_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for preview data");
+                }
+            }
+        }
+
+        long size() throws IOException {
+            synchronized (reader) {
+                return done ? reader.length() : -1;
+            }
+        }
+
+        void closeReader() {
+            synchronized (reader) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Error closing preview reader: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Hands the bytes of a {@link Fill} to MediaPlayer as they arrive. */
+    private class StreamingSource extends MediaDataSource {
+        private final Fill fill;
+        private boolean closed;
+
+        StreamingSource(Fill fill) {
+            this.fill = fill;
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            if (size == 0) return 0;
+            return fill.readAt(position, buffer, offset, size);
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return fill.size();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            releaseFill(fill);
+        }
+    }
+}
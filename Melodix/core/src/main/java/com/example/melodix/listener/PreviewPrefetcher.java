@@ -0,0 +1,88 @@
+package com.example.melodix.listener;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.melodix.api.PreviewUrlRefresher;
+import com.example.melodix.model.Track;
+
+import java.util.List;
+
+/**
+ * Fetches the previews and album art of the tracks queued to play next into the local
+ * caches, so skipping to them does not wait on the network.
+ *
+ * Only runs on an unmetered network while the battery is not low and power saving is off;
+ * otherwise playback falls back to streaming each track when it starts.
+ */
+public class PreviewPrefetcher {
+    private static final String TAG = "PreviewPrefetcher";
+
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    private static PreviewPrefetcher instance;
+
+    private final Context context;
+
+    private PreviewPrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized PreviewPrefetcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new PreviewPrefetcher(context);
+        }
+        return instance;
+    }
+
+    public void prefetch(List<Track> upcoming) {
+        if (upcoming.isEmpty() || !canPrefetch()) return;
+
+        PreviewCache cache = PreviewCache.getInstance(context);
+        for (Track track : upcoming) {
+            String url = track.getPreviewUrl();
+            // Stale URLs are left to the refresher; fetching them would only fail
+            if (url != null && url.startsWith("http") && !cache.isCached(track.getId())
+                    && PreviewUrlRefresher.getInstance().isPlayable(track)) {
+                cache.prefetch(track.getId(), url);
+            }
+            if (track.getAlbum() != null && track.getAlbum().getCoverMedium() != null) {
+                Glide.with(context).load(track.getAlbum().getCoverMedium()).preload();
+            }
+        }
+        Log.d(TAG, "⏬ Prefetching " + upcoming.size() + " upcoming tracks");
+    }
+
+    private boolean canPrefetch() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) return false;
+        Network network = connectivityManager.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null
+                ? connectivityManager.getNetworkCapabilities(network) : null;
+        if (capabilities == null
+                || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                || connectivityManager.isActiveNetworkMetered()) {
+            return false;
+        }
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return false;
+        }
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        if (batteryManager != null && !batteryManager.isCharging()) {
+            int level = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            if (level > 0 && level < LOW_BATTERY_PERCENT) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.melodix.listener;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Shuffle order over playlist indices {@code 0..size-1}.
+ *
+ * Holds one Fisher-Yates permutation and a cursor into it: everything up to the cursor has
+ * been played this round, everything after it is still to come. Moving forward or back is
+ * a cursor step, and a new permutation is drawn only once a round is used up, so a pick
+ * costs O(1) amortized no matter how long the playlist is.
+ */
+class ShuffleEngine {
+    private final Random random;
+    // order[position] = playlist index, positions[index] = position in order
+    private int[] order = new int[0];
+    private int[] positions = new int[0];
+    private int size;
+    private int cursor = -1;
+
+    ShuffleEngine() {
+        this(new Random());
+    }
+
+    ShuffleEngine(Random random) {
+        this.random = random;
+    }
+
+    /** Starts a new round over {@code size} tracks with {@code startIndex} as the first one. */
+    void reset(int size, int startIndex) {
+        this.size = size;
+        order = new int[Math.max(size, 16)];
+        positions = new int[order.length];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            positions[i] = i;
+        }
+        if (size == 0) {
+            cursor = -1;
+            return;
+        }
+        shuffleFrom(0);
+        if (startIndex >= 0 && startIndex < size) {
+            swap(0, positions[startIndex]);
+        }
+        cursor = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** The index being played, or -1 when the engine is empty. */
+    int current() {
+        return cursor >= 0 ? order[cursor] : -1;
+    }
+
+    /**
+     * Advances to the next index of the round. When the round is used up a new one starts,
+     * never opening with the index that was just played.
+     */
+    int next() {
+        if (size == 0) return -1;
+        if (cursor + 1 < size) {
+            return order[++cursor];
+        }
+        int last = order[cursor];
+        shuffleFrom(0);
+        if (size > 1 && order[0] == last) {
+            swap(0, 1 + random.nextInt(size - 1));
+        }
+        cursor = 0;
+        return order[0];
+    }
+
+    /** Steps back to the index played before the current one, or -1 at the start of a round. */
+    int previous() {
+        if (cursor <= 0) return -1;
+        return order[--cursor];
+    }
+
+    boolean hasPrevious() {
+        return cursor > 0;
+    }
+
+    /** The index {@code ahead} steps after the current one in this round, or -1 past its end. */
+    int peek(int ahead) {
+        int position = cursor + ahead;
+        return ahead > 0 && position < size ? order[position] : -1;
+    }
+
+    /**
+     * Records that {@code index} was played out of shuffle order, so the rest of the round
+     * skips it. Does nothing for an index already played this round.
+     */
+    void markPlayed(int index) {
+        if (index < 0 || index >= size) return;
+        int position = positions[index];
+        if (position <= cursor) return;
+        swap(position, ++cursor);
+    }
+
+    /**
+     * Adds {@code count} new indices after the current last one. Each lands at a random spot
+     * among the tracks still to come; played tracks and the current one stay where they are.
+     */
+    void append(int count) {
+        if (count <= 0) return;
+        ensureCapacity(size + count);
+        for (int k = 0; k < count; k++) {
+            int index = size;
+            order[index] = index;
+            positions[index] = index;
+            size++;
+            // Inside-out Fisher-Yates over the unplayed part
+            int first = cursor + 1;
+            swap(index, first + random.nextInt(size - first));
+        }
+        if (cursor < 0) cursor = 0;
+    }
+
+    private void shuffleFrom(int start) {
+        for (int i = size - 1; i > start; i--) {
+            swap(i, start + random.nextInt(i - start + 1));
+        }
+    }
+
+    private void swap(int a, int b) {
+        int indexA = order[a];
+        int indexB = order[b];
+        order[a] = indexB;
+        order[b] = indexA;
+        positions[indexB] = a;
+        positions[indexA] = b;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= order.length) return;
+        int newLength = Math.max(capacity, order.length * 2);
+        order = Arrays.copyOf(order, newLength);
+        positions = Arrays.copyOf(positions, newLength);
+    }
+}
@@ -25,6 +25,10 @@ public class Album {
         return id;
     }
 
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -37,6 +41,10 @@ public class Album {
         return cover;
     }
 
+    public void setCover(String cover) {
+        this.cover = cover;
+    }
+
     public String getCoverMedium() {
         return coverMedium;
     }
@@ -49,6 +57,10 @@ public class Album {
         return releaseDate;
     }
 
+    public void setReleaseDate(String releaseDate) {
+        this.releaseDate = releaseDate;
+    }
+
     public Artist getArtist() {
         return artist;
     }
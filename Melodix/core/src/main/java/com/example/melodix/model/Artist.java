@@ -1,33 +1,38 @@
-package com.example.melodix;
+package com.example.melodix.model;
 
 import com.google.gson.annotations.SerializedName;
 
 public class Artist {
     @SerializedName("id")
     private long id;
-
     @SerializedName("name")
     private String name;
-
     @SerializedName("picture")
     private String picture;
-
     @SerializedName("picture_medium")
     private String pictureMedium;
-
     public long getId() {
         return id;
     }
-
+    public void setId(long id) {
+        this.id = id;
+    }
     public String getName() {
         return name;
     }
-
+    public void setName(String name) {
+        this.name = name;
+    }
     public String getPicture() {
         return picture;
     }
-
+    public void setPicture(String picture) {
+        this.picture = picture;
+    }
     public String getPictureMedium() {
         return pictureMedium;
     }
+    public void setPictureMedium(String pictureMedium) {
+        this.pictureMedium = pictureMedium;
+    }
 }
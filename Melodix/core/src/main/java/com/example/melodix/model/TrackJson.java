@@ -0,0 +1,277 @@
+package com.example.melodix.model;
+
+import com.example.melodix.database.DownloadedTrack;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Gson setup for storing tracks locally. {@link DownloadedTrack} redeclares the fields of
+ * {@link Track}, which plain Gson rejects, so tracks are written field by field with a class
+ * marker that brings downloaded tracks back as {@link DownloadedTrack}.
+ *
+ * Tracks, artists and albums go through hand-written streaming adapters rather than Gson's
+ * reflection, and the Gson instance is built once and shared; whole libraries and queues are
+ * converted at a time, so both costs add up.
+ */
+public final class TrackJson {
+    private static final String CLASS_FIELD = "_class";
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private static final TypeAdapter<Artist> ARTIST_ADAPTER = new ArtistAdapter();
+    private static final TypeAdapter<Album> ALBUM_ADAPTER = new AlbumAdapter();
+    private static final TypeAdapter<Track> TRACK_ADAPTER = new TrackAdapter();
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(Track.class, TRACK_ADAPTER)
+            .registerTypeHierarchyAdapter(Artist.class, ARTIST_ADAPTER)
+            .registerTypeHierarchyAdapter(Album.class, ALBUM_ADAPTER)
+            .create();
+
+    private TrackJson() {
+    }
+
+    /** Shared and thread safe; callers may keep it in a field. */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /** The stored form of a track as a map, e.g. for a Firestore document. */
+    public static Map<String, Object> toMap(Track track) {
+        return GSON.fromJson(TRACK_ADAPTER.toJsonTree(track), MAP_TYPE);
+    }
+
+    public static Track fromMap(Map<String, Object> trackMap) {
+        if (trackMap == null) return null;
+        return TRACK_ADAPTER.fromJsonTree(GSON.toJsonTree(trackMap, MAP_TYPE));
+    }
+
+    private static final class TrackAdapter extends TypeAdapter<Track> {
+        @Override
+        public void write(JsonWriter out, Track track) throws IOException {
+            if (track == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name(CLASS_FIELD).value(track.getClass().getName());
+            out.name("id").value(track.getId());
+            writeString(out, "title", track.getTitle());
+            out.name("duration").value(track.getDuration());
+            writeString(out, "previewUrl", track.getPreviewUrl());
+            out.name("isDownloaded").value(track.isDownloaded());
+            writeString(out, "type", track.getType());
+            if (track.getArtist() != null) {
+                out.name("artist");
+                ARTIST_ADAPTER.write(out, track.getArtist());
+            }
+            if (track.getAlbum() != null) {
+                out.name("album");
+                ALBUM_ADAPTER.write(out, track.getAlbum());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Track read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            // The class marker comes first in everything written here; fields read before it
+            // (hand-edited or foreign JSON) are kept and copied over
+            Track track = new Track();
+            Boolean downloaded = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case CLASS_FIELD:
+                        if (DownloadedTrack.class.getName().equals(in.nextString())) {
+                            track = toDownloaded(track);
+                        }
+                        break;
+                    case "id":
+                        track.setId(in.nextLong());
+                        break;
+                    case "title":
+                        track.setTitle(in.nextString());
+                        break;
+                    case "duration":
+                        track.setDuration(in.nextInt());
+                        break;
+                    // Download jobs used to be written by plain Gson under the Deezer name
+                    case "previewUrl":
+                    case "preview":
+                        track.setPreviewUrl(in.nextString());
+                        break;
+                    case "isDownloaded":
+                        downloaded = in.nextBoolean();
+                        break;
+                    case "type":
+                        track.setType(in.nextString());
+                        break;
+                    case "artist":
+                        track.setArtist(ARTIST_ADAPTER.read(in));
+                        break;
+                    case "album":
+                        track.setAlbum(ALBUM_ADAPTER.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            if (downloaded != null && track instanceof DownloadedTrack) {
+                ((DownloadedTrack) track).setDownloaded(downloaded);
+            }
+            return track;
+        }
+
+        private static Track toDownloaded(Track track) {
+            DownloadedTrack downloaded = new DownloadedTrack();
+            downloaded.setId(track.getId());
+            downloaded.setTitle(track.getTitle());
+            downloaded.setDuration(track.getDuration());
+            downloaded.setPreviewUrl(track.getPreviewUrl());
+            downloaded.setType(track.getType());
+            downloaded.setArtist(track.getArtist());
+            downloaded.setAlbum(track.getAlbum());
+            return downloaded;
+        }
+    }
+
+    private static final class ArtistAdapter extends TypeAdapter<Artist> {
+        @Override
+        public void write(JsonWriter out, Artist artist) throws IOException {
+            if (artist == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(artist.getId());
+            writeString(out, "name", artist.getName());
+            writeString(out, "picture", artist.getPicture());
+            writeString(out, "picture_medium", artist.getPictureMedium());
+            out.endObject();
+        }
+
+        @Override
+        public Artist read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Artist artist = new Artist();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        artist.setId(in.nextLong());
+                        break;
+                    case "name":
+                        artist.setName(in.nextString());
+                        break;
+                    case "picture":
+                        artist.setPicture(in.nextString());
+                        break;
+                    case "picture_medium":
+                        artist.setPictureMedium(in.nextString());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return artist;
+        }
+    }
+
+    private static final class AlbumAdapter extends TypeAdapter<Album> {
+        @Override
+        public void write(JsonWriter out, Album album) throws IOException {
+            if (album == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(album.getId());
+            writeString(out, "title", album.getTitle());
+            writeString(out, "cover", album.getCover());
+            writeString(out, "cover_medium", album.getCoverMedium());
+            writeString(out, "release_date", album.getReleaseDate());
+            if (album.getArtist() != null) {
+                out.name("artist");
+                ARTIST_ADAPTER.write(out, album.getArtist());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Album read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Album album = new Album();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        album.setId(in.nextLong());
+                        break;
+                    case "title":
+                        album.setTitle(in.nextString());
+                        break;
+                    case "cover":
+                        album.setCover(in.nextString());
+                        break;
+                    case "cover_medium":
+                        album.setCoverMedium(in.nextString());
+                        break;
+                    case "release_date":
+                        album.setReleaseDate(in.nextString());
+                        break;
+                    case "artist":
+                        album.setArtist(ARTIST_ADAPTER.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return album;
+        }
+    }
+
+    // Left out when null, as Gson does by default
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) out.name(name).value(value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.melodix.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class DeezerResponseCacheTest {
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private OkHttpClient client(int maxAgeSeconds, int maxStaleSeconds) {
+        List<DeezerResponseCache.Rule> rules = Collections.singletonList(
+                new DeezerResponseCache.Rule("/chart", maxAgeSeconds, maxStaleSeconds));
+        return DeezerResponseCache.buildClient(cacheFolder.getRoot(), 1024 * 1024, rules);
+    }
+
+    private String get(OkHttpClient client, String path) throws IOException {
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    @Test
+    public void freshEntry_isServedFromCache() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"data\":[1]}").addHeader("Cache-Control", "no-cache"));
+        OkHttpClient client = client(600, 600);
+
+        assertEquals("{\"data\":[1]}", get(client, "/chart/0/tracks"));
+        assertEquals("{\"data\":[1]}", get(client, "/chart/0/tracks"));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, client.cache().hitCount());
+    }
+
+    @Test
+    public void uncachedPath_alwaysGoesToNetwork() throws Exception {
+        server.enqueue(new MockResponse().setBody("a"));
+        server.enqueue(new MockResponse().setBody("b"));
+        OkHttpClient client = client(600, 600);
+
+        assertEquals("a", get(client, "/track/1"));
+        assertEquals("b", get(client, "/track/1"));
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void deezerErrorBody_isNotCached() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"error\":{\"code\":4}}"));
+        server.enqueue(new MockResponse().setBody("{\"data\":[]}"));
+        OkHttpClient client = client(600, 600);
+
+        get(client, "/chart/0/tracks");
+        assertEquals("{\"data\":[]}", get(client, "/chart/0/tracks"));
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void staleEntry_isServedImmediatelyAndRefreshedInBackground() throws Exception {
+        server.enqueue(new MockResponse().setBody("old"));
+        for (int i = 0; i < 5; i++) {
+            server.enqueue(new MockResponse().setBody("new"));
+        }
+        OkHttpClient client = client(0, 600);
+
+        assertEquals("old", get(client, "/chart/0/tracks"));
+        assertEquals("old", get(client, "/chart/0/tracks"));
+
+        server.takeRequest(5, TimeUnit.SECONDS);
+        RecordedRequest refresh = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull("stale hit should trigger a background refresh", refresh);
+        assertNull(refresh.getHeader(DeezerResponseCache.HEADER_REVALIDATE));
+
+        // Give the background call a moment to commit the new body to the cache.
+        long deadline = System.currentTimeMillis() + 5000;
+        String body = "old";
+        while (System.currentTimeMillis() < deadline && !"new".equals(body)) {
+            Thread.sleep(50);
+            body = get(client, "/chart/0/tracks");
+        }
+        assertEquals("new", body);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.melodix.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EntityCacheTest {
+    private static EntityCache<Long, StringBuilder> cache(int maxEntries, long maxBytes) {
+        return new EntityCache<>(maxEntries, maxBytes, value -> value.length());
+    }
+
+    @Test
+    public void put_valueChangedInPlace_replacesStoredSize() {
+        EntityCache<Long, StringBuilder> cache = cache(10, 1000);
+        StringBuilder value = new StringBuilder("abcd");
+        cache.put(1L, value);
+
+        value.append("efgh");
+        cache.put(1L, value);
+
+        assertEquals(8, cache.sizeBytes());
+    }
+
+    @Test
+    public void remove_subtractsSizeCountedAtPut() {
+        EntityCache<Long, StringBuilder> cache = cache(10, 1000);
+        StringBuilder value = new StringBuilder("abcd");
+        cache.put(1L, value);
+        value.append("efgh");
+
+        cache.remove(1L);
+
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    public void put_overByteBound_evictsLeastRecentlyUsed() {
+        EntityCache<Long, StringBuilder> cache = cache(10, 10);
+        cache.put(1L, new StringBuilder("aaaa"));
+        cache.put(2L, new StringBuilder("bbbb"));
+        cache.get(1L);
+
+        cache.put(3L, new StringBuilder("cccc"));
+
+        assertNotNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(8, cache.sizeBytes());
+        assertEquals(1, cache.evictionCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.melodix.database;
+
+import com.example.melodix.database.DownloadedMusicContract.LibraryEntry;
+import com.example.melodix.model.Track;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibraryStoreTest {
+    private static final String FAVORITES = LibraryEntry.LIST_FAVORITES;
+    private static final String RECENTS = LibraryEntry.LIST_RECENTS;
+
+    private static List<Track> tracks(long... ids) {
+        List<Track> tracks = new ArrayList<>();
+        for (long id : ids) {
+            Track track = new Track();
+            track.setId(id);
+            tracks.add(track);
+        }
+        return tracks;
+    }
+
+    // Stored JSON that only tells tracks apart, which is all diff compares
+    private static List<String> json(List<Track> tracks) {
+        List<String> json = new ArrayList<>();
+        for (Track track : tracks) {
+            json.add("{\"id\":" + track.getId() + "}");
+        }
+        return json;
+    }
+
+    private static LibraryChange diff(String list, List<Track> before, List<Track> after) {
+        return LibraryStore.diff(list, before, json(before), after, json(after));
+    }
+
+    private static List<Long> ids(List<Track> tracks) {
+        List<Long> ids = new ArrayList<>();
+        for (Track track : tracks) {
+            ids.add(track.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void diff_sameList_isEmpty() {
+        assertTrue(diff(FAVORITES, tracks(1, 2, 3), tracks(1, 2, 3)).isEmpty());
+    }
+
+    @Test
+    public void diff_keptInOrder_reportsRemovedRows() {
+        LibraryChange change = diff(FAVORITES, tracks(1, 2, 3, 4), tracks(1, 3));
+
+        assertFalse(change.isReset());
+        assertArrayEquals(new long[]{2, 4}, change.getRemoved());
+        assertTrue(change.getAdded().isEmpty());
+    }
+
+    @Test
+    public void diff_keptTracksReordered_isReset() {
+        assertTrue(diff(FAVORITES, tracks(1, 2, 3), tracks(1, 3, 2)).isReset());
+        assertTrue(diff(RECENTS, tracks(1, 2, 3), tracks(2, 1)).isReset());
+    }
+
+    @Test
+    public void diff_favoritesAddedAtEnd_reportsAddedInOrder() {
+        LibraryChange change = diff(FAVORITES, tracks(1, 2), tracks(1, 2, 5, 6));
+
+        assertFalse(change.isReset());
+        assertEquals(ids(tracks(5, 6)), ids(change.getAdded()));
+    }
+
+    @Test
+    public void diff_favoritesAddedAtFront_isReset() {
+        assertTrue(diff(FAVORITES, tracks(1, 2), tracks(5, 1, 2)).isReset());
+    }
+
+    @Test
+    public void diff_recentsAddedAtFront_reportsAddedInOrder() {
+        LibraryChange change = diff(RECENTS, tracks(1, 2, 3), tracks(6, 5, 1, 2));
+
+        assertFalse(change.isReset());
+        assertEquals(ids(tracks(6, 5)), ids(change.getAdded()));
+        assertArrayEquals(new long[]{3}, change.getRemoved());
+    }
+
+    @Test
+    public void diff_recentsAddedAtEnd_isReset() {
+        assertTrue(diff(RECENTS, tracks(1, 2), tracks(1, 2, 5)).isReset());
+    }
+
+    @Test
+    public void diff_addedBetweenKeptTracks_isReset() {
+        assertTrue(diff(FAVORITES, tracks(1, 2), tracks(1, 5, 2)).isReset());
+    }
+
+    @Test
+    public void diff_changedJson_reportsUpdatedInPlace() {
+        List<Track> before = tracks(1, 2, 3);
+        List<Track> after = tracks(1, 2, 3);
+        List<String> afterJson = json(after);
+        afterJson.set(1, "{\"id\":2,\"title\":\"Renamed\"}");
+
+        LibraryChange change = LibraryStore.diff(FAVORITES, before, json(before), after, afterJson);
+
+        assertFalse(change.isReset());
+        assertEquals(ids(tracks(2)), ids(change.getUpdated()));
+        assertTrue(change.getAdded().isEmpty());
+        assertEquals(0, change.getRemoved().length);
+    }
+}
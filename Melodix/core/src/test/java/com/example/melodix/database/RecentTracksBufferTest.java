@@ -0,0 +1,85 @@
+package com.example.melodix.database;
+
+import com.example.melodix.model.Track;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecentTracksBufferTest {
+    private static Track track(long id) {
+        Track track = new Track();
+        track.setId(id);
+        return track;
+    }
+
+    private static List<Long> ids(RecentTracksBuffer buffer) {
+        List<Long> ids = new ArrayList<>();
+        for (Track track : buffer.toList()) {
+            ids.add(track.getId());
+        }
+        return ids;
+    }
+
+    private static RecentTracksBuffer buffer(int capacity, long... oldestFirst) {
+        RecentTracksBuffer buffer = new RecentTracksBuffer(capacity);
+        for (long id : oldestFirst) {
+            buffer.push(track(id));
+        }
+        return buffer;
+    }
+
+    @Test
+    public void push_keepsNewestFirst() {
+        assertEquals(Arrays.asList(3L, 2L, 1L), ids(buffer(5, 1, 2, 3)));
+    }
+
+    @Test
+    public void push_whenFull_dropsOldest() {
+        RecentTracksBuffer buffer = buffer(3, 1, 2, 3);
+
+        Track dropped = buffer.push(track(4));
+
+        assertEquals(1, dropped.getId());
+        assertEquals(Arrays.asList(4L, 3L, 2L), ids(buffer));
+        assertFalse(buffer.contains(1));
+    }
+
+    @Test
+    public void push_replay_movesToFrontWithoutEviction() {
+        RecentTracksBuffer buffer = buffer(3, 1, 2, 3, 4);
+
+        assertNull(buffer.push(track(2)));
+        assertEquals(Arrays.asList(2L, 4L, 3L), ids(buffer));
+
+        // The replayed track is newest now, so the next eviction takes the one after it
+        assertEquals(3, buffer.push(track(5)).getId());
+        assertEquals(Arrays.asList(5L, 2L, 4L), ids(buffer));
+    }
+
+    @Test
+    public void update_replacesCopyInPlace() {
+        RecentTracksBuffer buffer = buffer(3, 1, 2, 3);
+        Track renamed = track(2);
+        renamed.setTitle("Renamed");
+
+        buffer.update(renamed);
+
+        assertEquals(Arrays.asList(3L, 2L, 1L), ids(buffer));
+        assertSame(renamed, buffer.toList().get(1));
+    }
+
+    @Test
+    public void fill_keepsNewestThatFit() {
+        RecentTracksBuffer buffer = buffer(3, 9);
+
+        buffer.fill(Arrays.asList(track(1), track(2), track(3), track(4)));
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(buffer));
+        assertFalse(buffer.contains(9));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.melodix.listener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+public class DownloadEngineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        target = new File(folder.getRoot(), "track.mp3");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // Sends the first five bytes of a ten byte file, then drops the connection
+    private void enqueueCutOff(String etag) {
+        server.enqueue(new MockResponse()
+                .setBody("hello")
+                .setHeader("Content-Length", "10")
+                .setHeader("ETag", etag)
+                .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END));
+    }
+
+    private String download() throws IOException {
+        DownloadEngine.download(server.url("/preview.mp3").toString(), target, null);
+        return new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void download_afterDrop_resumesWithIfRange() throws Exception {
+        enqueueCutOff("\"v1\"");
+        server.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 5-9/10")
+                .setBody("world"));
+
+        assertEquals("helloworld", download());
+
+        server.takeRequest();
+        RecordedRequest resume = server.takeRequest();
+        assertEquals("bytes=5-", resume.getHeader("Range"));
+        assertEquals("\"v1\"", resume.getHeader("If-Range"));
+        assertFalse(DownloadEngine.partFileFor(target).exists());
+    }
+
+    @Test
+    public void download_fileChangedOnServer_startsOver() throws Exception {
+        enqueueCutOff("\"v1\"");
+        // If-Range did not match, so the server sends the whole new file
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody("HELLOWORLD"));
+
+        assertEquals("HELLOWORLD", download());
+    }
+
+    @Test
+    public void download_rangeNotSatisfiable_truncatesOpenPartFileAndRestarts() throws Exception {
+        File part = DownloadEngine.partFileFor(target);
+        assertTrue(part.createNewFile());
+        enqueueCutOff("\"v1\"");
+        server.enqueue(new MockResponse().setResponseCode(416).setHeader("Content-Range", "bytes */12"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody("abcdefghijkl"));
+
+        try (RandomAccessFile reader = new RandomAccessFile(part, "r")) {
+            assertEquals("abcdefghijkl", download());
+
+            // The handle opened before the download still sees the finished bytes
+            byte[] bytes = new byte[(int) reader.length()];
+            reader.readFully(bytes);
+            assertEquals("abcdefghijkl", new String(bytes, StandardCharsets.UTF_8));
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.melodix.listener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MusicPlayerTest {
+    private static ShuffleEngine engine(int size, int start) {
+        ShuffleEngine engine = new ShuffleEngine(new Random(42));
+        engine.reset(size, start);
+        return engine;
+    }
+
+    // What playRandomTrack plays on the next count skips
+    private static List<Integer> nextPicks(ShuffleEngine shuffle, int count) {
+        List<Integer> picks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            picks.add(shuffle.next());
+        }
+        return picks;
+    }
+
+    @Test
+    public void upcomingIndices_randomSkip_matchesNextRandomPicks() {
+        for (int picked = 0; picked < 20; picked++) {
+            ShuffleEngine shuffle = engine(30, 4);
+            nextPicks(shuffle, picked);
+
+            List<Integer> prefetched = MusicPlayer.upcomingIndices(shuffle, 30, shuffle.current(), true, 3);
+
+            assertEquals(3, prefetched.size());
+            assertEquals(nextPicks(shuffle, 3), prefetched);
+        }
+    }
+
+    @Test
+    public void upcomingIndices_randomSkipAfterAppendAndOutOfOrderPlay_matchesNextRandomPicks() {
+        ShuffleEngine shuffle = engine(10, 0);
+        nextPicks(shuffle, 2);
+        shuffle.append(10);
+        shuffle.markPlayed(15);
+
+        List<Integer> prefetched = MusicPlayer.upcomingIndices(shuffle, 20, shuffle.current(), true, 3);
+
+        assertEquals(nextPicks(shuffle, 3), prefetched);
+    }
+
+    @Test
+    public void upcomingIndices_randomSkipNearEndOfRound_stopsAtRoundEnd() {
+        ShuffleEngine shuffle = engine(5, 0);
+        nextPicks(shuffle, 3);
+
+        List<Integer> prefetched = MusicPlayer.upcomingIndices(shuffle, 5, shuffle.current(), true, 3);
+
+        assertEquals(nextPicks(shuffle, 1), prefetched);
+    }
+
+    @Test
+    public void upcomingIndices_inOrder_wrapsAroundPlaylist() {
+        List<Integer> prefetched = MusicPlayer.upcomingIndices(engine(5, 3), 5, 3, false, 3);
+
+        assertEquals(Arrays.asList(4, 0, 1), prefetched);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.melodix.listener;
+
+import com.example.melodix.listener.PlaybackRecovery.Action;
+import com.example.melodix.listener.PlaybackRecovery.Decision;
+import com.example.melodix.listener.PlaybackRecovery.ErrorKind;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaybackRecoveryTest {
+    private static final String HOST = "cdn-preview.dzcdn.net";
+
+    private long now = 1_000_000;
+
+    private PlaybackRecovery recovery(long seed) {
+        return new PlaybackRecovery(new Random(seed), () -> now);
+    }
+
+    // Fails the track with a codec error and follows the fallbacks down to the skip
+    private static Action failUntilSkipped(PlaybackRecovery recovery, long trackId) {
+        recovery.begin(trackId);
+        Decision decision = recovery.onFailure(ErrorKind.CODEC, null);
+        while (decision.action != Action.SKIP && decision.action != Action.GIVE_UP) {
+            decision = recovery.nextFallback();
+        }
+        return decision.action;
+    }
+
+    @Test
+    public void onFailure_network_retriesWithJitteredExponentialBackoff() {
+        for (long seed = 0; seed < 50; seed++) {
+            PlaybackRecovery recovery = recovery(seed);
+            recovery.begin(1);
+
+            long expected = 500;
+            for (int attempt = 0; attempt < 3; attempt++) {
+                // A local file has no host, so the breaker stays out of it
+                Decision decision = recovery.onFailure(ErrorKind.NETWORK, null);
+                assertEquals(Action.RETRY, decision.action);
+                assertTrue("attempt " + attempt + " waited " + decision.delayMs,
+                        decision.delayMs >= expected / 2 && decision.delayMs < expected);
+                expected *= 2;
+            }
+            assertEquals(Action.LOCAL_FILE, recovery.onFailure(ErrorKind.NETWORK, null).action);
+        }
+    }
+
+    @Test
+    public void onFailure_sameSeed_sameDelays() {
+        PlaybackRecovery first = recovery(7);
+        PlaybackRecovery second = recovery(7);
+        first.begin(1);
+        second.begin(1);
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertEquals(first.onFailure(ErrorKind.NETWORK, null).delayMs,
+                    second.onFailure(ErrorKind.NETWORK, null).delayMs);
+        }
+    }
+
+    @Test
+    public void onFailure_pastTrackDeadline_fallsBackInsteadOfRetrying() {
+        PlaybackRecovery recovery = recovery(1);
+        recovery.begin(1);
+        assertEquals(Action.RETRY, recovery.onFailure(ErrorKind.NETWORK, null).action);
+
+        now += 20_000;
+
+        assertEquals(Action.LOCAL_FILE, recovery.onFailure(ErrorKind.NETWORK, null).action);
+    }
+
+    @Test
+    public void breaker_opensAfterThreshold_halfOpensAfterWait_closesOnSuccess() {
+        PlaybackRecovery recovery = recovery(1);
+        recovery.recordFailure(HOST);
+        recovery.recordFailure(HOST);
+        assertTrue(recovery.isClosed(HOST));
+
+        recovery.recordFailure(HOST);
+        assertFalse(recovery.isClosed(HOST));
+        now += 29_999;
+        assertFalse(recovery.isClosed(HOST));
+
+        // Half open: one trial goes through, and failing it opens the breaker again
+        now += 1;
+        assertTrue(recovery.isClosed(HOST));
+        recovery.recordFailure(HOST);
+        assertFalse(recovery.isClosed(HOST));
+
+        now += 30_000;
+        recovery.recordSuccess(HOST);
+        recovery.recordFailure(HOST);
+        assertTrue(recovery.isClosed(HOST));
+        assertTrue(recovery.isClosed("other.host"));
+    }
+
+    @Test
+    public void onFailure_openBreaker_skipsRetries() {
+        PlaybackRecovery recovery = recovery(1);
+        recovery.begin(1);
+
+        assertEquals(Action.RETRY, recovery.onFailure(ErrorKind.NETWORK, HOST).action);
+        assertEquals(Action.RETRY, recovery.onFailure(ErrorKind.NETWORK, HOST).action);
+        // The third failure opens the breaker for the host
+        assertEquals(Action.LOCAL_FILE, recovery.onFailure(ErrorKind.NETWORK, HOST).action);
+    }
+
+    @Test
+    public void nextFallback_walksFallbacksInOrder() {
+        PlaybackRecovery recovery = recovery(1);
+        recovery.begin(1);
+
+        Decision first = recovery.onFailure(ErrorKind.EXPIRED_URL, HOST);
+        assertEquals(Action.LOCAL_FILE, first.action);
+        assertEquals(0, first.delayMs);
+        assertEquals(Action.CACHED_BYTES, recovery.nextFallback().action);
+        assertEquals(Action.REFRESH_URL, recovery.nextFallback().action);
+        Decision skip = recovery.nextFallback();
+        assertEquals(Action.SKIP, skip.action);
+        assertTrue(skip.delayMs > 0);
+    }
+
+    @Test
+    public void nextFallback_apiBreakerOpen_leavesOutUrlRefresh() {
+        PlaybackRecovery recovery = recovery(1);
+        for (int i = 0; i < 3; i++) {
+            recovery.recordFailure(PlaybackRecovery.API_HOST);
+        }
+        recovery.begin(1);
+
+        assertEquals(Action.LOCAL_FILE, recovery.onFailure(ErrorKind.CODEC, null).action);
+        assertEquals(Action.CACHED_BYTES, recovery.nextFallback().action);
+        assertEquals(Action.SKIP, recovery.nextFallback().action);
+    }
+
+    @Test
+    public void skips_capped_thenGivesUp() {
+        PlaybackRecovery recovery = recovery(1);
+
+        assertEquals(Action.SKIP, failUntilSkipped(recovery, 1));
+        assertEquals(Action.SKIP, failUntilSkipped(recovery, 2));
+        assertEquals(Action.SKIP, failUntilSkipped(recovery, 3));
+        assertEquals(Action.GIVE_UP, failUntilSkipped(recovery, 4));
+
+        // Giving up starts a new streak
+        assertEquals(Action.SKIP, failUntilSkipped(recovery, 5));
+    }
+
+    @Test
+    public void onPrepared_endsSkipStreak() {
+        PlaybackRecovery recovery = recovery(1);
+        failUntilSkipped(recovery, 1);
+        failUntilSkipped(recovery, 2);
+        failUntilSkipped(recovery, 3);
+
+        recovery.begin(4);
+        recovery.onPrepared(HOST);
+
+        assertEquals(Action.SKIP, failUntilSkipped(recovery, 5));
+    }
+}
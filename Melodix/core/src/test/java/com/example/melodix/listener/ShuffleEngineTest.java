@@ -0,0 +1,158 @@
+package com.example.melodix.listener;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShuffleEngineTest {
+    private ShuffleEngine engine(int size, int start) {
+        ShuffleEngine engine = new ShuffleEngine(new Random(42));
+        engine.reset(size, start);
+        return engine;
+    }
+
+    @Test
+    public void reset_startsWithRequestedIndex() {
+        ShuffleEngine engine = engine(10, 7);
+
+        assertEquals(7, engine.current());
+        assertEquals(10, engine.size());
+    }
+
+    @Test
+    public void next_visitsEveryIndexOncePerRound() {
+        ShuffleEngine engine = engine(100, 0);
+        Set<Integer> seen = new HashSet<>();
+        seen.add(engine.current());
+
+        for (int i = 1; i < 100; i++) {
+            assertTrue("repeated before exhaustion", seen.add(engine.next()));
+        }
+        assertEquals(100, seen.size());
+    }
+
+    @Test
+    public void next_afterExhaustion_startsNewRoundWithoutImmediateRepeat() {
+        for (int seed = 0; seed < 50; seed++) {
+            ShuffleEngine engine = new ShuffleEngine(new Random(seed));
+            engine.reset(5, 0);
+            int last = engine.current();
+            for (int i = 1; i < 5; i++) {
+                last = engine.next();
+            }
+
+            int first = engine.next();
+            assertNotEquals(last, first);
+
+            Set<Integer> seen = new HashSet<>();
+            seen.add(first);
+            for (int i = 1; i < 5; i++) {
+                assertTrue(seen.add(engine.next()));
+            }
+        }
+    }
+
+    @Test
+    public void previous_walksBackThroughHistory() {
+        ShuffleEngine engine = engine(20, 3);
+        int first = engine.current();
+        int second = engine.next();
+        engine.next();
+
+        assertEquals(second, engine.previous());
+        assertTrue(engine.hasPrevious());
+        assertEquals(first, engine.previous());
+        assertFalse(engine.hasPrevious());
+        assertEquals(-1, engine.previous());
+        assertEquals(second, engine.next());
+    }
+
+    @Test
+    public void peek_matchesUpcomingPicks() {
+        ShuffleEngine engine = engine(10, 0);
+        int ahead1 = engine.peek(1);
+        int ahead2 = engine.peek(2);
+
+        assertEquals(ahead1, engine.next());
+        assertEquals(ahead2, engine.next());
+        assertEquals(-1, engine.peek(10));
+        assertEquals(-1, engine.peek(0));
+    }
+
+    @Test
+    public void markPlayed_removesIndexFromRestOfRound() {
+        ShuffleEngine engine = engine(10, 0);
+        int skipped = engine.peek(5);
+        engine.markPlayed(skipped);
+
+        assertEquals(skipped, engine.current());
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            seen.add(engine.next());
+        }
+        assertFalse(seen.contains(skipped));
+        assertFalse(seen.contains(0));
+        assertEquals(8, seen.size());
+    }
+
+    @Test
+    public void append_keepsHistoryAndAddsNewIndicesToUpcoming() {
+        ShuffleEngine engine = engine(10, 0);
+        int first = engine.current();
+        int second = engine.next();
+        int third = engine.next();
+
+        engine.append(5);
+
+        assertEquals(15, engine.size());
+        assertEquals(third, engine.current());
+        assertEquals(second, engine.previous());
+        assertEquals(first, engine.previous());
+        engine.next();
+        engine.next();
+
+        Set<Integer> seen = new HashSet<>();
+        seen.add(first);
+        seen.add(second);
+        seen.add(third);
+        for (int i = 3; i < 15; i++) {
+            assertTrue(seen.add(engine.next()));
+        }
+        for (int index = 10; index < 15; index++) {
+            assertTrue(seen.contains(index));
+        }
+    }
+
+    @Test
+    public void append_toEmptyEngine() {
+        ShuffleEngine engine = engine(0, 0);
+        assertEquals(-1, engine.current());
+        assertEquals(-1, engine.next());
+
+        engine.append(3);
+
+        Set<Integer> seen = new HashSet<>();
+        seen.add(engine.current());
+        seen.add(engine.next());
+        seen.add(engine.next());
+        assertEquals(3, seen.size());
+    }
+
+    @Test
+    public void largeLibrary_roundCoversEveryTrack() {
+        int size = 10_000;
+        ShuffleEngine engine = engine(size, 0);
+        boolean[] seen = new boolean[size];
+        seen[engine.current()] = true;
+
+        for (int i = 1; i < size; i++) {
+            int index = engine.next();
+            assertFalse(seen[index]);
+            seen[index] = true;
+        }
+    }
+}
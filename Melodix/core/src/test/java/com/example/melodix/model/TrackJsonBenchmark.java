@@ -0,0 +1,78 @@
+package com.example.melodix.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Times serializing and deserializing a 1,000-track library with {@link TrackJson} against
+ * the reflective tree model it replaced. Skipped unless the build passes {@code -Pbenchmark}.
+ */
+public class TrackJsonBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    @Before
+    public void setUp() {
+        assumeTrue("run with -Pbenchmark", Boolean.getBoolean("melodix.benchmark"));
+    }
+
+    @Test
+    public void thousandTracks_adaptersFasterThanReflectiveTreeModel() {
+        List<Track> tracks = TrackJsonTest.library();
+        List<String> json = new ArrayList<>(TrackJsonTest.TRACKS);
+        for (Track track : tracks) {
+            json.add(TrackJson.gson().toJson(track, Track.class));
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            legacyRound(tracks, json);
+            adapterRound(tracks, json);
+        }
+        long legacyNanos = 0;
+        long adapterNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            legacyRound(tracks, json);
+            legacyNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            adapterRound(tracks, json);
+            adapterNanos += System.nanoTime() - start;
+        }
+
+        String timings = String.format("TrackJson %d tracks, serialize + deserialize: reflective tree "
+                        + "%.2f ms, adapters %.2f ms (%.1fx)", TrackJsonTest.TRACKS,
+                legacyNanos / 1e6 / ROUNDS, adapterNanos / 1e6 / ROUNDS,
+                (double) legacyNanos / adapterNanos);
+        System.out.println(timings);
+        assertTrue(timings, adapterNanos < legacyNanos);
+    }
+
+    // Callers converted one track at a time and fetched the Gson each time
+    private static int legacyRound(List<Track> tracks, List<String> json) {
+        int length = 0;
+        for (Track track : tracks) {
+            length += TrackJsonTest.legacyGson().toJson(track, Track.class).length();
+        }
+        for (String stored : json) {
+            length += (int) TrackJsonTest.legacyGson().fromJson(stored, Track.class).getId();
+        }
+        return length;
+    }
+
+    private static int adapterRound(List<Track> tracks, List<String> json) {
+        int length = 0;
+        for (Track track : tracks) {
+            length += TrackJson.gson().toJson(track, Track.class).length();
+        }
+        for (String stored : json) {
+            length += (int) TrackJson.gson().fromJson(stored, Track.class).getId();
+        }
+        return length;
+    }
+}
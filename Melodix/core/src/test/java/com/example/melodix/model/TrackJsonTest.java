@@ -0,0 +1,161 @@
+package com.example.melodix.model;
+
+import com.example.melodix.database.DownloadedTrack;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializer;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TrackJsonTest {
+    private static final Type TRACK_LIST = new TypeToken<ArrayList<Track>>() {}.getType();
+    static final int TRACKS = 1000;
+
+    private static Track track(long id, boolean downloaded) {
+        Artist artist = new Artist();
+        artist.setId(id % 97);
+        artist.setName("Artist " + (id % 97));
+        artist.setPicture("https://cdn.example.com/artist/" + (id % 97) + ".jpg");
+        artist.setPictureMedium("https://cdn.example.com/artist/" + (id % 97) + "-250.jpg");
+
+        Album album = new Album();
+        album.setId(id % 211);
+        album.setTitle("Album " + (id % 211));
+        album.setCover("https://cdn.example.com/album/" + (id % 211) + ".jpg");
+        album.setCoverMedium("https://cdn.example.com/album/" + (id % 211) + "-250.jpg");
+        album.setReleaseDate("2024-01-01");
+        album.setArtist(artist);
+
+        Track track = downloaded ? new DownloadedTrack() : new Track();
+        track.setId(id);
+        track.setTitle("Track " + id);
+        track.setDuration(30 + (int) (id % 200));
+        track.setPreviewUrl("https://cdn.example.com/preview/" + id + ".mp3");
+        track.setArtist(artist);
+        track.setAlbum(album);
+        return track;
+    }
+
+    static List<Track> library() {
+        List<Track> tracks = new ArrayList<>(TRACKS);
+        for (int i = 0; i < TRACKS; i++) {
+            tracks.add(track(i + 1, i % 4 == 0));
+        }
+        return tracks;
+    }
+
+    // What TrackJson.gson() did before: a new builder per call, tree model, reflection for
+    // artists and albums
+    static Gson legacyGson() {
+        JsonSerializer<Track> serializer = (track, type, context) -> {
+            JsonObject json = new JsonObject();
+            json.addProperty("_class", track.getClass().getName());
+            json.addProperty("id", track.getId());
+            json.addProperty("title", track.getTitle());
+            json.addProperty("duration", track.getDuration());
+            json.addProperty("previewUrl", track.getPreviewUrl());
+            json.addProperty("isDownloaded", track.isDownloaded());
+            if (track.getArtist() != null) json.add("artist", context.serialize(track.getArtist()));
+            if (track.getAlbum() != null) json.add("album", context.serialize(track.getAlbum()));
+            return json;
+        };
+        JsonDeserializer<Track> deserializer = (element, type, context) -> {
+            JsonObject json = element.getAsJsonObject();
+            Track track = json.has("_class")
+                    && json.get("_class").getAsString().equals(DownloadedTrack.class.getName())
+                    ? new DownloadedTrack() : new Track();
+            if (json.has("id")) track.setId(json.get("id").getAsLong());
+            if (json.has("title")) track.setTitle(json.get("title").getAsString());
+            if (json.has("duration")) track.setDuration(json.get("duration").getAsInt());
+            if (json.has("previewUrl")) track.setPreviewUrl(json.get("previewUrl").getAsString());
+            if (json.has("artist")) track.setArtist(context.deserialize(json.get("artist"), Artist.class));
+            if (json.has("album")) track.setAlbum(context.deserialize(json.get("album"), Album.class));
+            return track;
+        };
+        return new GsonBuilder()
+                .registerTypeAdapter(Track.class, serializer)
+                .registerTypeAdapter(Track.class, deserializer)
+                .create();
+    }
+
+    private static void assertSameTrack(Track expected, Track actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getPreviewUrl(), actual.getPreviewUrl());
+        assertEquals(expected.isDownloaded(), actual.isDownloaded());
+        assertEquals(expected.getArtist().getId(), actual.getArtist().getId());
+        assertEquals(expected.getArtist().getName(), actual.getArtist().getName());
+        assertEquals(expected.getArtist().getPicture(), actual.getArtist().getPicture());
+        assertEquals(expected.getArtist().getPictureMedium(), actual.getArtist().getPictureMedium());
+        assertEquals(expected.getAlbum().getId(), actual.getAlbum().getId());
+        assertEquals(expected.getAlbum().getTitle(), actual.getAlbum().getTitle());
+        assertEquals(expected.getAlbum().getCover(), actual.getAlbum().getCover());
+        assertEquals(expected.getAlbum().getCoverMedium(), actual.getAlbum().getCoverMedium());
+        assertEquals(expected.getAlbum().getReleaseDate(), actual.getAlbum().getReleaseDate());
+        assertEquals(expected.getAlbum().getArtist().getName(), actual.getAlbum().getArtist().getName());
+    }
+
+    @Test
+    public void gson_isBuiltOnce() {
+        assertSame(TrackJson.gson(), TrackJson.gson());
+    }
+
+    @Test
+    public void roundTrip_keepsEveryFieldAndDownloadedClass() {
+        List<Track> tracks = library();
+        Gson gson = TrackJson.gson();
+
+        List<Track> read = gson.fromJson(gson.toJson(tracks, TRACK_LIST), TRACK_LIST);
+
+        assertEquals(tracks.size(), read.size());
+        for (int i = 0; i < tracks.size(); i++) {
+            assertSameTrack(tracks.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void storedJson_matchesPreviousFormatBothWays() {
+        Track track = track(7, false);
+        Gson legacy = legacyGson();
+
+        assertEquals(legacy.toJson(track, Track.class), TrackJson.gson().toJson(track, Track.class));
+        assertSameTrack(track, TrackJson.gson().fromJson(legacy.toJson(track, Track.class), Track.class));
+    }
+
+    @Test
+    public void read_downloadedFlagAndLegacyPreviewName() {
+        String json = "{\"_class\":\"" + DownloadedTrack.class.getName() + "\",\"id\":5,"
+                + "\"preview\":\"p.mp3\",\"isDownloaded\":false,\"extra\":{\"a\":[1,2]},\"title\":null}";
+
+        Track track = TrackJson.gson().fromJson(json, Track.class);
+
+        assertTrue(track instanceof DownloadedTrack);
+        assertEquals(5, track.getId());
+        assertEquals("p.mp3", track.getPreviewUrl());
+        assertFalse(track.isDownloaded());
+        assertNull(track.getTitle());
+    }
+
+    @Test
+    public void map_roundTripsThroughFirestoreStyleNumbers() {
+        Track track = track(3135556, true);
+
+        Map<String, Object> map = TrackJson.toMap(track);
+        // Firestore hands integral numbers back as Long
+        map.put("id", 3135556L);
+
+        assertSameTrack(track, TrackJson.fromMap(map));
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Melodix"
 include(":app")
+include(":core")
 